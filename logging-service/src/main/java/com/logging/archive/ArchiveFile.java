@@ -0,0 +1,445 @@
+package com.logging.archive;
+
+import com.logging.entity.OperationLog;
+import com.logging.util.VarInts;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 列式归档文件
+ * 文件格式：魔数、版本、头部长度 → 头部(行数、时间与user_id的最小/最大值、action字典、user_id布隆过滤器、列目录)
+ * → 各列数据，每列单独Deflate压缩；行按(user_id, gmt_create, log_id)排序，
+ * user_id、gmt_create、log_id存相邻行差值(ZigZag变长整数)，action、ip存字典编号，detail、event_id为长度前缀字符串；
+ * 打开时只读头部，查询可先用头部裁剪文件，按用户查询时先解压user_id列确认命中再解压其余列
+ */
+final class ArchiveFile {
+
+    private static final int MAGIC = 0x4C415243;
+
+    private static final int VERSION = 1;
+
+    private static final int PREAMBLE_SIZE = 12;
+
+    private static final double BLOOM_FPP = 0.01;
+
+    private static final int COL_USER_ID = 0;
+
+    private static final int COL_GMT_CREATE = 1;
+
+    private static final int COL_LOG_ID = 2;
+
+    private static final int COL_ACTION = 3;
+
+    private static final int COL_IP = 4;
+
+    private static final int COL_DETAIL = 5;
+
+    private static final int COL_EVENT_ID = 6;
+
+    private static final int COLUMN_COUNT = 7;
+
+    private static final Comparator<OperationLog> ARCHIVE_ORDER = Comparator
+            .comparing(OperationLog::getUserId)
+            .thenComparing(OperationLog::getGmtCreate)
+            .thenComparing(OperationLog::getLogId);
+
+    private final File file;
+
+    private final int rowCount;
+
+    private final long minTime;
+
+    private final long maxTime;
+
+    private final long minUserId;
+
+    private final long maxUserId;
+
+    private final String[] actions;
+
+    private final BloomFilter userFilter;
+
+    private final int[] rawLengths;
+
+    private final int[] compressedLengths;
+
+    private final long dataOffset;
+
+    private ArchiveFile(File file, int rowCount, long minTime, long maxTime, long minUserId, long maxUserId,
+                        String[] actions, BloomFilter userFilter, int[] rawLengths, int[] compressedLengths,
+                        long dataOffset) {
+        this.file = file;
+        this.rowCount = rowCount;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+        this.minUserId = minUserId;
+        this.maxUserId = maxUserId;
+        this.actions = actions;
+        this.userFilter = userFilter;
+        this.rawLengths = rawLengths;
+        this.compressedLengths = compressedLengths;
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * 把一组日志写成归档文件并刷盘，rows不能为空
+     */
+    static void write(File target, List<OperationLog> rows) throws IOException {
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("归档文件不能为空");
+        }
+        List<OperationLog> sorted = new ArrayList<>(rows);
+        sorted.sort(ARCHIVE_ORDER);
+
+        Map<String, Integer> actionCodes = new LinkedHashMap<>();
+        Map<String, Integer> ipCodes = new LinkedHashMap<>();
+        BloomFilter userFilter = BloomFilter.create(sorted.size(), BLOOM_FPP);
+        ByteArrayOutputStream[] columns = new ByteArrayOutputStream[COLUMN_COUNT];
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            columns[i] = new ByteArrayOutputStream(sorted.size() * 2);
+        }
+        ByteArrayOutputStream ipCodeColumn = new ByteArrayOutputStream(sorted.size());
+
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        long prevUserId = 0;
+        long prevTime = 0;
+        long prevLogId = 0;
+        for (OperationLog row : sorted) {
+            long time = toEpochMilli(row.getGmtCreate());
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            userFilter.put(row.getUserId());
+
+            VarInts.writeVarLong(columns[COL_USER_ID], VarInts.zigZag(row.getUserId() - prevUserId));
+            VarInts.writeVarLong(columns[COL_GMT_CREATE], VarInts.zigZag(time - prevTime));
+            VarInts.writeVarLong(columns[COL_LOG_ID], VarInts.zigZag(row.getLogId() - prevLogId));
+            prevUserId = row.getUserId();
+            prevTime = time;
+            prevLogId = row.getLogId();
+
+            Integer actionCode = actionCodes.computeIfAbsent(row.getAction(), k -> actionCodes.size());
+            VarInts.writeVarInt(columns[COL_ACTION], actionCode);
+            // ip编号0表示null
+            int ipCode = row.getIp() == null ? 0 : ipCodes.computeIfAbsent(row.getIp(), k -> ipCodes.size() + 1);
+            VarInts.writeVarInt(ipCodeColumn, ipCode);
+            writeString(columns[COL_DETAIL], row.getDetail());
+            writeString(columns[COL_EVENT_ID], row.getEventId());
+        }
+        VarInts.writeVarInt(columns[COL_IP], ipCodes.size());
+        for (String ip : ipCodes.keySet()) {
+            writeString(columns[COL_IP], ip);
+        }
+        ipCodeColumn.writeTo(columns[COL_IP]);
+
+        byte[][] compressed = new byte[COLUMN_COUNT][];
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(1024);
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(sorted.size());
+        header.writeLong(minTime);
+        header.writeLong(maxTime);
+        header.writeLong(sorted.get(0).getUserId());
+        header.writeLong(sorted.get(sorted.size() - 1).getUserId());
+        header.writeInt(actionCodes.size());
+        for (String action : actionCodes.keySet()) {
+            header.writeUTF(action);
+        }
+        header.writeInt(userFilter.getNumHashes());
+        header.writeInt(userFilter.getWords().length);
+        for (long word : userFilter.getWords()) {
+            header.writeLong(word);
+        }
+        header.writeInt(COLUMN_COUNT);
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            compressed[i] = deflate(columns[i].toByteArray());
+            header.writeInt(columns[i].size());
+            header.writeInt(compressed[i].length);
+        }
+        header.flush();
+
+        try (FileOutputStream fos = new FileOutputStream(target);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(headerBytes.size());
+            headerBytes.writeTo(out);
+            for (byte[] column : compressed) {
+                out.write(column);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    /**
+     * 打开归档文件，只读取头部
+     */
+    static ArchiveFile open(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("归档文件格式错误: " + file);
+            }
+            int headerLength = in.readInt();
+            int rowCount = in.readInt();
+            long minTime = in.readLong();
+            long maxTime = in.readLong();
+            long minUserId = in.readLong();
+            long maxUserId = in.readLong();
+            String[] actions = new String[in.readInt()];
+            for (int i = 0; i < actions.length; i++) {
+                actions[i] = in.readUTF();
+            }
+            int numHashes = in.readInt();
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            int columnCount = in.readInt();
+            if (columnCount != COLUMN_COUNT) {
+                throw new IOException("归档文件列数错误: " + file);
+            }
+            int[] rawLengths = new int[columnCount];
+            int[] compressedLengths = new int[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                rawLengths[i] = in.readInt();
+                compressedLengths[i] = in.readInt();
+            }
+            return new ArchiveFile(file, rowCount, minTime, maxTime, minUserId, maxUserId, actions,
+                    BloomFilter.of(words, numHashes), rawLengths, compressedLengths, PREAMBLE_SIZE + headerLength);
+        }
+    }
+
+    /**
+     * 解压全部列并还原为日志
+     */
+    List<OperationLog> readRows() throws IOException {
+        return decodeRows(readColumn(COL_USER_ID), null);
+    }
+
+    /**
+     * 读取某用户的全部日志：先解压user_id列定位行区间，布隆过滤器误判时不再解压其余列
+     */
+    List<OperationLog> readRowsOfUser(long userId) throws IOException {
+        if (!mightContainUser(userId)) {
+            return Collections.emptyList();
+        }
+        ByteBuffer userColumn = readColumn(COL_USER_ID);
+        boolean[] selected = new boolean[rowCount];
+        boolean any = false;
+        long current = 0;
+        for (int i = 0; i < rowCount; i++) {
+            current += VarInts.unZigZag(VarInts.readVarLong(userColumn));
+            if (current == userId) {
+                selected[i] = true;
+                any = true;
+            }
+        }
+        if (!any) {
+            return Collections.emptyList();
+        }
+        userColumn.rewind();
+        return decodeRows(userColumn, selected);
+    }
+
+    /**
+     * 统计时间落在[from, to]内的行数，文件整体落在区间内时直接返回行数
+     */
+    int countBetween(long from, long to) throws IOException {
+        if (!overlaps(from, to)) {
+            return 0;
+        }
+        if (minTime >= from && maxTime <= to) {
+            return rowCount;
+        }
+        ByteBuffer timeColumn = readColumn(COL_GMT_CREATE);
+        int count = 0;
+        long time = 0;
+        for (int i = 0; i < rowCount; i++) {
+            time += VarInts.unZigZag(VarInts.readVarLong(timeColumn));
+            if (time >= from && time <= to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    boolean mightContainUser(long userId) {
+        return userId >= minUserId && userId <= maxUserId && userFilter.mightContain(userId);
+    }
+
+    boolean containsAction(String action) {
+        return Arrays.asList(actions).contains(action);
+    }
+
+    boolean overlaps(long from, long to) {
+        return maxTime >= from && minTime <= to;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    long getMinTime() {
+        return minTime;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    static long toEpochMilli(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime toLocalDateTime(long epochMilli) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMilli, 1000L),
+                (int) Math.floorMod(epochMilli, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * 按行还原，selected为null表示全部行；各列是差值或变长编码，必须顺序解码
+     */
+    private List<OperationLog> decodeRows(ByteBuffer userColumn, boolean[] selected) throws IOException {
+        ByteBuffer timeColumn = readColumn(COL_GMT_CREATE);
+        ByteBuffer logIdColumn = readColumn(COL_LOG_ID);
+        ByteBuffer actionColumn = readColumn(COL_ACTION);
+        ByteBuffer ipColumn = readColumn(COL_IP);
+        ByteBuffer detailColumn = readColumn(COL_DETAIL);
+        ByteBuffer eventIdColumn = readColumn(COL_EVENT_ID);
+
+        String[] ips = new String[VarInts.readVarInt(ipColumn) + 1];
+        for (int i = 1; i < ips.length; i++) {
+            ips[i] = readString(ipColumn);
+        }
+
+        List<OperationLog> rows = new ArrayList<>(selected == null ? rowCount : 16);
+        long userId = 0;
+        long time = 0;
+        long logId = 0;
+        for (int i = 0; i < rowCount; i++) {
+            userId += VarInts.unZigZag(VarInts.readVarLong(userColumn));
+            time += VarInts.unZigZag(VarInts.readVarLong(timeColumn));
+            logId += VarInts.unZigZag(VarInts.readVarLong(logIdColumn));
+            int actionCode = VarInts.readVarInt(actionColumn);
+            int ipCode = VarInts.readVarInt(ipColumn);
+            if (selected != null && !selected[i]) {
+                skipString(detailColumn);
+                skipString(eventIdColumn);
+                continue;
+            }
+            OperationLog row = new OperationLog();
+            row.setLogId(logId);
+            row.setUserId(userId);
+            row.setGmtCreate(toLocalDateTime(time));
+            row.setAction(actions[actionCode]);
+            row.setIp(ips[ipCode]);
+            row.setDetail(readString(detailColumn));
+            row.setEventId(readString(eventIdColumn));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private ByteBuffer readColumn(int column) throws IOException {
+        long offset = dataOffset;
+        for (int i = 0; i < column; i++) {
+            offset += compressedLengths[i];
+        }
+        byte[] compressed = new byte[compressedLengths[column]];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(offset);
+            raf.readFully(compressed);
+        }
+        byte[] raw = new byte[rawLengths[column]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, raw.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != raw.length) {
+                throw new IOException("归档文件列数据损坏: file=" + file + ", column=" + column);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("归档文件列数据损坏: file=" + file + ", column=" + column, e);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] chunk = new byte[1 << 16];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) throws IOException {
+        if (value == null) {
+            VarInts.writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        VarInts.writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = VarInts.readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void skipString(ByteBuffer in) {
+        int length = VarInts.readVarInt(in) - 1;
+        if (length > 0) {
+            in.position(in.position() + length);
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package com.logging.archive;
+
+import com.logging.dto.LogCursor;
+import com.logging.dto.LogQuery;
+import com.logging.dto.OperationLogView;
+import com.logging.entity.OperationLog;
+import com.logging.util.IpAddresses;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 冷数据归档存储
+ * 归档任务把已关闭的分区写成列式文件，文件名为"分区名-分库名-g代次-序号.col"(早期版本没有代次段，视为第0代)；
+ * 查询先用各文件头部的时间范围、user_id最小/最大值与布隆过滤器、action字典裁剪，只解压可能命中的文件；
+ * 文件写出后并不立即提供查询：归档任务确认分区已在全部分库写出后登记为已切换，
+ * 各实例按登记的代次只对外提供这些文件，并以已切换分区的最大上界作为在线表查询的下界，
+ * 两者在同一个{@link View}中一起替换，同一条日志不会同时从在线表和归档层返回；
+ * 重新归档写出新一代文件后再切换代次，旧文件留到下次归档时删除，切换期间分区数据始终可查；
+ * 多实例部署时归档目录须为各实例共享的存储，归档只由一个实例写入，其余实例定时刷新文件列表
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "operation-log.archive.enabled", havingValue = "true")
+public class ArchiveStore {
+
+    private static final String FILE_SUFFIX = ".col";
+
+    private static final String GENERATION_MARK = "g";
+
+    private static final Comparator<OperationLog> NEWEST_FIRST = Comparator
+            .comparing(OperationLog::getGmtCreate)
+            .thenComparing(OperationLog::getLogId)
+            .reversed();
+
+    private static final Comparator<ArchiveFile> LATEST_FILE_FIRST =
+            Comparator.comparingLong(ArchiveFile::getMaxTime).reversed();
+
+    /**
+     * 本地已加载的全部文件，包括尚未切换或已被新一代取代的
+     */
+    private final List<ArchiveFile> files = new CopyOnWriteArrayList<>();
+
+    /**
+     * 已加载文件的修改时间，刷新时据此识别被其他实例替换的文件
+     */
+    private final Map<File, Long> modifiedTimes = new HashMap<>();
+
+    /**
+     * 已切换为由归档层提供查询的文件组："分区名-分库名" -> 生效代次
+     */
+    private Map<String, Integer> servedGenerations = Collections.emptyMap();
+
+    /**
+     * 在线表查询的下界，即已切换分区的最大上界；为null时没有已切换的分区
+     */
+    private LocalDateTime hotFrom;
+
+    /**
+     * 不为null时本实例的归档目录与数据库中的归档记录不一致，拒绝查询而不是返回缺失数据的结果
+     */
+    private String unavailableReason;
+
+    private volatile View view = new View(Collections.emptyList(), null, null);
+
+    @Value("${operation-log.archive.dir:./data/archive}")
+    private String dir;
+
+    @PostConstruct
+    public void init() throws IOException {
+        File directory = new File(dir);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建归档目录: " + directory.getAbsolutePath());
+        }
+        // 共享目录中较新的临时文件可能是其他实例正在写入的，只清理明显残留的
+        long staleBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        File[] leftovers = directory.listFiles((d, name) -> name.endsWith(FILE_SUFFIX + ".tmp"));
+        if (leftovers != null) {
+            Arrays.stream(leftovers).filter(file -> file.lastModified() < staleBefore).forEach(File::delete);
+        }
+        refresh();
+        log.info("归档存储加载完成: dir={}, files={}", directory.getAbsolutePath(), files.size());
+    }
+
+    /**
+     * 文件组名，同一分库同一分区的各代文件同属一组
+     */
+    public static String groupOf(String partition, String shardName) {
+        return partition + "-" + shardName;
+    }
+
+    /**
+     * 文件名(不含后缀)
+     */
+    public static String fileName(String partition, String shardName, int generation, int sequence) {
+        return groupOf(partition, shardName) + "-" + GENERATION_MARK + generation + "-" + String.format("%04d", sequence);
+    }
+
+    /**
+     * 当前对外提供查询的视图：已切换的文件及对应的在线表下界，同一次查询应只使用一个视图
+     */
+    public View view() {
+        return view;
+    }
+
+    /**
+     * 替换已切换的文件组及在线表下界；调用方须保证各组登记的代次文件已写出，加载后才会生效
+     */
+    public synchronized void setServing(Map<String, Integer> generations, LocalDateTime hotFrom) {
+        this.servedGenerations = new HashMap<>(generations);
+        this.hotFrom = hotFrom;
+        rebuildView();
+    }
+
+    /**
+     * 重新扫描归档目录，加载其他实例新写入或替换的文件，移除已被删除的文件
+     * 多实例共享归档目录时由归档任务定时调用
+     */
+    public synchronized void refresh() {
+        File[] existing = new File(dir).listFiles((d, name) -> name.endsWith(FILE_SUFFIX));
+        Set<File> present = new HashSet<>();
+        if (existing != null) {
+            for (File file : existing) {
+                present.add(file);
+                Long loaded = modifiedTimes.get(file);
+                if (loaded != null && loaded == file.lastModified()) {
+                    continue;
+                }
+                try {
+                    load(file);
+                } catch (IOException e) {
+                    log.error("归档文件无法打开，已跳过: file={}, error={}", file.getName(), e.getMessage());
+                }
+            }
+        }
+        for (ArchiveFile file : files) {
+            if (!present.contains(file.getFile())) {
+                files.remove(file);
+                modifiedTimes.remove(file.getFile());
+            }
+        }
+        rebuildView();
+    }
+
+    /**
+     * 写入一个归档文件，先写临时文件再原子改名，同名文件被替换；所属的组与代次切换后才提供查询
+     */
+    public synchronized void write(String name, List<OperationLog> rows) throws IOException {
+        File tmp = new File(dir, name + FILE_SUFFIX + ".tmp");
+        File target = new File(dir, name + FILE_SUFFIX);
+        ArchiveFile.write(tmp, rows);
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        load(target);
+        rebuildView();
+    }
+
+    /**
+     * 删除名称以prefix开头的归档文件，返回删除的文件数
+     */
+    public synchronized int delete(String prefix) {
+        List<ArchiveFile> removed = new ArrayList<>();
+        for (ArchiveFile file : files) {
+            if (file.getFile().getName().startsWith(prefix)) {
+                removed.add(file);
+            }
+        }
+        return remove(removed);
+    }
+
+    /**
+     * 删除分库shardName下未登记的文件，即代次与registered("分区名" -> 登记的代次)不一致或分区已不再登记的；
+     * 这些文件已被新一代取代或已过期，由归档任务在各实例刷新之后调用，返回删除的文件数
+     */
+    public synchronized int deleteUnregistered(String shardName, Map<String, Integer> registered) {
+        List<ArchiveFile> removed = new ArrayList<>();
+        for (ArchiveFile file : files) {
+            String[] parts = parseName(file);
+            if (parts[1].equals(shardName) && !Integer.valueOf(generationOf(parts)).equals(registered.get(parts[0]))) {
+                removed.add(file);
+            }
+        }
+        return remove(removed);
+    }
+
+    /**
+     * 标记归档目录不可用，reason为null时恢复
+     */
+    public synchronized void setUnavailable(String reason) {
+        this.unavailableReason = reason;
+        rebuildView();
+    }
+
+    /**
+     * 本地是否已加载该组指定代次的文件
+     */
+    public boolean contains(String group, int generation) {
+        for (ArchiveFile file : files) {
+            String[] parts = parseName(file);
+            if (groupOf(parts[0], parts[1]).equals(group) && generationOf(parts) == generation) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 已归档的分区名
+     */
+    public Set<String> getPartitions() {
+        Set<String> partitions = new TreeSet<>();
+        for (ArchiveFile file : files) {
+            partitions.add(parseName(file)[0]);
+        }
+        return partitions;
+    }
+
+    public int getFileCount() {
+        return files.size();
+    }
+
+    private int remove(List<ArchiveFile> removed) {
+        files.removeAll(removed);
+        for (ArchiveFile file : removed) {
+            modifiedTimes.remove(file.getFile());
+            if (!file.getFile().delete()) {
+                log.warn("归档文件删除失败: file={}", file.getFile());
+            }
+        }
+        rebuildView();
+        return removed.size();
+    }
+
+    private void rebuildView() {
+        List<ArchiveFile> served = new ArrayList<>();
+        for (ArchiveFile file : files) {
+            String[] parts = parseName(file);
+            Integer generation = servedGenerations.get(groupOf(parts[0], parts[1]));
+            if (generation != null && generation == generationOf(parts)) {
+                served.add(file);
+            }
+        }
+        view = new View(served, hotFrom, unavailableReason);
+    }
+
+    private void load(File target) throws IOException {
+        long modified = target.lastModified();
+        ArchiveFile archiveFile = ArchiveFile.open(target);
+        files.removeIf(file -> file.getFile().equals(target));
+        files.add(archiveFile);
+        modifiedTimes.put(target, modified);
+    }
+
+    /**
+     * 按"-"拆分文件名：分区名、分库名、[g代次]、序号
+     */
+    private static String[] parseName(ArchiveFile file) {
+        String name = file.getFile().getName();
+        return name.substring(0, name.length() - FILE_SUFFIX.length()).split("-");
+    }
+
+    private static int generationOf(String[] parts) {
+        return parts.length > 3 && parts[2].startsWith(GENERATION_MARK)
+                ? Integer.parseInt(parts[2].substring(GENERATION_MARK.length())) : 0;
+    }
+
+    private static List<OperationLog> read(ArchiveFile file, RowReader reader) {
+        try {
+            return reader.read(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取归档文件失败: " + file.getFile().getName(), e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowReader {
+        List<OperationLog> read(ArchiveFile file) throws IOException;
+    }
+
+    /**
+     * 归档层的一个不可变视图：已切换的文件与在线表下界一起生效；
+     * 视图中的日志都早于hotFrom，在线表只需查询不早于hotFrom的部分
+     */
+    public static final class View {
+
+        private final List<ArchiveFile> files;
+
+        private final LocalDateTime hotFrom;
+
+        private final String unavailableReason;
+
+        private View(List<ArchiveFile> files, LocalDateTime hotFrom, String unavailableReason) {
+            this.files = files;
+            this.hotFrom = hotFrom;
+            this.unavailableReason = unavailableReason;
+        }
+
+        /**
+         * 在线表查询的下界，为null时不限
+         */
+        public LocalDateTime getHotFrom() {
+            return hotFrom;
+        }
+
+        public List<OperationLog> findByUserId(Long userId) {
+            checkAvailable();
+            List<OperationLog> result = new ArrayList<>();
+            for (ArchiveFile file : files) {
+                if (file.mightContainUser(userId)) {
+                    result.addAll(read(file, f -> f.readRowsOfUser(userId)));
+                }
+            }
+            result.sort(NEWEST_FIRST);
+            return result;
+        }
+
+        public List<OperationLog> findByAction(String action) {
+            checkAvailable();
+            List<OperationLog> result = new ArrayList<>();
+            for (ArchiveFile file : files) {
+                if (file.containsAction(action)) {
+                    for (OperationLog row : read(file, ArchiveFile::readRows)) {
+                        if (action.equals(row.getAction())) {
+                            result.add(row);
+                        }
+                    }
+                }
+            }
+            result.sort(NEWEST_FIRST);
+            return result;
+        }
+
+        /**
+         * 按主键读取已归档的日志，times为各日志的创建时间，只解压时间范围覆盖它们的文件；已过期删除的日志不返回
+         */
+        public List<OperationLog> findByIds(Map<Long, LocalDateTime> times) {
+            checkAvailable();
+            List<OperationLog> result = new ArrayList<>();
+            Map<Long, Long> remaining = new HashMap<>();
+            times.forEach((logId, time) -> remaining.put(logId, ArchiveFile.toEpochMilli(time)));
+            for (ArchiveFile file : files) {
+                if (remaining.isEmpty()) {
+                    break;
+                }
+                if (remaining.values().stream().noneMatch(time -> file.overlaps(time, time))) {
+                    continue;
+                }
+                for (OperationLog row : read(file, ArchiveFile::readRows)) {
+                    if (remaining.remove(row.getLogId()) != null) {
+                        result.add(row);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 统计时间范围内的归档日志数
+         */
+        public long countByTimeRange(LocalDateTime startTime, LocalDateTime endTime) {
+            checkAvailable();
+            long from = ArchiveFile.toEpochMilli(startTime);
+            long to = ArchiveFile.toEpochMilli(endTime);
+            long total = 0;
+            for (ArchiveFile file : files) {
+                try {
+                    total += file.countBetween(from, to);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("读取归档文件失败: " + file.getFile().getName(), e);
+                }
+            }
+            return total;
+        }
+
+        /**
+         * 按时间倒序跳过offset条后取limit条
+         */
+        public List<OperationLog> findByTimeRange(LocalDateTime startTime, LocalDateTime endTime, long offset, int limit) {
+            checkAvailable();
+            long from = ArchiveFile.toEpochMilli(startTime);
+            long to = ArchiveFile.toEpochMilli(endTime);
+            List<OperationLog> newest = collectNewest(file -> file.overlaps(from, to), ArchiveFile::readRows, row -> {
+                long time = ArchiveFile.toEpochMilli(row.getGmtCreate());
+                return time >= from && time <= to;
+            }, (int) Math.min(Integer.MAX_VALUE - 1, offset + limit));
+            int fromIndex = (int) Math.min(offset, newest.size());
+            return new ArrayList<>(newest.subList(fromIndex, newest.size()));
+        }
+
+        /**
+         * 组合条件查询游标之后的limit条，语义与在线表的键集分页一致
+         */
+        public List<OperationLogView> findPage(LogQuery query, LogCursor cursor, int limit) {
+            checkAvailable();
+            long from = query.getStartTime() == null ? Long.MIN_VALUE : ArchiveFile.toEpochMilli(query.getStartTime());
+            long to = query.getEndTime() == null ? Long.MAX_VALUE : ArchiveFile.toEpochMilli(query.getEndTime());
+            if (cursor != null) {
+                to = Math.min(to, ArchiveFile.toEpochMilli(cursor.getGmtCreate()));
+            }
+            long fileFrom = from;
+            long fileTo = to;
+            // IP按二进制地址比较，同一地址的不同写法(如IPv6压缩与否)视为相同
+            byte[] ip = query.getIp() == null ? null : IpAddresses.toBytes(query.getIp());
+            if (query.getIp() != null && ip == null) {
+                throw new IllegalArgumentException("IP地址格式不正确: " + query.getIp());
+            }
+            byte[][] cidr = query.getCidr() == null ? null : IpAddresses.cidrRange(query.getCidr());
+            Predicate<ArchiveFile> fileFilter = file -> file.overlaps(fileFrom, fileTo)
+                    && (query.getUserId() == null || file.mightContainUser(query.getUserId()))
+                    && (query.getAction() == null || file.containsAction(query.getAction()));
+            Predicate<OperationLog> rowFilter = row -> {
+                long time = ArchiveFile.toEpochMilli(row.getGmtCreate());
+                if (time < fileFrom || time > fileTo) {
+                    return false;
+                }
+                if (cursor != null && row.getGmtCreate().equals(cursor.getGmtCreate())
+                        && row.getLogId() >= cursor.getLogId()) {
+                    return false;
+                }
+                return (query.getUserId() == null || query.getUserId().equals(row.getUserId()))
+                        && (query.getAction() == null || query.getAction().equals(row.getAction()))
+                        && (ip == null || Arrays.equals(ip, IpAddresses.toBytes(row.getIp())))
+                        && (cidr == null || IpAddresses.inRange(IpAddresses.toBytes(row.getIp()), cidr[0], cidr[1]));
+            };
+            RowReader reader = query.getUserId() == null ? ArchiveFile::readRows
+                    : file -> file.readRowsOfUser(query.getUserId());
+            List<OperationLogView> views = new ArrayList<>();
+            for (OperationLog row : collectNewest(fileFilter, reader, rowFilter, limit)) {
+                views.add(OperationLogView.of(row));
+            }
+            return views;
+        }
+
+        /**
+         * 按文件最早时间从旧到新输出时间范围内的日志，文件内按时间排序；同一时刻只解压一个文件
+         */
+        public void forEachInRange(LocalDateTime startTime, LocalDateTime endTime, Consumer<OperationLog> consumer) {
+            checkAvailable();
+            long from = ArchiveFile.toEpochMilli(startTime);
+            long to = ArchiveFile.toEpochMilli(endTime);
+            List<ArchiveFile> candidates = new ArrayList<>();
+            for (ArchiveFile file : files) {
+                if (file.overlaps(from, to)) {
+                    candidates.add(file);
+                }
+            }
+            candidates.sort(Comparator.comparingLong(ArchiveFile::getMinTime));
+            for (ArchiveFile file : candidates) {
+                List<OperationLog> rows = read(file, ArchiveFile::readRows);
+                rows.removeIf(row -> {
+                    long time = ArchiveFile.toEpochMilli(row.getGmtCreate());
+                    return time < from || time > to;
+                });
+                rows.sort(NEWEST_FIRST.reversed());
+                rows.forEach(consumer);
+            }
+        }
+
+        /**
+         * 按文件最大时间从新到旧读取，只保留最新的keep条；
+         * 已凑满且后续文件的最大时间早于已保留的最旧记录时提前结束
+         */
+        private List<OperationLog> collectNewest(Predicate<ArchiveFile> fileFilter, RowReader reader,
+                                                 Predicate<OperationLog> rowFilter, int keep) {
+            List<ArchiveFile> candidates = new ArrayList<>();
+            for (ArchiveFile file : files) {
+                if (fileFilter.test(file)) {
+                    candidates.add(file);
+                }
+            }
+            candidates.sort(LATEST_FILE_FIRST);
+            PriorityQueue<OperationLog> newest = new PriorityQueue<>(NEWEST_FIRST.reversed());
+            for (ArchiveFile file : candidates) {
+                if (keep <= 0) {
+                    break;
+                }
+                if (newest.size() >= keep
+                        && file.getMaxTime() < ArchiveFile.toEpochMilli(newest.peek().getGmtCreate())) {
+                    break;
+                }
+                for (OperationLog row : read(file, reader)) {
+                    if (!rowFilter.test(row)) {
+                        continue;
+                    }
+                    newest.offer(row);
+                    if (newest.size() > keep) {
+                        newest.poll();
+                    }
+                }
+            }
+            List<OperationLog> sorted = new ArrayList<>(newest);
+            sorted.sort(NEWEST_FIRST);
+            return sorted;
+        }
+
+        private void checkAvailable() {
+            String reason = unavailableReason;
+            if (reason != null) {
+                throw new IllegalStateException("归档存储不可用: " + reason);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.logging.archive;
+
+/**
+ * user_id布隆过滤器
+ * 按期望元素数和误判率确定位数与哈希次数，以双重哈希h1 + i*h2派生各个位置
+ */
+final class BloomFilter {
+
+    private static final int MAX_HASHES = 16;
+
+    private final long[] words;
+
+    private final int numHashes;
+
+    private final long numBits;
+
+    private BloomFilter(long[] words, int numHashes) {
+        this.words = words;
+        this.numHashes = numHashes;
+        this.numBits = (long) words.length * Long.SIZE;
+    }
+
+    /**
+     * 按期望元素数和误判率创建空过滤器
+     */
+    static BloomFilter create(int expectedInsertions, double fpp) {
+        int n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.max(1L, Math.min(Integer.MAX_VALUE / Long.SIZE, (bits + 63) / 64));
+        int hashes = (int) Math.round((double) wordCount * Long.SIZE / n * Math.log(2));
+        return new BloomFilter(new long[wordCount], Math.max(1, Math.min(MAX_HASHES, hashes)));
+    }
+
+    /**
+     * 由文件中读出的位图恢复
+     */
+    static BloomFilter of(long[] words, int numHashes) {
+        return new BloomFilter(words, numHashes);
+    }
+
+    void put(long value) {
+        long hash = mix(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = index(h1 + i * h2);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long value) {
+        long hash = mix(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = index(h1 + i * h2);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long[] getWords() {
+        return words;
+    }
+
+    int getNumHashes() {
+        return numHashes;
+    }
+
+    private long index(int combined) {
+        return (combined < 0 ? ~combined : combined) % numBits;
+    }
+
+    /**
+     * MurmurHash3的64位终结函数，使相邻的user_id分散到不同位置
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,478 @@
+package com.logging.backfill;
+
+import com.logging.config.InstanceIdentity;
+import com.logging.config.LogShardDataSources;
+import com.logging.dto.BackfillProgress;
+import com.logging.entity.OperationLog;
+import com.logging.ingest.AdaptiveConcurrencyLimiter;
+import com.logging.ingest.IngestLaneExecutor;
+import com.logging.ingest.LogIdGenerator;
+import com.logging.repository.BackfillCheckpointDao;
+import com.logging.repository.OperationLogJdbcDao;
+import com.logging.store.SegmentLogStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 派生数据回填任务
+ * 把各分库operation_logs的logId区间切成若干范围，由fork-join工作线程各自按logId升序分批读取，
+ * 每批以上一批最后的logId为起点查询LIMIT条，交给回填目标；每批处理完推进该范围的检查点，
+ * 中断或重启后从检查点续跑，只会重复最后一批。
+ * 各实例启动时都会续跑未完成的任务，每个范围处理前先在检查点表中认领并按批续租，
+ * 同一范围同一时刻只由一个实例推进；实例宕机后租约过期，其他实例续跑时接手。
+ * 为不影响实时入库，全局限制每秒读取行数，且入库通道积压或写库并发已满时暂停读取；
+ * 等待都发生在两批之间，不持有打开的游标。
+ * 检查点按任务名区分，共享数据的目标以目标名为任务名；按实例各存一份的目标({@link BackfillTarget#isPerInstance()})
+ * 任务名带实例标识后缀，各实例只续跑自己的任务，不会把数据回填到其他实例。
+ * 启用段存储引擎时operation_logs中没有数据，回填不可用
+ */
+@Component
+@Slf4j
+public class BackfillEngine {
+
+    private static final String INSTANCE_SEPARATOR = "@";
+
+    private static final String SCAN_SQL = "SELECT " + OperationLogJdbcDao.COLUMNS +
+            " FROM operation_logs WHERE log_id > ? AND log_id <= ? ORDER BY log_id LIMIT ?";
+
+    @Autowired
+    private LogShardDataSources shardDataSources;
+
+    @Autowired
+    private BackfillCheckpointDao checkpointDao;
+
+    @Autowired
+    private InstanceIdentity instanceIdentity;
+
+    @Autowired
+    private OperationLogJdbcDao operationLogJdbcDao;
+
+    @Autowired
+    private IngestLaneExecutor ingestLaneExecutor;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired(required = false)
+    private List<BackfillTarget> targets = Collections.emptyList();
+
+    @Autowired(required = false)
+    private SegmentLogStore segmentLogStore;
+
+    /**
+     * 工作线程数，每个线程占用一个分库直连连接
+     */
+    @Value("${operation-log.backfill.parallelism:2}")
+    private int parallelism;
+
+    @Value("${operation-log.backfill.ranges-per-shard:16}")
+    private int rangesPerShard;
+
+    @Value("${operation-log.backfill.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * 每秒读取行数上限，0表示不限
+     */
+    @Value("${operation-log.backfill.max-rows-per-second:5000}")
+    private int maxRowsPerSecond;
+
+    /**
+     * 范围认领的租约，每批推进检查点时续租；需大于单批读取与处理的耗时
+     */
+    @Value("${operation-log.backfill.lease-seconds:300}")
+    private int leaseSeconds;
+
+    /**
+     * 入库通道排队数超过该值时暂停读取
+     */
+    @Value("${operation-log.backfill.pause-queued:500}")
+    private int pauseQueued;
+
+    @Value("${operation-log.backfill.pause-ms:200}")
+    private long pauseMs;
+
+    /**
+     * 本实例正在执行的任务，按任务名
+     */
+    private final Map<String, ForkJoinTask<?>> running = new ConcurrentHashMap<>();
+
+    private final Object rateLock = new Object();
+
+    /**
+     * 下一批允许开始读取的时刻，受rateLock保护
+     */
+    private long nextPermitNanos;
+
+    private volatile boolean stopping;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void init() {
+        pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("log-backfill-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * 启动后续跑未完成的回填任务，跳过其他实例的按实例任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumePending() {
+        if (!isAvailable()) {
+            return;
+        }
+        for (String jobName : checkpointDao.findPendingJobs()) {
+            if (running.containsKey(jobName)) {
+                continue;
+            }
+            int separator = jobName.indexOf(INSTANCE_SEPARATOR);
+            BackfillTarget target = findTarget(separator < 0 ? jobName : jobName.substring(0, separator));
+            if (target == null) {
+                log.warn("回填目标不存在，跳过续跑: job={}", jobName);
+                continue;
+            }
+            if (!jobName.equals(jobNameOf(target))) {
+                continue;
+            }
+            log.info("续跑未完成的回填任务: job={}", jobName);
+            submit(target);
+        }
+    }
+
+    /**
+     * 启动回填；存在未完成的范围时从检查点续跑并忽略时间范围，否则按时间范围重新切分，时间为空表示不限
+     */
+    public synchronized BackfillProgress start(String targetName, LocalDateTime startTime, LocalDateTime endTime) {
+        checkAvailable();
+        BackfillTarget target = findTarget(targetName);
+        if (target == null) {
+            throw new IllegalArgumentException("回填目标不存在: " + targetName);
+        }
+        if (startTime != null && endTime != null && startTime.isAfter(endTime)) {
+            throw new IllegalArgumentException("开始时间不能晚于结束时间");
+        }
+        long lower = startTime == null ? 0L : LogIdGenerator.firstIdAt(toEpochMilli(startTime)) - 1;
+        long upper = endTime == null ? Long.MAX_VALUE : LogIdGenerator.firstIdAt(toEpochMilli(endTime) + 1) - 1;
+        return start(target, lower, upper);
+    }
+
+    /**
+     * 按logId区间(afterLogId, toLogId]启动回填；存在未完成的范围时把该区间并入任务一起续跑，不会丢弃
+     */
+    public synchronized BackfillProgress startLogIdRange(String targetName, long afterLogId, long toLogId) {
+        checkAvailable();
+        BackfillTarget target = findTarget(targetName);
+        if (target == null) {
+            throw new IllegalArgumentException("回填目标不存在: " + targetName);
+        }
+        String jobName = jobNameOf(target);
+        if (running.containsKey(jobName)) {
+            throw new IllegalStateException("回填任务正在执行: " + jobName);
+        }
+        if (checkpointDao.findPending(jobName).isEmpty()) {
+            checkpointDao.deleteJob(jobName);
+            checkpointDao.createRanges(jobName, planRanges(afterLogId, toLogId));
+        } else {
+            checkpointDao.mergeRanges(jobName, planRanges(afterLogId, toLogId));
+        }
+        submit(target);
+        return getProgress(targetName);
+    }
+
+    private BackfillProgress start(BackfillTarget target, long lower, long upper) {
+        String jobName = jobNameOf(target);
+        if (running.containsKey(jobName)) {
+            throw new IllegalStateException("回填任务正在执行: " + jobName);
+        }
+        if (checkpointDao.findPending(jobName).isEmpty()) {
+            checkpointDao.deleteJob(jobName);
+            checkpointDao.createRanges(jobName, planRanges(lower, upper));
+        }
+        submit(target);
+        return getProgress(target.getBackfillName());
+    }
+
+    /**
+     * 是否可以回填，启用段存储引擎时operation_logs中没有可读取的数据
+     */
+    public boolean isAvailable() {
+        return segmentLogStore == null;
+    }
+
+    private void checkAvailable() {
+        if (!isAvailable()) {
+            throw new IllegalStateException("段存储引擎下不支持回填");
+        }
+    }
+
+    /**
+     * 回填进度，按实例区分的目标返回本实例的任务；从未执行过时返回null
+     */
+    public BackfillProgress getProgress(String targetName) {
+        BackfillTarget target = findTarget(targetName);
+        String jobName = target == null ? targetName : jobNameOf(target);
+        BackfillProgress progress = checkpointDao.findProgress(jobName);
+        if (progress != null) {
+            progress.setTarget(targetName);
+            progress.setRunning(running.containsKey(jobName));
+        }
+        return progress;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // 工作线程在当前批次处理完后退出，检查点保证下次启动续跑
+        stopping = true;
+        pool.shutdown();
+        pool.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 按各分库实际的logId上下界收窄后切分为等宽范围
+     */
+    private List<BackfillRange> planRanges(long lower, long upper) {
+        List<BackfillRange> ranges = new ArrayList<>();
+        for (Map.Entry<String, JdbcTemplate> shard : shardDataSources.getShards().entrySet()) {
+            Map<String, Object> bounds = shard.getValue().queryForMap(
+                    "SELECT MIN(log_id) AS min_id, MAX(log_id) AS max_id FROM operation_logs");
+            if (bounds.get("min_id") == null) {
+                continue;
+            }
+            long start = Math.max(lower, ((Number) bounds.get("min_id")).longValue() - 1);
+            long end = Math.min(upper, ((Number) bounds.get("max_id")).longValue());
+            for (long[] range : split(start, end, rangesPerShard)) {
+                ranges.add(new BackfillRange(shard.getKey(), range[0], range[1], range[0]));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * 把(start, end]切成至多count个等宽的左开右闭范围
+     */
+    static List<long[]> split(long start, long end, int count) {
+        List<long[]> ranges = new ArrayList<>();
+        if (end <= start) {
+            return ranges;
+        }
+        long width = Math.max(1L, (end - start) / count + ((end - start) % count == 0 ? 0 : 1));
+        for (long from = start; from < end; from += width) {
+            ranges.add(new long[]{from, Math.min(end, from + width)});
+        }
+        return ranges;
+    }
+
+    private void submit(BackfillTarget target) {
+        String jobName = jobNameOf(target);
+        List<BackfillRange> pending = checkpointDao.findPending(jobName);
+        JobTask task = new JobTask(target, jobName, pending);
+        running.put(jobName, task);
+        pool.execute(task);
+        log.info("回填任务已提交: job={}, ranges={}", jobName, pending.size());
+    }
+
+    /**
+     * 认领范围后分批读取，逐批处理并推进检查点；已被其他实例认领时跳过，
+     * 失败时保留检查点并释放认领，不影响其他范围
+     */
+    private void process(BackfillTarget target, String jobName, BackfillRange pending) {
+        JdbcTemplate shard = shardDataSources.getShards().get(pending.getShardName());
+        if (shard == null) {
+            log.warn("回填范围所在分库不存在，跳过: job={}, shard={}", jobName, pending.getShardName());
+            return;
+        }
+        String owner = instanceIdentity.getInstanceId();
+        BackfillRange range = checkpointDao.claim(jobName, pending, owner, leaseSeconds);
+        if (range == null) {
+            log.info("回填范围已由其他实例处理，跳过: job={}, shard={}, range={}",
+                    jobName, pending.getShardName(), pending.getRangeStart());
+            return;
+        }
+        try {
+            long nextLogId = range.getNextLogId();
+            List<OperationLog> batch;
+            do {
+                // 先等待再读取，查询返回时游标已关闭
+                throttle(batchSize);
+                batch = shard.query(SCAN_SQL, (rs, rowNum) -> operationLogJdbcDao.mapRow(rs),
+                        nextLogId, range.getRangeEnd(), batchSize);
+                if (!batch.isEmpty()) {
+                    target.backfill(batch);
+                    nextLogId = batch.get(batch.size() - 1).getLogId();
+                    if (!checkpointDao.advance(jobName, range, nextLogId, batch.size(), owner, leaseSeconds)) {
+                        log.warn("回填范围租约已过期并被其他实例接管，停止处理: job={}, shard={}, range={}",
+                                jobName, range.getShardName(), range.getRangeStart());
+                        return;
+                    }
+                }
+            } while (batch.size() == batchSize);
+            if (!checkpointDao.markDone(jobName, range, owner)) {
+                // 范围已扩展，释放后由下次续跑处理扩展的部分
+                release(jobName, range, owner);
+            }
+        } catch (BackfillStoppedException e) {
+            release(jobName, range, owner);
+            log.info("回填范围已暂停，下次启动续跑: job={}, shard={}, range={}",
+                    jobName, range.getShardName(), range.getRangeStart());
+        } catch (Exception e) {
+            release(jobName, range, owner);
+            log.error("回填范围处理失败: job={}, shard={}, range={}, error={}",
+                    jobName, range.getShardName(), range.getRangeStart(), e.getMessage(), e);
+        }
+    }
+
+    private void release(String jobName, BackfillRange range, String owner) {
+        try {
+            checkpointDao.release(jobName, range, owner);
+        } catch (Exception e) {
+            // 释放失败时等租约过期
+            log.warn("回填范围释放认领失败: job={}, shard={}, range={}, error={}",
+                    jobName, range.getShardName(), range.getRangeStart(), e.getMessage());
+        }
+    }
+
+    /**
+     * 实时入库积压或写库并发已满时等待，再按全局速率限制读取
+     */
+    private void throttle(int rows) {
+        while (ingestLaneExecutor.getQueuedCount() > pauseQueued
+                || concurrencyLimiter.getInFlight() >= concurrencyLimiter.getLimit()) {
+            sleep(pauseMs);
+        }
+        if (maxRowsPerSecond <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (rateLock) {
+            long now = System.nanoTime();
+            nextPermitNanos = Math.max(nextPermitNanos, now) + rows * TimeUnit.SECONDS.toNanos(1) / maxRowsPerSecond;
+            waitNanos = nextPermitNanos - now;
+        }
+        sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+    private void sleep(long millis) {
+        if (stopping) {
+            throw new BackfillStoppedException();
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BackfillStoppedException();
+        }
+    }
+
+    /**
+     * 检查点中的任务名，按实例区分的目标加上本实例标识
+     */
+    private String jobNameOf(BackfillTarget target) {
+        return target.isPerInstance()
+                ? target.getBackfillName() + INSTANCE_SEPARATOR + instanceIdentity.getInstanceId()
+                : target.getBackfillName();
+    }
+
+    private BackfillTarget findTarget(String name) {
+        for (BackfillTarget target : targets) {
+            if (target.getBackfillName().equals(name)) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 单个回填任务：并行处理全部范围，都完成后通知回填目标
+     */
+    private class JobTask extends RecursiveAction {
+
+        private final BackfillTarget target;
+
+        private final String jobName;
+
+        private final List<BackfillRange> ranges;
+
+        JobTask(BackfillTarget target, String jobName, List<BackfillRange> ranges) {
+            this.target = target;
+            this.jobName = jobName;
+            this.ranges = ranges;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                new RangeTask(target, jobName, ranges).invoke();
+                if (checkpointDao.findPending(jobName).isEmpty()) {
+                    target.onBackfillCompleted();
+                    log.info("回填任务完成: job={}, ranges={}", jobName, ranges.size());
+                } else {
+                    log.warn("回填任务部分范围未完成或由其他实例处理中，可重新启动续跑: job={}", jobName);
+                }
+            } catch (Exception e) {
+                log.error("回填任务失败: job={}, error={}", jobName, e.getMessage(), e);
+            } finally {
+                running.remove(jobName);
+            }
+        }
+    }
+
+    /**
+     * 把范围列表对半拆分直到单个范围，由工作线程并行处理
+     */
+    private class RangeTask extends RecursiveAction {
+
+        private final BackfillTarget target;
+
+        private final String jobName;
+
+        private final List<BackfillRange> ranges;
+
+        RangeTask(BackfillTarget target, String jobName, List<BackfillRange> ranges) {
+            this.target = target;
+            this.jobName = jobName;
+            this.ranges = ranges;
+        }
+
+        @Override
+        protected void compute() {
+            if (ranges.size() > 1) {
+                int middle = ranges.size() / 2;
+                invokeAll(new RangeTask(target, jobName, ranges.subList(0, middle)),
+                        new RangeTask(target, jobName, ranges.subList(middle, ranges.size())));
+            } else if (!ranges.isEmpty() && !stopping) {
+                process(target, jobName, ranges.get(0));
+            }
+        }
+    }
+
+    private static class BackfillStoppedException extends RuntimeException {
+    }
+}
@@ -0,0 +1,18 @@
+package com.logging.backfill;
+
+import lombok.Value;
+
+/**
+ * 回填范围：某分库中logId位于(rangeStart, rangeEnd]的日志，nextLogId之前(含)的部分已处理
+ */
+@Value
+public class BackfillRange {
+
+    String shardName;
+
+    long rangeStart;
+
+    long rangeEnd;
+
+    long nextLogId;
+}
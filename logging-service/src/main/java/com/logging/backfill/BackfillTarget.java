@@ -0,0 +1,36 @@
+package com.logging.backfill;
+
+import com.logging.entity.OperationLog;
+
+import java.util.List;
+
+/**
+ * 回填目标
+ * 由operation_logs派生的数据结构实现此接口即可复用回填任务重建；
+ * 同一批日志可能因中断续跑被重复投递，实现需保证重复处理不会重复累计
+ */
+public interface BackfillTarget {
+
+    /**
+     * 目标名称，作为回填任务名与接口路径参数
+     */
+    String getBackfillName();
+
+    /**
+     * 目标数据是否按实例各存一份(如本地索引)；是则回填任务按实例区分，只在发起的实例上执行
+     */
+    default boolean isPerInstance() {
+        return false;
+    }
+
+    /**
+     * 处理一批按logId升序读出的日志，可能由多个工作线程并发调用
+     */
+    void backfill(List<OperationLog> logs);
+
+    /**
+     * 全部范围处理完成后调用
+     */
+    default void onBackfillCompleted() {
+    }
+}
@@ -0,0 +1,220 @@
+package com.logging.cache;
+
+import com.logging.entity.OperationLog;
+import com.logging.ingest.LogIngestListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * 日志查询结果缓存
+ * 以入库水位线(当前时间减去允许的迟到时长)区分窗口：结束时间早于水位线的时间范围查询视为已封闭，
+ * 结果按closed-ttl缓存；触及水位线之后的查询(含不限时间的按操作类型查询)只缓存open-ttl，为0时直接查库。
+ * 容量按缓存的总行数限制，超出时淘汰最久未访问的结果。
+ * 迟于水位线到达的日志入库后，清除时间范围覆盖它的结果和同一操作类型的结果；
+ * 其他实例入库的迟到日志不会通知到本实例，其影响以closed-ttl为上限
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "operation-log.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class LogResultCache implements LogIngestListener {
+
+    private static final String CACHE_METRIC = "operation_log.cache";
+
+    private final Clock clock;
+
+    private final long latenessMillis;
+
+    private final long openTtlMillis;
+
+    private final long closedTtlMillis;
+
+    private final long maxRows;
+
+    /**
+     * 查询键 -> 结果，访问顺序即LRU顺序，受this锁保护
+     */
+    private final LinkedHashMap<QueryKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long cachedRows;
+
+    /**
+     * 每次因迟到日志清除结果时加1；查询期间发生过清除的结果可能漏掉迟到日志，只按open-ttl缓存
+     */
+    private long invalidations;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    @Autowired
+    public LogResultCache(MeterRegistry meterRegistry,
+                          @Value("${operation-log.cache.lateness-seconds:300}") long latenessSeconds,
+                          @Value("${operation-log.cache.open-ttl-seconds:5}") long openTtlSeconds,
+                          @Value("${operation-log.cache.closed-ttl-seconds:3600}") long closedTtlSeconds,
+                          @Value("${operation-log.cache.max-rows:200000}") long maxRows) {
+        this(meterRegistry, Clock.systemDefaultZone(), latenessSeconds, openTtlSeconds, closedTtlSeconds, maxRows);
+    }
+
+    LogResultCache(MeterRegistry meterRegistry, Clock clock, long latenessSeconds, long openTtlSeconds,
+                   long closedTtlSeconds, long maxRows) {
+        this.clock = clock;
+        this.latenessMillis = latenessSeconds * 1000L;
+        this.openTtlMillis = openTtlSeconds * 1000L;
+        this.closedTtlMillis = closedTtlSeconds * 1000L;
+        this.maxRows = maxRows;
+        this.hits = meterRegistry.counter(CACHE_METRIC + ".requests", "result", "hit");
+        this.misses = meterRegistry.counter(CACHE_METRIC + ".requests", "result", "miss");
+        meterRegistry.gauge(CACHE_METRIC + ".rows", Tags.empty(), this, LogResultCache::getCachedRows);
+    }
+
+    @Override
+    public String getSinkName() {
+        return "cache";
+    }
+
+    /**
+     * 入库水位线，早于该时间的日志视为已全部入库
+     */
+    public LocalDateTime getWatermark() {
+        return LocalDateTime.now(clock).minusNanos(latenessMillis * 1_000_000L);
+    }
+
+    /**
+     * 按操作类型查询，不限时间，总是触及未封闭窗口
+     */
+    public List<OperationLog> getByAction(String action, Supplier<List<OperationLog>> loader) {
+        return get(QueryKey.ofAction(action), false, loader, List::size);
+    }
+
+    /**
+     * 按时间范围分页查询，结束时间早于水位线时长期缓存
+     */
+    public Page<OperationLog> getByTimeRange(LocalDateTime startTime, LocalDateTime endTime, Pageable pageable,
+                                             Supplier<Page<OperationLog>> loader) {
+        boolean closed = endTime.isBefore(getWatermark());
+        return get(QueryKey.ofRange(startTime, endTime, pageable), closed, loader, page -> page.getContent().size());
+    }
+
+    @Override
+    public void onLogsPersisted(List<OperationLog> logs) {
+        LocalDateTime watermark = getWatermark();
+        for (OperationLog operationLog : logs) {
+            if (operationLog.getGmtCreate().isBefore(watermark)) {
+                invalidateLate(operationLog);
+            }
+        }
+    }
+
+    public synchronized long getCachedRows() {
+        return cachedRows;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(QueryKey key, boolean closed, Supplier<T> loader, ToIntFunction<T> rowsOf) {
+        long generation;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expireAt > clock.millis()) {
+                hits.increment();
+                return (T) entry.value;
+            }
+            if (entry != null) {
+                remove(key);
+            }
+            generation = invalidations;
+        }
+        misses.increment();
+        T value = loader.get();
+        long ttl = closed ? closedTtlMillis : openTtlMillis;
+        int rows = Math.max(1, rowsOf.applyAsInt(value));
+        if (ttl <= 0 || rows > maxRows) {
+            return value;
+        }
+        synchronized (this) {
+            if (generation != invalidations) {
+                // 查询期间有迟到日志入库，结果可能已过时
+                ttl = Math.min(ttl, openTtlMillis);
+                if (ttl <= 0) {
+                    return value;
+                }
+            }
+            remove(key);
+            entries.put(key, new Entry(value, rows, clock.millis() + ttl));
+            cachedRows += rows;
+            evict();
+        }
+        return value;
+    }
+
+    private synchronized void invalidateLate(OperationLog operationLog) {
+        invalidations++;
+        Iterator<Map.Entry<QueryKey, Entry>> iterator = entries.entrySet().iterator();
+        int removed = 0;
+        while (iterator.hasNext()) {
+            Map.Entry<QueryKey, Entry> cached = iterator.next();
+            if (cached.getKey().matches(operationLog)) {
+                cachedRows -= cached.getValue().rows;
+                iterator.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.debug("迟到日志入库，清除缓存的查询结果: logId={}, gmtCreate={}, removed={}",
+                    operationLog.getLogId(), operationLog.getGmtCreate(), removed);
+        }
+    }
+
+    private void remove(QueryKey key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            cachedRows -= previous.rows;
+        }
+    }
+
+    /**
+     * 总行数超出上限时淘汰最久未访问的结果
+     */
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (cachedRows > maxRows && eldest.hasNext()) {
+            cachedRows -= eldest.next().rows;
+            eldest.remove();
+        }
+    }
+
+    private static class Entry {
+
+        private final Object value;
+
+        private final int rows;
+
+        private final long expireAt;
+
+        Entry(Object value, int rows, long expireAt) {
+            this.value = value;
+            this.rows = rows;
+            this.expireAt = expireAt;
+        }
+    }
+}
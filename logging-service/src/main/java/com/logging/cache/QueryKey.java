@@ -0,0 +1,42 @@
+package com.logging.cache;
+
+import com.logging.entity.OperationLog;
+import lombok.Value;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+
+/**
+ * 查询结果缓存键
+ * 按操作类型查询时只有action，按时间范围分页查询时为时间范围和分页参数
+ */
+@Value
+class QueryKey {
+
+    String action;
+
+    LocalDateTime startTime;
+
+    LocalDateTime endTime;
+
+    Pageable pageable;
+
+    static QueryKey ofAction(String action) {
+        return new QueryKey(action, null, null, null);
+    }
+
+    static QueryKey ofRange(LocalDateTime startTime, LocalDateTime endTime, Pageable pageable) {
+        return new QueryKey(null, startTime, endTime, pageable);
+    }
+
+    /**
+     * 日志是否会出现在该查询的结果中
+     */
+    boolean matches(OperationLog operationLog) {
+        if (action != null) {
+            return action.equals(operationLog.getAction());
+        }
+        LocalDateTime time = operationLog.getGmtCreate();
+        return !time.isBefore(startTime) && !time.isAfter(endTime);
+    }
+}
@@ -0,0 +1,63 @@
+package com.logging.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * 实例标识
+ * 按实例各存一份的数据(如统计草图)以此区分实例，重启后不变；
+ * 优先取配置值，未配置时读取标识文件，文件不存在则生成随机UUID写入，因此标识文件所在目录不能在实例间共享
+ */
+@Component
+@Slf4j
+public class InstanceIdentity {
+
+    private static final int MAX_LENGTH = 64;
+
+    private final String instanceId;
+
+    public InstanceIdentity(@Value("${operation-log.instance.id:}") String configured,
+                            @Value("${operation-log.instance.id-file:./data/instance-id}") String idFile) {
+        this.instanceId = configured.trim().isEmpty() ? loadOrCreate(Paths.get(idFile)) : configured.trim();
+        if (instanceId.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("实例标识长度不能超过" + MAX_LENGTH + ": " + instanceId);
+        }
+        log.info("实例标识: instanceId={}", instanceId);
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    private static String loadOrCreate(Path file) {
+        try {
+            if (Files.exists(file)) {
+                String saved = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+                if (!saved.isEmpty()) {
+                    return saved;
+                }
+            }
+            String created = UUID.randomUUID().toString();
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            // 先写临时文件再改名，写到一半崩溃不会留下残缺的标识
+            Path tmp = Files.createTempFile(parent, "instance-id", ".tmp");
+            Files.write(tmp, created.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            log.info("已生成实例标识并写入: file={}", file);
+            return created;
+        } catch (IOException e) {
+            throw new UncheckedIOException("实例标识文件读写失败: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.logging.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.driver.api.ShardingSphereDataSourceFactory;
+import org.apache.shardingsphere.infra.config.RuleConfiguration;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * 日志查询数据源
+ * 查询与入库使用各自的连接池：主数据源(spring.shardingsphere.datasource)只承担入库及派生数据写入，
+ * 这里为每个分库另建只读连接池，再以相同的分片规则组成查询用的逻辑库，慢查询最多占满查询池，不会拖住入库。
+ * operation-log.query.datasource.&lt;name&gt;下配置了jdbc-url等时连接该分库的只读副本，否则连接主库；
+ * 不注册为DataSource Bean，避免与主数据源冲突；未启用分库时退化为主数据源
+ */
+@Component
+@Slf4j
+public class LogQueryDataSource implements DisposableBean {
+
+    private static final String SHARD_PREFIX = "spring.shardingsphere.datasource.";
+
+    private static final String QUERY_PREFIX = "operation-log.query.datasource.";
+
+    private static final String DATABASE_NAME = "logging_query";
+
+    private final DataSource dataSource;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final List<HikariDataSource> ownedDataSources = new ArrayList<>();
+
+    @Autowired
+    public LogQueryDataSource(Environment environment, DataSource dataSource,
+                              ObjectProvider<List<RuleConfiguration>> rules,
+                              @Value("${operation-log.query.pool-size:8}") int poolSize,
+                              @Value("${operation-log.query.connection-timeout-ms:2000}") long connectionTimeoutMs,
+                              @Value("${operation-log.query.statement-timeout-seconds:15}") int statementTimeoutSeconds)
+            throws SQLException {
+        Binder binder = Binder.get(environment);
+        String names = binder.bind(SHARD_PREFIX + "names", String.class).orElse("");
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        for (String name : names.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            HikariDataSource shard = build(binder, name);
+            shard.setPoolName("log-query-" + name);
+            shard.setMaximumPoolSize(poolSize);
+            shard.setMinimumIdle(Math.min(2, poolSize));
+            shard.setConnectionTimeout(connectionTimeoutMs);
+            shard.setReadOnly(true);
+            ownedDataSources.add(shard);
+            shards.put(name, shard);
+        }
+        if (shards.isEmpty()) {
+            this.dataSource = dataSource;
+        } else {
+            this.dataSource = ShardingSphereDataSourceFactory.createDataSource(DATABASE_NAME, null, shards,
+                    rules.getIfAvailable(Collections::emptyList), new Properties());
+        }
+        this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+        this.jdbcTemplate.setQueryTimeout(statementTimeoutSeconds);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        log.info("日志查询数据源初始化完成: shards={}, poolSize={}, connectionTimeoutMs={}, statementTimeout={}s",
+                shards.keySet(), poolSize, connectionTimeoutMs, statementTimeoutSeconds);
+    }
+
+    /**
+     * 查询用的逻辑库，供需要自行设置fetchSize等参数的流式读取使用
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 带语句超时的查询模板
+     */
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public NamedParameterJdbcTemplate getNamedParameterJdbcTemplate() {
+        return namedParameterJdbcTemplate;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (dataSource instanceof AutoCloseable && !ownedDataSources.isEmpty()) {
+            ((AutoCloseable) dataSource).close();
+        }
+        ownedDataSources.forEach(HikariDataSource::close);
+    }
+
+    /**
+     * 优先使用只读副本的连接配置，未配置的项取自主库
+     */
+    private static HikariDataSource build(Binder binder, String name) {
+        String replica = QUERY_PREFIX + name + ".";
+        String primary = SHARD_PREFIX + name + ".";
+        DataSourceBuilder<HikariDataSource> builder = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(binder.bind(replica + "jdbc-url", String.class)
+                        .orElseGet(() -> binder.bind(primary + "jdbc-url", String.class).get()));
+        bindEither(binder, replica, primary, "driver-class-name").ifPresent(builder::driverClassName);
+        bindEither(binder, replica, primary, "username").ifPresent(builder::username);
+        bindEither(binder, replica, primary, "password").ifPresent(builder::password);
+        return builder.build();
+    }
+
+    private static Optional<String> bindEither(Binder binder, String replica, String primary, String key) {
+        String value = binder.bind(replica + key, String.class)
+                .orElseGet(() -> binder.bind(primary + key, String.class).orElse(null));
+        return Optional.ofNullable(value);
+    }
+}
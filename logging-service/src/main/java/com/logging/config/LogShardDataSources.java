@@ -0,0 +1,122 @@
+package com.logging.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 日志分库直连数据源
+ * 分区维护、建索引等DDL需要逐库执行，无法经过ShardingSphere逻辑库，
+ * 这里按spring.shardingsphere.datasource配置为每个分库建立小连接池；
+ * 未启用分库时退化为主数据源；
+ * 多实例只应执行一次的定时任务在第一个分库上取数据库命名锁
+ */
+@Component
+@Slf4j
+public class LogShardDataSources implements DisposableBean {
+
+    private static final String PREFIX = "spring.shardingsphere.datasource.";
+
+    /**
+     * 持有命名锁的任务各占一个连接，其余供逐库DDL使用
+     */
+    private static final int ADMIN_POOL_SIZE = 4;
+
+    private final Map<String, JdbcTemplate> shards = new LinkedHashMap<>();
+
+    private final List<HikariDataSource> ownedDataSources = new ArrayList<>();
+
+    @Autowired
+    public LogShardDataSources(Environment environment, DataSource dataSource) {
+        Binder binder = Binder.get(environment);
+        String names = binder.bind(PREFIX + "names", String.class).orElse("");
+        for (String name : names.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            DataSourceBuilder<HikariDataSource> builder = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(binder.bind(PREFIX + name + ".jdbc-url", String.class).get());
+            binder.bind(PREFIX + name + ".driver-class-name", String.class).ifBound(builder::driverClassName);
+            binder.bind(PREFIX + name + ".username", String.class).ifBound(builder::username);
+            binder.bind(PREFIX + name + ".password", String.class).ifBound(builder::password);
+            HikariDataSource shard = builder.build();
+            shard.setPoolName("log-shard-admin-" + name);
+            shard.setMaximumPoolSize(ADMIN_POOL_SIZE);
+            shard.setMinimumIdle(0);
+            ownedDataSources.add(shard);
+            shards.put(name, new JdbcTemplate(shard));
+        }
+        if (shards.isEmpty()) {
+            shards.put("default", new JdbcTemplate(dataSource));
+        }
+        log.info("日志分库直连数据源初始化完成: shards={}", shards.keySet());
+    }
+
+    /**
+     * 按配置顺序返回各分库的JdbcTemplate
+     */
+    public Map<String, JdbcTemplate> getShards() {
+        return Collections.unmodifiableMap(shards);
+    }
+
+    /**
+     * 取得数据库命名锁后执行任务，锁已被其他实例持有时不执行并返回false；
+     * 持锁期间占用第一个分库的一个连接，实例宕机时锁随连接断开释放
+     */
+    public boolean runExclusively(String lockName, Runnable task) {
+        JdbcTemplate lockShard = shards.values().iterator().next();
+        Boolean ran = lockShard.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!acquireLock(connection, lockName)) {
+                return false;
+            }
+            try {
+                task.run();
+            } finally {
+                releaseLock(connection, lockName);
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(ran);
+    }
+
+    private static boolean acquireLock(Connection connection, String lockName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            statement.setString(1, lockName);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void releaseLock(Connection connection, String lockName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, lockName);
+            statement.executeQuery().close();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        ownedDataSources.forEach(HikariDataSource::close);
+    }
+}
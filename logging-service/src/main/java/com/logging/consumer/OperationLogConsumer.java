@@ -2,48 +2,179 @@ package com.logging.consumer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.logging.event.OperationLogEvent;
-import com.logging.service.OperationLogService;
+import com.logging.ingest.IngestLaneExecutor;
+import com.logging.ingest.IngestMetrics;
+import com.logging.ingest.InvalidLogEventException;
+import com.logging.repository.OperationLogQuarantineDao;
+import com.logging.wal.WalIngestBuffer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
 import org.apache.rocketmq.spring.core.RocketMQListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * 操作日志消息消费者
- * 监听MQ中的操作日志消息并进行处理
+ * 监听MQ中的操作日志消息，交给按userId分道的入库执行器批量写入，同一用户的事件保持到达顺序；
+ * WAL模式下普通事件追加到本地预写日志后即确认，由后台任务写入数据库；
+ * 解析失败、内容不合法或被存储拒绝的消息直接隔离，不再重投；
+ * 其余错误视为可重试，进程内有限次指数退避，仍失败则交由MQ重投，超过重投次数进入死信队列。
+ * 本消费者只订阅BULK标签的普通事件，安全相关事件由独立消费组的{@link SecurityLogConsumer}处理，
+ * 普通事件积压时不影响安全事件的入库延迟
  */
 @Component
 @Slf4j
 @RocketMQMessageListener(
     topic = "operation-log-topic",
-    consumerGroup = "logging-service-group"
+    consumerGroup = "logging-service-group",
+    selectorExpression = "${operation-log.consumer.bulk-selector:BULK}",
+    maxReconsumeTimes = 5
 )
 public class OperationLogConsumer implements RocketMQListener<String> {
 
+    private static final int MAX_ACTION_LENGTH = 50;
+
     @Autowired
-    private OperationLogService operationLogService;
+    private IngestLaneExecutor ingestLaneExecutor;
+
+    @Autowired(required = false)
+    private WalIngestBuffer walIngestBuffer;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private OperationLogQuarantineDao quarantineDao;
+
+    @Autowired
+    private IngestMetrics ingestMetrics;
+
+    @Value("${operation-log.consumer.retry.max-attempts:3}")
+    private int retryMaxAttempts;
+
+    @Value("${operation-log.consumer.retry.initial-backoff-ms:200}")
+    private long retryInitialBackoffMs;
+
+    @Value("${operation-log.consumer.retry.max-backoff-ms:2000}")
+    private long retryMaxBackoffMs;
+
     @Override
     public void onMessage(String message) {
+        log.debug("收到操作日志消息: {}", message);
+
+        // 解析消息
+        OperationLogEvent event;
+        try {
+            event = objectMapper.readValue(message, OperationLogEvent.class);
+            validate(event);
+        } catch (Exception e) {
+            quarantine(message, OperationLogQuarantineDao.REASON_INVALID, e);
+            return;
+        }
+
+        // 处理日志事件
+        handleWithRetry(message, event);
+    }
+
+    private void handleWithRetry(String message, OperationLogEvent event) {
+        long backoffMs = retryInitialBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                persist(event);
+                ingestMetrics.recordSuccess();
+                log.debug("操作日志消息处理完成: eventId={}", event.getEventId());
+                return;
+            } catch (DataIntegrityViolationException | InvalidLogEventException e) {
+                quarantine(message, OperationLogQuarantineDao.REASON_REJECTED, e);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= retryMaxAttempts) {
+                    ingestMetrics.recordRetryExhausted();
+                    log.error("处理操作日志消息失败，交由MQ重投: eventId={}, attempts={}, error={}",
+                             event.getEventId(), attempt, e.getMessage(), e);
+                    throw new RuntimeException("消息处理失败", e);
+                }
+                ingestMetrics.recordRetry();
+                log.warn("处理操作日志消息失败，{}ms后重试: eventId={}, attempt={}, error={}",
+                        backoffMs, event.getEventId(), attempt, e.getMessage());
+                sleep(backoffMs, e);
+                backoffMs = Math.min(backoffMs * 2, retryMaxBackoffMs);
+            }
+        }
+    }
+
+    /**
+     * WAL模式追加到本地预写日志，否则提交到入库通道并等待所在批次写入完成
+     */
+    private void persist(OperationLogEvent event) {
+        if (walIngestBuffer != null && isWalBuffered()) {
+            walIngestBuffer.append(event);
+            return;
+        }
         try {
-            log.info("收到操作日志消息: {}", message);
-            
-            // 解析消息
-            OperationLogEvent event = objectMapper.readValue(message, OperationLogEvent.class);
-            
-            // 处理日志事件
-            operationLogService.handleLogEvent(event);
-            
-            log.info("操作日志消息处理完成");
-            
+            submit(ingestLaneExecutor, event).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * WAL模式下是否经本地预写日志入库
+     */
+    protected boolean isWalBuffered() {
+        return true;
+    }
+
+    /**
+     * 提交到入库通道，普通事件排在所在通道的普通队列
+     */
+    protected CompletableFuture<Void> submit(IngestLaneExecutor executor, OperationLogEvent event) {
+        return executor.submit(event);
+    }
+
+    /**
+     * 校验必填字段，避免明显不合法的消息进入数据库事务
+     */
+    private void validate(OperationLogEvent event) {
+        if (event == null || event.getUserId() == null) {
+            throw new InvalidLogEventException("userId不能为空");
+        }
+        if (event.getAction() == null || event.getAction().trim().isEmpty()) {
+            throw new InvalidLogEventException("action不能为空");
+        }
+        if (event.getAction().length() > MAX_ACTION_LENGTH) {
+            throw new InvalidLogEventException("action长度超过" + MAX_ACTION_LENGTH);
+        }
+    }
+
+    /**
+     * 隔离消息；隔离表写入失败时抛出异常，由MQ重投
+     */
+    private void quarantine(String message, String reason, Exception cause) {
+        log.warn("操作日志消息已隔离: reason={}, error={}", reason, cause.getMessage());
+        try {
+            quarantineDao.save(reason, cause.getMessage(), message);
         } catch (Exception e) {
-            log.error("处理操作日志消息失败: message={}, error={}", message, e.getMessage(), e);
-            // 这里可以考虑重试机制或者发送到死信队列
-            throw new RuntimeException("消息处理失败", e);
+            log.error("隔离操作日志消息失败: reason={}, error={}", reason, e.getMessage(), e);
+            throw new RuntimeException("消息隔离失败", e);
+        }
+        ingestMetrics.recordQuarantined(reason);
+    }
+
+    private void sleep(long millis, RuntimeException cause) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
         }
     }
 }
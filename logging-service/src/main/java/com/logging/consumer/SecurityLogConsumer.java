@@ -0,0 +1,37 @@
+package com.logging.consumer;
+
+import com.logging.event.OperationLogEvent;
+import com.logging.ingest.IngestLaneExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 安全相关操作日志消费者
+ * 以独立消费组订阅SECURITY标签的事件(密码重置、注册、修改、删除用户等)，拥有自己的消费位点与消费线程，
+ * 不会排在普通事件的积压之后；入库时进入各通道的优先队列。WAL模式下也不经预写日志，
+ * 否则会与普通事件排在同一WAL的刷写之后，始终直接提交到优先队列并等待写库完成后确认。
+ * 解析、校验、隔离与重试逻辑与普通消费者一致
+ */
+@Component
+@Slf4j
+@RocketMQMessageListener(
+    topic = "operation-log-topic",
+    consumerGroup = "logging-service-security-group",
+    selectorExpression = "SECURITY",
+    maxReconsumeTimes = 5
+)
+public class SecurityLogConsumer extends OperationLogConsumer {
+
+    @Override
+    protected boolean isWalBuffered() {
+        return false;
+    }
+
+    @Override
+    protected CompletableFuture<Void> submit(IngestLaneExecutor executor, OperationLogEvent event) {
+        return executor.submitPriority(event);
+    }
+}
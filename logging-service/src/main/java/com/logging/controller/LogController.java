@@ -1,17 +1,43 @@
 package com.logging.controller;
 
+import com.logging.backfill.BackfillEngine;
+import com.logging.dto.BackfillProgress;
+import com.logging.dto.CursorPage;
+import com.logging.dto.HeavyHitter;
+import com.logging.dto.LogAggregateView;
+import com.logging.dto.LogQuery;
+import com.logging.dto.OperationLogView;
+import com.logging.dto.RollupPoint;
 import com.logging.entity.OperationLog;
+import com.logging.exception.QueryRejectedException;
+import com.logging.export.ExportFormat;
+import com.logging.service.ActionRollupService;
+import com.logging.service.LogAggregateService;
+import com.logging.service.LogExportService;
+import com.logging.service.LogSearchService;
 import com.logging.service.OperationLogService;
+import com.logging.service.RecentActivityService;
+import com.logging.service.SketchAnalyticsService;
+import com.logging.stats.RollupGranularity;
+import com.logging.stream.LogStreamFilter;
+import com.logging.stream.LogStreamHub;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +54,30 @@ public class LogController {
     @Autowired
     private OperationLogService operationLogService;
 
+    @Autowired
+    private ActionRollupService actionRollupService;
+
+    @Autowired
+    private LogStreamHub logStreamHub;
+
+    @Autowired
+    private LogSearchService logSearchService;
+
+    @Autowired
+    private LogExportService logExportService;
+
+    @Autowired
+    private RecentActivityService recentActivityService;
+
+    @Autowired
+    private LogAggregateService logAggregateService;
+
+    @Autowired
+    private SketchAnalyticsService sketchAnalyticsService;
+
+    @Autowired
+    private BackfillEngine backfillEngine;
+
     /**
      * 根据用户ID查询操作日志
      */
@@ -42,12 +92,49 @@ public class LogController {
             result.put("total", count);
             
             return ResponseEntity.ok(result);
+        } catch (QueryRejectedException e) {
+            log.warn("查询被拒绝: userId={}, reason={}", userId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             log.error("查询用户日志失败: userId={}, error={}", userId, e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    /**
+     * 查询用户最近的操作，活跃用户直接由内存缓冲返回
+     */
+    @GetMapping("/user/{userId}/recent")
+    public ResponseEntity<List<OperationLogView>> getRecentActivity(@PathVariable Long userId,
+                                                                    @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(recentActivityService.getRecentActivity(userId, limit));
+        } catch (Exception e) {
+            log.error("查询用户最近操作失败: userId={}, error={}", userId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 查询用户按入库策略只做聚合的操作，每行为一个时间窗口内同一操作类型、IP的次数及首末时间
+     */
+    @GetMapping("/user/{userId}/aggregates")
+    public ResponseEntity<List<LogAggregateView>> getUserAggregates(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String action,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        try {
+            return ResponseEntity.ok(logAggregateService.getAggregates(userId, action, startTime, endTime));
+        } catch (IllegalArgumentException e) {
+            log.warn("聚合日志查询参数错误: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("查询聚合日志失败: userId={}, action={}, error={}", userId, action, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * 根据操作类型查询日志
      */
@@ -56,6 +143,9 @@ public class LogController {
         try {
             List<OperationLog> logs = operationLogService.getLogsByAction(action);
             return ResponseEntity.ok(logs);
+        } catch (QueryRejectedException e) {
+            log.warn("查询被拒绝: action={}, reason={}", action, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             log.error("根据操作类型查询日志失败: action={}, error={}", action, e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -75,6 +165,9 @@ public class LogController {
             Pageable pageable = PageRequest.of(page, size);
             Page<OperationLog> logs = operationLogService.getLogsByTimeRange(startTime, endTime, pageable);
             return ResponseEntity.ok(logs);
+        } catch (QueryRejectedException e) {
+            log.warn("查询被拒绝: startTime={}, endTime={}, reason={}", startTime, endTime, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             log.error("查询时间范围日志失败: startTime={}, endTime={}, error={}", 
                      startTime, endTime, e.getMessage(), e);
@@ -82,6 +175,223 @@ public class LogController {
         }
     }
 
+    /**
+     * 流式导出指定时间范围的日志，格式为NDJSON或CSV，可选gzip压缩
+     * 边读边写，一次请求即可导出全部数据，无需逐页翻页
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportLogs(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        if (startTime.isAfter(endTime)) {
+            log.warn("导出参数错误: startTime={}, endTime={}", startTime, endTime);
+            return ResponseEntity.badRequest().build();
+        }
+        if (!logExportService.tryAcquire()) {
+            log.warn("同时进行的导出数已达上限: startTime={}, endTime={}", startTime, endTime);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        DateTimeFormatter nameFormat = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+        String filename = "operation-logs-" + startTime.format(nameFormat) + "-" + endTime.format(nameFormat)
+                + "." + format.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> logExportService.export(startTime, endTime, format, gzip, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : format.getMediaType())
+                .body(body);
+    }
+
+    /**
+     * 组合条件游标分页查询日志
+     * 首页不传cursor，后续页传入上一页返回的nextCursor；ip按单个地址过滤，cidr按网段过滤
+     */
+    @GetMapping("/query")
+    public ResponseEntity<CursorPage<OperationLogView>> queryLogs(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) String ip,
+            @RequestParam(required = false) String cidr,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        LogQuery query = new LogQuery();
+        query.setUserId(userId);
+        query.setAction(action);
+        query.setIp(ip);
+        query.setCidr(cidr);
+        query.setStartTime(startTime);
+        query.setEndTime(endTime);
+        query.setCursor(cursor);
+        query.setSize(size);
+        try {
+            return ResponseEntity.ok(operationLogService.queryLogs(query));
+        } catch (IllegalArgumentException e) {
+            log.warn("日志查询参数错误: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (QueryRejectedException e) {
+            log.warn("查询被拒绝: query={}, reason={}", query, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            log.error("组合查询日志失败: query={}, error={}", query, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 查询操作类型按分钟/小时汇总的计数序列
+     * 直接读取预聚合汇总表，不扫描原始日志
+     */
+    @GetMapping("/stats/actions/{action}")
+    public ResponseEntity<List<RollupPoint>> getActionSeries(
+            @PathVariable String action,
+            @RequestParam(defaultValue = "MINUTE") RollupGranularity granularity,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) String ipPrefix) {
+        try {
+            return ResponseEntity.ok(actionRollupService.getSeries(action, granularity, ipPrefix, startTime, endTime));
+        } catch (IllegalArgumentException e) {
+            log.warn("汇总查询参数错误: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("查询操作汇总失败: action={}, granularity={}, error={}", action, granularity, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 某天的去重活跃用户数(HyperLogLog估计，误差约1%)，date默认当天，action为空时不区分操作类型
+     */
+    @GetMapping("/stats/active-users")
+    public ResponseEntity<Map<String, Object>> getActiveUsers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String action) {
+        LocalDate day = date == null ? LocalDate.now() : date;
+        try {
+            Map<String, Object> result = new HashMap<>();
+            result.put("date", day);
+            result.put("action", action);
+            result.put("activeUsers", sketchAnalyticsService.countActiveUsers(day, action));
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("查询活跃用户数失败: date={}, action={}, error={}", day, action, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 某天次数最多的IP(草图估计)
+     */
+    @GetMapping("/stats/top-ips")
+    public ResponseEntity<List<HeavyHitter>> getTopIps(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String action,
+            @RequestParam(defaultValue = "10") int limit) {
+        LocalDate day = date == null ? LocalDate.now() : date;
+        try {
+            return ResponseEntity.ok(sketchAnalyticsService.getTopIps(day, action, limit));
+        } catch (Exception e) {
+            log.error("查询高频IP失败: date={}, action={}, error={}", day, action, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 某天操作次数最多的用户(草图估计)
+     */
+    @GetMapping("/stats/top-users")
+    public ResponseEntity<List<HeavyHitter>> getTopUsers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String action,
+            @RequestParam(defaultValue = "10") int limit) {
+        LocalDate day = date == null ? LocalDate.now() : date;
+        try {
+            return ResponseEntity.ok(sketchAnalyticsService.getTopUsers(day, action, limit));
+        } catch (Exception e) {
+            log.error("查询高频用户失败: date={}, action={}, error={}", day, action, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 按关键词全文检索日志详情，可叠加时间范围过滤
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<OperationLogView>> searchLogs(
+            @RequestParam String keyword,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(logSearchService.search(keyword, startTime, endTime, limit));
+        } catch (IllegalArgumentException e) {
+            log.warn("日志检索参数错误: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (QueryRejectedException e) {
+            log.warn("检索被拒绝: keyword={}, reason={}", keyword, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            log.error("日志检索失败: keyword={}, error={}", keyword, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 以SSE实时推送新入库的日志，可按用户ID、操作类型、IP过滤
+     * 只推送本实例消费入库的日志，多实例部署时需逐个实例订阅
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamLogs(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) String ip) {
+        SseEmitter emitter = logStreamHub.subscribe(new LogStreamFilter(userId, action, ip));
+        if (emitter == null) {
+            log.warn("实时日志订阅数已达上限: userId={}, action={}, ip={}", userId, action, ip);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * 启动派生数据回填，存在未完成的范围时从检查点续跑
+     */
+    @PostMapping("/backfill/{target}")
+    public ResponseEntity<BackfillProgress> startBackfill(
+            @PathVariable String target,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        try {
+            return ResponseEntity.ok(backfillEngine.start(target, startTime, endTime));
+        } catch (IllegalArgumentException e) {
+            log.warn("回填参数错误: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.warn("回填任务无法启动: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            log.error("启动回填失败: target={}, error={}", target, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * 查询回填进度
+     */
+    @GetMapping("/backfill/{target}")
+    public ResponseEntity<BackfillProgress> getBackfillProgress(@PathVariable String target) {
+        try {
+            BackfillProgress progress = backfillEngine.getProgress(target);
+            return progress == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(progress);
+        } catch (Exception e) {
+            log.error("查询回填进度失败: target={}, error={}", target, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * 健康检查接口
      */
@@ -0,0 +1,49 @@
+package com.logging.detect;
+
+import com.logging.event.AbuseAlertEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.spring.core.RocketMQTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 告警发送
+ * 异步发送到告警主题，发送失败只记录日志，不影响入库；未配置RocketMQ生产者时只记录日志
+ */
+@Component
+@Slf4j
+public class AbuseAlertPublisher {
+
+    @Autowired(required = false)
+    private RocketMQTemplate rocketMQTemplate;
+
+    @Value("${operation-log.detect.alert-topic:operation-log-alert-topic}")
+    private String alertTopic;
+
+    public void publish(AbuseAlertEvent alert) {
+        log.warn("登录滥用告警: dimension={}, key={}, action={}, window={}s, count={}, threshold={}",
+                alert.getDimension(), alert.getKey(), alert.getAction(), alert.getWindowSeconds(),
+                alert.getCount(), alert.getThreshold());
+        if (rocketMQTemplate == null) {
+            return;
+        }
+        try {
+            rocketMQTemplate.asyncSend(alertTopic, alert, new SendCallback() {
+                @Override
+                public void onSuccess(SendResult sendResult) {
+                    log.debug("告警发送成功: alertId={}, msgId={}", alert.getAlertId(), sendResult.getMsgId());
+                }
+
+                @Override
+                public void onException(Throwable e) {
+                    log.error("告警发送失败: alertId={}, error={}", alert.getAlertId(), e.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            log.error("告警发送失败: alertId={}, error={}", alert.getAlertId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.logging.detect;
+
+import com.logging.entity.OperationLog;
+import com.logging.event.AbuseAlertEvent;
+import com.logging.ingest.LogIngestListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 登录滥用检测
+ * 在入库回调(含只做聚合的日志)中按IP和用户各维护短、长两个滑动窗口计数，按事件时间计数，
+ * 窗口内次数达到阈值即发出告警，同一键同一窗口在窗口长度内只告警一次；
+ * 计数全部在内存中，不查询数据库，超过长窗口未出现的键定时清除，跟踪的键数超过上限时新键不再计数
+ */
+@Component
+@Slf4j
+public class LoginAbuseDetector implements LogIngestListener {
+
+    static final String DIMENSION_IP = "IP";
+
+    static final String DIMENSION_USER = "USER";
+
+    private static final int BUCKET_COUNT = 12;
+
+    private final Map<String, WindowCounters> ipCounters = new ConcurrentHashMap<>();
+
+    private final Map<Long, WindowCounters> userCounters = new ConcurrentHashMap<>();
+
+    private final AtomicLong untrackedEvents = new AtomicLong();
+
+    @Autowired
+    private AbuseAlertPublisher alertPublisher;
+
+    private final Set<String> actions;
+
+    private final long shortWindowMillis;
+
+    private final long longWindowMillis;
+
+    private final long[] ipThresholds;
+
+    private final long[] userThresholds;
+
+    private final int maxKeys;
+
+    public LoginAbuseDetector(@Value("${operation-log.detect.actions:USER_LOGIN}") String actions,
+                              @Value("${operation-log.detect.short-window-seconds:60}") long shortWindowSeconds,
+                              @Value("${operation-log.detect.long-window-seconds:600}") long longWindowSeconds,
+                              @Value("${operation-log.detect.ip-short-threshold:30}") long ipShortThreshold,
+                              @Value("${operation-log.detect.ip-long-threshold:200}") long ipLongThreshold,
+                              @Value("${operation-log.detect.user-short-threshold:10}") long userShortThreshold,
+                              @Value("${operation-log.detect.user-long-threshold:50}") long userLongThreshold,
+                              @Value("${operation-log.detect.max-keys:500000}") int maxKeys) {
+        if (shortWindowSeconds < BUCKET_COUNT || longWindowSeconds < shortWindowSeconds) {
+            throw new IllegalArgumentException("短窗口需不小于" + BUCKET_COUNT + "秒且不大于长窗口: short="
+                    + shortWindowSeconds + ", long=" + longWindowSeconds);
+        }
+        this.actions = Arrays.stream(actions.split(",")).map(String::trim).filter(a -> !a.isEmpty())
+                .collect(Collectors.toCollection(HashSet::new));
+        this.shortWindowMillis = shortWindowSeconds * 1000L;
+        this.longWindowMillis = longWindowSeconds * 1000L;
+        this.ipThresholds = new long[]{ipShortThreshold, ipLongThreshold};
+        this.userThresholds = new long[]{userShortThreshold, userLongThreshold};
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public String getSinkName() {
+        return "detect";
+    }
+
+    @Override
+    public void onLogsPersisted(List<OperationLog> logs) {
+        for (OperationLog operationLog : logs) {
+            if (!actions.contains(operationLog.getAction())) {
+                continue;
+            }
+            long time = operationLog.getGmtCreate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            if (operationLog.getIp() != null) {
+                track(ipCounters, operationLog.getIp(), DIMENSION_IP, ipThresholds, operationLog, time);
+            }
+            if (operationLog.getUserId() != null) {
+                track(userCounters, operationLog.getUserId(), DIMENSION_USER, userThresholds, operationLog, time);
+            }
+        }
+    }
+
+    @Override
+    public void onLogsAggregated(List<OperationLog> logs) {
+        onLogsPersisted(logs);
+    }
+
+    /**
+     * 清除超过长窗口未出现的键
+     */
+    @Scheduled(fixedDelayString = "${operation-log.detect.sweep-interval-ms:30000}")
+    public void sweep() {
+        long expireBefore = System.currentTimeMillis() - longWindowMillis;
+        ipCounters.values().removeIf(counters -> counters.lastSeen.get() < expireBefore);
+        userCounters.values().removeIf(counters -> counters.lastSeen.get() < expireBefore);
+        long untracked = untrackedEvents.getAndSet(0);
+        if (untracked > 0) {
+            log.warn("检测跟踪的键数已达上限，部分事件未计数: maxKeys={}, events={}", maxKeys, untracked);
+        }
+    }
+
+    int getTrackedKeys() {
+        return ipCounters.size() + userCounters.size();
+    }
+
+    private <K> void track(Map<K, WindowCounters> countersByKey, K key, String dimension, long[] thresholds,
+                           OperationLog operationLog, long time) {
+        WindowCounters counters = countersByKey.get(key);
+        if (counters == null) {
+            if (countersByKey.size() >= maxKeys) {
+                untrackedEvents.incrementAndGet();
+                return;
+            }
+            counters = countersByKey.computeIfAbsent(key, k -> new WindowCounters(shortWindowMillis, longWindowMillis));
+        }
+        counters.lastSeen.accumulateAndGet(time, Math::max);
+        check(counters.shortWindow.incrementAndSum(time), thresholds[0], counters.shortAlertUntil,
+                shortWindowMillis, dimension, key, operationLog, time);
+        check(counters.longWindow.incrementAndSum(time), thresholds[1], counters.longAlertUntil,
+                longWindowMillis, dimension, key, operationLog, time);
+    }
+
+    private void check(long count, long threshold, AtomicLong alertUntil, long windowMillis,
+                       String dimension, Object key, OperationLog operationLog, long time) {
+        if (threshold <= 0 || count < threshold) {
+            return;
+        }
+        // 抢占告警资格，窗口长度内同一键只告警一次
+        long until = alertUntil.get();
+        if (time < until || !alertUntil.compareAndSet(until, time + windowMillis)) {
+            return;
+        }
+        alertPublisher.publish(new AbuseAlertEvent(UUID.randomUUID().toString(), dimension, String.valueOf(key),
+                operationLog.getAction(), windowMillis / 1000L, count, threshold, operationLog.getGmtCreate()));
+    }
+
+    /**
+     * 单个键的短、长窗口计数及告警抑制截止时间
+     */
+    private static final class WindowCounters {
+
+        private final SlidingWindowCounter shortWindow;
+
+        private final SlidingWindowCounter longWindow;
+
+        private final AtomicLong lastSeen = new AtomicLong(Long.MIN_VALUE);
+
+        private final AtomicLong shortAlertUntil = new AtomicLong(Long.MIN_VALUE);
+
+        private final AtomicLong longAlertUntil = new AtomicLong(Long.MIN_VALUE);
+
+        private WindowCounters(long shortWindowMillis, long longWindowMillis) {
+            this.shortWindow = new SlidingWindowCounter(shortWindowMillis, BUCKET_COUNT);
+            this.longWindow = new SlidingWindowCounter(longWindowMillis, BUCKET_COUNT);
+        }
+    }
+}
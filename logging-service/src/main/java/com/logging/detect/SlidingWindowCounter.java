@@ -0,0 +1,77 @@
+package com.logging.detect;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁滑动窗口计数器
+ * 窗口切分为buckets个时间桶，每个桶是一个long：高40位为桶序号(时间/桶宽)，低24位为计数，
+ * 以CAS整体替换，桶被新的时间段复用时计数从零开始，不需要加锁或后台清理；
+ * 早于桶中已有时间段的迟到事件直接丢弃
+ */
+public final class SlidingWindowCounter {
+
+    private static final int COUNT_BITS = 24;
+
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    /**
+     * 桶序号只有40位，桶宽至少1秒
+     */
+    private static final long MIN_BUCKET_MILLIS = 1000L;
+
+    private final AtomicLongArray buckets;
+
+    private final long bucketMillis;
+
+    public SlidingWindowCounter(long windowMillis, int bucketCount) {
+        if (bucketCount <= 0 || windowMillis / bucketCount < MIN_BUCKET_MILLIS) {
+            throw new IllegalArgumentException("桶宽需不小于1秒: window=" + windowMillis + ", buckets=" + bucketCount);
+        }
+        this.buckets = new AtomicLongArray(bucketCount);
+        this.bucketMillis = windowMillis / bucketCount;
+    }
+
+    /**
+     * 在timeMillis所在的桶上计数加一，返回截至该时刻的窗口内总数
+     */
+    public long incrementAndSum(long timeMillis) {
+        long slot = timeMillis / bucketMillis;
+        int index = (int) (slot % buckets.length());
+        while (true) {
+            long current = buckets.get(index);
+            long currentSlot = current >>> COUNT_BITS;
+            long next;
+            if (currentSlot == slot) {
+                if ((current & COUNT_MASK) == COUNT_MASK) {
+                    break;
+                }
+                next = current + 1;
+            } else if (currentSlot < slot) {
+                next = slot << COUNT_BITS | 1L;
+            } else {
+                return sum(timeMillis);
+            }
+            if (buckets.compareAndSet(index, current, next)) {
+                break;
+            }
+        }
+        return sum(timeMillis);
+    }
+
+    /**
+     * 截至timeMillis的窗口内总数
+     */
+    public long sum(long timeMillis) {
+        long slot = timeMillis / bucketMillis;
+        long oldest = slot - buckets.length() + 1;
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            long value = buckets.get(i);
+            long bucketSlot = value >>> COUNT_BITS;
+            if (bucketSlot >= oldest && bucketSlot <= slot) {
+                total += value & COUNT_MASK;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,24 @@
+package com.logging.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 回填任务进度
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BackfillProgress {
+
+    private String target;
+
+    private boolean running;
+
+    private int totalRanges;
+
+    private int completedRanges;
+
+    private long scannedRows;
+}
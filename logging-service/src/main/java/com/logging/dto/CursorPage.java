@@ -0,0 +1,25 @@
+package com.logging.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 游标分页结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> items;
+
+    /**
+     * 下一页游标，没有更多数据时为null
+     */
+    private String nextCursor;
+
+    private boolean hasMore;
+}
@@ -0,0 +1,18 @@
+package com.logging.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 高频键及其估计次数
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeavyHitter {
+
+    private String key;
+
+    private long count;
+}
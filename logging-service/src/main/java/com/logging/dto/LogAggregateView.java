@@ -0,0 +1,30 @@
+package com.logging.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 聚合日志：一个时间窗口内同一用户、操作类型、IP的事件次数
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LogAggregateView {
+
+    private Long userId;
+
+    private String action;
+
+    private String ip;
+
+    private LocalDateTime windowStart;
+
+    private long count;
+
+    private LocalDateTime firstTime;
+
+    private LocalDateTime lastTime;
+}
@@ -0,0 +1,49 @@
+package com.logging.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 日志分页游标
+ * 记录上一页最后一条的(gmt_create, log_id)，对外以URL安全的Base64字符串传递
+ */
+@Data
+@AllArgsConstructor
+public class LogCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private LocalDateTime gmtCreate;
+
+    private Long logId;
+
+    /**
+     * 编码为游标字符串
+     */
+    public String encode() {
+        String raw = gmtCreate + SEPARATOR + logId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标字符串，格式非法时抛出IllegalArgumentException
+     */
+    public static LogCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int index = raw.indexOf(SEPARATOR);
+            if (index < 0) {
+                throw new IllegalArgumentException("非法的分页游标: " + cursor);
+            }
+            return new LogCursor(LocalDateTime.parse(raw.substring(0, index)),
+                    Long.parseLong(raw.substring(index + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("非法的分页游标: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.logging.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 操作日志组合查询条件
+ * 各过滤条件均可为空，结果按(gmt_create, log_id)倒序并以游标翻页
+ */
+@Data
+public class LogQuery {
+
+    /**
+     * 单页最大条数
+     */
+    public static final int MAX_SIZE = 200;
+
+    private Long userId;
+
+    private String action;
+
+    private String ip;
+
+    /**
+     * IP网段，如10.0.0.0/8、2001:db8::/32
+     */
+    private String cidr;
+
+    private LocalDateTime startTime;
+
+    private LocalDateTime endTime;
+
+    /**
+     * 上一页返回的nextCursor，首页为空
+     */
+    private String cursor;
+
+    private int size = 20;
+}
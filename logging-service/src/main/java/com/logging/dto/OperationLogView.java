@@ -0,0 +1,38 @@
+package com.logging.dto;
+
+import com.logging.entity.OperationLog;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 操作日志查询视图
+ * 轻量的日志视图，查询时直接由JDBC结果集映射，不经过JPA实体和持久化上下文
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OperationLogView {
+
+    private Long logId;
+
+    private Long userId;
+
+    private String action;
+
+    private String ip;
+
+    private String detail;
+
+    private LocalDateTime gmtCreate;
+
+    /**
+     * 由已入库的实体转换
+     */
+    public static OperationLogView of(OperationLog log) {
+        return new OperationLogView(log.getLogId(), log.getUserId(), log.getAction(), log.getIp(),
+                log.getDetail(), log.getGmtCreate());
+    }
+}
@@ -0,0 +1,20 @@
+package com.logging.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 汇总时间序列中的一个点
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupPoint {
+
+    private LocalDateTime bucketStart;
+
+    private long count;
+}
@@ -0,0 +1,29 @@
+package com.logging.entity;
+
+import com.logging.repository.ActionDictionary;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * 实体中的操作类型名称与action_code互转
+ * 由Hibernate通过Spring容器创建以注入字典；查询条件中未登记的类型转为null，匹配不到任何行，
+ * 写入前需先经{@link ActionDictionary#codeOf}登记
+ */
+@Converter
+public class ActionCodeConverter implements AttributeConverter<String, Integer> {
+
+    @Autowired
+    private ActionDictionary actionDictionary;
+
+    @Override
+    public Integer convertToDatabaseColumn(String action) {
+        return action == null ? null : actionDictionary.codeIfPresent(action);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer code) {
+        return code == null ? null : actionDictionary.actionOf(code);
+    }
+}
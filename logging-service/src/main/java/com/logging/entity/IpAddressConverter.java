@@ -0,0 +1,23 @@
+package com.logging.entity;
+
+import com.logging.util.IpAddresses;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * 实体中的文本IP与VARBINARY(16)互转，不是IP字面量的值存为NULL
+ */
+@Converter
+public class IpAddressConverter implements AttributeConverter<String, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(String ip) {
+        return IpAddresses.toBytes(ip);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] address) {
+        return IpAddresses.format(address);
+    }
+}
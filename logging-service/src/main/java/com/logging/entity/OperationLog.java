@@ -18,6 +18,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class OperationLog {
 
+    /**
+     * 由ShardingSphere雪花算法生成，插入后通过生成键回填
+     */
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "log_id")
@@ -26,10 +29,18 @@ public class OperationLog {
     @Column(name = "user_id")
     private Long userId;
 
-    @Column(name = "action", length = 50)
+    /**
+     * 库中存操作类型字典编码action_code
+     */
+    @Convert(converter = ActionCodeConverter.class)
+    @Column(name = "action_code", columnDefinition = "SMALLINT UNSIGNED")
     private String action;
 
-    @Column(name = "ip", length = 15)
+    /**
+     * 库中存4字节(IPv4)或16字节(IPv6)的二进制地址
+     */
+    @Convert(converter = IpAddressConverter.class)
+    @Column(name = "ip", columnDefinition = "VARBINARY(16)")
     private String ip;
 
     @Column(name = "detail", columnDefinition = "TEXT")
@@ -38,8 +49,17 @@ public class OperationLog {
     @Column(name = "gmt_create")
     private LocalDateTime gmtCreate;
 
+    /**
+     * 生产方生成的事件ID，与gmt_create组成唯一键防止重复入库
+     */
+    @Column(name = "event_id", length = 36)
+    private String eventId;
+
     @PrePersist
     protected void onCreate() {
-        gmtCreate = LocalDateTime.now();
+        // 优先使用事件发生时间，重复投递的同一事件落在同一分区、命中同一唯一键
+        if (gmtCreate == null) {
+            gmtCreate = LocalDateTime.now();
+        }
     }
 }
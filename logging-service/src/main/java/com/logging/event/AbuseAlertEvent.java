@@ -0,0 +1,60 @@
+package com.logging.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 登录滥用告警事件
+ * 某IP或用户在滑动窗口内的操作次数达到阈值时发出，发送到告警主题
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AbuseAlertEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 告警唯一ID，供下游去重
+     */
+    private String alertId;
+
+    /**
+     * 统计维度：IP / USER
+     */
+    private String dimension;
+
+    /**
+     * 维度取值，即IP地址或用户ID
+     */
+    private String key;
+
+    /**
+     * 操作类型
+     */
+    private String action;
+
+    /**
+     * 窗口长度(秒)
+     */
+    private long windowSeconds;
+
+    /**
+     * 窗口内次数
+     */
+    private long count;
+
+    /**
+     * 触发阈值
+     */
+    private long threshold;
+
+    /**
+     * 触发告警的事件时间
+     */
+    private LocalDateTime detectedAt;
+}
@@ -5,6 +5,8 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
 
 /**
  * 操作日志事件
@@ -37,17 +39,27 @@ public class OperationLogEvent implements Serializable {
      */
     private String detail;
 
+    /**
+     * 事件唯一ID，由生产方生成，用于消费端去重
+     */
+    private String eventId;
+
+    /**
+     * 事件发生时间，由生产方生成，作为日志的创建时间
+     */
+    private LocalDateTime timestamp;
+
     /**
      * 创建带基本信息的日志事件
      */
     public static OperationLogEvent of(Long userId, String action, String ip) {
-        return new OperationLogEvent(userId, action, ip, null);
+        return of(userId, action, ip, null);
     }
 
     /**
      * 创建带详细信息的日志事件
      */
     public static OperationLogEvent of(Long userId, String action, String ip, String detail) {
-        return new OperationLogEvent(userId, action, ip, detail);
+        return new OperationLogEvent(userId, action, ip, detail, UUID.randomUUID().toString(), LocalDateTime.now());
     }
 }
@@ -0,0 +1,11 @@
+package com.logging.exception;
+
+/**
+ * 查询排队已满或超时，查询通道过载时快速失败，由调用方稍后重试
+ */
+public class QueryRejectedException extends RuntimeException {
+
+    public QueryRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,66 @@
+package com.logging.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * CSV导出：含逗号、引号或换行的字段加双引号，字段内的双引号写两次；null写为空字段
+ */
+class CsvLogExportWriter implements LogExportWriter {
+
+    private static final String HEADER = "log_id,user_id,action,ip,detail,gmt_create";
+
+    private final Writer writer;
+
+    CsvLogExportWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        writer.write(HEADER);
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void write(long logId, long userId, String action, String ip, String detail, LocalDateTime gmtCreate)
+            throws IOException {
+        writer.write(Long.toString(logId));
+        writer.write(',');
+        writer.write(Long.toString(userId));
+        writer.write(',');
+        writeField(action);
+        writer.write(',');
+        writeField(ip);
+        writer.write(',');
+        writeField(detail);
+        writer.write(',');
+        writer.write(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(gmtCreate));
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+
+    private void writeField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
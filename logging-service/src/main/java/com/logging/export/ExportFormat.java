@@ -0,0 +1,51 @@
+package com.logging.export;
+
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 日志导出格式
+ */
+public enum ExportFormat {
+
+    /**
+     * 每行一个JSON对象
+     */
+    NDJSON("application/x-ndjson", "ndjson") {
+        @Override
+        public LogExportWriter open(OutputStream out) throws IOException {
+            return new NdjsonLogExportWriter(out);
+        }
+    },
+
+    /**
+     * 带表头的CSV，字段按RFC 4180转义
+     */
+    CSV("text/csv", "csv") {
+        @Override
+        public LogExportWriter open(OutputStream out) throws IOException {
+            return new CsvLogExportWriter(out);
+        }
+    };
+
+    private final MediaType mediaType;
+
+    private final String extension;
+
+    ExportFormat(String mediaType, String extension) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.extension = extension;
+    }
+
+    public abstract LogExportWriter open(OutputStream out) throws IOException;
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
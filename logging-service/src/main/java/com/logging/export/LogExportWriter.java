@@ -0,0 +1,15 @@
+package com.logging.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * 日志导出写出器
+ * 逐行直接写出各字段，不构造中间对象；close时刷新缓冲但不关闭底层输出流
+ */
+public interface LogExportWriter extends Closeable {
+
+    void write(long logId, long userId, String action, String ip, String detail, LocalDateTime gmtCreate)
+            throws IOException;
+}
@@ -0,0 +1,44 @@
+package com.logging.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * NDJSON导出：复用同一个流式JsonGenerator，根值之间以换行分隔
+ */
+class NdjsonLogExportWriter implements LogExportWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonGenerator generator;
+
+    NdjsonLogExportWriter(OutputStream out) throws IOException {
+        this.generator = JSON_FACTORY.createGenerator(out);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void write(long logId, long userId, String action, String ip, String detail, LocalDateTime gmtCreate)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("logId", logId);
+        generator.writeNumberField("userId", userId);
+        generator.writeStringField("action", action);
+        generator.writeStringField("ip", ip);
+        generator.writeStringField("detail", detail);
+        generator.writeStringField("gmtCreate", DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(gmtCreate));
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
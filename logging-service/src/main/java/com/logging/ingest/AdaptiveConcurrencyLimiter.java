@@ -0,0 +1,143 @@
+package com.logging.ingest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 日志批量写入的自适应并发限制
+ * 按AIMD调整同时写库的批次数上限：批次耗时低于目标且并发已用满一半以上时上限加1/limit(约每轮加1)，
+ * 耗时超过目标或出现锁等待、查询超时、取不到连接等过载错误时上限乘以backoff-ratio；
+ * 唯一键冲突等与负载无关的错误不调整上限。超过上限的写入方阻塞等待，背压经入库通道传回消费线程
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private static final String LIMIT_METRIC = "operation_log.ingest.concurrency";
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long targetLatencyNanos;
+
+    private final double backoffRatio;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    /**
+     * 当前上限，受lock保护
+     */
+    private double limit;
+
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${operation-log.ingest.limit.initial:4}") int initialLimit,
+                                      @Value("${operation-log.ingest.limit.min:1}") int minLimit,
+                                      @Value("${operation-log.ingest.limit.max:10}") int maxLimit,
+                                      @Value("${operation-log.ingest.limit.target-latency-ms:200}") long targetLatencyMs,
+                                      @Value("${operation-log.ingest.limit.backoff-ratio:0.9}") double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("并发上限需满足1 <= min <= max: min=" + minLimit + ", max=" + maxLimit);
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoff-ratio需在0到1之间: " + backoffRatio);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        meterRegistry.gauge(LIMIT_METRIC, Tags.of("type", "limit"), this, AdaptiveConcurrencyLimiter::getLimit);
+        meterRegistry.gauge(LIMIT_METRIC, Tags.of("type", "in_flight"), this, AdaptiveConcurrencyLimiter::getInFlight);
+    }
+
+    /**
+     * 取得一个写入名额，已达上限时阻塞等待；返回开始时间，写入结束后交给onSuccess/onError
+     */
+    public long acquire() {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                available.awaitUninterruptibly();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * 写入成功，按耗时调整上限并归还名额
+     */
+    public void onSuccess(long startNanos) {
+        long latency = System.nanoTime() - startNanos;
+        release(latency > targetLatencyNanos ? Signal.OVERLOAD : Signal.OK);
+    }
+
+    /**
+     * 写入失败，过载类错误减小上限，其余错误只归还名额
+     */
+    public void onError(Throwable error) {
+        release(isOverload(error) ? Signal.OVERLOAD : Signal.IGNORE);
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static boolean isOverload(Throwable error) {
+        return error instanceof TransientDataAccessException || error instanceof CannotGetJdbcConnectionException;
+    }
+
+    private void release(Signal signal) {
+        lock.lock();
+        try {
+            int previous = (int) limit;
+            if (signal == Signal.OVERLOAD) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (signal == Signal.OK && inFlight * 2 >= limit) {
+                // 并发未用满时耗时低不能说明数据库还有余量，不加大上限
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            inFlight--;
+            if ((int) limit != previous) {
+                log.debug("日志写入并发上限调整: {} -> {}", previous, (int) limit);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private enum Signal {
+        OK, OVERLOAD, IGNORE
+    }
+}
@@ -0,0 +1,70 @@
+package com.logging.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 事件去重过滤器
+ * 以两代集合记录最近处理过的eventId：当前代写满或超过时间窗口后整体淘汰上一代，
+ * 因此每个eventId至少保留一个窗口、最多两个窗口，内存占用有上界；
+ * 窗口外或跨实例的重复投递由operation_logs上的唯一键uk_event兜底
+ */
+@Component
+@Slf4j
+public class EventDeduplicator {
+
+    private final long windowMs;
+
+    private final int maxEntries;
+
+    private volatile Set<String> current = ConcurrentHashMap.newKeySet();
+
+    private volatile Set<String> previous = ConcurrentHashMap.newKeySet();
+
+    private volatile long rotatedAt = System.currentTimeMillis();
+
+    public EventDeduplicator(@Value("${operation-log.dedup.window-ms:600000}") long windowMs,
+                             @Value("${operation-log.dedup.max-entries:1000000}") int maxEntries) {
+        this.windowMs = windowMs;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 标记事件已处理，首次出现返回true，窗口内重复出现返回false
+     */
+    public boolean markIfAbsent(String eventId) {
+        rotateIfNeeded();
+        if (previous.contains(eventId)) {
+            return false;
+        }
+        return current.add(eventId);
+    }
+
+    /**
+     * 处理失败时撤销标记，使重投的消息可以再次入库
+     */
+    public void forget(String eventId) {
+        current.remove(eventId);
+        previous.remove(eventId);
+    }
+
+    private void rotateIfNeeded() {
+        long now = System.currentTimeMillis();
+        if (now - rotatedAt < windowMs && current.size() < maxEntries) {
+            return;
+        }
+        synchronized (this) {
+            if (now - rotatedAt < windowMs && current.size() < maxEntries) {
+                return;
+            }
+            previous = current;
+            current = ConcurrentHashMap.newKeySet();
+            rotatedAt = now;
+            log.debug("事件去重集合轮换: retained={}", previous.size());
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.logging.ingest;
+
+import com.logging.event.OperationLogEvent;
+import com.logging.service.OperationLogService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志入库分道执行器
+ * 按userId哈希到N条单线程通道，同一用户的事件按到达顺序串行入库，不同用户并行；
+ * 每条通道有界排队，通道线程一次取出积压的事件合并为一个批次写入，队列满时阻塞提交方形成背压。
+ * 每条通道另有一个优先队列承接安全相关事件：通道线程先取优先队列，连续priority-weight批后让出一批给普通队列，
+ * 普通队列积压时优先事件的等待不超过一个普通批次的写入时间；优先与普通事件之间不保证同一用户的顺序。
+ * 通道只保证按提交顺序入库：跨实例的用户顺序依赖生产方以userId为hashKey把同一用户的消息发到同一队列，
+ * 同一队列只由一个实例消费；消费线程是并发的，同一用户几乎同时到达的消息以及消费失败后重投的消息仍可能乱序提交
+ */
+@Component
+@Slf4j
+public class IngestLaneExecutor {
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    /**
+     * 提交优先事件时放入普通队列的唤醒标记，使阻塞等待普通队列的通道线程立即转去处理优先队列
+     */
+    private static final PendingEvent WAKEUP = new PendingEvent(null);
+
+    private final OperationLogService operationLogService;
+
+    private final Lane[] lanes;
+
+    private final int batchSize;
+
+    private final int priorityWeight;
+
+    private volatile boolean running = true;
+
+    public IngestLaneExecutor(OperationLogService operationLogService,
+                              @Value("${operation-log.ingest.lanes:0}") int laneCount,
+                              @Value("${operation-log.ingest.lane-capacity:1000}") int laneCapacity,
+                              @Value("${operation-log.ingest.batch-size:200}") int batchSize,
+                              @Value("${operation-log.ingest.priority-capacity:200}") int priorityCapacity,
+                              @Value("${operation-log.ingest.priority-weight:4}") int priorityWeight) {
+        this.operationLogService = operationLogService;
+        this.batchSize = batchSize;
+        this.priorityWeight = Math.max(1, priorityWeight);
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        this.lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new Lane(i, laneCapacity, priorityCapacity);
+            lanes[i].thread.start();
+        }
+        log.info("日志入库通道初始化完成: lanes={}, capacity={}, priorityCapacity={}, batchSize={}",
+                count, laneCapacity, priorityCapacity, batchSize);
+    }
+
+    /**
+     * 提交事件，返回入库完成的Future；通道队列满时阻塞等待
+     */
+    public CompletableFuture<Void> submit(OperationLogEvent event) {
+        return enqueue(laneOf(event.getUserId()).queue, event);
+    }
+
+    /**
+     * 提交优先事件，不排在普通队列的积压之后；优先队列满时阻塞等待
+     */
+    public CompletableFuture<Void> submitPriority(OperationLogEvent event) {
+        Lane lane = laneOf(event.getUserId());
+        CompletableFuture<Void> future = enqueue(lane.priorityQueue, event);
+        // 普通队列非空时通道线程不会阻塞等待，不需要唤醒
+        if (lane.queue.isEmpty()) {
+            lane.queue.offer(WAKEUP);
+        }
+        return future;
+    }
+
+    /**
+     * 各通道当前排队数之和
+     */
+    public int getQueuedCount() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.queue.size() + lane.priorityQueue.size();
+        }
+        return queued;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        // 通道线程会先写完队列中剩余的事件再退出
+        for (Lane lane : lanes) {
+            lane.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(BlockingQueue<PendingEvent> queue, OperationLogEvent event) {
+        if (!running) {
+            throw new IllegalStateException("日志入库通道已关闭");
+        }
+        PendingEvent pending = new PendingEvent(event);
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("提交日志入库被中断", e);
+        }
+        return pending.future;
+    }
+
+    private Lane laneOf(Long userId) {
+        long key = userId == null ? 0L : userId;
+        // 混合高低位，避免连续userId集中在少数通道
+        int hash = Long.hashCode(key * 0x9E3779B97F4A7C15L);
+        return lanes[Math.floorMod(hash, lanes.length)];
+    }
+
+    /**
+     * 整批写入，批次失败时逐条重试以隔离出错的事件，其余事件不受影响
+     */
+    private void process(List<PendingEvent> batch) {
+        List<OperationLogEvent> events = new ArrayList<>(batch.size());
+        for (PendingEvent pending : batch) {
+            events.add(pending.event);
+        }
+        try {
+            operationLogService.handleLogEvents(events);
+            batch.forEach(pending -> pending.future.complete(null));
+            return;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.warn("日志批量入库失败，改为逐条写入: size={}, error={}", batch.size(), e.getMessage());
+        }
+        for (PendingEvent pending : batch) {
+            try {
+                operationLogService.handleLogEvents(Collections.singletonList(pending.event));
+                pending.future.complete(null);
+            } catch (RuntimeException e) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class PendingEvent {
+
+        private final OperationLogEvent event;
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingEvent(OperationLogEvent event) {
+            this.event = event;
+        }
+    }
+
+    private class Lane implements Runnable {
+
+        private final BlockingQueue<PendingEvent> queue;
+
+        private final BlockingQueue<PendingEvent> priorityQueue;
+
+        private final Thread thread;
+
+        /**
+         * 连续处理的优先批次数
+         */
+        private int priorityStreak;
+
+        Lane(int index, int capacity, int priorityCapacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.priorityQueue = new ArrayBlockingQueue<>(priorityCapacity);
+            this.thread = new Thread(this, "log-ingest-lane-" + index);
+        }
+
+        @Override
+        public void run() {
+            List<PendingEvent> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty() || !priorityQueue.isEmpty()) {
+                try {
+                    BlockingQueue<PendingEvent> source = nextSource();
+                    PendingEvent first = source.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    source.drainTo(batch, batchSize - 1);
+                    batch.removeIf(pending -> pending == WAKEUP);
+                    if (batch.isEmpty()) {
+                        continue;
+                    }
+                    process(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (RuntimeException e) {
+                    // process已完成各事件的Future，这里只兜底防止通道线程退出
+                    log.error("日志入库通道异常: lane={}, error={}", thread.getName(), e.getMessage(), e);
+                    batch.forEach(pending -> pending.future.completeExceptionally(e));
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        /**
+         * 优先队列非空时先取优先队列，连续priorityWeight批后若普通队列也有积压则让出一批
+         */
+        private BlockingQueue<PendingEvent> nextSource() {
+            if (!priorityQueue.isEmpty() && (priorityStreak < priorityWeight || queue.isEmpty())) {
+                priorityStreak++;
+                return priorityQueue;
+            }
+            priorityStreak = 0;
+            return queue;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.logging.ingest;
+
+import com.logging.entity.OperationLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 日志消费指标
+ * 按处理结果分类计数，通过/actuator/metrics/operation_log.consume查看；
+ * 同时作为入库输出端按操作类型统计写明细与只聚合的条数，通过/actuator/metrics/operation_log.ingested查看
+ */
+@Component
+public class IngestMetrics implements LogIngestListener {
+
+    private static final String CONSUME_METRIC = "operation_log.consume";
+
+    private static final String INGESTED_METRIC = "operation_log.ingested";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Counter succeeded;
+
+    private final Counter retried;
+
+    private final Counter retryExhausted;
+
+    @Autowired
+    public IngestMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.succeeded = meterRegistry.counter(CONSUME_METRIC, "outcome", "success");
+        this.retried = meterRegistry.counter(CONSUME_METRIC, "outcome", "retried");
+        this.retryExhausted = meterRegistry.counter(CONSUME_METRIC, "outcome", "retry_exhausted");
+    }
+
+    @Override
+    public String getSinkName() {
+        return "metrics";
+    }
+
+    @Override
+    public void onLogsPersisted(List<OperationLog> logs) {
+        record(logs, "stored");
+    }
+
+    @Override
+    public void onLogsAggregated(List<OperationLog> logs) {
+        record(logs, "aggregated");
+    }
+
+    /**
+     * 消息处理成功
+     */
+    public void recordSuccess() {
+        succeeded.increment();
+    }
+
+    /**
+     * 可重试错误，进程内退避后重试一次
+     */
+    public void recordRetry() {
+        retried.increment();
+    }
+
+    /**
+     * 进程内重试用尽，交由MQ重投
+     */
+    public void recordRetryExhausted() {
+        retryExhausted.increment();
+    }
+
+    /**
+     * 不可重试错误，消息已隔离
+     */
+    public void recordQuarantined(String reason) {
+        meterRegistry.counter(CONSUME_METRIC, "outcome", "quarantined", "reason", reason).increment();
+    }
+
+    private void record(List<OperationLog> logs, String policy) {
+        Map<String, Integer> byAction = new HashMap<>();
+        for (OperationLog operationLog : logs) {
+            byAction.merge(operationLog.getAction(), 1, Integer::sum);
+        }
+        byAction.forEach((action, count) ->
+                meterRegistry.counter(INGESTED_METRIC, "action", action, "policy", policy).increment(count));
+    }
+}
@@ -0,0 +1,22 @@
+package com.logging.ingest;
+
+/**
+ * 按操作类型的入库策略
+ */
+public enum IngestPolicy {
+
+    /**
+     * 每条日志都完整入库
+     */
+    FULL,
+
+    /**
+     * 按比例抽样入库，未抽中的日志并入聚合计数
+     */
+    SAMPLE,
+
+    /**
+     * 不写明细，只按(用户, 操作类型, IP, 时间窗口)累计次数及首末时间
+     */
+    AGGREGATE
+}
@@ -0,0 +1,129 @@
+package com.logging.ingest;
+
+import com.logging.entity.OperationLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 入库策略解析
+ * operation-log.policy.actions以"操作类型=策略"逗号分隔配置，策略为FULL、SAMPLE:比例或AGGREGATE，未配置的取默认策略；
+ * security-actions中的安全相关操作始终完整入库，配置了其他策略也不生效。
+ * 抽样按eventId哈希决定，同一事件重投时结论不变
+ */
+@Component
+@Slf4j
+public class IngestPolicyResolver {
+
+    private final IngestPolicy defaultPolicy;
+
+    private final double defaultSampleRate;
+
+    private final Map<String, IngestPolicy> policies = new HashMap<>();
+
+    private final Map<String, Double> sampleRates = new HashMap<>();
+
+    private final Set<String> securityActions = new HashSet<>();
+
+    public IngestPolicyResolver(
+            @Value("${operation-log.policy.default:FULL}") String defaultValue,
+            @Value("${operation-log.policy.actions:}") String actions,
+            @Value("${operation-log.policy.security-actions:PASSWORD_RESET,USER_DELETE,USER_REGISTER,USER_UPDATE}")
+                    String security) {
+        this.defaultPolicy = parsePolicy(defaultValue);
+        this.defaultSampleRate = parseSampleRate("default", defaultValue);
+        for (String action : security.split(",")) {
+            if (!action.trim().isEmpty()) {
+                securityActions.add(action.trim());
+            }
+        }
+        for (String entry : actions.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            String[] parts = entry.split("=", 2);
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("入库策略配置格式应为操作类型=策略: " + entry);
+            }
+            configure(parts[0].trim(), parts[1].trim());
+        }
+        log.info("入库策略加载完成: default={}, actions={}, sampleRates={}, securityActions={}",
+                defaultPolicy, policies, sampleRates, securityActions);
+    }
+
+    /**
+     * 操作类型生效的入库策略
+     */
+    public IngestPolicy policyOf(String action) {
+        if (action == null || securityActions.contains(action)) {
+            return IngestPolicy.FULL;
+        }
+        return policies.getOrDefault(action, defaultPolicy);
+    }
+
+    /**
+     * 日志是否写入明细，false表示只并入聚合计数
+     */
+    public boolean shouldStore(OperationLog operationLog) {
+        switch (policyOf(operationLog.getAction())) {
+            case SAMPLE:
+                return sampled(operationLog.getEventId(),
+                        sampleRates.getOrDefault(operationLog.getAction(), defaultSampleRate));
+            case AGGREGATE:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 配置值格式为FULL、AGGREGATE或SAMPLE:比例，比例取值[0, 1]
+     */
+    private void configure(String action, String value) {
+        IngestPolicy policy = parsePolicy(value);
+        if (securityActions.contains(action)) {
+            log.warn("安全相关操作始终完整入库，忽略配置的策略: action={}, policy={}", action, value);
+            return;
+        }
+        if (policy == IngestPolicy.SAMPLE) {
+            sampleRates.put(action, parseSampleRate(action, value));
+        }
+        policies.put(action, policy);
+    }
+
+    private static IngestPolicy parsePolicy(String value) {
+        return IngestPolicy.valueOf(value.split(":", 2)[0].trim().toUpperCase());
+    }
+
+    private static double parseSampleRate(String key, String value) {
+        String[] parts = value.split(":", 2);
+        double rate = parts.length > 1 ? Double.parseDouble(parts[1].trim()) : 1.0;
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("抽样比例需在0到1之间: " + key + "=" + value);
+        }
+        return rate;
+    }
+
+    static boolean sampled(String eventId, double rate) {
+        if (rate >= 1.0) {
+            return true;
+        }
+        if (eventId == null) {
+            return ThreadLocalRandom.current().nextDouble() < rate;
+        }
+        // murmur3 fmix32打散String.hashCode，取高位映射到[0, 1)
+        int h = eventId.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (h >>> 8) / (double) (1 << 24) < rate;
+    }
+}
@@ -0,0 +1,405 @@
+package com.logging.ingest;
+
+import com.logging.backfill.BackfillEngine;
+import com.logging.backfill.BackfillTarget;
+import com.logging.dto.BackfillProgress;
+import com.logging.entity.OperationLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 入库输出端分发器
+ * 入库流水线为 解析(消费者) → 补全(logId、时间) → 过滤(去重、入库策略) → 写主存储(MySQL或本地段文件) → 分发；
+ * 主存储写入成功才确认消息，其后的计数、汇总、检索、实时推送、指标等输出端由这里分发：
+ * 每个输出端一个有界队列和一个线程，线程一次取出积压的多批合并后回调，一个输出端变慢只会积压自己的队列。
+ * 队列满时从不阻塞入库线程：尽力而为的输出端直接丢弃该批(DROP)；需要完整的输出端(REBUILD)丢弃后标记为过期，
+ * 记下丢弃的logId区间，等入库中的日志都已提交、丢弃前排队的批次都已回调后，经回填任务从operation_logs重建该区间，
+ * 完成后清除过期标记。只聚合未写明细的日志无法回填，丢弃后由各输出端自身的定期校正兜底；
+ * 输出端可按部署通过operation-log.sinks.&lt;name&gt;.enabled关闭
+ */
+@Component
+@Slf4j
+public class IngestSinkDispatcher {
+
+    private static final String SINK_METRIC = "operation_log.sink";
+
+    private static final String PREFIX = "operation-log.sinks.";
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    @Autowired(required = false)
+    private List<LogIngestListener> listeners = Collections.emptyList();
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private BackfillEngine backfillEngine;
+
+    @Value("${operation-log.sinks.default-capacity:1000}")
+    private int defaultCapacity;
+
+    @Value("${operation-log.sinks.default-overflow:REBUILD}")
+    private Overflow defaultOverflow;
+
+    /**
+     * 最后一次丢弃后等待多久再启动重建，需大于入库写库的语句超时，保证区间内的日志都已提交并分发
+     */
+    @Value("${operation-log.sinks.rebuild-delay-ms:60000}")
+    private long rebuildDelayMs;
+
+    @Value("${operation-log.sinks.batch-rows:2000}")
+    private int batchRows;
+
+    private final Map<String, Sink> sinks = new LinkedHashMap<>();
+
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        for (LogIngestListener listener : listeners) {
+            String name = listener.getSinkName();
+            if (sinks.containsKey(name)) {
+                throw new IllegalStateException("输出端名称重复: " + name);
+            }
+            if (!environment.getProperty(PREFIX + name + ".enabled", Boolean.class, true)) {
+                log.info("入库输出端已关闭: sink={}", name);
+                continue;
+            }
+            int capacity = environment.getProperty(PREFIX + name + ".capacity", Integer.class, defaultCapacity);
+            Overflow overflow = environment.getProperty(PREFIX + name + ".overflow", Overflow.class, defaultOverflow);
+            if (overflow == Overflow.REBUILD && !(listener instanceof BackfillTarget)) {
+                log.info("入库输出端不支持回填重建，队列满时丢弃: sink={}", name);
+                overflow = Overflow.DROP;
+            }
+            if (overflow == Overflow.REBUILD && backfillEngine != null && !backfillEngine.isAvailable()) {
+                log.info("回填不可用，入库输出端队列满时丢弃: sink={}", name);
+                overflow = Overflow.DROP;
+            }
+            Sink sink = new Sink(name, listener, capacity, overflow);
+            sinks.put(name, sink);
+            meterRegistry.gauge(SINK_METRIC + ".queued", Tags.of("sink", name), sink.queue, BlockingQueue::size);
+            meterRegistry.gauge(SINK_METRIC + ".stale", Tags.of("sink", name), sink, s -> s.stale ? 1 : 0);
+            sink.thread.start();
+        }
+        log.info("入库输出端初始化完成: sinks={}", sinks.keySet());
+    }
+
+    /**
+     * 分发已写入明细的日志
+     */
+    public void dispatchPersisted(List<OperationLog> logs) {
+        dispatch(new SinkBatch(false, logs));
+    }
+
+    /**
+     * 分发只并入聚合计数的日志
+     */
+    public void dispatchAggregated(List<OperationLog> logs) {
+        dispatch(new SinkBatch(true, logs));
+    }
+
+    /**
+     * 各输出端当前排队的批次数
+     */
+    public Map<String, Integer> getQueuedBatches() {
+        Map<String, Integer> queued = new LinkedHashMap<>();
+        sinks.forEach((name, sink) -> queued.put(name, sink.queue.size()));
+        return queued;
+    }
+
+    /**
+     * 因队列满丢弃过日志、尚未重建完成的输出端
+     */
+    public List<String> getStaleSinks() {
+        List<String> stale = new ArrayList<>();
+        sinks.forEach((name, sink) -> {
+            if (sink.stale) {
+                stale.add(name);
+            }
+        });
+        return stale;
+    }
+
+    /**
+     * 输出端自身丢失了部分已分发的日志(如索引段落盘失败、重启丢失未落盘的内存数据)时，
+     * 把该logId区间标记为待重建，与队列满丢弃的区间一并经回填重建；输出端未启用或不支持回填时忽略
+     */
+    public void requestRebuild(String sinkName, long fromLogId, long toLogId) {
+        Sink sink = sinks.get(sinkName);
+        if (sink == null || !(sink.listener instanceof BackfillTarget)) {
+            log.debug("输出端未启用或不支持回填，忽略重建请求: sink={}, fromLogId={}, toLogId={}",
+                    sinkName, fromLogId, toLogId);
+            return;
+        }
+        if (fromLogId <= toLogId) {
+            sink.markStale(fromLogId, toLogId);
+        }
+    }
+
+    /**
+     * 为过期的输出端启动或续跑回填重建
+     */
+    @Scheduled(fixedDelayString = "${operation-log.sinks.rebuild-check-ms:10000}")
+    public void rebuildStale() {
+        if (backfillEngine == null) {
+            return;
+        }
+        for (Sink sink : sinks.values()) {
+            if (sink.stale) {
+                try {
+                    sink.rebuild();
+                } catch (Exception e) {
+                    log.error("入库输出端重建启动失败: sink={}, error={}", sink.name, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        // 输出端线程回调完队列中剩余的批次再退出，之后各监听器再执行自身的刷盘
+        for (Sink sink : sinks.values()) {
+            sink.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void dispatch(SinkBatch batch) {
+        if (batch.logs.isEmpty()) {
+            return;
+        }
+        for (Sink sink : sinks.values()) {
+            sink.offer(batch);
+        }
+    }
+
+    /**
+     * 队列满时的处理方式，均不阻塞入库线程
+     */
+    public enum Overflow {
+        /**
+         * 丢弃该批，尽力而为
+         */
+        DROP,
+        /**
+         * 丢弃该批并标记过期，稍后经回填重建，仅对实现了BackfillTarget的输出端有效
+         */
+        REBUILD
+    }
+
+    private static class SinkBatch {
+
+        private final boolean aggregated;
+
+        private final List<OperationLog> logs;
+
+        SinkBatch(boolean aggregated, List<OperationLog> logs) {
+            this.aggregated = aggregated;
+            this.logs = logs;
+        }
+    }
+
+    private class Sink implements Runnable {
+
+        private final String name;
+
+        private final LogIngestListener listener;
+
+        private final BlockingQueue<SinkBatch> queue;
+
+        private final Overflow overflow;
+
+        private final Counter dropped;
+
+        private final Thread thread;
+
+        /**
+         * 成功入队与已回调的批次数，用于判断丢弃前排队的批次是否都已回调
+         */
+        private final AtomicLong offered = new AtomicLong();
+
+        private volatile long delivered;
+
+        private volatile boolean stale;
+
+        /**
+         * 以下字段受Sink自身的锁保护：待重建的logId区间、最后一次丢弃的时刻、
+         * 启动重建前须回调到的批次数(-1表示尚未取值)，以及是否已提交重建
+         */
+        private boolean hasDroppedRange;
+
+        private long droppedFrom;
+
+        private long droppedTo;
+
+        private long lastDropMillis;
+
+        private long rebuildAfter = -1;
+
+        private boolean rebuilding;
+
+        Sink(String name, LogIngestListener listener, int capacity, Overflow overflow) {
+            this.name = name;
+            this.listener = listener;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.overflow = overflow;
+            this.dropped = meterRegistry.counter(SINK_METRIC + ".dropped", "sink", name);
+            this.thread = new Thread(this, "log-sink-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        void offer(SinkBatch batch) {
+            if (queue.offer(batch)) {
+                offered.incrementAndGet();
+                return;
+            }
+            dropped.increment(batch.logs.size());
+            if (overflow == Overflow.REBUILD) {
+                markStale(batch);
+            }
+        }
+
+        private void markStale(SinkBatch batch) {
+            long from = Long.MAX_VALUE;
+            long to = Long.MIN_VALUE;
+            for (OperationLog operationLog : batch.logs) {
+                if (operationLog.getLogId() != null) {
+                    from = Math.min(from, operationLog.getLogId());
+                    to = Math.max(to, operationLog.getLogId());
+                }
+            }
+            if (from > to) {
+                return;
+            }
+            if (!stale) {
+                log.warn("入库输出端队列已满，丢弃并标记待重建: sink={}, size={}", name, batch.logs.size());
+            }
+            markStale(from, to);
+        }
+
+        synchronized void markStale(long from, long to) {
+            droppedFrom = hasDroppedRange ? Math.min(droppedFrom, from) : from;
+            droppedTo = hasDroppedRange ? Math.max(droppedTo, to) : to;
+            hasDroppedRange = true;
+            lastDropMillis = System.currentTimeMillis();
+            rebuildAfter = -1;
+            stale = true;
+        }
+
+        /**
+         * 丢弃后静默rebuildDelayMs，且此时已入队的批次都回调完后，按丢弃的logId区间提交回填；
+         * 回填中不再提交，回填完成且期间没有新的丢弃才清除过期标记
+         */
+        synchronized void rebuild() {
+            String target = ((BackfillTarget) listener).getBackfillName();
+            BackfillProgress progress = backfillEngine.getProgress(target);
+            if (progress != null && progress.isRunning()) {
+                return;
+            }
+            boolean unfinished = progress != null && progress.getCompletedRanges() < progress.getTotalRanges();
+            if (!hasDroppedRange) {
+                if (!rebuilding) {
+                    return;
+                }
+                if (unfinished) {
+                    // 部分范围失败，从检查点续跑
+                    backfillEngine.resumePending();
+                    return;
+                }
+                rebuilding = false;
+                stale = false;
+                log.info("入库输出端重建完成: sink={}", name);
+                return;
+            }
+            if (System.currentTimeMillis() - lastDropMillis < rebuildDelayMs) {
+                return;
+            }
+            if (rebuildAfter < 0) {
+                rebuildAfter = offered.get();
+            }
+            if (delivered < rebuildAfter) {
+                return;
+            }
+            // 存在未完成的范围时新区间并入同一任务续跑
+            backfillEngine.startLogIdRange(target, droppedFrom - 1, droppedTo);
+            log.info("入库输出端重建已提交: sink={}, fromLogId={}, toLogId={}", name, droppedFrom, droppedTo);
+            hasDroppedRange = false;
+            rebuildAfter = -1;
+            rebuilding = true;
+        }
+
+        @Override
+        public void run() {
+            List<SinkBatch> pending = new ArrayList<>();
+            while (running || !queue.isEmpty()) {
+                try {
+                    SinkBatch first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    pending.add(first);
+                    queue.drainTo(pending);
+                    deliver(pending);
+                    delivered += pending.size();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } finally {
+                    pending.clear();
+                }
+            }
+        }
+
+        /**
+         * 把连续的同类批次合并到batchRows行以内再回调，保持到达顺序
+         */
+        private void deliver(List<SinkBatch> pending) {
+            List<OperationLog> merged = new ArrayList<>();
+            boolean aggregated = pending.get(0).aggregated;
+            for (SinkBatch batch : pending) {
+                if (!merged.isEmpty() && (batch.aggregated != aggregated || merged.size() + batch.logs.size() > batchRows)) {
+                    invoke(aggregated, merged);
+                    merged = new ArrayList<>();
+                }
+                aggregated = batch.aggregated;
+                merged.addAll(batch.logs);
+            }
+            invoke(aggregated, merged);
+        }
+
+        private void invoke(boolean aggregated, List<OperationLog> logs) {
+            try {
+                if (aggregated) {
+                    listener.onLogsAggregated(logs);
+                } else {
+                    listener.onLogsPersisted(logs);
+                }
+            } catch (Exception e) {
+                log.error("入库输出端处理失败: sink={}, size={}, error={}", name, logs.size(), e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.logging.ingest;
+
+/**
+ * 日志事件内容不合法，重试也无法成功的错误
+ */
+public class InvalidLogEventException extends RuntimeException {
+
+    public InvalidLogEventException(String message) {
+        super(message);
+    }
+}
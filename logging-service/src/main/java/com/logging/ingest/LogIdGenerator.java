@@ -0,0 +1,95 @@
+package com.logging.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * 日志ID生成器
+ * 雪花算法：41位毫秒时间戳 + 10位节点号 + 12位序列号，与ShardingSphere生成的ID同构；
+ * 批量写入时由应用侧预先分配ID，入库后无需回查主键即可通知监听器。
+ * 节点号须为每个实例单独配置(0-1023)，超出范围拒绝启动而不是截断，以免与其他实例撞号；
+ * 取本机IP低10位的方式在不同网段可能撞号，仅允许在dev环境使用
+ */
+@Component
+@Slf4j
+public class LogIdGenerator {
+
+    /**
+     * 2016-11-01 00:00:00 UTC，与ShardingSphere SNOWFLAKE纪元取同一天
+     */
+    private static final long EPOCH = 1477958400000L;
+
+    private static final int WORKER_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long workerId;
+
+    private long lastTimestamp = -1L;
+
+    private long sequence;
+
+    public LogIdGenerator(@Value("${operation-log.id.worker-id:-1}") long workerId, Environment environment) {
+        if (workerId < 0 && !environment.acceptsProfiles(Profiles.of("dev"))) {
+            throw new IllegalStateException("未配置operation-log.id.worker-id，取本机IP低10位仅限dev环境，其他环境须为每个实例配置不同的节点号");
+        }
+        if (workerId > MAX_WORKER_ID) {
+            throw new IllegalStateException("operation-log.id.worker-id超出范围(0-" + MAX_WORKER_ID + "): " + workerId);
+        }
+        this.workerId = workerId >= 0 ? workerId : defaultWorkerId();
+        log.info("日志ID生成器初始化完成: workerId={}", this.workerId);
+    }
+
+    /**
+     * 生成下一个ID；时钟回拨时沿用上次时间戳继续递增序列，保证单调
+     */
+    public synchronized long nextId() {
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                timestamp = lastTimestamp + 1;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << (WORKER_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * 指定毫秒时刻生成的最小ID，用于把时间范围换算为logId范围
+     */
+    public static long firstIdAt(long epochMilli) {
+        return Math.max(0L, epochMilli - EPOCH) << (WORKER_BITS + SEQUENCE_BITS);
+    }
+
+    /**
+     * 本实例的节点号，各实例互不相同
+     */
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * dev环境未配置节点号时取本机IP低10位
+     */
+    private static long defaultWorkerId() {
+        try {
+            byte[] address = InetAddress.getLocalHost().getAddress();
+            return (((address[address.length - 2] & 0xFFL) << 8) | (address[address.length - 1] & 0xFFL)) & MAX_WORKER_ID;
+        } catch (UnknownHostException e) {
+            return 0L;
+        }
+    }
+}
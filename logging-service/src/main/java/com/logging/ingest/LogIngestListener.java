@@ -0,0 +1,31 @@
+package com.logging.ingest;
+
+import com.logging.entity.OperationLog;
+
+import java.util.List;
+
+/**
+ * 日志入库监听器
+ * 在日志所在事务提交后回调，用于维护计数、汇总等派生数据；
+ * 每个监听器是一个输出端，由{@link IngestSinkDispatcher}经各自的有界队列在独立线程上按序批量回调，
+ * 同一监听器的回调不会并发，慢的监听器不拖慢入库线程和其他监听器；
+ * 按入库策略被抽样略过或聚合的日志不写明细，只回调onLogsAggregated，需要完整计数的实现方应一并处理
+ */
+public interface LogIngestListener {
+
+    /**
+     * 输出端名称，对应operation-log.sinks下的配置项
+     */
+    String getSinkName();
+
+    /**
+     * 一批日志已提交入库
+     */
+    void onLogsPersisted(List<OperationLog> logs);
+
+    /**
+     * 一批日志已并入聚合计数，未写明细，没有logId
+     */
+    default void onLogsAggregated(List<OperationLog> logs) {
+    }
+}
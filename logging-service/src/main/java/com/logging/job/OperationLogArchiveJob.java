@@ -0,0 +1,497 @@
+package com.logging.job;
+
+import com.logging.archive.ArchiveStore;
+import com.logging.config.LogShardDataSources;
+import com.logging.entity.OperationLog;
+import com.logging.repository.ActionDictionary;
+import com.logging.repository.OperationLogJdbcDao;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 操作日志归档任务
+ * 把早于archive-after-days的已关闭分区按分库流式读出，按(user_id, gmt_create)排序分块写成列式归档文件；
+ * 全部分库都写出后才在archived_partitions中把这些分区登记为已切换，各实例刷新后改由归档层提供这些分区的查询，
+ * 在线表查询同时以已切换分区的上界为下界，切换前后同一条日志只从一层返回；
+ * 等待各实例刷新后再用EXCHANGE PARTITION把分区数据原子地换到暂存表：换出后迟到的写入只会落入已清空的分区，
+ * 暂存表行数与归档不一致时从暂存表重新归档；随后按暂存表写入archived_operation_counts，
+ * 最后在表锁内确认分区仍为空才删除分区，有迟到数据则移入暂存表重新归档，不会丢数据。
+ * 重新归档写出新一代文件后再切换登记的代次，被取代的文件及过期归档在下次执行时删除，不会出现分区数据查不到的间隙；
+ * 中途失败可在下次执行时从暂存表继续，已切换但未删除的分区也在下次执行时继续删除。
+ * 多实例部署时归档目录须为共享存储：任务以数据库命名锁保证同一时刻只有一个实例执行，
+ * 各实例定时刷新归档文件列表并与archived_partitions核对，本地缺少已登记的文件时启动失败、查询报错，
+ * 避免各实例返回不同的结果
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "operation-log.archive.enabled", havingValue = "true")
+public class OperationLogArchiveJob {
+
+    private static final String UPSERT_COUNT_SQL =
+            "INSERT INTO archived_operation_counts (user_id, action, partition_name, op_count) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE op_count = VALUES(op_count)";
+
+    /**
+     * 登记新一代归档文件，已切换的分区保持切换状态，新分区待全部分库写出后再切换
+     */
+    private static final String UPSERT_ARCHIVED_SQL =
+            "INSERT INTO archived_partitions (partition_name, row_count, generation, served, gmt_archived) " +
+            "VALUES (?, ?, ?, 0, NOW()) ON DUPLICATE KEY UPDATE row_count = VALUES(row_count), " +
+            "generation = VALUES(generation), gmt_archived = VALUES(gmt_archived)";
+
+    private static final String LOCK_NAME = "operation_log_archive";
+
+    private static final String STAGING_PREFIX = OperationLogPartitionJob.TABLE_NAME + "_archiving_";
+
+    /**
+     * 删除分区时连续发现迟到数据的最大次数，超过后留待下次执行
+     */
+    private static final int MAX_DETACH_ATTEMPTS = 3;
+
+    @Autowired
+    private LogShardDataSources shardDataSources;
+
+    @Autowired
+    private ArchiveStore archiveStore;
+
+    @Autowired
+    private OperationLogJdbcDao operationLogJdbcDao;
+
+    @Autowired
+    private ActionDictionary actionDictionary;
+
+    @Value("${operation-log.partition.granularity:DAY}")
+    private OperationLogPartitionJob.Granularity granularity;
+
+    @Value("${operation-log.archive.archive-after-days:30}")
+    private int archiveAfterDays;
+
+    @Value("${operation-log.archive.retention-days:730}")
+    private int retentionDays;
+
+    @Value("${operation-log.archive.chunk-rows:100000}")
+    private int chunkRows;
+
+    @Value("${operation-log.archive.refresh-ms:60000}")
+    private long refreshMs;
+
+    /**
+     * 启动时核对归档目录，缺少已归档的文件说明目录不是共享存储或已丢失，拒绝启动
+     */
+    @PostConstruct
+    public void init() {
+        refreshServing();
+        String problem = findMissingArchives();
+        if (problem != null) {
+            throw new IllegalStateException("归档目录与数据库中的归档记录不一致，"
+                    + "多实例部署时operation-log.archive.dir须为各实例共享的存储: " + problem);
+        }
+    }
+
+    /**
+     * 定时加载其他实例写入的归档文件并核对，不一致时本实例拒绝归档查询
+     */
+    @Scheduled(fixedDelayString = "${operation-log.archive.refresh-ms:60000}",
+            initialDelayString = "${operation-log.archive.refresh-ms:60000}")
+    public void refreshStore() {
+        try {
+            refreshServing();
+            String problem = findMissingArchives();
+            if (problem != null) {
+                // 可能恰好读到归档任务刚登记、尚未加载的文件，重新加载后再确认
+                refreshServing();
+                problem = findMissingArchives();
+            }
+            if (problem != null) {
+                log.error("归档目录与数据库中的归档记录不一致，拒绝归档查询，请检查operation-log.archive.dir是否为共享存储: {}",
+                        problem);
+            }
+            archiveStore.setUnavailable(problem);
+        } catch (Exception e) {
+            log.error("刷新归档文件列表失败: error={}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 定时归档已关闭的分区并清理过期归档，只在取得数据库命名锁的实例上执行
+     */
+    @Scheduled(cron = "${operation-log.archive.cron:0 40 0 * * ?}")
+    public void archive() {
+        boolean ran = shardDataSources.runExclusively(LOCK_NAME, () -> {
+            String problem = findMissingArchives();
+            if (problem != null) {
+                log.error("归档目录与数据库中的归档记录不一致，跳过归档: {}", problem);
+                return;
+            }
+            archiveShards();
+        });
+        if (!ran) {
+            log.info("其他实例正在执行归档，本实例跳过");
+        }
+    }
+
+    private void archiveShards() {
+        LocalDate today = LocalDate.now();
+        LocalDate cutoff = today.minusDays(archiveAfterDays);
+        // 分库名 -> 到期分区 -> 归档行数
+        Map<String, Map<String, Long>> due = new LinkedHashMap<>();
+        boolean complete = true;
+        for (Map.Entry<String, JdbcTemplate> shard : shardDataSources.getShards().entrySet()) {
+            String shardName = shard.getKey();
+            JdbcTemplate jdbcTemplate = shard.getValue();
+            try {
+                TreeMap<LocalDate, String> partitions = OperationLogPartitionJob.loadPartitions(jdbcTemplate);
+                if (partitions == null) {
+                    log.warn("表{}未分区，跳过归档: shard={}", OperationLogPartitionJob.TABLE_NAME, shardName);
+                    continue;
+                }
+                dropFinishedStaging(jdbcTemplate, partitions);
+                Map<String, ArchivedPartition> registered = loadRegistered(jdbcTemplate);
+                // 上次执行被取代的代次和过期的归档，各实例早已刷新，不会再被查询
+                Map<String, Integer> generations = new HashMap<>();
+                registered.forEach((name, partition) -> generations.put(name, partition.generation));
+                int removed = archiveStore.deleteUnregistered(shardName, generations);
+                if (removed > 0) {
+                    log.info("已删除被取代或过期的归档文件: shard={}, files={}", shardName, removed);
+                }
+
+                Map<String, Long> archived = new LinkedHashMap<>();
+                for (Map.Entry<LocalDate, String> partition : partitions.entrySet()) {
+                    if (granularity.next(partition.getKey()).isAfter(cutoff)) {
+                        break;
+                    }
+                    String name = partition.getValue();
+                    ArchivedPartition current = registered.get(name);
+                    if (current != null && current.served) {
+                        // 已切换但上次未能删除分区，文件沿用，删除分区时再核对迟到数据
+                        archived.put(name, current.rowCount);
+                        continue;
+                    }
+                    // 上次执行已换出到暂存表时以暂存表为准，分区中只剩迟到数据，删除分区时再处理
+                    boolean staged = stagingExists(jdbcTemplate, staging(name)) && count(jdbcTemplate, staging(name)) > 0;
+                    String source = staged ? staging(name) : partitionOf(name);
+                    archived.put(name, writeArchive(shardName, jdbcTemplate, name, source));
+                }
+                due.put(shardName, archived);
+            } catch (Exception e) {
+                complete = false;
+                log.error("操作日志归档失败: shard={}, error={}", shardName, e.getMessage(), e);
+            }
+        }
+        if (!complete) {
+            // 各实例以同一个时间下界划分两层，只要有分库未写出就不切换，文件保留到下次执行重写
+            log.warn("部分分库归档失败，本次不切换查询也不删除分区");
+            expireArchives(today);
+            return;
+        }
+
+        boolean switched = false;
+        for (Map.Entry<String, Map<String, Long>> shard : due.entrySet()) {
+            JdbcTemplate jdbcTemplate = shardDataSources.getShards().get(shard.getKey());
+            for (String partition : shard.getValue().keySet()) {
+                switched |= jdbcTemplate.update(
+                        "UPDATE archived_partitions SET served = 1 WHERE partition_name = ? AND served = 0", partition) > 0;
+            }
+        }
+        if (switched) {
+            refreshServing();
+            // 等其他实例刷新后都改由归档层提供这些分区，再从在线表移除
+            try {
+                Thread.sleep(refreshMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        for (Map.Entry<String, Map<String, Long>> shard : due.entrySet()) {
+            String shardName = shard.getKey();
+            JdbcTemplate jdbcTemplate = shardDataSources.getShards().get(shardName);
+            try {
+                for (Map.Entry<String, Long> partition : shard.getValue().entrySet()) {
+                    detachPartition(shardName, jdbcTemplate, partition.getKey(), partition.getValue());
+                }
+            } catch (Exception e) {
+                log.error("操作日志分区删除失败，下次执行继续: shard={}, error={}", shardName, e.getMessage(), e);
+            }
+        }
+        expireArchives(today);
+    }
+
+    /**
+     * 把source(分区或暂存表)的全部行写成新一代归档文件，写完后登记到archived_partitions，返回行数；
+     * 登记前上一代文件仍然有效，已切换的分区在登记后由各实例刷新时改用新一代
+     */
+    private long writeArchive(String shardName, JdbcTemplate jdbcTemplate, String partition, String source)
+            throws IOException {
+        List<Integer> current = jdbcTemplate.queryForList(
+                "SELECT generation FROM archived_partitions WHERE partition_name = ?", Integer.class, partition);
+        int generation = current.isEmpty() ? 1 : current.get(0) + 1;
+
+        // MySQL驱动在fetchSize为Integer.MIN_VALUE时逐行流式返回，不把整个分区读入内存
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        List<OperationLog> chunk = new ArrayList<>(chunkRows);
+        long[] archived = new long[1];
+        int[] sequence = new int[1];
+        try {
+            streaming.query("SELECT " + OperationLogJdbcDao.COLUMNS + " FROM " + source
+                    + " ORDER BY user_id, gmt_create, log_id", (RowCallbackHandler) rs -> {
+                chunk.add(operationLogJdbcDao.mapRow(rs));
+                archived[0]++;
+                if (chunk.size() >= chunkRows) {
+                    writeChunk(ArchiveStore.fileName(partition, shardName, generation, sequence[0]++), chunk);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(ArchiveStore.fileName(partition, shardName, generation, sequence[0]), chunk);
+        }
+        jdbcTemplate.update(UPSERT_ARCHIVED_SQL, partition, archived[0], generation);
+        refreshServing();
+        return archived[0];
+    }
+
+    /**
+     * 把已归档的分区换出到暂存表，写入归档计数后删除分区和暂存表
+     */
+    private void detachPartition(String shardName, JdbcTemplate jdbcTemplate, String partition, long archived)
+            throws IOException {
+        String staging = staging(partition);
+        if (!stagingExists(jdbcTemplate, staging)) {
+            jdbcTemplate.execute("CREATE TABLE " + staging + " LIKE " + OperationLogPartitionJob.TABLE_NAME);
+            jdbcTemplate.execute("ALTER TABLE " + staging + " REMOVE PARTITIONING");
+        }
+        if (count(jdbcTemplate, staging) == 0) {
+            jdbcTemplate.execute("ALTER TABLE " + OperationLogPartitionJob.TABLE_NAME + " EXCHANGE PARTITION "
+                    + partition + " WITH TABLE " + staging);
+        }
+        // 换出后暂存表不再变化，行数不一致说明读取期间分区有写入，以暂存表为准重新归档
+        long staged = count(jdbcTemplate, staging);
+        if (staged != archived) {
+            log.info("归档期间分区数据有变化，从暂存表重新归档: shard={}, partition={}, archived={}, staged={}",
+                    shardName, partition, archived, staged);
+            archived = writeArchive(shardName, jdbcTemplate, partition, staging);
+        }
+        for (int attempt = 1; ; attempt++) {
+            writeCounts(jdbcTemplate, partition, staging);
+            long late = dropPartitionIfEmpty(jdbcTemplate, partition, staging);
+            if (late == 0) {
+                break;
+            }
+            log.info("分区换出后有迟到数据，已移入暂存表重新归档: shard={}, partition={}, late={}",
+                    shardName, partition, late);
+            archived = writeArchive(shardName, jdbcTemplate, partition, staging);
+            if (attempt >= MAX_DETACH_ATTEMPTS) {
+                writeCounts(jdbcTemplate, partition, staging);
+                log.warn("分区持续有迟到数据，下次重试删除: shard={}, partition={}", shardName, partition);
+                return;
+            }
+        }
+        jdbcTemplate.execute("DROP TABLE " + staging);
+        log.info("操作日志分区已归档: shard={}, partition={}, rows={}, files={}",
+                shardName, partition, archived, (archived + chunkRows - 1) / chunkRows);
+    }
+
+    /**
+     * 按暂存表写入各用户各操作类型的归档条数；暂存表中的行已不在在线表，计数重建时不会重复统计
+     */
+    private void writeCounts(JdbcTemplate jdbcTemplate, String partition, String staging) {
+        List<Object[]> args = new ArrayList<>();
+        jdbcTemplate.query("SELECT user_id, action_code, COUNT(*) AS op_count FROM " + staging
+                + " GROUP BY user_id, action_code", (RowCallbackHandler) rs -> args.add(new Object[]{
+                rs.getLong("user_id"), actionDictionary.actionOf(rs.getInt("action_code")), partition,
+                rs.getLong("op_count")}));
+        jdbcTemplate.batchUpdate(UPSERT_COUNT_SQL, args);
+    }
+
+    /**
+     * 在表锁内确认分区为空后删除，检查与删除之间不会有写入；
+     * 不为空时把迟到的行移入暂存表，返回移入的行数
+     */
+    private long dropPartitionIfEmpty(JdbcTemplate jdbcTemplate, String partition, String staging) {
+        String table = OperationLogPartitionJob.TABLE_NAME;
+        Long late = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LOCK TABLES " + table + " WRITE, " + staging + " WRITE");
+                try {
+                    long rows;
+                    try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + partitionOf(partition))) {
+                        rs.next();
+                        rows = rs.getLong(1);
+                    }
+                    if (rows == 0) {
+                        statement.execute("ALTER TABLE " + table + " DROP PARTITION " + partition);
+                    } else {
+                        statement.executeUpdate("INSERT INTO " + staging + " SELECT * FROM " + partitionOf(partition));
+                        statement.executeUpdate("DELETE FROM " + partitionOf(partition));
+                    }
+                    return rows;
+                } finally {
+                    statement.execute("UNLOCK TABLES");
+                }
+            }
+        });
+        return late == null ? 0L : late;
+    }
+
+    /**
+     * 删除对应分区已不存在的暂存表，即上次执行在删除分区后、删除暂存表前中断留下的
+     */
+    private void dropFinishedStaging(JdbcTemplate jdbcTemplate, TreeMap<LocalDate, String> partitions) {
+        List<String> tables = jdbcTemplate.queryForList("SELECT TABLE_NAME FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME LIKE ?", String.class, STAGING_PREFIX + "%");
+        for (String table : tables) {
+            if (!partitions.containsValue(table.substring(STAGING_PREFIX.length()))) {
+                jdbcTemplate.execute("DROP TABLE " + table);
+                log.info("已删除残留的归档暂存表: table={}", table);
+            }
+        }
+    }
+
+    private void writeChunk(String name, List<OperationLog> chunk) {
+        try {
+            archiveStore.write(name, chunk);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.clear();
+    }
+
+    /**
+     * 撤销上界早于归档保留窗口的分区登记并删除其计数，各实例刷新后不再查询，文件在下次执行时删除
+     */
+    private void expireArchives(LocalDate today) {
+        LocalDate cutoff = today.minusDays(retentionDays);
+        for (String partition : archiveStore.getPartitions()) {
+            LocalDate lower = LocalDate.parse(partition, OperationLogPartitionJob.NAME_FORMAT);
+            if (granularity.next(lower).isAfter(cutoff)) {
+                continue;
+            }
+            try {
+                int unregistered = 0;
+                for (JdbcTemplate jdbcTemplate : shardDataSources.getShards().values()) {
+                    unregistered += jdbcTemplate.update(
+                            "DELETE FROM archived_partitions WHERE partition_name = ?", partition);
+                    jdbcTemplate.update("DELETE FROM archived_operation_counts WHERE partition_name = ?", partition);
+                }
+                if (unregistered > 0) {
+                    log.info("过期归档已撤销登记: partition={}", partition);
+                }
+            } catch (Exception e) {
+                log.error("过期归档删除失败: partition={}, error={}", partition, e.getMessage(), e);
+            }
+        }
+        refreshServing();
+    }
+
+    /**
+     * 从各分库读取已切换的分区及代次，先读登记再重新扫描文件，登记的文件都已写出，扫描后即可生效；
+     * 在线表下界取已切换分区的最大上界，归档任务保证其下的分区在全部分库都已切换
+     */
+    private void refreshServing() {
+        Map<String, Integer> generations = new HashMap<>();
+        LocalDate hotFrom = null;
+        for (Map.Entry<String, JdbcTemplate> shard : shardDataSources.getShards().entrySet()) {
+            for (ArchivedPartition partition : loadRegistered(shard.getValue()).values()) {
+                if (!partition.served) {
+                    continue;
+                }
+                generations.put(ArchiveStore.groupOf(partition.name, shard.getKey()), partition.generation);
+                LocalDate upper = granularity.next(LocalDate.parse(partition.name, OperationLogPartitionJob.NAME_FORMAT));
+                if (hotFrom == null || upper.isAfter(hotFrom)) {
+                    hotFrom = upper;
+                }
+            }
+        }
+        archiveStore.refresh();
+        archiveStore.setServing(generations, hotFrom == null ? null : hotFrom.atStartOfDay());
+    }
+
+    /**
+     * 核对各分库登记的代次在本地归档目录中都有文件，返回缺失的描述，一致时返回null
+     */
+    private String findMissingArchives() {
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<String, JdbcTemplate> shard : shardDataSources.getShards().entrySet()) {
+            for (ArchivedPartition partition : loadRegistered(shard.getValue()).values()) {
+                if (partition.rowCount > 0
+                        && !archiveStore.contains(ArchiveStore.groupOf(partition.name, shard.getKey()), partition.generation)) {
+                    missing.add(partition.name + "@" + shard.getKey());
+                }
+            }
+        }
+        return missing.isEmpty() ? null : "缺少归档文件: " + missing;
+    }
+
+    private static Map<String, ArchivedPartition> loadRegistered(JdbcTemplate jdbcTemplate) {
+        Map<String, ArchivedPartition> registered = new HashMap<>();
+        jdbcTemplate.query("SELECT partition_name, row_count, generation, served FROM archived_partitions",
+                (RowCallbackHandler) rs -> registered.put(rs.getString("partition_name"), new ArchivedPartition(
+                        rs.getString("partition_name"), rs.getLong("row_count"), rs.getInt("generation"),
+                        rs.getBoolean("served"))));
+        return registered;
+    }
+
+    private static boolean stagingExists(JdbcTemplate jdbcTemplate, String table) {
+        Integer found = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?", Integer.class, table);
+        return found != null && found > 0;
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate, String source) {
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + source, Long.class);
+        return rows == null ? 0L : rows;
+    }
+
+    private static String staging(String partition) {
+        return STAGING_PREFIX + partition;
+    }
+
+    private static String partitionOf(String partition) {
+        return OperationLogPartitionJob.TABLE_NAME + " PARTITION (" + partition + ")";
+    }
+
+    /**
+     * archived_partitions中的一行
+     */
+    private static class ArchivedPartition {
+
+        private final String name;
+
+        private final long rowCount;
+
+        private final int generation;
+
+        private final boolean served;
+
+        ArchivedPartition(String name, long rowCount, int generation, boolean served) {
+            this.name = name;
+            this.rowCount = rowCount;
+            this.generation = generation;
+            this.served = served;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.logging.job;
+
+import com.logging.config.LogShardDataSources;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 操作日志组合索引初始化
+ * 启动时逐库检查游标查询依赖的组合索引及去重唯一键：缺失则在线补齐列和索引，
+ * 同名索引的列或唯一性与定义不同(如早期版本的单列索引)则在同一条语句中删除重建，
+ * 最后删除已被组合索引取代的旧索引
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "operation-log.index.auto-create", havingValue = "true", matchIfMissing = true)
+public class OperationLogIndexInitializer {
+
+    private static final String TABLE_NAME = "operation_logs";
+
+    /**
+     * 后续版本新增的列：列名 -> 列定义
+     */
+    private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+
+    /**
+     * 查询索引均以(gmt_create, log_id)结尾以支撑键集分页
+     */
+    private static final List<IndexDefinition> INDEXES = Arrays.asList(
+            new IndexDefinition("idx_user_time", false, "user_id", "gmt_create", "log_id"),
+            new IndexDefinition("idx_action_time", false, "action_code", "gmt_create", "log_id"),
+            new IndexDefinition("idx_ip_time", false, "ip", "gmt_create", "log_id"),
+            new IndexDefinition("idx_time_log", false, "gmt_create", "log_id"),
+            new IndexDefinition("uk_event", true, "event_id", "gmt_create"));
+
+    /**
+     * 早期版本的单列索引，已被上面的组合索引取代
+     */
+    private static final List<String> SUPERSEDED_INDEXES = Arrays.asList("idx_create_time", "idx_user_id", "idx_action");
+
+    static {
+        COLUMNS.put("event_id", "VARCHAR(36) NULL COMMENT '事件ID，生产方生成，用于去重'");
+    }
+
+    @Autowired
+    private LogShardDataSources shardDataSources;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        for (Map.Entry<String, JdbcTemplate> shard : shardDataSources.getShards().entrySet()) {
+            try {
+                ensureColumns(shard.getKey(), shard.getValue());
+                ensureIndexes(shard.getKey(), shard.getValue());
+            } catch (Exception e) {
+                log.error("操作日志索引初始化失败: shard={}, error={}", shard.getKey(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void ensureColumns(String shardName, JdbcTemplate jdbcTemplate) {
+        Set<String> columns = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT COLUMN_NAME FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+                String.class, TABLE_NAME));
+        for (Map.Entry<String, String> column : COLUMNS.entrySet()) {
+            if (columns.contains(column.getKey())) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + column.getKey()
+                    + " " + column.getValue() + ", ALGORITHM=INPLACE, LOCK=NONE");
+            log.info("操作日志列补齐完成: shard={}, column={}", shardName, column.getKey());
+        }
+    }
+
+    private void ensureIndexes(String shardName, JdbcTemplate jdbcTemplate) {
+        Map<String, IndexDefinition> existing = loadIndexes(jdbcTemplate);
+        for (IndexDefinition index : INDEXES) {
+            IndexDefinition current = existing.get(index.name);
+            if (current == null) {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " ADD " + index.toSql()
+                        + ", ALGORITHM=INPLACE, LOCK=NONE");
+                log.info("操作日志索引创建完成: shard={}, index={}", shardName, index.name);
+            } else if (!current.equals(index)) {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " DROP INDEX " + index.name + ", ADD "
+                        + index.toSql() + ", ALGORITHM=INPLACE, LOCK=NONE");
+                log.info("操作日志索引已按新定义重建: shard={}, index={}, from={}, to={}",
+                        shardName, index.name, current.columns, index.columns);
+            }
+        }
+        for (String name : SUPERSEDED_INDEXES) {
+            if (existing.containsKey(name)) {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " DROP INDEX " + name
+                        + ", ALGORITHM=INPLACE, LOCK=NONE");
+                log.info("已删除被取代的操作日志索引: shard={}, index={}", shardName, name);
+            }
+        }
+    }
+
+    /**
+     * 从information_schema.STATISTICS读取现有索引的列顺序与唯一性
+     */
+    private static Map<String, IndexDefinition> loadIndexes(JdbcTemplate jdbcTemplate) {
+        Map<String, IndexDefinition> indexes = new LinkedHashMap<>();
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT INDEX_NAME, NON_UNIQUE, COLUMN_NAME FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? ORDER BY INDEX_NAME, SEQ_IN_INDEX",
+                TABLE_NAME);
+        for (Map<String, Object> row : rows) {
+            String name = (String) row.get("INDEX_NAME");
+            boolean unique = ((Number) row.get("NON_UNIQUE")).intValue() == 0;
+            indexes.computeIfAbsent(name, k -> new IndexDefinition(name, unique))
+                    .columns.add(((String) row.get("COLUMN_NAME")).toLowerCase(Locale.ROOT));
+        }
+        return indexes;
+    }
+
+    /**
+     * 索引定义：名称、是否唯一及有序的列
+     */
+    private static class IndexDefinition {
+
+        private final String name;
+
+        private final boolean unique;
+
+        private final List<String> columns = new ArrayList<>();
+
+        IndexDefinition(String name, boolean unique, String... columns) {
+            this.name = name;
+            this.unique = unique;
+            this.columns.addAll(Arrays.asList(columns));
+        }
+
+        String toSql() {
+            return (unique ? "UNIQUE INDEX " : "INDEX ") + name + " (" + String.join(", ", columns) + ")";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof IndexDefinition)) {
+                return false;
+            }
+            IndexDefinition other = (IndexDefinition) o;
+            return name.equals(other.name) && unique == other.unique && columns.equals(other.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, unique, columns);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.logging.job;
+
+import com.logging.config.LogShardDataSources;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 操作日志分区维护任务
+ * 按天/月为operation_logs预建RANGE分区，并通过整体删除分区执行保留策略，
+ * 删除过期数据不产生逐行DELETE，写入路径无额外开销；分库部署时逐库执行，
+ * 多实例部署时通过数据库命名锁保证同一时刻只有一个实例执行
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "operation-log.partition.enabled", havingValue = "true")
+public class OperationLogPartitionJob {
+
+    static final String TABLE_NAME = "operation_logs";
+
+    /**
+     * 兜底分区，正常情况下应始终为空
+     */
+    static final String MAX_PARTITION = "p_max";
+
+    static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    private static final String LOCK_NAME = "operation_log_partition";
+
+    @Autowired
+    private LogShardDataSources shardDataSources;
+
+    @Value("${operation-log.partition.granularity:DAY}")
+    private Granularity granularity;
+
+    @Value("${operation-log.partition.pre-create:7}")
+    private int preCreate;
+
+    @Value("${operation-log.partition.retention-days:180}")
+    private int retentionDays;
+
+    /**
+     * 启动后立即执行一次，保证当前周期的分区存在
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        maintainPartitions();
+    }
+
+    /**
+     * 定时预建分区并删除过期分区
+     */
+    @Scheduled(cron = "${operation-log.partition.cron:0 10 0 * * ?}")
+    public void maintainPartitions() {
+        maintainPartitions(LocalDate.now());
+    }
+
+    void maintainPartitions(LocalDate today) {
+        boolean ran = shardDataSources.runExclusively(LOCK_NAME, () -> maintainShards(today));
+        if (!ran) {
+            log.info("其他实例正在执行分区维护，本实例跳过");
+        }
+    }
+
+    private void maintainShards(LocalDate today) {
+        for (Map.Entry<String, JdbcTemplate> shard : shardDataSources.getShards().entrySet()) {
+            try {
+                TreeMap<LocalDate, String> partitions = loadPartitions(shard.getValue());
+                if (partitions == null) {
+                    log.warn("表{}未分区，跳过分区维护: shard={}", TABLE_NAME, shard.getKey());
+                    continue;
+                }
+                createPartitions(shard.getValue(), partitions, today);
+                dropExpiredPartitions(shard.getValue(), partitions, today);
+            } catch (Exception e) {
+                log.error("操作日志分区维护失败: shard={}, error={}", shard.getKey(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 读取现有分区，key为分区下界（由分区名解析），表未分区时返回null
+     */
+    static TreeMap<LocalDate, String> loadPartitions(JdbcTemplate jdbcTemplate) {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION",
+                String.class, TABLE_NAME);
+        if (names.isEmpty()) {
+            return null;
+        }
+        TreeMap<LocalDate, String> partitions = new TreeMap<>();
+        for (String name : names) {
+            if (!MAX_PARTITION.equals(name)) {
+                partitions.put(LocalDate.parse(name, NAME_FORMAT), name);
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * 从兜底分区中拆分出当前及未来preCreate个周期的分区
+     */
+    private void createPartitions(JdbcTemplate jdbcTemplate, TreeMap<LocalDate, String> partitions, LocalDate today) {
+        LocalDate start = granularity.floor(today);
+        if (!partitions.isEmpty() && !partitions.lastKey().isBefore(start)) {
+            start = granularity.next(partitions.lastKey());
+        }
+        LocalDate end = granularity.floor(today);
+        for (int i = 0; i < preCreate; i++) {
+            end = granularity.next(end);
+        }
+
+        List<String> definitions = new ArrayList<>();
+        for (LocalDate lower = start; !lower.isAfter(end); lower = granularity.next(lower)) {
+            definitions.add(String.format("PARTITION %s VALUES LESS THAN ('%s')",
+                    lower.format(NAME_FORMAT), granularity.next(lower)));
+        }
+        if (definitions.isEmpty()) {
+            return;
+        }
+        definitions.add("PARTITION " + MAX_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+
+        jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " REORGANIZE PARTITION " + MAX_PARTITION
+                + " INTO (" + String.join(", ", definitions) + ")");
+        log.info("操作日志分区预建完成: from={}, to={}, count={}", start, end, definitions.size() - 1);
+    }
+
+    /**
+     * 删除上界早于保留窗口的分区
+     */
+    private void dropExpiredPartitions(JdbcTemplate jdbcTemplate, TreeMap<LocalDate, String> partitions, LocalDate today) {
+        LocalDate cutoff = today.minusDays(retentionDays);
+        List<String> expired = new ArrayList<>();
+        for (LocalDate lower : partitions.keySet()) {
+            if (granularity.next(lower).isAfter(cutoff)) {
+                break;
+            }
+            expired.add(partitions.get(lower));
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " DROP PARTITION " + String.join(", ", expired));
+        log.info("过期操作日志分区已删除: partitions={}", expired);
+    }
+
+    /**
+     * 分区粒度
+     */
+    public enum Granularity {
+        DAY {
+            @Override
+            LocalDate floor(LocalDate date) {
+                return date;
+            }
+
+            @Override
+            LocalDate next(LocalDate lower) {
+                return lower.plusDays(1);
+            }
+        },
+        MONTH {
+            @Override
+            LocalDate floor(LocalDate date) {
+                return date.withDayOfMonth(1);
+            }
+
+            @Override
+            LocalDate next(LocalDate lower) {
+                return lower.plusMonths(1);
+            }
+        };
+
+        abstract LocalDate floor(LocalDate date);
+
+        abstract LocalDate next(LocalDate lower);
+    }
+}
@@ -0,0 +1,101 @@
+package com.logging.query;
+
+import com.logging.exception.QueryRejectedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 日志查询执行器
+ * 查询在独立的有界线程池上执行，与MQ消费线程、入库通道线程互不共享：
+ * 同时执行的查询数即线程数，不超过查询连接池大小；排队满时立即拒绝，等待超过timeout-ms时取消并返回，
+ * 请求线程不会被慢查询长期占住。拒绝和超时均抛出{@link QueryRejectedException}
+ */
+@Component
+@Slf4j
+public class LogQueryExecutor {
+
+    private static final String QUERY_METRIC = "operation_log.query";
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeoutMs;
+
+    private final MeterRegistry meterRegistry;
+
+    public LogQueryExecutor(MeterRegistry meterRegistry,
+                            @Value("${operation-log.query.threads:8}") int threads,
+                            @Value("${operation-log.query.max-queued:50}") int maxQueued,
+                            @Value("${operation-log.query.timeout-ms:15000}") long timeoutMs) {
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueued)), runnable -> {
+                    Thread thread = new Thread(runnable, "log-query-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.timeoutMs = timeoutMs;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge(QUERY_METRIC + ".active", Tags.empty(), executor, ThreadPoolExecutor::getActiveCount);
+        meterRegistry.gauge(QUERY_METRIC + ".queued", Tags.empty(), executor, e -> e.getQueue().size());
+        log.info("日志查询执行器初始化完成: threads={}, maxQueued={}, timeoutMs={}", threads, maxQueued, timeoutMs);
+    }
+
+    /**
+     * 在查询线程池上执行并等待结果；name用于日志和指标
+     */
+    public <T> T execute(String name, Supplier<T> query) {
+        Future<T> future;
+        try {
+            future = executor.submit(query::get);
+        } catch (RejectedExecutionException e) {
+            reject(name, "rejected");
+            throw new QueryRejectedException("查询排队已满: " + name);
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 中断查询线程并放弃结果，数据库侧的语句由查询连接的语句超时终止
+            future.cancel(true);
+            reject(name, "timeout");
+            throw new QueryRejectedException("查询超时: " + name + ", timeoutMs=" + timeoutMs);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new QueryRejectedException("查询被中断: " + name);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void reject(String name, String reason) {
+        meterRegistry.counter(QUERY_METRIC + ".rejected", "query", name, "reason", reason).increment();
+        log.warn("日志查询被拒绝: query={}, reason={}, active={}, queued={}",
+                name, reason, executor.getActiveCount(), executor.getQueue().size());
+    }
+}
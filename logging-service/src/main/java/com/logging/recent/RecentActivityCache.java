@@ -0,0 +1,265 @@
+package com.logging.recent;
+
+import com.logging.dto.OperationLogView;
+import com.logging.entity.OperationLog;
+import com.logging.ingest.LogIngestListener;
+import com.logging.util.VarInts;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户最近操作环形缓冲
+ * 堆外预分配maxUsers个槽位，每个槽位是一个容纳ringSize条定长记录的环；用户到槽位的映射按访问顺序做LRU，
+ * 槽位用完时淘汰最久未访问的用户。入库回调把日志追加到用户的环中，只缓存活跃用户；
+ * 多实例部署时同一用户的日志可能由其他实例消费，本地环写满也不代表完整，
+ * 只有数据库回填后的ttlMs内才视为该用户最新的若干条记录，过期后需回查数据库；
+ * 有效期内本实例消费的日志立即可见，其他实例消费的日志最多延迟ttlMs可见。
+ * 单条记录超出定长时截断detail，完整内容以日志查询接口为准
+ */
+@Component
+@Slf4j
+public class RecentActivityCache implements LogIngestListener {
+
+    /**
+     * 槽位头：条数(4字节)、下一个写入位置(4字节)、最近一次数据库回填的时刻(8字节，0表示未回填)
+     */
+    private static final int SLOT_HEADER_SIZE = 16;
+
+    private static final int ENTRY_HEADER_SIZE = 2;
+
+    private static final Comparator<OperationLogView> NEWEST_FIRST = Comparator
+            .comparing(OperationLogView::getGmtCreate)
+            .thenComparing(OperationLogView::getLogId)
+            .reversed();
+
+    private final ByteBuffer arena;
+
+    private final int maxUsers;
+
+    private final int ringSize;
+
+    private final int entrySize;
+
+    private final int slotSize;
+
+    private final long ttlMs;
+
+    /**
+     * userId -> 槽位序号，访问顺序即LRU顺序，受this锁保护
+     */
+    private final LinkedHashMap<Long, Integer> slots = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int nextUnusedSlot;
+
+    public RecentActivityCache(@Value("${operation-log.recent.max-users:20000}") int maxUsers,
+                               @Value("${operation-log.recent.ring-size:16}") int ringSize,
+                               @Value("${operation-log.recent.entry-size:256}") int entrySize,
+                               @Value("${operation-log.recent.ttl-ms:5000}") long ttlMs) {
+        if (entrySize > Short.MAX_VALUE || entrySize < 128) {
+            throw new IllegalArgumentException("entry-size需在128到32767之间: " + entrySize);
+        }
+        long arenaSize = (long) maxUsers * (SLOT_HEADER_SIZE + (long) ringSize * entrySize);
+        if (arenaSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("最近操作缓冲超过2GB，请调小max-users/ring-size/entry-size: " + arenaSize);
+        }
+        this.maxUsers = maxUsers;
+        this.ringSize = ringSize;
+        this.entrySize = entrySize;
+        this.slotSize = SLOT_HEADER_SIZE + ringSize * entrySize;
+        this.ttlMs = ttlMs;
+        this.arena = ByteBuffer.allocateDirect((int) arenaSize);
+        log.info("用户最近操作缓冲初始化完成: maxUsers={}, ringSize={}, entrySize={}, ttlMs={}, bytes={}",
+                maxUsers, ringSize, entrySize, ttlMs, arenaSize);
+    }
+
+    @Override
+    public String getSinkName() {
+        return "recent";
+    }
+
+    @Override
+    public void onLogsPersisted(List<OperationLog> logs) {
+        List<byte[]> entries = new ArrayList<>(logs.size());
+        for (OperationLog operationLog : logs) {
+            entries.add(encode(operationLog.getLogId(), operationLog.getGmtCreate(), operationLog.getAction(),
+                    operationLog.getIp(), operationLog.getDetail()));
+        }
+        synchronized (this) {
+            for (int i = 0; i < logs.size(); i++) {
+                append(slotOf(logs.get(i).getUserId()), entries.get(i));
+            }
+        }
+    }
+
+    /**
+     * 读取用户最近limit条操作，新的在前；用户不在缓冲中，或距上次数据库回填已超过ttlMs时返回null
+     */
+    public List<OperationLogView> get(Long userId, int limit) {
+        synchronized (this) {
+            Integer slot = slots.get(userId);
+            if (slot == null) {
+                return null;
+            }
+            int base = slot * slotSize;
+            long filledAt = arena.getLong(base + 8);
+            if (filledAt == 0 || System.currentTimeMillis() - filledAt >= ttlMs) {
+                return null;
+            }
+            return read(userId, base, Math.min(limit, arena.getInt(base)));
+        }
+    }
+
+    /**
+     * 用数据库查询结果回填，与环中已有记录按logId去重合并，保留最新的ringSize条并记下回填时刻
+     */
+    public void fill(Long userId, List<OperationLogView> newestFirst) {
+        synchronized (this) {
+            int slot = slotOf(userId);
+            int base = slot * slotSize;
+            Map<Long, OperationLogView> merged = new LinkedHashMap<>();
+            for (OperationLogView view : read(userId, base, arena.getInt(base))) {
+                merged.put(view.getLogId(), view);
+            }
+            for (OperationLogView view : newestFirst) {
+                merged.putIfAbsent(view.getLogId(), view);
+            }
+            List<OperationLogView> rows = new ArrayList<>(merged.values());
+            rows.sort(NEWEST_FIRST);
+            arena.putInt(base, 0);
+            arena.putInt(base + 4, 0);
+            for (int i = Math.min(rows.size(), ringSize) - 1; i >= 0; i--) {
+                OperationLogView view = rows.get(i);
+                append(slot, encode(view.getLogId(), view.getGmtCreate(), view.getAction(), view.getIp(),
+                        view.getDetail()));
+            }
+            arena.putLong(base + 8, System.currentTimeMillis());
+        }
+    }
+
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    public synchronized int getUserCount() {
+        return slots.size();
+    }
+
+    /**
+     * 取用户的槽位，没有时分配空闲槽位或淘汰最久未访问的用户
+     */
+    private int slotOf(Long userId) {
+        Integer slot = slots.get(userId);
+        if (slot != null) {
+            return slot;
+        }
+        if (nextUnusedSlot < maxUsers) {
+            slot = nextUnusedSlot++;
+        } else {
+            Iterator<Map.Entry<Long, Integer>> eldest = slots.entrySet().iterator();
+            slot = eldest.next().getValue();
+            eldest.remove();
+        }
+        int base = slot * slotSize;
+        arena.putInt(base, 0);
+        arena.putInt(base + 4, 0);
+        arena.putLong(base + 8, 0L);
+        slots.put(userId, slot);
+        return slot;
+    }
+
+    private void append(int slot, byte[] entry) {
+        int base = slot * slotSize;
+        int count = arena.getInt(base);
+        int head = arena.getInt(base + 4);
+        int position = base + SLOT_HEADER_SIZE + head * entrySize;
+        arena.putShort(position, (short) entry.length);
+        ByteBuffer out = arena.duplicate();
+        out.position(position + ENTRY_HEADER_SIZE);
+        out.put(entry);
+        arena.putInt(base + 4, (head + 1) % ringSize);
+        arena.putInt(base, Math.min(count + 1, ringSize));
+    }
+
+    private List<OperationLogView> read(Long userId, int base, int limit) {
+        int head = arena.getInt(base + 4);
+        List<OperationLogView> views = new ArrayList<>(limit);
+        ByteBuffer in = arena.duplicate();
+        for (int i = 0; i < limit; i++) {
+            int index = Math.floorMod(head - 1 - i, ringSize);
+            int position = base + SLOT_HEADER_SIZE + index * entrySize;
+            in.limit(position + ENTRY_HEADER_SIZE + arena.getShort(position));
+            in.position(position + ENTRY_HEADER_SIZE);
+            views.add(decode(userId, in));
+            in.limit(in.capacity());
+        }
+        return views;
+    }
+
+    /**
+     * 记录格式：logId、时间(UTC毫秒)为变长整数，action、ip、detail为(长度+1)前缀的UTF-8；超长时截断detail，
+     * action、ip分别限制在可用空间的1/2和1/4以内，保证任何记录都不会越过定长
+     */
+    private byte[] encode(long logId, LocalDateTime gmtCreate, String action, String ip, String detail) {
+        int capacity = entrySize - ENTRY_HEADER_SIZE;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(capacity);
+        try {
+            VarInts.writeVarLong(out, logId);
+            VarInts.writeVarLong(out, gmtCreate.toInstant(ZoneOffset.UTC).toEpochMilli());
+            writeString(out, action, capacity / 2);
+            writeString(out, ip, capacity / 4);
+            // detail长度前缀最多占3字节
+            writeString(out, detail, capacity - out.size() - 3);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static OperationLogView decode(Long userId, ByteBuffer in) {
+        long logId = VarInts.readVarLong(in);
+        long epochMilli = VarInts.readVarLong(in);
+        LocalDateTime gmtCreate = LocalDateTime.ofEpochSecond(Math.floorDiv(epochMilli, 1000L),
+                (int) Math.floorMod(epochMilli, 1000L) * 1_000_000, ZoneOffset.UTC);
+        return new OperationLogView(logId, userId, readString(in), readString(in), readString(in), gmtCreate);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value, int maxBytes) throws IOException {
+        if (value == null) {
+            VarInts.writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, Math.max(0, maxBytes));
+        // 截断位置退回到UTF-8字符边界
+        while (length > 0 && length < bytes.length && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        VarInts.writeVarInt(out, length + 1);
+        out.write(bytes, 0, length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = VarInts.readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
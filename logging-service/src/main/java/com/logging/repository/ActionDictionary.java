@@ -0,0 +1,96 @@
+package com.logging.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 操作类型字典
+ * operation_logs只存action_code(SMALLINT)，名称与编码的对应关系存在action_dictionary(仅建在分库0，不分片)，
+ * 启动时整表加载到内存，仓储层写入和读出时在此翻译；新的操作类型首次写入时登记，
+ * 多实例并发登记以action上的唯一键为准，各实例最终拿到同一编码
+ */
+@Repository
+@Slf4j
+public class ActionDictionary {
+
+    private static final String SELECT_CODE_SQL = "SELECT action_code FROM action_dictionary WHERE action = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+    private final Map<Integer, String> actions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        reload();
+        log.info("操作类型字典加载完成: size={}", codes.size());
+    }
+
+    /**
+     * 操作类型的编码，尚未登记时登记后返回
+     */
+    public int codeOf(String action) {
+        Integer code = codeIfPresent(action);
+        if (code != null) {
+            return code;
+        }
+        // 先查后插，只有并发登记同一新类型时INSERT IGNORE才会落空
+        jdbcTemplate.update("INSERT IGNORE INTO action_dictionary (action) VALUES (?)", action);
+        code = jdbcTemplate.queryForObject(SELECT_CODE_SQL, Integer.class, action);
+        put(action, code);
+        log.info("登记新操作类型: action={}, code={}", action, code);
+        return code;
+    }
+
+    /**
+     * 操作类型的编码，未登记时返回null；供查询使用，未登记的类型必然没有日志，不必登记
+     */
+    public Integer codeIfPresent(String action) {
+        Integer code = codes.get(action);
+        if (code != null) {
+            return code;
+        }
+        // 可能由其他实例登记
+        List<Integer> found = jdbcTemplate.queryForList(SELECT_CODE_SQL, Integer.class, action);
+        if (found.isEmpty()) {
+            return null;
+        }
+        put(action, found.get(0));
+        return found.get(0);
+    }
+
+    /**
+     * 编码对应的操作类型名称
+     */
+    public String actionOf(int code) {
+        String action = actions.get(code);
+        if (action == null) {
+            reload();
+            action = actions.get(code);
+            if (action == null) {
+                throw new IllegalStateException("未登记的操作类型编码: " + code);
+            }
+        }
+        return action;
+    }
+
+    private void reload() {
+        jdbcTemplate.query("SELECT action_code, action FROM action_dictionary",
+                (RowCallbackHandler) rs -> put(rs.getString("action"), rs.getInt("action_code")));
+    }
+
+    private void put(String action, int code) {
+        codes.put(action, code);
+        actions.put(code, action);
+    }
+}
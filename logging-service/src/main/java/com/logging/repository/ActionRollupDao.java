@@ -0,0 +1,102 @@
+package com.logging.repository;
+
+import com.logging.stats.RollupGranularity;
+import com.logging.stats.RollupKey;
+import com.logging.util.IpAddresses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 操作汇总表访问
+ * 汇总表不含分片键，仅建在ds0上，由ShardingSphere作为单表路由；
+ * op_count为全部操作次数，其中按入库策略未写明细的部分另计在aggregated_count，重算时只用明细替换其余部分
+ */
+@Repository
+public class ActionRollupDao {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ActionDictionary actionDictionary;
+
+    /**
+     * 批量累加汇总计数，aggregated为其中未写明细的次数
+     */
+    public void addAll(RollupGranularity granularity, Map<RollupKey, Long> deltas, Map<RollupKey, Long> aggregated) {
+        List<Object[]> args = new ArrayList<>(deltas.size() + aggregated.size());
+        deltas.forEach((key, delta) -> {
+            long aggregatedDelta = aggregated.getOrDefault(key, 0L);
+            args.add(new Object[]{key.getAction(), key.getIpPrefix(), Timestamp.valueOf(key.getBucketStart()),
+                    delta + aggregatedDelta, aggregatedDelta});
+        });
+        aggregated.forEach((key, aggregatedDelta) -> {
+            if (!deltas.containsKey(key)) {
+                args.add(new Object[]{key.getAction(), key.getIpPrefix(), Timestamp.valueOf(key.getBucketStart()),
+                        aggregatedDelta, aggregatedDelta});
+            }
+        });
+        jdbcTemplate.batchUpdate("INSERT INTO " + granularity.getTableName()
+                + " (action, ip_prefix, bucket_start, op_count, aggregated_count) VALUES (?, ?, ?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE op_count = op_count + VALUES(op_count), "
+                + "aggregated_count = aggregated_count + VALUES(aggregated_count)", args);
+    }
+
+    /**
+     * 统计时间桶内operation_logs中的明细条数，ipPrefix为IPv4 /24前缀，空串表示不限IP
+     */
+    public long countDetails(RollupGranularity granularity, RollupKey key) {
+        Integer actionCode = actionDictionary.codeIfPresent(key.getAction());
+        if (actionCode == null) {
+            return 0L;
+        }
+        StringBuilder sql = new StringBuilder(
+                "SELECT COUNT(*) FROM operation_logs WHERE action_code = ? AND gmt_create >= ? AND gmt_create < ?");
+        List<Object> args = new ArrayList<>();
+        args.add(actionCode);
+        args.add(Timestamp.valueOf(key.getBucketStart()));
+        args.add(Timestamp.valueOf(granularity.next(key.getBucketStart())));
+        if (!RollupKey.ALL_IPS.equals(key.getIpPrefix())) {
+            byte[][] range = IpAddresses.cidrRange(key.getIpPrefix() + ".0/24");
+            sql.append(" AND ip BETWEEN ? AND ? AND LENGTH(ip) = ?");
+            args.add(range[0]);
+            args.add(range[1]);
+            args.add(range[0].length);
+        }
+        Long count = jdbcTemplate.queryForObject(sql.toString(), Long.class, args.toArray());
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * 以明细条数替换时间桶中写明细的部分，未写明细的次数保持不变
+     */
+    public void replaceDetails(RollupGranularity granularity, RollupKey key, long details) {
+        jdbcTemplate.update("INSERT INTO " + granularity.getTableName()
+                        + " (action, ip_prefix, bucket_start, op_count, aggregated_count) VALUES (?, ?, ?, ?, 0) "
+                        + "ON DUPLICATE KEY UPDATE op_count = VALUES(op_count) + aggregated_count",
+                key.getAction(), key.getIpPrefix(), Timestamp.valueOf(key.getBucketStart()), details);
+    }
+
+    /**
+     * 查询时间范围内各时间桶的计数，key为桶起点
+     */
+    public Map<LocalDateTime, Long> findSeries(RollupGranularity granularity, String action, String ipPrefix,
+                                               LocalDateTime start, LocalDateTime end) {
+        Map<LocalDateTime, Long> series = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT bucket_start, op_count FROM " + granularity.getTableName()
+                        + " WHERE action = ? AND ip_prefix = ? AND bucket_start BETWEEN ? AND ? ORDER BY bucket_start",
+                rs -> {
+                    series.put(rs.getTimestamp("bucket_start").toLocalDateTime(), rs.getLong("op_count"));
+                },
+                action, ipPrefix, Timestamp.valueOf(start), Timestamp.valueOf(end));
+        return series;
+    }
+}
@@ -0,0 +1,68 @@
+package com.logging.repository;
+
+import com.logging.sketch.SketchKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 统计草图表访问
+ * 草图表不含分片键，仅建在ds0上，由ShardingSphere作为单表路由；
+ * 每个实例各写一行，查询时合并各实例的草图
+ */
+@Repository
+public class AnalyticsSketchDao {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO analytics_sketches (sketch_day, action, instance_id, payload, gmt_modified) " +
+            "VALUES (?, ?, ?, ?, NOW()) ON DUPLICATE KEY UPDATE payload = VALUES(payload), gmt_modified = NOW()";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 以覆盖语义保存本实例的草图
+     */
+    public void save(SketchKey key, String instanceId, byte[] payload) {
+        jdbcTemplate.update(UPSERT_SQL, Date.valueOf(key.getDay()), key.getAction(), instanceId, payload);
+    }
+
+    /**
+     * 各实例保存的某天某操作类型的草图，key为实例标识
+     */
+    public Map<String, byte[]> find(SketchKey key) {
+        Map<String, byte[]> payloads = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT instance_id, payload FROM analytics_sketches WHERE sketch_day = ? AND action = ?",
+                (RowCallbackHandler) rs -> payloads.put(rs.getString("instance_id"), rs.getBytes("payload")),
+                Date.valueOf(key.getDay()), key.getAction());
+        return payloads;
+    }
+
+    /**
+     * 本实例自since起保存的全部草图，用于重启后接续累加
+     */
+    public Map<SketchKey, byte[]> findByInstance(String instanceId, LocalDate since) {
+        Map<SketchKey, byte[]> payloads = new HashMap<>();
+        jdbcTemplate.query("SELECT sketch_day, action, payload FROM analytics_sketches "
+                        + "WHERE instance_id = ? AND sketch_day >= ?",
+                (RowCallbackHandler) rs -> payloads.put(
+                        new SketchKey(rs.getDate("sketch_day").toLocalDate(), rs.getString("action")),
+                        rs.getBytes("payload")),
+                instanceId, Date.valueOf(since));
+        return payloads;
+    }
+
+    /**
+     * 删除早于day的草图，返回删除行数
+     */
+    public int deleteBefore(LocalDate day) {
+        return jdbcTemplate.update("DELETE FROM analytics_sketches WHERE sketch_day < ?", Date.valueOf(day));
+    }
+}
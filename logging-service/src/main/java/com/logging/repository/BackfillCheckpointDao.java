@@ -0,0 +1,153 @@
+package com.logging.repository;
+
+import com.logging.backfill.BackfillRange;
+import com.logging.dto.BackfillProgress;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 回填检查点表访问
+ * 检查点表不含分片键，仅建在ds0上，由ShardingSphere作为单表路由；
+ * 每个回填范围一行，记录已处理到的logId，中断后从检查点续跑；
+ * 按实例区分的回填目标，任务名带实例标识后缀。
+ * 多个实例可同时执行同一任务，各范围先认领再处理，租约内只由认领的实例推进
+ */
+@Repository
+public class BackfillCheckpointDao {
+
+    private static final String INSERT_SQL =
+            "INSERT IGNORE INTO backfill_checkpoints (job_name, shard_name, range_start, range_end, next_log_id) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private static final String MERGE_SQL =
+            "INSERT INTO backfill_checkpoints (job_name, shard_name, range_start, range_end, next_log_id) " +
+            "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE range_end = GREATEST(range_end, VALUES(range_end)), " +
+            "next_log_id = IF(done = 1, VALUES(next_log_id), LEAST(next_log_id, VALUES(next_log_id))), " +
+            "done = 0, gmt_modified = NOW()";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 新建回填范围，已存在的范围保持原进度
+     */
+    public void createRanges(String jobName, List<BackfillRange> ranges) {
+        List<Object[]> args = new ArrayList<>(ranges.size());
+        for (BackfillRange range : ranges) {
+            args.add(new Object[]{jobName, range.getShardName(), range.getRangeStart(), range.getRangeEnd(),
+                    range.getNextLogId()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+    }
+
+    /**
+     * 把新范围并入任务：起点相同的已有范围重新打开并扩展到两者的并集，其余新增
+     */
+    public void mergeRanges(String jobName, List<BackfillRange> ranges) {
+        List<Object[]> args = new ArrayList<>(ranges.size());
+        for (BackfillRange range : ranges) {
+            args.add(new Object[]{jobName, range.getShardName(), range.getRangeStart(), range.getRangeEnd(),
+                    range.getNextLogId()});
+        }
+        jdbcTemplate.batchUpdate(MERGE_SQL, args);
+    }
+
+    /**
+     * 尚未完成的回填范围
+     */
+    public List<BackfillRange> findPending(String jobName) {
+        return jdbcTemplate.query("SELECT shard_name, range_start, range_end, next_log_id FROM backfill_checkpoints "
+                        + "WHERE job_name = ? AND done = 0 ORDER BY shard_name, range_start",
+                (rs, rowNum) -> new BackfillRange(rs.getString("shard_name"), rs.getLong("range_start"),
+                        rs.getLong("range_end"), rs.getLong("next_log_id")),
+                jobName);
+    }
+
+    /**
+     * 存在未完成范围的任务名
+     */
+    public List<String> findPendingJobs() {
+        return jdbcTemplate.queryForList("SELECT DISTINCT job_name FROM backfill_checkpoints WHERE done = 0",
+                String.class);
+    }
+
+    /**
+     * 认领未完成的范围，未被认领、已由owner认领或租约已过期时成功，并把租约延长leaseSeconds；
+     * 返回认领时的检查点，认领失败返回null
+     */
+    public BackfillRange claim(String jobName, BackfillRange range, String owner, int leaseSeconds) {
+        int claimed = jdbcTemplate.update("UPDATE backfill_checkpoints SET owner = ?, "
+                        + "lease_until = DATE_ADD(NOW(), INTERVAL ? SECOND) "
+                        + "WHERE job_name = ? AND shard_name = ? AND range_start = ? AND done = 0 "
+                        + "AND (owner IS NULL OR owner = ? OR lease_until < NOW())",
+                owner, leaseSeconds, jobName, range.getShardName(), range.getRangeStart(), owner);
+        if (claimed == 0) {
+            return null;
+        }
+        // 其他实例可能在租约过期前推进过，从最新的检查点续跑
+        List<BackfillRange> ranges = jdbcTemplate.query("SELECT shard_name, range_start, range_end, next_log_id "
+                        + "FROM backfill_checkpoints WHERE job_name = ? AND shard_name = ? AND range_start = ?",
+                (rs, rowNum) -> new BackfillRange(rs.getString("shard_name"), rs.getLong("range_start"),
+                        rs.getLong("range_end"), rs.getLong("next_log_id")),
+                jobName, range.getShardName(), range.getRangeStart());
+        return ranges.isEmpty() ? null : ranges.get(0);
+    }
+
+    /**
+     * 推进检查点并续租，scannedRows为本次新处理的行数；范围已被其他实例接管时不更新并返回false
+     */
+    public boolean advance(String jobName, BackfillRange range, long nextLogId, long scannedRows,
+                           String owner, int leaseSeconds) {
+        return jdbcTemplate.update("UPDATE backfill_checkpoints SET next_log_id = ?, scanned_rows = scanned_rows + ?, "
+                        + "lease_until = DATE_ADD(NOW(), INTERVAL ? SECOND), gmt_modified = NOW() "
+                        + "WHERE job_name = ? AND shard_name = ? AND range_start = ? AND owner = ?",
+                nextLogId, scannedRows, leaseSeconds, jobName, range.getShardName(), range.getRangeStart(),
+                owner) > 0;
+    }
+
+    /**
+     * 标记范围完成并释放认领；处理期间范围被并入的新区间扩展时不标记，返回false
+     */
+    public boolean markDone(String jobName, BackfillRange range, String owner) {
+        return jdbcTemplate.update("UPDATE backfill_checkpoints SET done = 1, owner = NULL, lease_until = NULL, "
+                        + "gmt_modified = NOW() WHERE job_name = ? AND shard_name = ? AND range_start = ? "
+                        + "AND owner = ? AND range_end = ?",
+                jobName, range.getShardName(), range.getRangeStart(), owner, range.getRangeEnd()) > 0;
+    }
+
+    /**
+     * 释放本实例对范围的认领，其他实例无需等待租约过期即可接手
+     */
+    public void release(String jobName, BackfillRange range, String owner) {
+        jdbcTemplate.update("UPDATE backfill_checkpoints SET owner = NULL, lease_until = NULL "
+                        + "WHERE job_name = ? AND shard_name = ? AND range_start = ? AND owner = ?",
+                jobName, range.getShardName(), range.getRangeStart(), owner);
+    }
+
+    /**
+     * 删除任务的全部检查点，返回删除行数
+     */
+    public int deleteJob(String jobName) {
+        return jdbcTemplate.update("DELETE FROM backfill_checkpoints WHERE job_name = ?", jobName);
+    }
+
+    /**
+     * 任务进度，没有检查点时返回null
+     */
+    public BackfillProgress findProgress(String jobName) {
+        return jdbcTemplate.query("SELECT COUNT(*) AS total, COALESCE(SUM(done), 0) AS completed, "
+                        + "COALESCE(SUM(scanned_rows), 0) AS scanned FROM backfill_checkpoints WHERE job_name = ?",
+                rs -> {
+                    if (!rs.next() || rs.getInt("total") == 0) {
+                        return null;
+                    }
+                    return new BackfillProgress(jobName, false, rs.getInt("total"), rs.getInt("completed"),
+                            rs.getLong("scanned"));
+                },
+                jobName);
+    }
+}
@@ -0,0 +1,72 @@
+package com.logging.repository;
+
+import com.logging.dto.LogAggregateView;
+import com.logging.stats.AggregateKey;
+import com.logging.stats.EventAggregate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聚合日志表访问
+ * operation_log_aggregates与operation_logs同样按user_id分库
+ */
+@Repository
+public class LogAggregateDao {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO operation_log_aggregates (user_id, action, ip, window_start, event_count, first_time, last_time) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE event_count = event_count + VALUES(event_count), " +
+            "first_time = LEAST(first_time, VALUES(first_time)), last_time = GREATEST(last_time, VALUES(last_time))";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * 在一个事务中批量累加聚合次数并扩展首末时间，失败时整批不生效，调用方可原样重试
+     */
+    public void addAll(Map<AggregateKey, EventAggregate> aggregates) {
+        List<Object[]> args = new ArrayList<>(aggregates.size());
+        aggregates.forEach((key, aggregate) -> args.add(new Object[]{
+                key.getUserId(), key.getAction(), key.getIp(), Timestamp.valueOf(key.getWindowStart()),
+                aggregate.getCount(), Timestamp.valueOf(aggregate.getFirstTime()),
+                Timestamp.valueOf(aggregate.getLastTime())}));
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> jdbcTemplate.batchUpdate(UPSERT_SQL, args));
+    }
+
+    /**
+     * 查询用户在时间范围内的聚合记录，action为空时不限操作类型，按窗口倒序
+     */
+    public List<LogAggregateView> find(Long userId, String action, LocalDateTime start, LocalDateTime end) {
+        StringBuilder sql = new StringBuilder("SELECT user_id, action, ip, window_start, event_count, first_time, last_time "
+                + "FROM operation_log_aggregates WHERE user_id = ? AND window_start BETWEEN ? AND ?");
+        List<Object> args = new ArrayList<>();
+        args.add(userId);
+        args.add(Timestamp.valueOf(start));
+        args.add(Timestamp.valueOf(end));
+        if (action != null) {
+            sql.append(" AND action = ?");
+            args.add(action);
+        }
+        sql.append(" ORDER BY window_start DESC, action, ip");
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            String ip = rs.getString("ip");
+            return new LogAggregateView(rs.getLong("user_id"), rs.getString("action"),
+                    AggregateKey.NO_IP.equals(ip) ? null : ip,
+                    rs.getTimestamp("window_start").toLocalDateTime(), rs.getLong("event_count"),
+                    rs.getTimestamp("first_time").toLocalDateTime(), rs.getTimestamp("last_time").toLocalDateTime());
+        }, args.toArray());
+    }
+}
@@ -0,0 +1,182 @@
+package com.logging.repository;
+
+import com.logging.stats.UserActionKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * 用户操作计数表访问
+ * user_operation_counters与operation_logs同样按user_id分库，同一用户的行在同一分库，
+ * ShardingSphere本地事务虽不跨分库原子，对单个用户的计数与上界仍是原子的
+ */
+@Repository
+public class OperationCounterDao {
+
+    private static final String UPSERT_ADD_SQL =
+            "INSERT INTO user_operation_counters (user_id, action, op_count, gmt_modified) VALUES (?, ?, ?, NOW()) " +
+            "ON DUPLICATE KEY UPDATE op_count = op_count + VALUES(op_count), gmt_modified = NOW()";
+
+    private static final String UPSERT_SET_SQL =
+            "INSERT INTO user_operation_counters (user_id, action, op_count, gmt_modified) VALUES (?, ?, ?, NOW()) " +
+            "ON DUPLICATE KEY UPDATE op_count = VALUES(op_count), gmt_modified = NOW()";
+
+    private static final String UPSERT_WATERMARK_SQL =
+            "INSERT INTO user_operation_counters (user_id, action, op_count, max_log_id, gmt_modified) VALUES (?, ?, 0, ?, NOW()) " +
+            "ON DUPLICATE KEY UPDATE max_log_id = GREATEST(COALESCE(max_log_id, 0), VALUES(max_log_id)), gmt_modified = NOW()";
+
+    private static final String[] USER_SOURCE_TABLES =
+            {"operation_logs", "operation_log_aggregates", "archived_operation_counts"};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ActionDictionary actionDictionary;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * 在同一事务中累加计数并推进用户已计入的最大日志ID，上界只增不减；
+     * 按用户、操作类型排序加锁，总数行先于各操作类型行，与重建的加锁顺序一致
+     */
+    public void addAll(Map<UserActionKey, Long> deltas, Map<Long, Long> watermarks) {
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> args.add(new Object[]{key.getUserId(), key.getAction(), delta}));
+        args.sort(Comparator.comparing((Object[] row) -> (Long) row[0]).thenComparing(row -> (String) row[1]));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (!args.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_ADD_SQL, args);
+            }
+            addWatermarks(watermarks);
+        });
+    }
+
+    private void addWatermarks(Map<Long, Long> watermarks) {
+        if (watermarks.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(watermarks.size());
+        watermarks.forEach((userId, logId) -> args.add(new Object[]{userId, UserActionKey.ALL_ACTIONS, logId}));
+        jdbcTemplate.batchUpdate(UPSERT_WATERMARK_SQL, args);
+    }
+
+    /**
+     * 在一个事务中锁定用户的总数行，按其上界统计并覆盖计数；
+     * 其他实例同时刷入该用户的增量等待提交后再累加，不会被覆盖。
+     * counter以上界为参数返回各操作类型的次数，上界在没有记录时为0，记录早于该字段时为null
+     */
+    public void rebuildUser(Long userId, Function<Long, Map<String, Long>> counter) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Long> watermarks = jdbcTemplate.queryForList(
+                    "SELECT max_log_id FROM user_operation_counters WHERE user_id = ? AND action = ? FOR UPDATE",
+                    Long.class, userId, UserActionKey.ALL_ACTIONS);
+            Long watermark = watermarks.isEmpty() ? Long.valueOf(0L) : watermarks.get(0);
+            replaceUser(userId, counter.apply(watermark));
+            if (watermark != null) {
+                // 新建的*行也带上上界，后续重建不会统计尚未送达的日志
+                addWatermarks(Collections.singletonMap(userId, watermark));
+            }
+        });
+    }
+
+    /**
+     * 查询单个计数，不存在时返回0
+     */
+    public long find(UserActionKey key) {
+        List<Long> counts = jdbcTemplate.queryForList(
+                "SELECT op_count FROM user_operation_counters WHERE user_id = ? AND action = ?",
+                Long.class, key.getUserId(), key.getAction());
+        return counts.isEmpty() ? 0L : counts.get(0);
+    }
+
+    /**
+     * 以给定值覆盖用户的全部计数，并清除已不存在的操作类型
+     */
+    private void replaceUser(Long userId, Map<String, Long> counts) {
+        List<Object[]> args = new ArrayList<>(counts.size());
+        counts.forEach((action, count) -> args.add(new Object[]{userId, action, count}));
+        jdbcTemplate.batchUpdate(UPSERT_SET_SQL, args);
+
+        List<String> actions = jdbcTemplate.queryForList(
+                "SELECT action FROM user_operation_counters WHERE user_id = ?", String.class, userId);
+        for (String action : actions) {
+            if (!counts.containsKey(action)) {
+                jdbcTemplate.update("DELETE FROM user_operation_counters WHERE user_id = ? AND action = ?",
+                        userId, action);
+            }
+        }
+    }
+
+    /**
+     * 从operation_logs重新统计用户各操作类型的次数
+     * maxLogId不为null时只统计log_id不超过该值的日志
+     */
+    public List<Map<String, Object>> countLogsByAction(Long userId, Long maxLogId) {
+        String sql = "SELECT action_code, COUNT(*) AS op_count FROM operation_logs WHERE user_id = ?";
+        Object[] args = {userId};
+        if (maxLogId != null) {
+            sql += " AND log_id <= ?";
+            args = new Object[]{userId, maxLogId};
+        }
+        // operation_logs按编码分组，结果翻译回名称后与其他来源的统计结构一致
+        return jdbcTemplate.query(sql + " GROUP BY action_code",
+                (rs, rowNum) -> {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("action", actionDictionary.actionOf(rs.getInt("action_code")));
+                    row.put("op_count", rs.getLong("op_count"));
+                    return row;
+                }, args);
+    }
+
+    /**
+     * 已归档分区中用户各操作类型的次数，分区删除后计数重建以此补足
+     */
+    public List<Map<String, Object>> countArchivedByAction(Long userId) {
+        return jdbcTemplate.queryForList(
+                "SELECT action, SUM(op_count) AS op_count FROM archived_operation_counts WHERE user_id = ? GROUP BY action",
+                userId);
+    }
+
+    /**
+     * 按入库策略只聚合未写明细的日志中用户各操作类型的次数
+     */
+    public List<Map<String, Object>> countAggregatedByAction(Long userId) {
+        return jdbcTemplate.queryForList(
+                "SELECT action, SUM(event_count) AS op_count FROM operation_log_aggregates WHERE user_id = ? GROUP BY action",
+                userId);
+    }
+
+    /**
+     * 按user_id升序分批列出有日志的用户
+     * 明细、聚合与已归档计数中任一处有记录即列出；分片表上不支持UNION，各表分别取前limit个后合并
+     */
+    public List<Long> findUserIdsAfter(long afterUserId, int limit) {
+        TreeSet<Long> userIds = new TreeSet<>();
+        for (String table : USER_SOURCE_TABLES) {
+            userIds.addAll(jdbcTemplate.queryForList(
+                    "SELECT user_id FROM " + table + " WHERE user_id > ? GROUP BY user_id ORDER BY user_id LIMIT ?",
+                    Long.class, afterUserId, limit));
+        }
+        List<Long> result = new ArrayList<>(limit);
+        for (Long userId : userIds) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(userId);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+package com.logging.repository;
+
+import com.logging.config.LogQueryDataSource;
+import com.logging.export.LogExportWriter;
+import com.logging.util.IpAddresses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * 操作日志流式导出
+ * fetchSize为Integer.MIN_VALUE时MySQL驱动以只进游标逐行返回，各分库按(gmt_create, log_id)有序输出，
+ * ShardingSphere做流式归并；每行直接从结果集写出，不构造实体，内存占用与导出行数无关
+ */
+@Repository
+public class OperationLogExportDao {
+
+    private static final String EXPORT_SQL = "SELECT log_id, user_id, action_code, ip, detail, gmt_create "
+            + "FROM operation_logs WHERE gmt_create >= ? AND gmt_create <= ? ORDER BY gmt_create, log_id";
+
+    private final JdbcTemplate streamingTemplate;
+
+    @Autowired
+    private ActionDictionary actionDictionary;
+
+    @Autowired
+    public OperationLogExportDao(LogQueryDataSource queryDataSource) {
+        // 导出走查询连接池，同时进行的导出数需小于operation-log.query.pool-size；流式读取耗时长，不设语句超时
+        this.streamingTemplate = new JdbcTemplate(queryDataSource.getDataSource());
+        this.streamingTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    /**
+     * 把时间范围内的日志逐行写出，返回写出的行数
+     */
+    public long export(LocalDateTime startTime, LocalDateTime endTime, LogExportWriter writer) throws IOException {
+        long[] rows = new long[1];
+        try {
+            streamingTemplate.query(EXPORT_SQL, (RowCallbackHandler) rs -> {
+                try {
+                    writer.write(rs.getLong(1), rs.getLong(2), actionDictionary.actionOf(rs.getInt(3)),
+                            IpAddresses.format(rs.getBytes(4)), rs.getString(5), rs.getTimestamp(6).toLocalDateTime());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            }, Timestamp.valueOf(startTime), Timestamp.valueOf(endTime));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+}
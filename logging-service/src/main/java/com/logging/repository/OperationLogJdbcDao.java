@@ -0,0 +1,80 @@
+package com.logging.repository;
+
+import com.logging.entity.OperationLog;
+import com.logging.util.IpAddresses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 操作日志批量写入
+ * 绕过JPA逐条persist，以JDBC批量INSERT写入；log_id由应用预先分配，
+ * ShardingSphere按user_id把同一批次拆分路由到各分库，配合rewriteBatchedStatements合并为多值INSERT；
+ * 整批在一个本地事务中写入，执行阶段任一分库失败(如重复投递触发uk_event)时各分库一起回滚；
+ * 本地事务按分库依次提交，提交阶段某个分库失败时其他分库可能已提交，这种情况由逐条重试按重复投递处理；
+ * action按字典写入编码，ip写入二进制地址，不是IP字面量的值存为NULL；
+ * 语句超时抛出的QueryTimeoutException属于瞬时异常，会被自适应并发限制视为过载而收缩入库并发
+ */
+@Repository
+public class OperationLogJdbcDao {
+
+    /**
+     * operation_logs的全部列，按此列出的查询结果可交给{@link #mapRow}翻译为实体
+     */
+    public static final String COLUMNS = "log_id, user_id, action_code, ip, detail, gmt_create, event_id";
+
+    private static final String INSERT_SQL = "INSERT INTO operation_logs (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ActionDictionary actionDictionary;
+
+    @Autowired
+    public OperationLogJdbcDao(DataSource dataSource, PlatformTransactionManager transactionManager,
+                               @Value("${operation-log.ingest.statement-timeout-seconds:10}") int statementTimeoutSeconds) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setQueryTimeout(statementTimeoutSeconds);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 批量插入日志，调用方需预先设置logId和gmtCreate
+     * 操作类型在事务外登记，回滚不会撤销已缓存的字典编码
+     */
+    public void batchInsert(List<OperationLog> logs) {
+        List<Object[]> args = new ArrayList<>(logs.size());
+        for (OperationLog operationLog : logs) {
+            args.add(new Object[]{
+                    operationLog.getLogId(),
+                    operationLog.getUserId(),
+                    actionDictionary.codeOf(operationLog.getAction()),
+                    IpAddresses.toBytes(operationLog.getIp()),
+                    operationLog.getDetail(),
+                    Timestamp.valueOf(operationLog.getGmtCreate()),
+                    operationLog.getEventId()});
+        }
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, args));
+    }
+
+    /**
+     * 把按{@link #COLUMNS}查询的当前行翻译为实体，供直接读取分库的归档、回填等任务使用
+     */
+    public OperationLog mapRow(ResultSet rs) throws SQLException {
+        return new OperationLog(rs.getLong("log_id"), rs.getLong("user_id"),
+                actionDictionary.actionOf(rs.getInt("action_code")), IpAddresses.format(rs.getBytes("ip")),
+                rs.getString("detail"), rs.getTimestamp("gmt_create").toLocalDateTime(), rs.getString("event_id"));
+    }
+}
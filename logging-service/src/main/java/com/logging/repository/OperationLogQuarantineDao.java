@@ -0,0 +1,39 @@
+package com.logging.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 隔离消息表访问
+ * 隔离表不含分片键，仅建在ds0上，由ShardingSphere作为单表路由
+ */
+@Repository
+public class OperationLogQuarantineDao {
+
+    /**
+     * 消息无法解析或内容不合法
+     */
+    public static final String REASON_INVALID = "INVALID_MESSAGE";
+
+    /**
+     * 存储层拒绝写入（数据超长、约束冲突等）
+     */
+    public static final String REASON_REJECTED = "REJECTED_BY_STORAGE";
+
+    private static final int MAX_ERROR_LENGTH = 512;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 保存无法入库的原始消息
+     */
+    public void save(String reason, String error, String payload) {
+        if (error != null && error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        jdbcTemplate.update("INSERT INTO operation_log_quarantine (reason, error, payload) VALUES (?, ?, ?)",
+                reason, error, payload);
+    }
+}
@@ -0,0 +1,204 @@
+package com.logging.repository;
+
+import com.logging.config.LogQueryDataSource;
+import com.logging.dto.LogCursor;
+import com.logging.dto.LogQuery;
+import com.logging.dto.OperationLogView;
+import com.logging.entity.OperationLog;
+import com.logging.util.IpAddresses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 操作日志查询
+ * 全部查询走{@link LogQueryDataSource}的查询连接池，不占用入库连接；
+ * 组合查询以(gmt_create, log_id)做键集分页，每次只读取一页数据，
+ * 依赖idx_user_time、idx_action_time、idx_ip_time等组合索引；
+ * action按字典编码、ip按二进制地址比较，结果在此翻译回文本；
+ * 启用归档时调用方传入在线表下界from，已切换到归档层但尚未从在线表删除的分区不在此返回
+ */
+@Repository
+public class OperationLogQueryDao {
+
+    private static final String SELECT_COLUMNS =
+            "SELECT log_id, user_id, action_code, ip, detail, gmt_create FROM operation_logs WHERE 1 = 1";
+
+    private static final String SELECT_LOGS = "SELECT " + OperationLogJdbcDao.COLUMNS + " FROM operation_logs ";
+
+    private static final String NEWEST_FIRST = " ORDER BY gmt_create DESC, log_id DESC";
+
+    @Autowired
+    private LogQueryDataSource queryDataSource;
+
+    @Autowired
+    private ActionDictionary actionDictionary;
+
+    @Autowired
+    private OperationLogJdbcDao operationLogJdbcDao;
+
+    private final RowMapper<OperationLog> logMapper = (rs, rowNum) -> operationLogJdbcDao.mapRow(rs);
+
+    private final RowMapper<OperationLogView> viewMapper = (rs, rowNum) -> new OperationLogView(
+            rs.getLong("log_id"),
+            rs.getLong("user_id"),
+            actionDictionary.actionOf(rs.getInt("action_code")),
+            IpAddresses.format(rs.getBytes("ip")),
+            rs.getString("detail"),
+            rs.getTimestamp("gmt_create").toLocalDateTime());
+
+    /**
+     * 查询游标之后的limit条日志
+     */
+    public List<OperationLogView> findPage(LogQuery query, LogCursor cursor, int limit) {
+        return findPage(query, cursor, limit, null);
+    }
+
+    /**
+     * 查询游标之后、不早于from的limit条日志，from为null时不限
+     */
+    public List<OperationLogView> findPage(LogQuery query, LogCursor cursor, int limit, LocalDateTime from) {
+        StringBuilder sql = new StringBuilder(SELECT_COLUMNS);
+        MapSqlParameterSource params = new MapSqlParameterSource();
+
+        if (query.getUserId() != null) {
+            sql.append(" AND user_id = :userId");
+            params.addValue("userId", query.getUserId());
+        }
+        if (query.getAction() != null) {
+            Integer actionCode = actionDictionary.codeIfPresent(query.getAction());
+            if (actionCode == null) {
+                return Collections.emptyList();
+            }
+            sql.append(" AND action_code = :actionCode");
+            params.addValue("actionCode", actionCode);
+        }
+        if (query.getIp() != null) {
+            byte[] ip = IpAddresses.toBytes(query.getIp());
+            if (ip == null) {
+                throw new IllegalArgumentException("IP地址格式不正确: " + query.getIp());
+            }
+            sql.append(" AND ip = :ip");
+            params.addValue("ip", ip);
+        }
+        if (query.getCidr() != null) {
+            // 同一地址族内字节序即地址序，网段换算为首末地址走idx_ip_time范围扫描；
+            // 长度条件排除前缀恰好落在范围内的另一地址族地址
+            byte[][] range = IpAddresses.cidrRange(query.getCidr());
+            sql.append(" AND ip BETWEEN :ipFrom AND :ipTo AND LENGTH(ip) = :ipLength");
+            params.addValue("ipFrom", range[0]);
+            params.addValue("ipTo", range[1]);
+            params.addValue("ipLength", range[0].length);
+        }
+        if (query.getStartTime() != null) {
+            sql.append(" AND gmt_create >= :startTime");
+            params.addValue("startTime", query.getStartTime());
+        }
+        if (query.getEndTime() != null) {
+            sql.append(" AND gmt_create <= :endTime");
+            params.addValue("endTime", query.getEndTime());
+        }
+        if (from != null) {
+            sql.append(" AND gmt_create >= :hotFrom");
+            params.addValue("hotFrom", from);
+        }
+        if (cursor != null) {
+            // 先以gmt_create <= 游标时间形成索引范围扫描，再排除同一时刻已返回的记录
+            sql.append(" AND gmt_create <= :cursorTime AND (gmt_create < :cursorTime OR log_id < :cursorId)");
+            params.addValue("cursorTime", cursor.getGmtCreate());
+            params.addValue("cursorId", cursor.getLogId());
+        }
+        sql.append(" ORDER BY gmt_create DESC, log_id DESC LIMIT :limit");
+        params.addValue("limit", limit);
+
+        return queryDataSource.getNamedParameterJdbcTemplate().query(sql.toString(), params, viewMapper);
+    }
+
+    /**
+     * 用户的全部日志，新的在前；携带分片键，只路由到单个分库
+     */
+    public List<OperationLog> findByUserId(Long userId) {
+        return queryDataSource.getJdbcTemplate().query(SELECT_LOGS + "WHERE user_id = ?" + NEWEST_FIRST,
+                logMapper, userId);
+    }
+
+    /**
+     * 用户不早于from的日志，新的在前
+     */
+    public List<OperationLog> findByUserId(Long userId, LocalDateTime from) {
+        if (from == null) {
+            return findByUserId(userId);
+        }
+        return queryDataSource.getJdbcTemplate().query(
+                SELECT_LOGS + "WHERE user_id = ? AND gmt_create >= ?" + NEWEST_FIRST,
+                logMapper, userId, Timestamp.valueOf(from));
+    }
+
+    /**
+     * 操作类型的全部日志，新的在前；未登记的操作类型没有日志
+     */
+    public List<OperationLog> findByAction(String action) {
+        Integer actionCode = actionDictionary.codeIfPresent(action);
+        if (actionCode == null) {
+            return Collections.emptyList();
+        }
+        return queryDataSource.getJdbcTemplate().query(SELECT_LOGS + "WHERE action_code = ?" + NEWEST_FIRST,
+                logMapper, actionCode);
+    }
+
+    /**
+     * 操作类型不早于from的日志，新的在前
+     */
+    public List<OperationLog> findByAction(String action, LocalDateTime from) {
+        if (from == null) {
+            return findByAction(action);
+        }
+        Integer actionCode = actionDictionary.codeIfPresent(action);
+        if (actionCode == null) {
+            return Collections.emptyList();
+        }
+        return queryDataSource.getJdbcTemplate().query(
+                SELECT_LOGS + "WHERE action_code = ? AND gmt_create >= ?" + NEWEST_FIRST,
+                logMapper, actionCode, Timestamp.valueOf(from));
+    }
+
+    /**
+     * 时间范围内的日志按页读取，新的在前
+     */
+    public Page<OperationLog> findByTimeRange(LocalDateTime startTime, LocalDateTime endTime, Pageable pageable) {
+        JdbcTemplate jdbcTemplate = queryDataSource.getJdbcTemplate();
+        Timestamp start = Timestamp.valueOf(startTime);
+        Timestamp end = Timestamp.valueOf(endTime);
+        Long total = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM operation_logs WHERE gmt_create BETWEEN ? AND ?", Long.class, start, end);
+        if (total == null || total <= pageable.getOffset()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, total == null ? 0L : total);
+        }
+        List<OperationLog> content = jdbcTemplate.query(
+                SELECT_LOGS + "WHERE gmt_create BETWEEN ? AND ?" + NEWEST_FIRST + " LIMIT ? OFFSET ?",
+                logMapper, start, end, pageable.getPageSize(), pageable.getOffset());
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * 按主键批量读取，不保证顺序，已删除的日志不返回
+     */
+    public List<OperationLog> findByIds(Collection<Long> logIds) {
+        if (logIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return queryDataSource.getNamedParameterJdbcTemplate().query(SELECT_LOGS + "WHERE log_id IN (:logIds)",
+                new MapSqlParameterSource("logIds", logIds), logMapper);
+    }
+}
@@ -19,16 +19,19 @@ public interface OperationLogRepository extends JpaRepository<OperationLog, Long
 
     /**
      * 根据用户ID查询操作日志
+     * 携带分片键user_id，只路由到单个分库
      */
     List<OperationLog> findByUserIdOrderByGmtCreateDesc(Long userId);
 
     /**
      * 根据操作类型查询日志
+     * 不含分片键，各分库并行查询后按gmt_create归并
      */
     List<OperationLog> findByActionOrderByGmtCreateDesc(String action);
 
     /**
      * 查询指定时间范围的日志
+     * 条件直接作用于分区列gmt_create，MySQL只扫描命中的分区；各分库并行查询后归并
      */
     @Query("SELECT ol FROM OperationLog ol WHERE ol.gmtCreate BETWEEN :startTime AND :endTime ORDER BY ol.gmtCreate DESC")
     Page<OperationLog> findByTimeRange(@Param("startTime") LocalDateTime startTime, 
@@ -37,6 +40,7 @@ public interface OperationLogRepository extends JpaRepository<OperationLog, Long
 
     /**
      * 统计用户操作次数
+     * 携带分片键user_id，只路由到单个分库
      */
     Long countByUserId(Long userId);
 }
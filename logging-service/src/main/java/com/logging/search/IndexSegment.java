@@ -0,0 +1,192 @@
+package com.logging.search;
+
+import com.logging.util.VarInts;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 磁盘上的不可变索引段
+ * 文件格式：头部(魔数、版本、文档数、时间范围) → 文档表(logId差值、时间ZigZag差值) →
+ * 词典(词项、倒排长度、倒排字节数、logId差值序列)；文件以只读方式映射，倒排列表按需解码
+ */
+public class IndexSegment implements SearchableSegment {
+
+    private static final int MAGIC = 0x4C534547;
+
+    private static final int VERSION = 1;
+
+    private final File file;
+
+    private final MappedByteBuffer buffer;
+
+    private final long[] docIds;
+
+    private final long[] docTimes;
+
+    private final long minTime;
+
+    private final long maxTime;
+
+    /**
+     * 词项 -> 倒排列表在文件中的位置
+     */
+    private final Map<String, Integer> termOffsets;
+
+    private IndexSegment(File file) throws IOException {
+        this.file = file;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer in = buffer.duplicate();
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IOException("索引段文件格式错误: " + file);
+        }
+        int docCount = in.getInt();
+        this.minTime = in.getLong();
+        this.maxTime = in.getLong();
+        this.docIds = new long[docCount];
+        this.docTimes = new long[docCount];
+        long prevId = 0;
+        long prevTime = 0;
+        for (int i = 0; i < docCount; i++) {
+            prevId += VarInts.readVarLong(in);
+            prevTime += VarInts.unZigZag(VarInts.readVarLong(in));
+            docIds[i] = prevId;
+            docTimes[i] = prevTime;
+        }
+        int termCount = in.getInt();
+        this.termOffsets = new HashMap<>(termCount * 2);
+        for (int i = 0; i < termCount; i++) {
+            byte[] termBytes = new byte[VarInts.readVarInt(in)];
+            in.get(termBytes);
+            int offset = in.position();
+            VarInts.readVarInt(in);
+            int byteLength = VarInts.readVarInt(in);
+            termOffsets.put(new String(termBytes, StandardCharsets.UTF_8), offset);
+            in.position(in.position() + byteLength);
+        }
+    }
+
+    /**
+     * 打开已有的段文件
+     */
+    public static IndexSegment open(File file) throws IOException {
+        return new IndexSegment(file);
+    }
+
+    /**
+     * 写出段文件并打开，先写临时文件再原子改名，避免崩溃时留下半个文件
+     */
+    public static IndexSegment write(File file, SegmentData data) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        long[] ids = data.getDocIds();
+        long[] times = data.getDocTimes();
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ids.length);
+            out.writeLong(ids.length == 0 ? 0 : Arrays.stream(times).min().getAsLong());
+            out.writeLong(ids.length == 0 ? 0 : Arrays.stream(times).max().getAsLong());
+            long prevId = 0;
+            long prevTime = 0;
+            for (int i = 0; i < ids.length; i++) {
+                VarInts.writeVarLong(out, ids[i] - prevId);
+                VarInts.writeVarLong(out, VarInts.zigZag(times[i] - prevTime));
+                prevId = ids[i];
+                prevTime = times[i];
+            }
+            out.writeInt(data.getPostings().size());
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            for (Map.Entry<String, long[]> entry : data.getPostings().entrySet()) {
+                byte[] termBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                VarInts.writeVarInt(out, termBytes.length);
+                out.write(termBytes);
+
+                encoded.reset();
+                long prev = 0;
+                for (long logId : entry.getValue()) {
+                    VarInts.writeVarLong(encoded, logId - prev);
+                    prev = logId;
+                }
+                VarInts.writeVarInt(out, entry.getValue().length);
+                VarInts.writeVarInt(out, encoded.size());
+                encoded.writeTo(out);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return open(file);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getDocCount() {
+        return docIds.length;
+    }
+
+    public long[] getDocIds() {
+        return docIds;
+    }
+
+    public long[] getDocTimes() {
+        return docTimes;
+    }
+
+    public Set<String> terms() {
+        return termOffsets.keySet();
+    }
+
+    @Override
+    public long getMinTime() {
+        return minTime;
+    }
+
+    @Override
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    @Override
+    public long[] postings(String term) {
+        Integer offset = termOffsets.get(term);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset);
+        long[] list = new long[VarInts.readVarInt(in)];
+        VarInts.readVarInt(in);
+        long prev = 0;
+        for (int i = 0; i < list.length; i++) {
+            prev += VarInts.readVarLong(in);
+            list[i] = prev;
+        }
+        return list;
+    }
+
+    @Override
+    public long timeOf(long logId) {
+        int index = Arrays.binarySearch(docIds, logId);
+        return index < 0 ? -1L : docTimes[index];
+    }
+}
@@ -0,0 +1,437 @@
+package com.logging.search;
+
+import com.logging.backfill.BackfillEngine;
+import com.logging.backfill.BackfillTarget;
+import com.logging.entity.OperationLog;
+import com.logging.ingest.IngestSinkDispatcher;
+import com.logging.ingest.LogIdGenerator;
+import com.logging.ingest.LogIngestListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 日志详情倒排索引
+ * 入库后增量写入内存活跃段，达到阈值或定时冻结为压缩的磁盘段，后台按大小合并小段；
+ * 检索时对各段的倒排列表求交并按时间过滤。
+ * 段落盘失败或重启丢失的内存数据，经输出端分发器标记待重建，由回填任务({@link BackfillEngine})从operation_logs重建。
+ * 索引只在本实例本地，实时部分只含本实例消费的日志，多实例部署时检索只返回本实例索引到的匹配(约1/N)，
+ * 重启后的回填会补齐该时间窗口内所有实例写入的日志
+ */
+@Component
+@Slf4j
+public class LogSearchIndex implements LogIngestListener, BackfillTarget {
+
+    public static final String BACKFILL_NAME = "search";
+
+    private static final String SEGMENT_PREFIX = "seg-";
+
+    private static final String SEGMENT_SUFFIX = ".idx";
+
+    /**
+     * 启动回填窗口在最后一次段落盘之前再多覆盖的时长，容纳落盘检查的间隔与落盘耗时
+     */
+    private static final long RESTART_MARGIN_MS = 60_000;
+
+    private final List<IndexSegment> segments = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile MemorySegment active = new MemorySegment();
+
+    /**
+     * 正在落盘的段，落盘完成前仍参与检索
+     */
+    private volatile MemorySegment flushing;
+
+    private volatile long activeSince = System.currentTimeMillis();
+
+    private final Object mergeLock = new Object();
+
+    /**
+     * 延迟获取，分发器在初始化时注入全部输出端，直接注入会形成循环依赖
+     */
+    @Autowired
+    private ObjectProvider<IngestSinkDispatcher> sinkDispatcher;
+
+    @Value("${operation-log.search.dir:./data/search}")
+    private String indexDir;
+
+    @Value("${operation-log.search.flush-docs:50000}")
+    private int flushDocs;
+
+    @Value("${operation-log.search.flush-interval-ms:60000}")
+    private long flushIntervalMs;
+
+    @Value("${operation-log.search.merge-factor:8}")
+    private int mergeFactor;
+
+    @Value("${operation-log.search.max-merge-docs:5000000}")
+    private int maxMergeDocs;
+
+    @Value("${operation-log.partition.retention-days:180}")
+    private int retentionDays;
+
+    @PostConstruct
+    public void init() throws IOException {
+        File dir = new File(indexDir);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建索引目录: " + dir.getAbsolutePath());
+        }
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(LogSearchIndex::generationOf));
+            for (File file : files) {
+                segments.add(IndexSegment.open(file));
+                generation.set(Math.max(generation.get(), generationOf(file)));
+            }
+        }
+        log.info("日志检索索引加载完成: dir={}, segments={}", dir.getAbsolutePath(), segments.size());
+    }
+
+    /**
+     * 启动后重建上次停机前可能未落盘的部分：从最近写入的段文件往前一个落盘间隔起到当前时刻；
+     * 本地没有任何段时(新实例或索引目录被清空)重建全部日志
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildUnflushed() {
+        long lastModified = 0;
+        for (IndexSegment segment : segments) {
+            lastModified = Math.max(lastModified, segment.getFile().lastModified());
+        }
+        long fromLogId = lastModified == 0 ? 0 : LogIdGenerator.firstIdAt(lastModified - flushIntervalMs - RESTART_MARGIN_MS);
+        long toLogId = LogIdGenerator.firstIdAt(System.currentTimeMillis());
+        log.info("日志检索索引提交启动重建: fromLogId={}, toLogId={}", fromLogId, toLogId);
+        requestRebuild(fromLogId, toLogId);
+    }
+
+    @Override
+    public String getSinkName() {
+        return "search";
+    }
+
+    @Override
+    public void onLogsPersisted(List<OperationLog> logs) {
+        index(logs, false);
+    }
+
+    @Override
+    public String getBackfillName() {
+        return BACKFILL_NAME;
+    }
+
+    /**
+     * 索引在各实例本地，回填只重建发起实例自己的索引
+     */
+    @Override
+    public boolean isPerInstance() {
+        return true;
+    }
+
+    /**
+     * 回填时跳过已在任一段中的日志，避免与实时写入或已落盘的段重复
+     */
+    @Override
+    public void backfill(List<OperationLog> logs) {
+        index(logs, true);
+    }
+
+    @Override
+    public void onBackfillCompleted() {
+        flush();
+    }
+
+    private void index(List<OperationLog> logs, boolean skipIndexed) {
+        for (OperationLog operationLog : logs) {
+            if (operationLog.getLogId() == null || operationLog.getDetail() == null) {
+                continue;
+            }
+            if (skipIndexed && isIndexed(operationLog.getLogId(), toEpochMilli(operationLog.getGmtCreate()))) {
+                continue;
+            }
+            Set<String> terms = LogTokenizer.tokenizeForIndex(operationLog.getDetail());
+            if (terms.isEmpty()) {
+                continue;
+            }
+            long time = toEpochMilli(operationLog.getGmtCreate());
+            // 与落盘并发时旧活跃段已冻结，改写新的活跃段
+            while (!active.add(operationLog.getLogId(), time, terms)) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * 日志是否已在某个段中
+     */
+    private boolean isIndexed(long logId, long time) {
+        List<SearchableSegment> candidates = new ArrayList<>(segments);
+        MemorySegment pending = flushing;
+        if (pending != null) {
+            candidates.add(pending);
+        }
+        candidates.add(active);
+        for (SearchableSegment segment : candidates) {
+            if (time >= segment.getMinTime() && time <= segment.getMaxTime() && segment.timeOf(logId) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 检索同时包含查询中全部词项的日志ID，按logId倒序返回
+     */
+    public List<Long> search(String query, LocalDateTime startTime, LocalDateTime endTime, int limit) {
+        return new ArrayList<>(searchWithTimes(query, startTime, endTime, limit).keySet());
+    }
+
+    /**
+     * 同{@link #search}，同时返回索引记录的各日志创建时间，供回表时定位已归档的日志
+     */
+    public Map<Long, LocalDateTime> searchWithTimes(String query, LocalDateTime startTime, LocalDateTime endTime,
+                                                    int limit) {
+        Set<String> terms = LogTokenizer.tokenizeForQuery(query);
+        if (terms.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        long from = startTime == null ? Long.MIN_VALUE : toEpochMilli(startTime);
+        long to = endTime == null ? Long.MAX_VALUE : toEpochMilli(endTime);
+
+        List<SearchableSegment> candidates = new ArrayList<>(segments);
+        MemorySegment pending = flushing;
+        if (pending != null) {
+            candidates.add(pending);
+        }
+        candidates.add(active);
+
+        // 回填与段落盘交错时同一日志可能出现在两个段中
+        TreeMap<Long, Long> hits = new TreeMap<>();
+        for (SearchableSegment segment : candidates) {
+            if (segment.getMaxTime() < from || segment.getMinTime() > to) {
+                continue;
+            }
+            long[] matched = intersect(segment, terms);
+            for (long logId : matched) {
+                long time = segment.timeOf(logId);
+                if (time >= from && time <= to) {
+                    hits.put(logId, time);
+                }
+            }
+        }
+        Map<Long, LocalDateTime> newest = new LinkedHashMap<>();
+        for (Map.Entry<Long, Long> hit : hits.descendingMap().entrySet()) {
+            if (newest.size() >= limit) {
+                break;
+            }
+            newest.put(hit.getKey(), LocalDateTime.ofInstant(Instant.ofEpochMilli(hit.getValue()), ZoneId.systemDefault()));
+        }
+        return newest;
+    }
+
+    /**
+     * 活跃段达到文档数阈值或存在时间超过落盘间隔时落盘，落盘不占用入库线程
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void flushIfNeeded() {
+        int docs = active.getDocCount();
+        if (docs >= flushDocs || (docs > 0 && System.currentTimeMillis() - activeSince >= flushIntervalMs)) {
+            flush();
+        }
+    }
+
+    /**
+     * 将活跃段冻结并写成磁盘段
+     */
+    public synchronized void flush() {
+        if (active.getDocCount() == 0) {
+            return;
+        }
+        MemorySegment frozen = active;
+        flushing = frozen;
+        active = new MemorySegment();
+        activeSince = System.currentTimeMillis();
+        frozen.freeze();
+        SegmentData data = frozen.toSegmentData();
+        try {
+            IndexSegment segment = IndexSegment.write(nextSegmentFile(), data);
+            segments.add(segment);
+            log.debug("日志检索索引段落盘完成: file={}, docs={}", segment.getFile().getName(), segment.getDocCount());
+        } catch (IOException e) {
+            log.error("日志检索索引段落盘失败，标记待回填重建: docs={}, error={}",
+                     frozen.getDocCount(), e.getMessage(), e);
+            long[] ids = data.getDocIds();
+            requestRebuild(ids[0], ids[ids.length - 1]);
+        } finally {
+            flushing = null;
+        }
+    }
+
+    private void requestRebuild(long fromLogId, long toLogId) {
+        IngestSinkDispatcher dispatcher = sinkDispatcher.getIfAvailable();
+        if (dispatcher != null) {
+            dispatcher.requestRebuild(getSinkName(), fromLogId, toLogId);
+        }
+    }
+
+    /**
+     * 后台合并：删除超出保留期的段，并把最小的若干段合并为一个
+     */
+    @Scheduled(fixedDelayString = "${operation-log.search.merge-interval-ms:300000}")
+    public void merge() {
+        synchronized (mergeLock) {
+            doMerge();
+        }
+    }
+
+    private void doMerge() {
+        long cutoff = toEpochMilli(LocalDateTime.now().minusDays(retentionDays));
+        for (IndexSegment segment : segments) {
+            if (segment.getMaxTime() < cutoff) {
+                removeSegments(Collections.singletonList(segment));
+            }
+        }
+        if (segments.size() <= mergeFactor) {
+            return;
+        }
+        List<IndexSegment> smallest = new ArrayList<>(segments);
+        smallest.sort(Comparator.comparingInt(IndexSegment::getDocCount));
+        List<IndexSegment> toMerge = new ArrayList<>();
+        long docs = 0;
+        for (IndexSegment segment : smallest) {
+            if (toMerge.size() >= mergeFactor || docs + segment.getDocCount() > maxMergeDocs) {
+                break;
+            }
+            toMerge.add(segment);
+            docs += segment.getDocCount();
+        }
+        if (toMerge.size() < 2) {
+            return;
+        }
+        try {
+            IndexSegment merged = IndexSegment.write(nextSegmentFile(), mergeData(toMerge));
+            segments.add(merged);
+            removeSegments(toMerge);
+            log.info("日志检索索引段合并完成: merged={}, docs={}, segments={}", toMerge.size(), docs, segments.size());
+        } catch (IOException e) {
+            log.error("日志检索索引段合并失败: error={}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 按倒排列表由短到长依次求交
+     */
+    private long[] intersect(SearchableSegment segment, Set<String> terms) {
+        List<long[]> lists = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            long[] postings = segment.postings(term);
+            if (postings == null) {
+                return new long[0];
+            }
+            lists.add(postings);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.length));
+        long[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    static long[] intersect(long[] a, long[] b) {
+        long[] out = new long[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private SegmentData mergeData(List<IndexSegment> toMerge) {
+        Map<Long, Long> docs = new HashMap<>();
+        Map<String, List<long[]>> termLists = new HashMap<>();
+        for (IndexSegment segment : toMerge) {
+            long[] ids = segment.getDocIds();
+            long[] times = segment.getDocTimes();
+            for (int i = 0; i < ids.length; i++) {
+                docs.put(ids[i], times[i]);
+            }
+            for (String term : segment.terms()) {
+                termLists.computeIfAbsent(term, t -> new ArrayList<>()).add(segment.postings(term));
+            }
+        }
+        long[] ids = docs.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        long[] times = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            times[i] = docs.get(ids[i]);
+        }
+        TreeMap<String, long[]> postings = new TreeMap<>();
+        for (Map.Entry<String, List<long[]>> entry : termLists.entrySet()) {
+            postings.put(entry.getKey(), entry.getValue().stream()
+                    .flatMapToLong(Arrays::stream).sorted().distinct().toArray());
+        }
+        return new SegmentData(ids, times, postings);
+    }
+
+    private void removeSegments(List<IndexSegment> removed) {
+        segments.removeAll(removed);
+        for (IndexSegment segment : removed) {
+            if (!segment.getFile().delete()) {
+                log.warn("索引段文件删除失败: file={}", segment.getFile());
+            }
+        }
+    }
+
+    private File nextSegmentFile() {
+        return new File(indexDir, String.format("%s%012d%s", SEGMENT_PREFIX, generation.incrementAndGet(), SEGMENT_SUFFIX));
+    }
+
+    private static long generationOf(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,110 @@
+package com.logging.search;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 日志详情分词器
+ * 按空白、标点和"key=value"中的等号切分出完整词项（如邮箱、用户名），
+ * 索引时再把完整词项按@ . _ -拆出子词项，中文按相邻两字切分
+ */
+public final class LogTokenizer {
+
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private static final int MIN_SUB_TERM_LENGTH = 2;
+
+    private LogTokenizer() {
+    }
+
+    /**
+     * 索引时分词：完整词项 + 子词项 + 中文二元词
+     */
+    public static Set<String> tokenizeForIndex(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String chunk : chunks(text)) {
+            addTerm(terms, chunk);
+            if (chunk.indexOf('@') >= 0 || chunk.indexOf('.') >= 0 || chunk.indexOf('_') >= 0 || chunk.indexOf('-') >= 0) {
+                for (String part : chunk.split("[@._\\-]+")) {
+                    if (part.length() >= MIN_SUB_TERM_LENGTH) {
+                        addTerm(terms, part);
+                    }
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * 查询时分词：只取完整词项与中文二元词，避免高频子词项拖慢求交
+     */
+    public static Set<String> tokenizeForQuery(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String chunk : chunks(text)) {
+            addTerm(terms, chunk);
+        }
+        return terms;
+    }
+
+    /**
+     * 切分出非中文的连续片段，中文片段直接展开为二元词
+     */
+    private static Set<String> chunks(String text) {
+        Set<String> chunks = new LinkedHashSet<>();
+        if (text == null) {
+            return chunks;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        StringBuilder cjk = new StringBuilder();
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (isCjk(c)) {
+                flushWord(chunks, word);
+                cjk.append(c);
+            } else if (Character.isLetterOrDigit(c) || c == '@' || c == '.' || c == '_' || c == '-' || c == '+') {
+                flushCjk(chunks, cjk);
+                word.append(c);
+            } else {
+                flushWord(chunks, word);
+                flushCjk(chunks, cjk);
+            }
+        }
+        flushWord(chunks, word);
+        flushCjk(chunks, cjk);
+        return chunks;
+    }
+
+    private static void flushWord(Set<String> chunks, StringBuilder word) {
+        if (word.length() > 0) {
+            // 去掉首尾的标点，如句末的点号
+            String value = word.toString().replaceAll("^[@._\\-+]+|[@._\\-+]+$", "");
+            if (!value.isEmpty()) {
+                chunks.add(value);
+            }
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjk(Set<String> chunks, StringBuilder cjk) {
+        if (cjk.length() == 1) {
+            chunks.add(cjk.toString());
+        }
+        for (int i = 0; i + 1 < cjk.length(); i++) {
+            chunks.add(cjk.substring(i, i + 2));
+        }
+        cjk.setLength(0);
+    }
+
+    private static void addTerm(Set<String> terms, String term) {
+        terms.add(term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term);
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+                || block == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS;
+    }
+}
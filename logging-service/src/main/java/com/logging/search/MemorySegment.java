@@ -0,0 +1,124 @@
+package com.logging.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 内存中的活跃索引段
+ * 入库线程追加，检索线程读取，达到阈值后冻结并写成磁盘段
+ */
+public class MemorySegment implements SearchableSegment {
+
+    private final Map<Long, Long> docTimes = new HashMap<>();
+
+    private final Map<String, LongArray> postings = new HashMap<>();
+
+    private long minTime = Long.MAX_VALUE;
+
+    private long maxTime = Long.MIN_VALUE;
+
+    private boolean frozen;
+
+    /**
+     * 追加一条日志的词项，段已冻结时返回false，调用方应改写新的活跃段
+     */
+    public synchronized boolean add(long logId, long time, Set<String> terms) {
+        if (frozen) {
+            return false;
+        }
+        if (docTimes.putIfAbsent(logId, time) != null) {
+            return true;
+        }
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        for (String term : terms) {
+            postings.computeIfAbsent(term, t -> new LongArray()).add(logId);
+        }
+        return true;
+    }
+
+    /**
+     * 冻结后不再接受写入
+     */
+    public synchronized void freeze() {
+        frozen = true;
+    }
+
+    public synchronized int getDocCount() {
+        return docTimes.size();
+    }
+
+    @Override
+    public synchronized long getMinTime() {
+        return minTime;
+    }
+
+    @Override
+    public synchronized long getMaxTime() {
+        return maxTime;
+    }
+
+    @Override
+    public synchronized long[] postings(String term) {
+        LongArray list = postings.get(term);
+        if (list == null) {
+            return null;
+        }
+        long[] sorted = list.toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    @Override
+    public synchronized long timeOf(long logId) {
+        Long time = docTimes.get(logId);
+        return time == null ? -1L : time;
+    }
+
+    /**
+     * 生成排序后的段内容用于落盘
+     */
+    public synchronized SegmentData toSegmentData() {
+        long[] ids = new long[docTimes.size()];
+        int i = 0;
+        for (Long id : docTimes.keySet()) {
+            ids[i++] = id;
+        }
+        Arrays.sort(ids);
+        long[] times = new long[ids.length];
+        for (int j = 0; j < ids.length; j++) {
+            times[j] = docTimes.get(ids[j]);
+        }
+        TreeMap<String, long[]> sortedPostings = new TreeMap<>();
+        for (Map.Entry<String, LongArray> entry : postings.entrySet()) {
+            long[] list = entry.getValue().toArray();
+            Arrays.sort(list);
+            sortedPostings.put(entry.getKey(), list);
+        }
+        return new SegmentData(ids, times, sortedPostings);
+    }
+
+    /**
+     * 可增长的long数组，避免装箱
+     */
+    private static final class LongArray {
+
+        private long[] values = new long[4];
+
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.logging.search;
+
+/**
+ * 可检索的索引段
+ */
+public interface SearchableSegment {
+
+    /**
+     * 段内最早日志时间（epoch毫秒）
+     */
+    long getMinTime();
+
+    /**
+     * 段内最晚日志时间（epoch毫秒）
+     */
+    long getMaxTime();
+
+    /**
+     * 词项的倒排列表，按logId升序，不存在时返回null
+     */
+    long[] postings(String term);
+
+    /**
+     * 日志时间（epoch毫秒），不在段内时返回-1
+     */
+    long timeOf(long logId);
+}
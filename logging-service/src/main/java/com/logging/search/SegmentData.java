@@ -0,0 +1,38 @@
+package com.logging.search;
+
+import java.util.SortedMap;
+
+/**
+ * 待写入磁盘的索引段内容
+ * docIds升序，docTimes与之一一对应；postings按词项排序，倒排列表按logId升序
+ */
+public class SegmentData {
+
+    private final long[] docIds;
+
+    private final long[] docTimes;
+
+    private final SortedMap<String, long[]> postings;
+
+    public SegmentData(long[] docIds, long[] docTimes, SortedMap<String, long[]> postings) {
+        this.docIds = docIds;
+        this.docTimes = docTimes;
+        this.postings = postings;
+    }
+
+    public long[] getDocIds() {
+        return docIds;
+    }
+
+    public long[] getDocTimes() {
+        return docTimes;
+    }
+
+    public SortedMap<String, long[]> getPostings() {
+        return postings;
+    }
+
+    public int getDocCount() {
+        return docIds.length;
+    }
+}
@@ -0,0 +1,25 @@
+package com.logging.service;
+
+import com.logging.dto.RollupPoint;
+import com.logging.stats.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 操作汇总服务
+ * 按(操作类型, 分钟/小时)预聚合计数，供监控大盘直接读取时间序列
+ */
+public interface ActionRollupService {
+
+    /**
+     * 查询操作类型在时间范围内的计数序列，ipPrefix为空时返回不区分IP的汇总
+     */
+    List<RollupPoint> getSeries(String action, RollupGranularity granularity, String ipPrefix,
+                                LocalDateTime startTime, LocalDateTime endTime);
+
+    /**
+     * 将内存中的增量刷入汇总表
+     */
+    void flush();
+}
@@ -0,0 +1,24 @@
+package com.logging.service;
+
+import com.logging.dto.LogAggregateView;
+import com.logging.entity.OperationLog;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 聚合日志服务
+ * 按入库策略不写明细的日志在此按(用户, 操作类型, IP, 时间窗口)累计次数及首末时间
+ */
+public interface LogAggregateService {
+
+    /**
+     * 累计一批不写明细的日志，写入聚合表后返回
+     */
+    void add(List<OperationLog> logs);
+
+    /**
+     * 查询用户在时间范围内的聚合记录，action为空时不限操作类型
+     */
+    List<LogAggregateView> getAggregates(Long userId, String action, LocalDateTime startTime, LocalDateTime endTime);
+}
@@ -0,0 +1,24 @@
+package com.logging.service;
+
+import com.logging.export.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+/**
+ * 操作日志导出服务接口
+ */
+public interface LogExportService {
+
+    /**
+     * 申请导出名额，达到并发上限时返回false；申请成功后必须调用export，导出结束时释放名额
+     */
+    boolean tryAcquire();
+
+    /**
+     * 把时间范围内的日志流式写入out，返回导出条数
+     */
+    long export(LocalDateTime startTime, LocalDateTime endTime, ExportFormat format, boolean gzip, OutputStream out)
+            throws IOException;
+}
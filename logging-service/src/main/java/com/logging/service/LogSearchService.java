@@ -0,0 +1,18 @@
+package com.logging.service;
+
+import com.logging.dto.OperationLogView;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 日志详情全文检索服务
+ */
+public interface LogSearchService {
+
+    /**
+     * 检索详情中同时包含关键词全部词项的日志，按时间倒序返回；
+     * 索引按实例本地维护，多实例部署时只返回处理该请求的实例索引到的日志，结果可能不完整
+     */
+    List<OperationLogView> search(String keyword, LocalDateTime startTime, LocalDateTime endTime, int limit);
+}
@@ -0,0 +1,33 @@
+package com.logging.service;
+
+/**
+ * 用户操作计数服务
+ * 计数在入库时增量维护，查询无需扫描日志表
+ */
+public interface OperationCounterService {
+
+    /**
+     * 查询用户总操作次数
+     */
+    long countUserOperations(Long userId);
+
+    /**
+     * 查询用户某类操作的次数
+     */
+    long countUserActions(Long userId, String action);
+
+    /**
+     * 将内存中的增量刷入计数表
+     */
+    void flush();
+
+    /**
+     * 按operation_logs重建单个用户的计数
+     */
+    void rebuildUser(Long userId);
+
+    /**
+     * 重建全部用户的计数，用于修正漂移
+     */
+    void rebuildAll();
+}
@@ -1,5 +1,8 @@
 package com.logging.service;
 
+import com.logging.dto.CursorPage;
+import com.logging.dto.LogQuery;
+import com.logging.dto.OperationLogView;
 import com.logging.entity.OperationLog;
 import com.logging.event.OperationLogEvent;
 import org.springframework.data.domain.Page;
@@ -18,6 +21,11 @@ public interface OperationLogService {
      */
     void handleLogEvent(OperationLogEvent event);
 
+    /**
+     * 批量处理操作日志事件，整批写入，失败时整批抛出
+     */
+    void handleLogEvents(List<OperationLogEvent> events);
+
     /**
      * 保存操作日志
      */
@@ -42,4 +50,9 @@ public interface OperationLogService {
      * 统计用户操作次数
      */
     Long countUserOperations(Long userId);
+
+    /**
+     * 按用户/操作类型/IP/时间组合条件游标分页查询日志
+     */
+    CursorPage<OperationLogView> queryLogs(LogQuery query);
 }
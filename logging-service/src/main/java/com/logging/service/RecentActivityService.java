@@ -0,0 +1,16 @@
+package com.logging.service;
+
+import com.logging.dto.OperationLogView;
+
+import java.util.List;
+
+/**
+ * 用户最近操作查询服务
+ */
+public interface RecentActivityService {
+
+    /**
+     * 查询用户最近limit条操作，按时间倒序返回
+     */
+    List<OperationLogView> getRecentActivity(Long userId, int limit);
+}
@@ -0,0 +1,34 @@
+package com.logging.service;
+
+import com.logging.dto.HeavyHitter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 草图统计服务
+ * 按天及操作类型维护活跃用户HyperLogLog与高频IP、高频用户草图，结果为近似值；
+ * action为空时表示不区分操作类型
+ */
+public interface SketchAnalyticsService {
+
+    /**
+     * 某天的去重用户数估计
+     */
+    long countActiveUsers(LocalDate day, String action);
+
+    /**
+     * 某天次数最多的IP
+     */
+    List<HeavyHitter> getTopIps(LocalDate day, String action, int limit);
+
+    /**
+     * 某天操作次数最多的用户
+     */
+    List<HeavyHitter> getTopUsers(LocalDate day, String action, int limit);
+
+    /**
+     * 将有变化的草图写入草图表
+     */
+    void flush();
+}
@@ -0,0 +1,228 @@
+package com.logging.service.impl;
+
+import com.logging.archive.ArchiveStore;
+import com.logging.backfill.BackfillTarget;
+import com.logging.dto.RollupPoint;
+import com.logging.entity.OperationLog;
+import com.logging.ingest.LogIngestListener;
+import com.logging.repository.ActionRollupDao;
+import com.logging.service.ActionRollupService;
+import com.logging.stats.RollupGranularity;
+import com.logging.stats.RollupKey;
+import com.logging.stats.StripedCounterMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 操作汇总服务实现
+ * 每批入库日志先在批内合并，再累加到分段计数缓冲，定时upsert到汇总表；
+ * 汇总按增量累加，无法重复计入，作为回填目标时只记录受影响的时间桶，
+ * 等时间桶结束后按operation_logs明细重算，未写明细的聚合次数单独保存，重算时保留
+ */
+@Service
+@Slf4j
+public class ActionRollupServiceImpl implements ActionRollupService, LogIngestListener, BackfillTarget {
+
+    /**
+     * 单次查询最多返回的时间桶数量
+     */
+    private static final long MAX_POINTS = 10080;
+
+    private final StripedCounterMap<RollupKey> pendingCounts = new StripedCounterMap<>(16);
+
+    /**
+     * 按入库策略未写明细的次数，与pendingCounts分开刷盘，重算时不被明细覆盖
+     */
+    private final StripedCounterMap<RollupKey> pendingAggregated = new StripedCounterMap<>(16);
+
+    /**
+     * 回填涉及、等待按明细重算的时间桶
+     */
+    private final Set<RollupKey> staleBuckets = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    private ActionRollupDao actionRollupDao;
+
+    @Autowired(required = false)
+    private ArchiveStore archiveStore;
+
+    /**
+     * 是否额外按IP前缀（IPv4取前三段）汇总
+     */
+    @Value("${operation-log.rollup.ip-prefix-enabled:false}")
+    private boolean ipPrefixEnabled;
+
+    /**
+     * 时间桶结束后至少等待多久再重算，留给仍在入库的批次写完明细
+     */
+    @Value("${operation-log.sinks.rebuild-delay-ms:60000}")
+    private long settleMs;
+
+    @Override
+    public String getSinkName() {
+        return "rollup";
+    }
+
+    @Override
+    public String getBackfillName() {
+        return "rollup";
+    }
+
+    @Override
+    public void onLogsPersisted(List<OperationLog> logs) {
+        bucketsOf(logs).forEach(pendingCounts::add);
+    }
+
+    @Override
+    public void onLogsAggregated(List<OperationLog> logs) {
+        bucketsOf(logs).forEach(pendingAggregated::add);
+    }
+
+    /**
+     * 只记录受影响的时间桶，重复投递的批次不会重复计入
+     */
+    @Override
+    public void backfill(List<OperationLog> logs) {
+        staleBuckets.addAll(bucketsOf(logs).keySet());
+    }
+
+    @Override
+    public void onBackfillCompleted() {
+        flush();
+    }
+
+    @Override
+    public List<RollupPoint> getSeries(String action, RollupGranularity granularity, String ipPrefix,
+                                       LocalDateTime startTime, LocalDateTime endTime) {
+        if (startTime.isAfter(endTime)) {
+            throw new IllegalArgumentException("开始时间不能晚于结束时间");
+        }
+        if (granularity.bucketCount(startTime, endTime) > MAX_POINTS) {
+            throw new IllegalArgumentException("时间范围过大，最多返回" + MAX_POINTS + "个时间点");
+        }
+        String prefix = ipPrefix == null ? RollupKey.ALL_IPS : ipPrefix;
+        LocalDateTime first = granularity.bucketOf(startTime);
+        LocalDateTime last = granularity.bucketOf(endTime);
+        Map<LocalDateTime, Long> stored = actionRollupDao.findSeries(granularity, action, prefix, first, last);
+
+        // 补齐无数据的时间桶，便于大盘直接绘图
+        List<RollupPoint> points = new ArrayList<>();
+        for (LocalDateTime bucket = first; !bucket.isAfter(last); bucket = granularity.next(bucket)) {
+            points.add(new RollupPoint(bucket, stored.getOrDefault(bucket, 0L)));
+        }
+        return points;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${operation-log.rollup.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<RollupKey, Long> deltas = pendingCounts.drain();
+        Map<RollupKey, Long> aggregated = pendingAggregated.drain();
+        if (!deltas.isEmpty() || !aggregated.isEmpty()) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                Map<RollupKey, Long> granularityDeltas = ofGranularity(deltas, granularity);
+                Map<RollupKey, Long> granularityAggregated = ofGranularity(aggregated, granularity);
+                if (granularityDeltas.isEmpty() && granularityAggregated.isEmpty()) {
+                    continue;
+                }
+                try {
+                    actionRollupDao.addAll(granularity, granularityDeltas, granularityAggregated);
+                } catch (Exception e) {
+                    pendingCounts.restore(granularityDeltas);
+                    pendingAggregated.restore(granularityAggregated);
+                    log.error("操作汇总刷盘失败: granularity={}, keys={}, error={}", granularity,
+                            granularityDeltas.size() + granularityAggregated.size(), e.getMessage(), e);
+                }
+            }
+        }
+        rebuildSettledBuckets();
+    }
+
+    /**
+     * 按明细重算已结束的过期时间桶，重算覆盖增量，须在刷盘之后进行；
+     * 已归档的时间桶明细不在在线表中，保留原计数
+     */
+    private void rebuildSettledBuckets() {
+        if (staleBuckets.isEmpty()) {
+            return;
+        }
+        LocalDateTime settled = LocalDateTime.now().minusNanos(settleMs * 1_000_000L);
+        LocalDateTime hotFrom = archiveStore == null ? null : archiveStore.view().getHotFrom();
+        Iterator<RollupKey> iterator = staleBuckets.iterator();
+        while (iterator.hasNext()) {
+            RollupKey key = iterator.next();
+            RollupGranularity granularity = key.getGranularity();
+            if (granularity.next(key.getBucketStart()).isAfter(settled)) {
+                continue;
+            }
+            if (hotFrom != null && key.getBucketStart().isBefore(hotFrom)) {
+                iterator.remove();
+                continue;
+            }
+            try {
+                actionRollupDao.replaceDetails(granularity, key, actionRollupDao.countDetails(granularity, key));
+                iterator.remove();
+            } catch (Exception e) {
+                log.error("操作汇总重算失败: key={}, error={}", key, e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 批内按时间桶合并，每条日志计入各粒度的全部IP汇总及所在IP前缀汇总
+     */
+    private Map<RollupKey, Long> bucketsOf(List<OperationLog> logs) {
+        Map<RollupKey, Long> batch = new HashMap<>();
+        for (OperationLog operationLog : logs) {
+            String ipPrefix = ipPrefixEnabled ? ipPrefixOf(operationLog.getIp()) : null;
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                LocalDateTime bucket = granularity.bucketOf(operationLog.getGmtCreate());
+                batch.merge(new RollupKey(granularity, operationLog.getAction(), RollupKey.ALL_IPS, bucket), 1L, Long::sum);
+                if (ipPrefix != null) {
+                    batch.merge(new RollupKey(granularity, operationLog.getAction(), ipPrefix, bucket), 1L, Long::sum);
+                }
+            }
+        }
+        return batch;
+    }
+
+    private static Map<RollupKey, Long> ofGranularity(Map<RollupKey, Long> counts, RollupGranularity granularity) {
+        Map<RollupKey, Long> result = new HashMap<>();
+        counts.forEach((key, count) -> {
+            if (key.getGranularity() == granularity) {
+                result.put(key, count);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * IPv4取前三段作为/24前缀，其他格式不参与按IP汇总
+     */
+    static String ipPrefixOf(String ip) {
+        if (ip == null) {
+            return null;
+        }
+        int index = ip.lastIndexOf('.');
+        return index > 0 && ip.indexOf(':') < 0 ? ip.substring(0, index) : null;
+    }
+}
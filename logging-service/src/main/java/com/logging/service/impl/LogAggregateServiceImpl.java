@@ -0,0 +1,75 @@
+package com.logging.service.impl;
+
+import com.logging.dto.LogAggregateView;
+import com.logging.entity.OperationLog;
+import com.logging.repository.LogAggregateDao;
+import com.logging.service.LogAggregateService;
+import com.logging.stats.AggregateKey;
+import com.logging.stats.EventAggregate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聚合日志服务实现
+ * 每批日志先在批内合并，再以累加语义upsert到operation_log_aggregates，高频操作每批每个窗口只产生一行写入；
+ * 写入完成才返回，入库线程随后才确认消息，写入失败时抛出异常由消息重投补上，进程异常退出不丢失已确认的计数
+ */
+@Service
+@Slf4j
+public class LogAggregateServiceImpl implements LogAggregateService {
+
+    private static final int MINUTES_PER_DAY = 1440;
+
+    @Autowired
+    private LogAggregateDao logAggregateDao;
+
+    /**
+     * 聚合窗口分钟数，需整除一天
+     */
+    @Value("${operation-log.policy.aggregate-window-minutes:60}")
+    private int windowMinutes;
+
+    @PostConstruct
+    public void init() {
+        if (windowMinutes <= 0 || MINUTES_PER_DAY % windowMinutes != 0) {
+            throw new IllegalArgumentException("aggregate-window-minutes需整除1440: " + windowMinutes);
+        }
+    }
+
+    @Override
+    public void add(List<OperationLog> logs) {
+        Map<AggregateKey, EventAggregate> batch = new HashMap<>();
+        for (OperationLog operationLog : logs) {
+            AggregateKey key = new AggregateKey(operationLog.getUserId(), operationLog.getAction(),
+                    operationLog.getIp() == null ? AggregateKey.NO_IP : operationLog.getIp(),
+                    windowOf(operationLog.getGmtCreate()));
+            batch.merge(key, EventAggregate.of(operationLog.getGmtCreate()), EventAggregate::merge);
+        }
+        logAggregateDao.addAll(batch);
+        log.debug("聚合日志写入完成: logs={}, keys={}", logs.size(), batch.size());
+    }
+
+    @Override
+    public List<LogAggregateView> getAggregates(Long userId, String action,
+                                                LocalDateTime startTime, LocalDateTime endTime) {
+        if (startTime.isAfter(endTime)) {
+            throw new IllegalArgumentException("开始时间不能晚于结束时间");
+        }
+        return logAggregateDao.find(userId, action, windowOf(startTime), endTime);
+    }
+
+    LocalDateTime windowOf(LocalDateTime time) {
+        LocalDateTime day = time.truncatedTo(ChronoUnit.DAYS);
+        long minuteOfDay = ChronoUnit.MINUTES.between(day, time);
+        return day.plusMinutes(minuteOfDay / windowMinutes * windowMinutes);
+    }
+}
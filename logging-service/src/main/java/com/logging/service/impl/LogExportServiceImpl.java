@@ -0,0 +1,114 @@
+package com.logging.service.impl;
+
+import com.logging.archive.ArchiveStore;
+import com.logging.entity.OperationLog;
+import com.logging.export.ExportFormat;
+import com.logging.export.LogExportWriter;
+import com.logging.repository.OperationLogExportDao;
+import com.logging.service.LogExportService;
+import com.logging.store.SegmentLogStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 操作日志导出服务实现
+ * 先输出归档层中更早的日志，再从在线表流式读取；每次只持有一行（归档层为一个文件），
+ * 写出与读取同步进行，客户端读取慢时由TCP背压限速，不在内存中堆积；同时进行的导出数受限
+ */
+@Service
+@Slf4j
+public class LogExportServiceImpl implements LogExportService {
+
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    private final Semaphore permits;
+
+    @Autowired
+    private OperationLogExportDao operationLogExportDao;
+
+    @Autowired(required = false)
+    private ArchiveStore archiveStore;
+
+    @Autowired(required = false)
+    private SegmentLogStore segmentLogStore;
+
+    public LogExportServiceImpl(@Value("${operation-log.export.max-concurrent:2}") int maxConcurrent) {
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    @Override
+    public long export(LocalDateTime startTime, LocalDateTime endTime, ExportFormat format, boolean gzip,
+                       OutputStream out) throws IOException {
+        long begin = System.currentTimeMillis();
+        try {
+            GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, GZIP_BUFFER_SIZE) : null;
+            long rows;
+            try (LogExportWriter writer = format.open(gzipOut != null ? gzipOut : out)) {
+                rows = exportStored(startTime, endTime, writer);
+            }
+            if (gzipOut != null) {
+                gzipOut.finish();
+            }
+            out.flush();
+            log.info("操作日志导出完成: startTime={}, endTime={}, format={}, gzip={}, rows={}, costMs={}",
+                    startTime, endTime, format, gzip, rows, System.currentTimeMillis() - begin);
+            return rows;
+        } catch (IOException | RuntimeException e) {
+            log.warn("操作日志导出中断: startTime={}, endTime={}, costMs={}, error={}",
+                    startTime, endTime, System.currentTimeMillis() - begin, e.getMessage());
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private long exportStored(LocalDateTime startTime, LocalDateTime endTime, LogExportWriter writer)
+            throws IOException {
+        if (segmentLogStore != null) {
+            return exportEach(writer, consumer -> segmentLogStore.forEachInRange(startTime, endTime, consumer));
+        }
+        if (archiveStore == null) {
+            return operationLogExportDao.export(startTime, endTime, writer);
+        }
+        // 先导出归档层，在线表只导出视图下界之后的部分，已切换但尚未删除的分区不会导出两次
+        ArchiveStore.View archive = archiveStore.view();
+        long rows = exportEach(writer, consumer -> archive.forEachInRange(startTime, endTime, consumer));
+        LocalDateTime hotStart = archive.getHotFrom() != null && archive.getHotFrom().isAfter(startTime)
+                ? archive.getHotFrom() : startTime;
+        return hotStart.isAfter(endTime) ? rows : rows + operationLogExportDao.export(hotStart, endTime, writer);
+    }
+
+    private static long exportEach(LogExportWriter writer, Consumer<Consumer<OperationLog>> source)
+            throws IOException {
+        long[] rows = new long[1];
+        try {
+            source.accept(operationLog -> {
+                try {
+                    writer.write(operationLog.getLogId(), operationLog.getUserId(), operationLog.getAction(),
+                            operationLog.getIp(), operationLog.getDetail(), operationLog.getGmtCreate());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+}
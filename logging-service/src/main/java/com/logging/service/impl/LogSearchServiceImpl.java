@@ -0,0 +1,76 @@
+package com.logging.service.impl;
+
+import com.logging.archive.ArchiveStore;
+import com.logging.dto.OperationLogView;
+import com.logging.entity.OperationLog;
+import com.logging.query.LogQueryExecutor;
+import com.logging.repository.OperationLogQueryDao;
+import com.logging.search.LogSearchIndex;
+import com.logging.service.LogSearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 日志详情全文检索服务实现
+ * 先在倒排索引中求交得到日志ID，再按主键回表读取命中的少量行；回表走查询连接池并受查询执行器的并发和超时限制。
+ * 索引保留期长于在线表，在线表中没有的命中按索引记录的创建时间到归档层查找
+ */
+@Service
+@Slf4j
+public class LogSearchServiceImpl implements LogSearchService {
+
+    private static final int MAX_LIMIT = 500;
+
+    @Autowired
+    private LogSearchIndex logSearchIndex;
+
+    @Autowired
+    private OperationLogQueryDao operationLogQueryDao;
+
+    @Autowired
+    private LogQueryExecutor queryExecutor;
+
+    @Autowired(required = false)
+    private ArchiveStore archiveStore;
+
+    @Override
+    public List<OperationLogView> search(String keyword, LocalDateTime startTime, LocalDateTime endTime, int limit) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("检索关键词不能为空");
+        }
+        Map<Long, LocalDateTime> hits = logSearchIndex.searchWithTimes(keyword, startTime, endTime,
+                Math.max(1, Math.min(limit, MAX_LIMIT)));
+        if (hits.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<OperationLog> logs = queryExecutor.execute("search", () -> load(hits));
+        if (logs.size() < hits.size()) {
+            log.debug("部分检索命中的日志已不存在（可能已过期删除）: hits={}, found={}", hits.size(), logs.size());
+        }
+        return logs.stream()
+                .sorted(Comparator.comparing(OperationLog::getGmtCreate).thenComparing(OperationLog::getLogId).reversed())
+                .map(OperationLogView::of)
+                .collect(Collectors.toList());
+    }
+
+    private List<OperationLog> load(Map<Long, LocalDateTime> hits) {
+        List<OperationLog> logs = new ArrayList<>(operationLogQueryDao.findByIds(hits.keySet()));
+        if (archiveStore == null || logs.size() >= hits.size()) {
+            return logs;
+        }
+        Map<Long, LocalDateTime> archived = new HashMap<>(hits);
+        logs.forEach(operationLog -> archived.remove(operationLog.getLogId()));
+        logs.addAll(archiveStore.view().findByIds(archived));
+        return logs;
+    }
+}
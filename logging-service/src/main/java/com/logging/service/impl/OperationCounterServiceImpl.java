@@ -0,0 +1,270 @@
+package com.logging.service.impl;
+
+import com.logging.backfill.BackfillTarget;
+import com.logging.config.LogShardDataSources;
+import com.logging.entity.OperationLog;
+import com.logging.ingest.LogIngestListener;
+import com.logging.repository.OperationCounterDao;
+import com.logging.service.OperationCounterService;
+import com.logging.stats.StripedCounterMap;
+import com.logging.stats.UserActionKey;
+import com.logging.store.SegmentLogStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户操作计数服务实现
+ * 入库后在分段LongAdder中累加，定时以累加语义upsert到user_operation_counters；
+ * 查询时返回表中计数与尚未刷盘的增量之和
+ * 同一用户的日志在同一入库通道内按log_id顺序送达，刷盘时在同一事务中记录每个用户已计入的最大log_id，
+ * 重建只统计不超过该值的日志，尚未送达的日志送达后再以增量计入，不会重复。
+ * 多实例部署时假定同一用户的事件只由一个实例消费(生产端以userId选择队列)，即每个用户只有一个增量写入方：
+ * 上界由该实例推进，其尚未刷盘的增量都在上界之后，在任一实例上重建都不会重复计入；
+ * 重建锁定用户的总数行，写入方同时刷盘会等待重建提交。队列重新分配期间两个实例可能短暂写入同一用户，
+ * 由此产生的偏差由下次全量重建校正；全量重建以数据库命名锁保证同一时刻只有一个实例执行。
+ * 作为回填目标时按批中出现的用户逐个重建，用于输出端队列满丢弃后的补偿；启用段存储引擎时重建从段存储统计明细
+ */
+@Service
+@Slf4j
+public class OperationCounterServiceImpl implements OperationCounterService, LogIngestListener, BackfillTarget {
+
+    private static final int COUNTER_STRIPES = 16;
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private static final String REBUILD_LOCK_NAME = "operation_log_counter_rebuild";
+
+    private final StripedCounterMap<UserActionKey> pendingCounts = new StripedCounterMap<>(COUNTER_STRIPES);
+
+    /**
+     * 尚未刷盘的每个用户已计入的最大log_id
+     */
+    private final ConcurrentHashMap<Long, Long> pendingWatermarks = new ConcurrentHashMap<>();
+
+    /**
+     * 按用户分段的锁，计入增量与重建时读取上界互斥
+     */
+    private final Object[] userLocks = new Object[COUNTER_STRIPES];
+
+    /**
+     * 刷盘与重建互斥，避免重建期间的增量被覆盖
+     */
+    private final Object flushLock = new Object();
+
+    @Autowired
+    private OperationCounterDao operationCounterDao;
+
+    @Autowired
+    private LogShardDataSources shardDataSources;
+
+    @Autowired(required = false)
+    private SegmentLogStore segmentLogStore;
+
+    public OperationCounterServiceImpl() {
+        for (int i = 0; i < userLocks.length; i++) {
+            userLocks[i] = new Object();
+        }
+    }
+
+    @Override
+    public String getSinkName() {
+        return "counter";
+    }
+
+    @Override
+    public String getBackfillName() {
+        return "counter";
+    }
+
+    /**
+     * 批中的日志均已提交，被丢弃的不会再送达，把上界推进到批中该用户最大的logId后重建；
+     * 在线触发时刚提交尚未送达的日志可能被计入两次，由下次定期重建校正
+     */
+    @Override
+    public void backfill(List<OperationLog> logs) {
+        Map<Long, Long> maxLogIds = new HashMap<>();
+        for (OperationLog operationLog : logs) {
+            maxLogIds.merge(operationLog.getUserId(), operationLog.getLogId(), Math::max);
+        }
+        maxLogIds.forEach((userId, maxLogId) -> {
+            synchronized (flushLock) {
+                synchronized (lockOf(userId)) {
+                    pendingWatermarks.merge(userId, maxLogId, Math::max);
+                    flush();
+                    rebuildFlushedUser(userId);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onLogsPersisted(List<OperationLog> logs) {
+        for (OperationLog operationLog : logs) {
+            Long userId = operationLog.getUserId();
+            synchronized (lockOf(userId)) {
+                addCounts(operationLog);
+                if (operationLog.getLogId() != null) {
+                    pendingWatermarks.merge(userId, operationLog.getLogId(), Math::max);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onLogsAggregated(List<OperationLog> logs) {
+        // 只聚合的日志不在operation_logs中，不推进上界
+        for (OperationLog operationLog : logs) {
+            synchronized (lockOf(operationLog.getUserId())) {
+                addCounts(operationLog);
+            }
+        }
+    }
+
+    private void addCounts(OperationLog operationLog) {
+        pendingCounts.add(UserActionKey.total(operationLog.getUserId()), 1L);
+        pendingCounts.add(new UserActionKey(operationLog.getUserId(), operationLog.getAction()), 1L);
+    }
+
+    private Object lockOf(Long userId) {
+        return userLocks[Math.floorMod(userId.hashCode(), userLocks.length)];
+    }
+
+    @Override
+    public long countUserOperations(Long userId) {
+        return countUserActions(userId, UserActionKey.ALL_ACTIONS);
+    }
+
+    @Override
+    public long countUserActions(Long userId, String action) {
+        UserActionKey key = new UserActionKey(userId, action);
+        return operationCounterDao.find(key) + pendingCounts.pending(key);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${operation-log.counter.flush-interval-ms:1000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<UserActionKey, Long> deltas = pendingCounts.drain();
+            Map<Long, Long> watermarks = drainWatermarks();
+            if (deltas.isEmpty() && watermarks.isEmpty()) {
+                return;
+            }
+            try {
+                operationCounterDao.addAll(deltas, watermarks);
+                log.debug("用户操作计数刷盘完成: keys={}", deltas.size());
+            } catch (Exception e) {
+                // 计数与上界在同一事务中回滚，放回缓冲下次刷盘重试
+                pendingCounts.restore(deltas);
+                watermarks.forEach((userId, logId) -> pendingWatermarks.merge(userId, logId, Math::max));
+                log.error("用户操作计数刷盘失败: keys={}, error={}", deltas.size(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private Map<Long, Long> drainWatermarks() {
+        Map<Long, Long> watermarks = new HashMap<>();
+        for (Long userId : pendingWatermarks.keySet()) {
+            Long logId = pendingWatermarks.remove(userId);
+            if (logId != null) {
+                watermarks.put(userId, logId);
+            }
+        }
+        return watermarks;
+    }
+
+    @Override
+    public void rebuildUser(Long userId) {
+        synchronized (flushLock) {
+            // 持有用户锁期间该用户不再计入新增量，刷盘后表中计数与上界对应同一批已送达的日志
+            synchronized (lockOf(userId)) {
+                flush();
+                rebuildFlushedUser(userId);
+            }
+        }
+    }
+
+    private void rebuildFlushedUser(Long userId) {
+        // 上界为null表示计数早于上界字段写入，只能不加上界统计
+        operationCounterDao.rebuildUser(userId, watermark -> {
+            Map<String, Long> counts = new HashMap<>();
+            long total = 0L;
+            List<Map<String, Object>> rows = new ArrayList<>(countDetailsByAction(userId, watermark));
+            // 已归档并删除分区的日志不在operation_logs中，计数取自archived_operation_counts
+            rows.addAll(operationCounterDao.countArchivedByAction(userId));
+            // 按入库策略未写明细的日志，计数取自operation_log_aggregates
+            rows.addAll(operationCounterDao.countAggregatedByAction(userId));
+            for (Map<String, Object> row : rows) {
+                long count = ((Number) row.get("op_count")).longValue();
+                counts.merge((String) row.get("action"), count, Long::sum);
+                total += count;
+            }
+            counts.put(UserActionKey.ALL_ACTIONS, total);
+            return counts;
+        });
+    }
+
+    /**
+     * 明细按操作类型的条数，启用段存储引擎时从段存储统计
+     */
+    private List<Map<String, Object>> countDetailsByAction(Long userId, Long watermark) {
+        if (segmentLogStore == null) {
+            return operationCounterDao.countLogsByAction(userId, watermark);
+        }
+        Map<String, Long> counts = new HashMap<>();
+        for (OperationLog operationLog : segmentLogStore.findByUserId(userId)) {
+            if (watermark == null || operationLog.getLogId() <= watermark) {
+                counts.merge(operationLog.getAction(), 1L, Long::sum);
+            }
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(counts.size());
+        counts.forEach((action, count) -> {
+            Map<String, Object> row = new HashMap<>();
+            row.put("action", action);
+            row.put("op_count", count);
+            rows.add(row);
+        });
+        return rows;
+    }
+
+    @Override
+    @Scheduled(cron = "${operation-log.counter.rebuild-cron:0 30 3 * * SUN}")
+    public void rebuildAll() {
+        if (!shardDataSources.runExclusively(REBUILD_LOCK_NAME, this::rebuildAllUsers)) {
+            log.info("其他实例正在重建用户操作计数，本实例跳过");
+        }
+    }
+
+    private void rebuildAllUsers() {
+        log.info("开始重建用户操作计数");
+        long lastUserId = Long.MIN_VALUE;
+        int rebuilt = 0;
+        List<Long> userIds;
+        do {
+            userIds = operationCounterDao.findUserIdsAfter(lastUserId, REBUILD_BATCH_SIZE);
+            for (Long userId : userIds) {
+                try {
+                    rebuildUser(userId);
+                    rebuilt++;
+                } catch (Exception e) {
+                    log.error("重建用户操作计数失败: userId={}, error={}", userId, e.getMessage(), e);
+                }
+                lastUserId = userId;
+            }
+        } while (userIds.size() == REBUILD_BATCH_SIZE);
+        log.info("用户操作计数重建完成: users={}", rebuilt);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -1,74 +1,439 @@
 package com.logging.service.impl;
 
+import com.logging.archive.ArchiveStore;
+import com.logging.cache.LogResultCache;
+import com.logging.dto.CursorPage;
+import com.logging.dto.LogCursor;
+import com.logging.dto.LogQuery;
+import com.logging.dto.OperationLogView;
 import com.logging.entity.OperationLog;
 import com.logging.event.OperationLogEvent;
+import com.logging.ingest.AdaptiveConcurrencyLimiter;
+import com.logging.ingest.EventDeduplicator;
+import com.logging.ingest.IngestPolicyResolver;
+import com.logging.ingest.IngestSinkDispatcher;
+import com.logging.ingest.LogIdGenerator;
+import com.logging.query.LogQueryExecutor;
+import com.logging.repository.ActionDictionary;
+import com.logging.repository.OperationLogJdbcDao;
+import com.logging.repository.OperationLogQueryDao;
 import com.logging.repository.OperationLogRepository;
+import com.logging.service.LogAggregateService;
+import com.logging.service.OperationCounterService;
 import com.logging.service.OperationLogService;
+import com.logging.store.SegmentLogStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 操作日志服务实现
+ * 默认存储在MySQL；启用段存储引擎(operation-log.storage.engine=SEGMENT)时，
+ * 写入及按用户/操作类型/时间范围的查询、组合查询改由本地段存储承担；
+ * 启用归档(operation-log.archive.enabled)时，MySQL中的查询结果后接归档层中更早的日志：
+ * 每次查询取一个归档视图，在线表只查询视图下界之后的部分，两层合并时再按logId去重；
+ * 按操作类型的入库策略(operation-log.policy)决定日志写明细，还是只并入聚合计数；
+ * 按操作类型和按时间范围的查询结果经{@link LogResultCache}缓存，已封闭的历史窗口不再重复查库；
+ * 查询在{@link LogQueryExecutor}的独立线程池上执行并经查询连接池读库，与入库互不占用线程和连接；
+ * 写入成功后交给{@link IngestSinkDispatcher}分发到计数、汇总、检索等输出端
  */
 @Service
 @Slf4j
 public class OperationLogServiceImpl implements OperationLogService {
 
+    /**
+     * 事件去重唯一键名
+     */
+    private static final String EVENT_UNIQUE_KEY = "uk_event";
+
+    private static final Comparator<OperationLog> NEWEST_FIRST = Comparator
+            .comparing(OperationLog::getGmtCreate)
+            .thenComparing(OperationLog::getLogId)
+            .reversed();
+
     @Autowired
     private OperationLogRepository operationLogRepository;
 
+    @Autowired
+    private OperationLogQueryDao operationLogQueryDao;
+
+    @Autowired
+    private OperationCounterService operationCounterService;
+
+    @Autowired
+    private EventDeduplicator eventDeduplicator;
+
+    @Autowired
+    private OperationLogJdbcDao operationLogJdbcDao;
+
+    @Autowired
+    private LogIdGenerator logIdGenerator;
+
+    @Autowired
+    private IngestPolicyResolver ingestPolicyResolver;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private LogAggregateService logAggregateService;
+
+    @Autowired(required = false)
+    private SegmentLogStore segmentLogStore;
+
+    @Autowired(required = false)
+    private ArchiveStore archiveStore;
+
+    @Autowired(required = false)
+    private LogResultCache resultCache;
+
+    @Autowired
+    private LogQueryExecutor queryExecutor;
+
+    @Autowired
+    private IngestSinkDispatcher sinkDispatcher;
+
+    @Autowired
+    private ActionDictionary actionDictionary;
+
+    /**
+     * 处理操作日志事件
+     * 先用内存过滤器丢弃窗口内的重复投递，过滤器未命中的重复由唯一键冲突识别；
+     * 不在外层开启事务，否则唯一键冲突会把事务标记为仅回滚
+     */
     @Override
-    @Transactional
     public void handleLogEvent(OperationLogEvent event) {
+        if (segmentLogStore != null) {
+            handleLogEvents(Collections.singletonList(event));
+            return;
+        }
+        String eventId = event.getEventId();
+        if (eventId != null && !eventDeduplicator.markIfAbsent(eventId)) {
+            log.info("重复的操作日志事件，已忽略: eventId={}", eventId);
+            return;
+        }
         try {
             log.info("处理操作日志事件: userId={}, action={}", event.getUserId(), event.getAction());
             
-            OperationLog operationLog = new OperationLog();
-            operationLog.setUserId(event.getUserId());
-            operationLog.setAction(event.getAction());
-            operationLog.setIp(event.getIp());
-            operationLog.setDetail(event.getDetail());
+            OperationLog operationLog = toOperationLog(event);
+            if (!ingestPolicyResolver.shouldStore(operationLog)) {
+                if (operationLog.getGmtCreate() == null) {
+                    operationLog.setGmtCreate(LocalDateTime.now());
+                }
+                aggregate(Collections.singletonList(operationLog));
+                return;
+            }
             
             saveLog(operationLog);
+            notifyPersisted(Collections.singletonList(operationLog));
             
             log.info("操作日志保存成功: logId={}", operationLog.getLogId());
-        } catch (Exception e) {
-            log.error("处理操作日志事件失败: userId={}, action={}, error={}", 
-                     event.getUserId(), event.getAction(), e.getMessage(), e);
+        } catch (DataIntegrityViolationException e) {
+            if (eventId != null && isDuplicateEvent(e)) {
+                log.info("操作日志事件已入库，忽略重复投递: eventId={}", eventId);
+                return;
+            }
+            handleFailure(event, e);
+            throw e;
+        } catch (RuntimeException e) {
+            handleFailure(event, e);
             throw e;
         }
     }
 
+    /**
+     * 批量处理操作日志事件
+     * 由应用分配logId后以JDBC批量写入，整批在一个本地事务中执行；批次中的重复事件会使整批回滚，
+     * 由调用方逐条重试，单条重试时的唯一键冲突来自之前已提交的投递，按重复投递忽略。
+     * 本地事务不保证各分库同时提交，提交阶段部分分库失败时，已提交分库中没有eventId的事件会在逐条重试时再写一次。
+     * 不写明细的日志在明细写入成功后才写入聚合表，整批重试时不会重复累计；聚合写入失败时只撤销这部分事件的去重标记，
+     * 重试时已写入明细的事件按重复投递跳过
+     */
+    @Override
+    public void handleLogEvents(List<OperationLogEvent> events) {
+        List<OperationLog> logs = new ArrayList<>(events.size());
+        List<OperationLog> aggregated = new ArrayList<>();
+        List<String> markedEventIds = new ArrayList<>(events.size());
+        List<String> aggregatedEventIds = new ArrayList<>();
+        for (OperationLogEvent event : events) {
+            String eventId = event.getEventId();
+            if (eventId != null) {
+                if (!eventDeduplicator.markIfAbsent(eventId)) {
+                    log.info("重复的操作日志事件，已忽略: eventId={}", eventId);
+                    continue;
+                }
+                markedEventIds.add(eventId);
+            }
+            OperationLog operationLog = toOperationLog(event);
+            if (operationLog.getGmtCreate() == null) {
+                operationLog.setGmtCreate(LocalDateTime.now());
+            }
+            if (!ingestPolicyResolver.shouldStore(operationLog)) {
+                aggregated.add(operationLog);
+                if (eventId != null) {
+                    aggregatedEventIds.add(eventId);
+                }
+                continue;
+            }
+            operationLog.setLogId(logIdGenerator.nextId());
+            logs.add(operationLog);
+        }
+        if (!logs.isEmpty() && persist(logs, markedEventIds)) {
+            log.debug("操作日志批量保存成功: size={}", logs.size());
+            notifyPersisted(logs);
+        }
+        if (!aggregated.isEmpty()) {
+            try {
+                aggregate(aggregated);
+            } catch (RuntimeException e) {
+                aggregatedEventIds.forEach(eventDeduplicator::forget);
+                throw e;
+            }
+        }
+    }
+
     @Override
     @Transactional
     public OperationLog saveLog(OperationLog log) {
+        // 实体转换器只翻译已登记的操作类型，新类型先登记
+        actionDictionary.codeOf(log.getAction());
         return operationLogRepository.save(log);
     }
 
     @Override
     public List<OperationLog> getLogsByUserId(Long userId) {
-        return operationLogRepository.findByUserIdOrderByGmtCreateDesc(userId);
+        return queryExecutor.execute("user", () -> loadLogsByUserId(userId));
     }
 
     @Override
     public List<OperationLog> getLogsByAction(String action) {
-        return operationLogRepository.findByActionOrderByGmtCreateDesc(action);
+        if (resultCache != null) {
+            return resultCache.getByAction(action,
+                    () -> queryExecutor.execute("action", () -> loadLogsByAction(action)));
+        }
+        return queryExecutor.execute("action", () -> loadLogsByAction(action));
     }
 
     @Override
     public Page<OperationLog> getLogsByTimeRange(LocalDateTime startTime, LocalDateTime endTime, Pageable pageable) {
-        return operationLogRepository.findByTimeRange(startTime, endTime, pageable);
+        if (resultCache != null) {
+            return resultCache.getByTimeRange(startTime, endTime, pageable,
+                    () -> queryExecutor.execute("range", () -> loadLogsByTimeRange(startTime, endTime, pageable)));
+        }
+        return queryExecutor.execute("range", () -> loadLogsByTimeRange(startTime, endTime, pageable));
     }
 
     @Override
     public Long countUserOperations(Long userId) {
-        return operationLogRepository.countByUserId(userId);
+        return operationCounterService.countUserOperations(userId);
+    }
+
+    @Override
+    public CursorPage<OperationLogView> queryLogs(LogQuery query) {
+        int size = Math.max(1, Math.min(query.getSize(), LogQuery.MAX_SIZE));
+        LogCursor cursor = query.getCursor() == null ? null : LogCursor.decode(query.getCursor());
+
+        // 多取一条用于判断是否还有下一页
+        List<OperationLogView> rows = queryExecutor.execute("query", () -> loadPage(query, cursor, size + 1));
+        boolean hasMore = rows.size() > size;
+        List<OperationLogView> items = hasMore ? rows.subList(0, size) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            OperationLogView last = items.get(items.size() - 1);
+            nextCursor = new LogCursor(last.getGmtCreate(), last.getLogId()).encode();
+        }
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
+    private List<OperationLogView> loadPage(LogQuery query, LogCursor cursor, int limit) {
+        if (segmentLogStore != null) {
+            return segmentLogStore.findPage(query, cursor, limit);
+        }
+        if (archiveStore == null) {
+            return operationLogQueryDao.findPage(query, cursor, limit);
+        }
+        ArchiveStore.View archive = archiveStore.view();
+        List<OperationLogView> rows = operationLogQueryDao.findPage(query, cursor, limit, archive.getHotFrom());
+        if (rows.size() < limit) {
+            // 在线表已读完，从最后一条之后继续读取归档层
+            LogCursor archiveCursor = rows.isEmpty() ? cursor
+                    : new LogCursor(rows.get(rows.size() - 1).getGmtCreate(), rows.get(rows.size() - 1).getLogId());
+            Set<Long> seen = new HashSet<>();
+            rows.forEach(row -> seen.add(row.getLogId()));
+            rows = new ArrayList<>(rows);
+            for (OperationLogView row : archive.findPage(query, archiveCursor, limit - rows.size())) {
+                if (seen.add(row.getLogId())) {
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private List<OperationLog> loadLogsByUserId(Long userId) {
+        if (segmentLogStore != null) {
+            return segmentLogStore.findByUserId(userId);
+        }
+        if (archiveStore == null) {
+            return operationLogQueryDao.findByUserId(userId);
+        }
+        ArchiveStore.View archive = archiveStore.view();
+        return mergeTiers(operationLogQueryDao.findByUserId(userId, archive.getHotFrom()), archive.findByUserId(userId));
+    }
+
+    private List<OperationLog> loadLogsByAction(String action) {
+        if (segmentLogStore != null) {
+            return segmentLogStore.findByAction(action);
+        }
+        if (archiveStore == null) {
+            return operationLogQueryDao.findByAction(action);
+        }
+        ArchiveStore.View archive = archiveStore.view();
+        return mergeTiers(operationLogQueryDao.findByAction(action, archive.getHotFrom()), archive.findByAction(action));
+    }
+
+    private Page<OperationLog> loadLogsByTimeRange(LocalDateTime startTime, LocalDateTime endTime, Pageable pageable) {
+        if (segmentLogStore != null) {
+            return segmentLogStore.findByTimeRange(startTime, endTime, pageable);
+        }
+        if (archiveStore == null) {
+            return operationLogQueryDao.findByTimeRange(startTime, endTime, pageable);
+        }
+        // 在线表只统计视图下界之后的部分，已切换到归档层的分区不会被计入两次
+        ArchiveStore.View archive = archiveStore.view();
+        LocalDateTime hotStart = archive.getHotFrom() != null && archive.getHotFrom().isAfter(startTime)
+                ? archive.getHotFrom() : startTime;
+        Page<OperationLog> hot = hotStart.isAfter(endTime) ? new PageImpl<>(Collections.emptyList(), pageable, 0L)
+                : operationLogQueryDao.findByTimeRange(hotStart, endTime, pageable);
+        // 归档日志都早于在线表，排在在线表全部结果之后：本页不足的部分从归档层第(offset - 在线总数)条起补齐
+        long archivedTotal = archive.countByTimeRange(startTime, endTime);
+        List<OperationLog> content = new ArrayList<>(hot.getContent());
+        int missing = pageable.getPageSize() - content.size();
+        if (missing > 0 && archivedTotal > 0) {
+            long archiveOffset = Math.max(0L, pageable.getOffset() - hot.getTotalElements());
+            content.addAll(archive.findByTimeRange(startTime, endTime, archiveOffset, missing));
+        }
+        return new PageImpl<>(content, pageable, hot.getTotalElements() + archivedTotal);
+    }
+
+    /**
+     * 合并在线表与归档层的结果，按logId去重
+     */
+    private List<OperationLog> mergeTiers(List<OperationLog> hot, List<OperationLog> archived) {
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        Map<Long, OperationLog> merged = new LinkedHashMap<>(hot.size() + archived.size());
+        hot.forEach(row -> merged.put(row.getLogId(), row));
+        archived.forEach(row -> merged.putIfAbsent(row.getLogId(), row));
+        List<OperationLog> sorted = new ArrayList<>(merged.values());
+        sorted.sort(NEWEST_FIRST);
+        return sorted;
+    }
+
+    private OperationLog toOperationLog(OperationLogEvent event) {
+        OperationLog operationLog = new OperationLog();
+        operationLog.setUserId(event.getUserId());
+        operationLog.setAction(event.getAction());
+        operationLog.setIp(event.getIp());
+        operationLog.setDetail(event.getDetail());
+        operationLog.setEventId(event.getEventId());
+        operationLog.setGmtCreate(event.getTimestamp());
+        return operationLog;
+    }
+
+    /**
+     * 批量写入明细，单条重复投递时返回false
+     */
+    private boolean persist(List<OperationLog> logs, List<String> markedEventIds) {
+        try {
+            if (segmentLogStore != null) {
+                segmentLogStore.append(logs);
+            } else {
+                batchInsert(logs);
+            }
+        } catch (DataIntegrityViolationException e) {
+            if (logs.size() == 1 && logs.get(0).getEventId() != null && isDuplicateEvent(e)) {
+                log.info("操作日志事件已入库，忽略重复投递: eventId={}", logs.get(0).getEventId());
+                return false;
+            }
+            markedEventIds.forEach(eventDeduplicator::forget);
+            throw e;
+        } catch (RuntimeException e) {
+            markedEventIds.forEach(eventDeduplicator::forget);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * 在自适应并发上限内写库，按写入耗时与错误调整上限
+     */
+    private void batchInsert(List<OperationLog> logs) {
+        long start = concurrencyLimiter.acquire();
+        try {
+            operationLogJdbcDao.batchInsert(logs);
+        } catch (RuntimeException e) {
+            concurrencyLimiter.onError(e);
+            throw e;
+        }
+        concurrencyLimiter.onSuccess(start);
+    }
+
+    private void handleFailure(OperationLogEvent event, Exception e) {
+        // 撤销去重标记，保证消息重投时可以再次入库
+        if (event.getEventId() != null) {
+            eventDeduplicator.forget(event.getEventId());
+        }
+        log.error("处理操作日志事件失败: userId={}, action={}, error={}", 
+                 event.getUserId(), event.getAction(), e.getMessage(), e);
+    }
+
+    private boolean isDuplicateEvent(DataIntegrityViolationException e) {
+        String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        return message != null && message.contains(EVENT_UNIQUE_KEY);
+    }
+
+    /**
+     * 事务提交后分发到各输出端，未开启事务时立即分发
+     */
+    private void notifyPersisted(List<OperationLog> logs) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sinkDispatcher.dispatchPersisted(logs);
+                }
+            });
+        } else {
+            sinkDispatcher.dispatchPersisted(logs);
+        }
+    }
+
+    /**
+     * 写入聚合表后分发到各输出端，写入失败时抛出异常，消息不被确认
+     */
+    private void aggregate(List<OperationLog> logs) {
+        logAggregateService.add(logs);
+        sinkDispatcher.dispatchAggregated(logs);
     }
 }
@@ -0,0 +1,44 @@
+package com.logging.service.impl;
+
+import com.logging.dto.LogQuery;
+import com.logging.dto.OperationLogView;
+import com.logging.recent.RecentActivityCache;
+import com.logging.service.OperationLogService;
+import com.logging.service.RecentActivityService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 用户最近操作查询服务实现
+ * 优先读取堆外环形缓冲；未命中或缓冲已过有效期时按idx_user_time回查一整环的记录并回填，
+ * 有效期内该用户的查询直接命中缓冲
+ */
+@Service
+@Slf4j
+public class RecentActivityServiceImpl implements RecentActivityService {
+
+    @Autowired
+    private RecentActivityCache recentActivityCache;
+
+    @Autowired
+    private OperationLogService operationLogService;
+
+    @Override
+    public List<OperationLogView> getRecentActivity(Long userId, int limit) {
+        int size = Math.max(1, Math.min(limit, recentActivityCache.getRingSize()));
+        List<OperationLogView> cached = recentActivityCache.get(userId, size);
+        if (cached != null) {
+            return cached;
+        }
+        LogQuery query = new LogQuery();
+        query.setUserId(userId);
+        query.setSize(recentActivityCache.getRingSize());
+        List<OperationLogView> rows = operationLogService.queryLogs(query).getItems();
+        log.debug("最近操作未命中缓冲，已回查数据库: userId={}, rows={}", userId, rows.size());
+        recentActivityCache.fill(userId, rows);
+        return rows.size() > size ? rows.subList(0, size) : rows;
+    }
+}
@@ -0,0 +1,201 @@
+package com.logging.service.impl;
+
+import com.logging.config.InstanceIdentity;
+import com.logging.dto.HeavyHitter;
+import com.logging.entity.OperationLog;
+import com.logging.ingest.LogIngestListener;
+import com.logging.repository.AnalyticsSketchDao;
+import com.logging.service.SketchAnalyticsService;
+import com.logging.sketch.DailySketches;
+import com.logging.sketch.SketchKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 草图统计服务实现
+ * 入库回调(含按入库策略只做聚合的日志)更新内存中近几天的草图，定时把有变化的草图以覆盖语义写入analytics_sketches，
+ * 每个实例以稳定的实例标识各占一行；查询时合并各实例的草图，本实例以内存中的为准。
+ * 重启后先读回本实例已保存的草图再接续累加，读回之前不写库，避免覆盖；早于内存保留天数的迟到日志不计入
+ */
+@Service
+@Slf4j
+public class SketchAnalyticsServiceImpl implements SketchAnalyticsService, LogIngestListener {
+
+    private final Map<SketchKey, DailySketches> sketches = new ConcurrentHashMap<>();
+
+    @Autowired
+    private AnalyticsSketchDao analyticsSketchDao;
+
+    @Autowired
+    private InstanceIdentity instanceIdentity;
+
+    @Value("${operation-log.sketch.precision:14}")
+    private int precision;
+
+    @Value("${operation-log.sketch.top-capacity:1000}")
+    private int topCapacity;
+
+    /**
+     * 内存中保留的天数，含当天
+     */
+    @Value("${operation-log.sketch.memory-days:2}")
+    private int memoryDays;
+
+    @Value("${operation-log.sketch.retention-days:90}")
+    private int retentionDays;
+
+    private volatile boolean restored;
+
+    @Override
+    public String getSinkName() {
+        return "sketch";
+    }
+
+    @Override
+    public void onLogsPersisted(List<OperationLog> logs) {
+        LocalDate oldest = LocalDate.now().minusDays(memoryDays - 1L);
+        for (OperationLog operationLog : logs) {
+            LocalDate day = operationLog.getGmtCreate().toLocalDate();
+            if (day.isBefore(oldest)) {
+                continue;
+            }
+            add(new SketchKey(day, SketchKey.ALL_ACTIONS), operationLog);
+            add(new SketchKey(day, operationLog.getAction()), operationLog);
+        }
+    }
+
+    @Override
+    public void onLogsAggregated(List<OperationLog> logs) {
+        onLogsPersisted(logs);
+    }
+
+    @Override
+    public long countActiveUsers(LocalDate day, String action) {
+        return merged(day, action).getUsers().estimate();
+    }
+
+    @Override
+    public List<HeavyHitter> getTopIps(LocalDate day, String action, int limit) {
+        return merged(day, action).getIps().top(Math.min(limit, topCapacity));
+    }
+
+    @Override
+    public List<HeavyHitter> getTopUsers(LocalDate day, String action, int limit) {
+        return merged(day, action).getTopUsers().top(Math.min(limit, topCapacity));
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${operation-log.sketch.flush-interval-ms:60000}")
+    public synchronized void flush() {
+        if (!restored && !restore()) {
+            return;
+        }
+        String instanceId = instanceIdentity.getInstanceId();
+        LocalDate oldest = LocalDate.now().minusDays(memoryDays - 1L);
+        int saved = 0;
+        for (Map.Entry<SketchKey, DailySketches> entry : sketches.entrySet()) {
+            DailySketches daily = entry.getValue();
+            byte[] payload;
+            synchronized (daily) {
+                if (!daily.isDirty()) {
+                    if (entry.getKey().getDay().isBefore(oldest)) {
+                        sketches.remove(entry.getKey());
+                    }
+                    continue;
+                }
+                payload = daily.toBytes();
+                daily.setDirty(false);
+            }
+            try {
+                analyticsSketchDao.save(entry.getKey(), instanceId, payload);
+                saved++;
+            } catch (Exception e) {
+                synchronized (daily) {
+                    daily.setDirty(true);
+                }
+                log.error("统计草图保存失败: key={}, error={}", entry.getKey(), e.getMessage(), e);
+            }
+        }
+        log.debug("统计草图保存完成: saved={}, inMemory={}", saved, sketches.size());
+    }
+
+    /**
+     * 删除超过保留天数的草图
+     */
+    @Scheduled(cron = "${operation-log.sketch.cleanup-cron:0 50 0 * * ?}")
+    public void cleanup() {
+        try {
+            int deleted = analyticsSketchDao.deleteBefore(LocalDate.now().minusDays(retentionDays));
+            log.info("过期统计草图已删除: rows={}", deleted);
+        } catch (Exception e) {
+            log.error("过期统计草图删除失败: error={}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void add(SketchKey key, OperationLog operationLog) {
+        DailySketches daily = sketches.computeIfAbsent(key, k -> new DailySketches(precision, topCapacity));
+        synchronized (daily) {
+            daily.add(operationLog.getUserId(), operationLog.getIp());
+        }
+    }
+
+    /**
+     * 读回本实例已保存的草图并入内存，成功前flush不写库
+     */
+    private boolean restore() {
+        try {
+            Map<SketchKey, byte[]> persisted = analyticsSketchDao.findByInstance(instanceIdentity.getInstanceId(),
+                    LocalDate.now().minusDays(memoryDays - 1L));
+            persisted.forEach((key, payload) -> {
+                DailySketches daily = sketches.computeIfAbsent(key, k -> new DailySketches(precision, topCapacity));
+                synchronized (daily) {
+                    daily.merge(DailySketches.fromBytes(payload));
+                    daily.setDirty(true);
+                }
+            });
+            restored = true;
+            log.info("统计草图已读回: sketches={}", persisted.size());
+            return true;
+        } catch (Exception e) {
+            log.error("统计草图读回失败，暂不写库: error={}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 合并各实例的草图；本实例已读回时以内存为准，否则内存只含重启后的增量，与库中本实例的行一并合并
+     */
+    private DailySketches merged(LocalDate day, String action) {
+        SketchKey key = new SketchKey(day, action == null ? SketchKey.ALL_ACTIONS : action);
+        DailySketches merged = new DailySketches(precision, topCapacity);
+        DailySketches local = sketches.get(key);
+        String instanceId = instanceIdentity.getInstanceId();
+        boolean skipOwnRow = restored && local != null;
+        for (Map.Entry<String, byte[]> row : analyticsSketchDao.find(key).entrySet()) {
+            if (skipOwnRow && row.getKey().equals(instanceId)) {
+                continue;
+            }
+            merged.merge(DailySketches.fromBytes(row.getValue()));
+        }
+        if (local != null) {
+            synchronized (local) {
+                merged.merge(local);
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,72 @@
+package com.logging.sketch;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Count-Min频次草图
+ * depth行、每行width个计数器，各行以双重哈希h1 + i*h2选列；估计值只会偏大，
+ * 偏差不超过总次数的e/width(概率1 - e^-depth)；合并即对应计数器相加
+ */
+public final class CountMinSketch {
+
+    private final int depth;
+
+    private final int width;
+
+    private final long[] counters;
+
+    public CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        this.counters = new long[depth * width];
+    }
+
+    public void add(long hash, long count) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < depth; i++) {
+            counters[i * width + column(h1 + i * h2)] += count;
+        }
+    }
+
+    public long estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, counters[i * width + column(h1 + i * h2)]);
+        }
+        return min;
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Count-Min草图尺寸不一致");
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(depth);
+        out.writeInt(width);
+        for (long counter : counters) {
+            out.writeLong(counter);
+        }
+    }
+
+    static CountMinSketch readFrom(DataInputStream in) throws IOException {
+        CountMinSketch sketch = new CountMinSketch(in.readInt(), in.readInt());
+        for (int i = 0; i < sketch.counters.length; i++) {
+            sketch.counters[i] = in.readLong();
+        }
+        return sketch;
+    }
+
+    private int column(int combined) {
+        return (combined & Integer.MAX_VALUE) % width;
+    }
+}
@@ -0,0 +1,102 @@
+package com.logging.sketch;
+
+import com.logging.util.Hash64;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 一天(及一种操作类型)的草图组：活跃用户HyperLogLog、高频IP与高频用户
+ * 序列化为版本号加Deflate压缩的各草图；非线程安全，由调用方加锁
+ */
+public final class DailySketches {
+
+    private static final int VERSION = 1;
+
+    private final HyperLogLog users;
+
+    private final HeavyHitterSketch ips;
+
+    private final HeavyHitterSketch topUsers;
+
+    private boolean dirty;
+
+    public DailySketches(int precision, int topCapacity) {
+        this(new HyperLogLog(precision), new HeavyHitterSketch(topCapacity), new HeavyHitterSketch(topCapacity));
+    }
+
+    private DailySketches(HyperLogLog users, HeavyHitterSketch ips, HeavyHitterSketch topUsers) {
+        this.users = users;
+        this.ips = ips;
+        this.topUsers = topUsers;
+    }
+
+    public void add(Long userId, String ip) {
+        if (userId != null) {
+            users.add(Hash64.hash(userId));
+            topUsers.offer(userId.toString());
+        }
+        if (ip != null) {
+            ips.offer(ip);
+        }
+        dirty = true;
+    }
+
+    public void merge(DailySketches other) {
+        users.merge(other.users);
+        ips.merge(other.ips);
+        topUsers.merge(other.topUsers);
+    }
+
+    public HyperLogLog getUsers() {
+        return users;
+    }
+
+    public HeavyHitterSketch getIps() {
+        return ips;
+    }
+
+    public HeavyHitterSketch getTopUsers() {
+        return topUsers;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeByte(VERSION);
+            users.writeTo(out);
+            ips.writeTo(out);
+            topUsers.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static DailySketches fromBytes(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload)))) {
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("不支持的草图版本: " + version);
+            }
+            return new DailySketches(HyperLogLog.readFrom(in), HeavyHitterSketch.readFrom(in),
+                    HeavyHitterSketch.readFrom(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.logging.sketch;
+
+import com.logging.dto.HeavyHitter;
+import com.logging.util.Hash64;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 高频键草图
+ * Space-Saving给出候选键，Count-Min给出任意键的次数上界，两者取小作为候选键的估计次数；
+ * 多实例合并后Space-Saving的计数偏差会累加，Count-Min的偏差只取决于总次数与宽度
+ */
+public final class HeavyHitterSketch {
+
+    private static final int CMS_DEPTH = 4;
+
+    private static final int CMS_WIDTH = 2048;
+
+    private final SpaceSaving candidates;
+
+    private final CountMinSketch frequencies;
+
+    public HeavyHitterSketch(int capacity) {
+        this(new SpaceSaving(capacity), new CountMinSketch(CMS_DEPTH, CMS_WIDTH));
+    }
+
+    private HeavyHitterSketch(SpaceSaving candidates, CountMinSketch frequencies) {
+        this.candidates = candidates;
+        this.frequencies = frequencies;
+    }
+
+    public void offer(String key) {
+        candidates.offer(key, 1L);
+        frequencies.add(Hash64.hash(key), 1L);
+    }
+
+    /**
+     * 估计次数最大的limit个键
+     */
+    public List<HeavyHitter> top(int limit) {
+        List<HeavyHitter> hitters = new ArrayList<>();
+        for (SpaceSaving.Counter counter : candidates.top(Integer.MAX_VALUE)) {
+            long count = Math.min(counter.getCount(), frequencies.estimate(Hash64.hash(counter.getKey())));
+            hitters.add(new HeavyHitter(counter.getKey(), count));
+        }
+        hitters.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed().thenComparing(HeavyHitter::getKey));
+        return hitters.size() > limit ? new ArrayList<>(hitters.subList(0, limit)) : hitters;
+    }
+
+    public void merge(HeavyHitterSketch other) {
+        candidates.merge(other.candidates);
+        frequencies.merge(other.frequencies);
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        candidates.writeTo(out);
+        frequencies.writeTo(out);
+    }
+
+    static HeavyHitterSketch readFrom(DataInputStream in) throws IOException {
+        return new HeavyHitterSketch(SpaceSaving.readFrom(in), CountMinSketch.readFrom(in));
+    }
+}
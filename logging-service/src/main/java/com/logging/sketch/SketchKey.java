@@ -0,0 +1,18 @@
+package com.logging.sketch;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * 草图键：日期与操作类型，action为ALL_ACTIONS时表示不区分操作类型
+ */
+@Value
+public class SketchKey {
+
+    public static final String ALL_ACTIONS = "*";
+
+    LocalDate day;
+
+    String action;
+}
@@ -0,0 +1,143 @@
+package com.logging.sketch;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving高频项统计
+ * 最多跟踪capacity个键；新键到来且已满时顶替计数最小的键，并继承其计数作为误差上界。
+ * 真实次数超过总次数/capacity的键一定在表中；合并按可合并摘要的方式，缺失的一侧以该侧最小计数补足后截取前capacity个
+ */
+public final class SpaceSaving {
+
+    private static final Comparator<Counter> BY_COUNT = Comparator
+            .comparingLong((Counter counter) -> counter.count)
+            .thenComparing(counter -> counter.key);
+
+    private final int capacity;
+
+    private final Map<String, Counter> counters = new HashMap<>();
+
+    private final TreeSet<Counter> ordered = new TreeSet<>(BY_COUNT);
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Space-Saving容量需大于0: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public void offer(String key, long count) {
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            if (counters.size() < capacity) {
+                counter = new Counter(key, 0L, 0L);
+            } else {
+                Counter evicted = ordered.pollFirst();
+                counters.remove(evicted.key);
+                counter = new Counter(key, evicted.count, evicted.count);
+            }
+            counters.put(key, counter);
+        } else {
+            ordered.remove(counter);
+        }
+        counter.count += count;
+        ordered.add(counter);
+    }
+
+    /**
+     * 计数最大的limit个键，计数为上界，count - error为下界
+     */
+    public List<Counter> top(int limit) {
+        List<Counter> top = new ArrayList<>(Math.min(limit, ordered.size()));
+        for (Counter counter : ordered.descendingSet()) {
+            if (top.size() >= limit) {
+                break;
+            }
+            top.add(new Counter(counter.key, counter.count, counter.error));
+        }
+        return top;
+    }
+
+    public void merge(SpaceSaving other) {
+        long selfMin = counters.size() < capacity ? 0L : ordered.first().count;
+        long otherMin = other.counters.size() < other.capacity ? 0L : other.ordered.first().count;
+        Set<String> keys = new HashSet<>(counters.keySet());
+        keys.addAll(other.counters.keySet());
+        List<Counter> merged = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Counter self = counters.get(key);
+            Counter theirs = other.counters.get(key);
+            long count = (self == null ? selfMin : self.count) + (theirs == null ? otherMin : theirs.count);
+            long error = (self == null ? selfMin : self.error) + (theirs == null ? otherMin : theirs.error);
+            merged.add(new Counter(key, count, error));
+        }
+        merged.sort(BY_COUNT.reversed());
+        counters.clear();
+        ordered.clear();
+        for (Counter counter : merged.subList(0, Math.min(capacity, merged.size()))) {
+            counters.put(counter.key, counter);
+            ordered.add(counter);
+        }
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(capacity);
+        out.writeInt(counters.size());
+        for (Counter counter : ordered) {
+            out.writeUTF(counter.key);
+            out.writeLong(counter.count);
+            out.writeLong(counter.error);
+        }
+    }
+
+    static SpaceSaving readFrom(DataInputStream in) throws IOException {
+        SpaceSaving sketch = new SpaceSaving(in.readInt());
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            Counter counter = new Counter(in.readUTF(), in.readLong(), in.readLong());
+            sketch.counters.put(counter.key, counter);
+            sketch.ordered.add(counter);
+        }
+        return sketch;
+    }
+
+    /**
+     * 键的计数及误差上界
+     */
+    public static final class Counter {
+
+        private final String key;
+
+        private long count;
+
+        private final long error;
+
+        private Counter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.logging.stats;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * 日志聚合键
+ * ip为空串表示事件未携带IP
+ */
+@Value
+public class AggregateKey {
+
+    public static final String NO_IP = "";
+
+    Long userId;
+
+    String action;
+
+    String ip;
+
+    LocalDateTime windowStart;
+}
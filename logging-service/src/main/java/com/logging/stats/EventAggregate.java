@@ -0,0 +1,38 @@
+package com.logging.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一个聚合窗口内的事件次数及首末时间
+ */
+@Data
+@AllArgsConstructor
+public class EventAggregate {
+
+    private long count;
+
+    private LocalDateTime firstTime;
+
+    private LocalDateTime lastTime;
+
+    public static EventAggregate of(LocalDateTime time) {
+        return new EventAggregate(1L, time, time);
+    }
+
+    /**
+     * 合并另一段的次数和首末时间，返回自身
+     */
+    public EventAggregate merge(EventAggregate other) {
+        count += other.count;
+        if (other.firstTime.isBefore(firstTime)) {
+            firstTime = other.firstTime;
+        }
+        if (other.lastTime.isAfter(lastTime)) {
+            lastTime = other.lastTime;
+        }
+        return this;
+    }
+}
@@ -0,0 +1,46 @@
+package com.logging.stats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 汇总时间粒度
+ */
+public enum RollupGranularity {
+
+    MINUTE("action_rollup_minute", ChronoUnit.MINUTES),
+
+    HOUR("action_rollup_hour", ChronoUnit.HOURS);
+
+    private final String tableName;
+
+    private final ChronoUnit unit;
+
+    RollupGranularity(String tableName, ChronoUnit unit) {
+        this.tableName = tableName;
+        this.unit = unit;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * 截断到所在时间桶的起点
+     */
+    public LocalDateTime bucketOf(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return bucketStart.plus(1, unit);
+    }
+
+    /**
+     * 计算[start, end]覆盖的时间桶数量
+     */
+    public long bucketCount(LocalDateTime start, LocalDateTime end) {
+        return Duration.between(bucketOf(start), bucketOf(end)).getSeconds() / unit.getDuration().getSeconds() + 1;
+    }
+}
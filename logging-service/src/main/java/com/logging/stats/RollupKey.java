@@ -0,0 +1,23 @@
+package com.logging.stats;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * 操作汇总键
+ * ipPrefix为空串表示不区分IP的汇总
+ */
+@Value
+public class RollupKey {
+
+    public static final String ALL_IPS = "";
+
+    RollupGranularity granularity;
+
+    String action;
+
+    String ipPrefix;
+
+    LocalDateTime bucketStart;
+}
@@ -0,0 +1,94 @@
+package com.logging.stats;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 分段计数缓冲
+ * 写入方持有分段读锁并在LongAdder上累加，多线程写入互不阻塞；
+ * 刷盘时逐段持写锁替换底层Map，取走的增量不会与后续写入交错丢失
+ */
+public class StripedCounterMap<K> {
+
+    private final Segment<K>[] segments;
+
+    @SuppressWarnings("unchecked")
+    public StripedCounterMap(int stripes) {
+        segments = new Segment[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * 累加增量
+     */
+    public void add(K key, long delta) {
+        Segment<K> segment = segmentFor(key);
+        segment.lock.readLock().lock();
+        try {
+            segment.counters.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询尚未取走的增量
+     */
+    public long pending(K key) {
+        Segment<K> segment = segmentFor(key);
+        segment.lock.readLock().lock();
+        try {
+            LongAdder adder = segment.counters.get(key);
+            return adder == null ? 0L : adder.sum();
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 取走全部增量并清空缓冲
+     */
+    public Map<K, Long> drain() {
+        Map<K, Long> drained = new HashMap<>();
+        for (Segment<K> segment : segments) {
+            ConcurrentHashMap<K, LongAdder> taken;
+            segment.lock.writeLock().lock();
+            try {
+                if (segment.counters.isEmpty()) {
+                    continue;
+                }
+                taken = segment.counters;
+                segment.counters = new ConcurrentHashMap<>();
+            } finally {
+                segment.lock.writeLock().unlock();
+            }
+            taken.forEach((key, adder) -> drained.merge(key, adder.sum(), Long::sum));
+        }
+        return drained;
+    }
+
+    /**
+     * 将取走的增量放回缓冲，用于刷盘失败后重试
+     */
+    public void restore(Map<K, Long> deltas) {
+        deltas.forEach(this::add);
+    }
+
+    private Segment<K> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static final class Segment<K> {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private volatile ConcurrentHashMap<K, LongAdder> counters = new ConcurrentHashMap<>();
+    }
+}
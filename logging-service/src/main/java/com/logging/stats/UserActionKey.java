@@ -0,0 +1,21 @@
+package com.logging.stats;
+
+import lombok.Value;
+
+/**
+ * 用户操作计数键
+ * action为ALL_ACTIONS时表示该用户的总操作次数
+ */
+@Value
+public class UserActionKey {
+
+    public static final String ALL_ACTIONS = "*";
+
+    Long userId;
+
+    String action;
+
+    public static UserActionKey total(Long userId) {
+        return new UserActionKey(userId, ALL_ACTIONS);
+    }
+}
@@ -0,0 +1,75 @@
+package com.logging.store;
+
+import com.logging.entity.OperationLog;
+import com.logging.util.VarInts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 段存储记录编解码
+ * 字段顺序：logId、userId、时间(毫秒)均为变长整数，字符串为(长度+1)前缀的UTF-8，长度前缀0表示null
+ */
+final class LogRecordCodec {
+
+    private LogRecordCodec() {
+    }
+
+    static byte[] encode(OperationLog operationLog) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        try {
+            VarInts.writeVarLong(out, operationLog.getLogId());
+            VarInts.writeVarLong(out, VarInts.zigZag(operationLog.getUserId()));
+            VarInts.writeVarLong(out, toEpochMilli(operationLog.getGmtCreate()));
+            writeString(out, operationLog.getAction());
+            writeString(out, operationLog.getIp());
+            writeString(out, operationLog.getDetail());
+            writeString(out, operationLog.getEventId());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    static OperationLog decode(ByteBuffer in) {
+        OperationLog operationLog = new OperationLog();
+        operationLog.setLogId(VarInts.readVarLong(in));
+        operationLog.setUserId(VarInts.unZigZag(VarInts.readVarLong(in)));
+        operationLog.setGmtCreate(LocalDateTime.ofInstant(Instant.ofEpochMilli(VarInts.readVarLong(in)), ZoneId.systemDefault()));
+        operationLog.setAction(readString(in));
+        operationLog.setIp(readString(in));
+        operationLog.setDetail(readString(in));
+        operationLog.setEventId(readString(in));
+        return operationLog;
+    }
+
+    static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) throws IOException {
+        if (value == null) {
+            VarInts.writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        VarInts.writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = VarInts.readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
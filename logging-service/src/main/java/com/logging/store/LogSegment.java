@@ -0,0 +1,371 @@
+package com.logging.store;
+
+import com.logging.entity.OperationLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写的日志段文件
+ * 文件格式：头部(魔数、版本、首个来源段代号、被替换的段代号列表) → 记录(长度、CRC32、编码内容)，长度为0表示结尾；
+ * 版本1的头部记录被替换的代号区间，仍可读取；
+ * 内存中维护每用户的记录位置、出现过的操作类型和稀疏时间索引，打开时扫描文件重建；
+ * 单线程追加，位置通过volatile发布，读取无需加锁；封存后截断到实际长度并改为只读映射
+ */
+class LogSegment {
+
+    private static final int MAGIC = 0x4C4F4753;
+
+    private static final int VERSION = 2;
+
+    private static final int LEGACY_VERSION = 1;
+
+    private static final int LEGACY_HEADER_SIZE = 24;
+
+    /**
+     * 魔数、版本、首个来源段代号、被替换段数，其后每个被替换的代号8字节
+     */
+    private static final int FIXED_HEADER_SIZE = 20;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * 每隔多少条记录登记一个稀疏时间索引点
+     */
+    private static final int TIME_INDEX_INTERVAL = 64;
+
+    private final File file;
+
+    private final long generation;
+
+    /**
+     * 段内数据最早来源的段代号：新写入的段为自身代号，合并产生的段为被合并段中最小的，段列表按此排序
+     */
+    private final long firstGeneration;
+
+    /**
+     * 合并产生的段逐个记录其替换的段代号，重启时据此清理合并后未删除的旧段；
+     * 版本1的段只记录区间，以replacesFrom、replacesTo表示
+     */
+    private final long[] replaced;
+
+    private final long replacesFrom;
+
+    private final long replacesTo;
+
+    /**
+     * 首条记录的位置，即头部长度
+     */
+    private final int dataStart;
+
+    private final int capacity;
+
+    private volatile MappedByteBuffer buffer;
+
+    private volatile int writePosition;
+
+    private volatile boolean sealed;
+
+    private volatile int recordCount;
+
+    private volatile long minTime = Long.MAX_VALUE;
+
+    private volatile long maxTime = Long.MIN_VALUE;
+
+    private final Map<Long, LongList> userPositions = new ConcurrentHashMap<>();
+
+    private final Set<String> actions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 稀疏时间索引：每个采样点依次存放记录位置，以及该位置之前所有记录的最大时间，两者成对发布
+     */
+    private final LongList timeIndex = new LongList(128);
+
+    private LogSegment(File file, long generation, long firstGeneration, long[] replaced, long replacesFrom,
+                       long replacesTo, int dataStart, int capacity, MappedByteBuffer buffer) {
+        this.file = file;
+        this.generation = generation;
+        this.firstGeneration = firstGeneration;
+        this.replaced = replaced;
+        this.replacesFrom = replacesFrom;
+        this.replacesTo = replacesTo;
+        this.dataStart = dataStart;
+        this.writePosition = dataStart;
+        this.capacity = capacity;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 新建可追加的段，replaced为合并时被替换的段代号，新写入的段传空数组
+     */
+    static LogSegment create(File file, long generation, long firstGeneration, long[] replaced, int capacity)
+            throws IOException {
+        int dataStart = FIXED_HEADER_SIZE + replaced.length * 8;
+        if (dataStart >= capacity) {
+            throw new IOException("被替换的段过多: " + replaced.length);
+        }
+        if (!file.createNewFile()) {
+            throw new IOException("段文件已存在: " + file);
+        }
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            raf.setLength(capacity);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, firstGeneration);
+        buffer.putInt(16, replaced.length);
+        for (int i = 0; i < replaced.length; i++) {
+            buffer.putLong(FIXED_HEADER_SIZE + i * 8, replaced[i]);
+        }
+        return new LogSegment(file, generation, firstGeneration, replaced.clone(), -1L, -1L, dataStart, capacity,
+                buffer);
+    }
+
+    /**
+     * 打开已有段并重建内存索引，以只读方式封存
+     */
+    static LogSegment open(File file, long generation) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < FIXED_HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("段文件格式错误: " + file);
+        }
+        LogSegment segment;
+        if (buffer.getInt(4) == LEGACY_VERSION && buffer.capacity() >= LEGACY_HEADER_SIZE) {
+            long replacesFrom = buffer.getLong(8);
+            segment = new LogSegment(file, generation, replacesFrom < 0 ? generation : replacesFrom, new long[0],
+                    replacesFrom, buffer.getLong(16), LEGACY_HEADER_SIZE, buffer.capacity(), buffer);
+        } else if (buffer.getInt(4) == VERSION) {
+            int count = buffer.getInt(16);
+            int dataStart = FIXED_HEADER_SIZE + count * 8;
+            if (count < 0 || dataStart > buffer.capacity()) {
+                throw new IOException("段文件格式错误: " + file);
+            }
+            long[] replaced = new long[count];
+            for (int i = 0; i < count; i++) {
+                replaced[i] = buffer.getLong(FIXED_HEADER_SIZE + i * 8);
+            }
+            segment = new LogSegment(file, generation, buffer.getLong(8), replaced, -1L, -1L, dataStart,
+                    buffer.capacity(), buffer);
+        } else {
+            throw new IOException("段文件格式错误: " + file);
+        }
+        segment.rebuild();
+        return segment;
+    }
+
+    /**
+     * 追加一条记录，空间不足或已封存时返回false
+     */
+    boolean append(OperationLog operationLog, byte[] record) {
+        int position = writePosition;
+        if (sealed || position + RECORD_HEADER_SIZE + record.length > capacity) {
+            return false;
+        }
+        ByteBuffer out = buffer.duplicate();
+        out.position(position + RECORD_HEADER_SIZE);
+        out.put(record);
+        buffer.putInt(position + 4, crc(record));
+        buffer.putInt(position, record.length);
+        index(position, operationLog);
+        writePosition = position + RECORD_HEADER_SIZE + record.length;
+        return true;
+    }
+
+    /**
+     * 封存：刷盘后截断到实际长度并重新以只读方式映射
+     */
+    void seal() throws IOException {
+        if (sealed) {
+            return;
+        }
+        sealed = true;
+        buffer.force();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            channel.truncate(writePosition);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, writePosition);
+        }
+    }
+
+    void force() {
+        if (!sealed) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * 读取指定位置的记录
+     */
+    OperationLog readAt(long position) {
+        ByteBuffer in = buffer.duplicate();
+        int length = in.getInt((int) position);
+        in.position((int) position + RECORD_HEADER_SIZE);
+        in.limit((int) position + RECORD_HEADER_SIZE + length);
+        return LogRecordCodec.decode(in);
+    }
+
+    /**
+     * 从指定位置起顺序读取到当前末尾
+     */
+    void scan(long fromPosition, Consumer<OperationLog> consumer) {
+        int end = writePosition;
+        ByteBuffer in = buffer.duplicate();
+        int position = (int) fromPosition;
+        while (position < end) {
+            int length = in.getInt(position);
+            in.limit(position + RECORD_HEADER_SIZE + length);
+            in.position(position + RECORD_HEADER_SIZE);
+            consumer.accept(LogRecordCodec.decode(in));
+            in.limit(in.capacity());
+            position += RECORD_HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * 逐条复制原始记录，用于合并
+     */
+    void copyTo(LogSegment target) {
+        scan(dataStart, operationLog -> target.append(operationLog, LogRecordCodec.encode(operationLog)));
+    }
+
+    /**
+     * 某用户在本段中的记录位置
+     */
+    LongList positionsOf(Long userId) {
+        return userPositions.get(userId);
+    }
+
+    boolean containsAction(String action) {
+        return actions.contains(action);
+    }
+
+    /**
+     * 利用稀疏时间索引定位扫描起点：起点之前的记录时间都早于from
+     */
+    long seekTime(long from) {
+        int low = 0;
+        int high = timeIndex.size() / 2 - 1;
+        long position = dataStart;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (timeIndex.get(2 * mid + 1) < from) {
+                position = timeIndex.get(2 * mid);
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return position;
+    }
+
+    boolean overlaps(long from, long to) {
+        return recordCount > 0 && maxTime >= from && minTime <= to;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    long getFirstGeneration() {
+        return firstGeneration;
+    }
+
+    long[] getReplaced() {
+        return replaced.clone();
+    }
+
+    /**
+     * 本段是否由合并替换了给定代号的段
+     */
+    boolean replaces(long otherGeneration) {
+        if (otherGeneration == generation) {
+            return false;
+        }
+        for (long generationReplaced : replaced) {
+            if (generationReplaced == otherGeneration) {
+                return true;
+            }
+        }
+        return replacesFrom >= 0 && otherGeneration >= replacesFrom && otherGeneration <= replacesTo;
+    }
+
+    /**
+     * 首条记录的位置
+     */
+    long getDataStart() {
+        return dataStart;
+    }
+
+    int getSize() {
+        return writePosition;
+    }
+
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    Set<Long> userIds() {
+        return Collections.unmodifiableSet(userPositions.keySet());
+    }
+
+    private void rebuild() {
+        int position = dataStart;
+        ByteBuffer in = buffer.duplicate();
+        while (position + RECORD_HEADER_SIZE <= capacity) {
+            int length = in.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > capacity) {
+                break;
+            }
+            byte[] record = new byte[length];
+            in.position(position + RECORD_HEADER_SIZE);
+            in.get(record);
+            if (crc(record) != in.getInt(position + 4)) {
+                break;
+            }
+            index(position, LogRecordCodec.decode(ByteBuffer.wrap(record)));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        writePosition = position;
+        sealed = true;
+    }
+
+    private void index(int position, OperationLog operationLog) {
+        long time = LogRecordCodec.toEpochMilli(operationLog.getGmtCreate());
+        if (recordCount % TIME_INDEX_INTERVAL == 0) {
+            timeIndex.addPair(position, maxTime);
+        }
+        userPositions.computeIfAbsent(operationLog.getUserId(), k -> new LongList(4)).add(position);
+        actions.add(operationLog.getAction());
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        recordCount = recordCount + 1;
+    }
+
+    private static int crc(byte[] record) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(record, 0, record.length);
+        return (int) crc32.getValue();
+    }
+}
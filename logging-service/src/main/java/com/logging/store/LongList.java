@@ -0,0 +1,50 @@
+package com.logging.store;
+
+import java.util.Arrays;
+
+/**
+ * 单写多读的追加型long数组
+ * 写入方先写元素再发布size，读取方先读size再读数组，无需加锁
+ */
+final class LongList {
+
+    private volatile long[] values;
+
+    private volatile int size;
+
+    LongList(int initialCapacity) {
+        this.values = new long[Math.max(initialCapacity, 4)];
+    }
+
+    void add(long value) {
+        long[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            values = current;
+        }
+        current[size] = value;
+        size = size + 1;
+    }
+
+    /**
+     * 追加两个元素后一次发布size，读取方不会看到只写入一半的元素对
+     */
+    void addPair(long first, long second) {
+        long[] current = values;
+        if (size + 2 > current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            values = current;
+        }
+        current[size] = first;
+        current[size + 1] = second;
+        size = size + 2;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(int index) {
+        return values[index];
+    }
+}
@@ -0,0 +1,479 @@
+package com.logging.store;
+
+import com.logging.dto.LogCursor;
+import com.logging.dto.LogQuery;
+import com.logging.dto.OperationLogView;
+import com.logging.entity.OperationLog;
+import com.logging.util.IpAddresses;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 嵌入式段存储引擎
+ * 操作日志追加写入内存映射的段文件，按大小或时间滚动；查询时只访问相关的段：
+ * 按用户查询走每段的用户位置索引，按操作类型查询跳过不含该类型的段，按时间查询先按段的时间范围裁剪、
+ * 再用稀疏时间索引定位段内起点；后台任务删除过期段并把相邻的小段合并。
+ * 启用后operation_logs中没有数据，依赖明细表的归档、分区维护与全文检索不能同时启用，启动时检查；
+ * 回填不可用，计数重建与组合查询改为读取本存储
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "operation-log.storage.engine", havingValue = "SEGMENT")
+public class SegmentLogStore {
+
+    private static final String SEGMENT_PREFIX = "seg-";
+
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private static final Comparator<OperationLog> NEWEST_FIRST = Comparator
+            .comparing(OperationLog::getGmtCreate)
+            .thenComparing(OperationLog::getLogId)
+            .reversed();
+
+    /**
+     * 段列表的顺序：按段内数据最早来源的代号，合并产生的段排在被合并段原来的位置
+     */
+    private static final Comparator<LogSegment> SEGMENT_ORDER = Comparator
+            .comparingLong(LogSegment::getFirstGeneration)
+            .thenComparingLong(LogSegment::getGeneration);
+
+    private final List<LogSegment> segments = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Object compactLock = new Object();
+
+    private volatile LogSegment active;
+
+    private volatile long activeSince;
+
+    @Value("${operation-log.storage.segment.dir:./data/segments}")
+    private String dir;
+
+    @Value("${operation-log.storage.segment.segment-size:268435456}")
+    private int segmentSize;
+
+    @Value("${operation-log.storage.segment.roll-interval-ms:3600000}")
+    private long rollIntervalMs;
+
+    @Value("${operation-log.partition.retention-days:180}")
+    private int retentionDays;
+
+    @Value("${operation-log.archive.enabled:false}")
+    private boolean archiveEnabled;
+
+    @Value("${operation-log.partition.enabled:false}")
+    private boolean partitionEnabled;
+
+    @Value("${operation-log.sinks.search.enabled:true}")
+    private boolean searchEnabled;
+
+    @PostConstruct
+    public void init() throws IOException {
+        checkCompatibleFeatures();
+        File directory = new File(dir);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建段存储目录: " + directory.getAbsolutePath());
+        }
+        File[] leftovers = directory.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX + ".tmp"));
+        if (leftovers != null) {
+            // 合并中途崩溃留下的临时文件，旧段仍完整
+            Arrays.stream(leftovers).forEach(File::delete);
+        }
+        File[] files = directory.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(SegmentLogStore::generationOf));
+            for (File file : files) {
+                segments.add(LogSegment.open(file, generationOf(file)));
+                generation.set(Math.max(generation.get(), generationOf(file)));
+            }
+        }
+        removeReplacedSegments();
+        segments.sort(SEGMENT_ORDER);
+        active = newSegment();
+        segments.add(active);
+        log.info("段存储加载完成: dir={}, segments={}", directory.getAbsolutePath(), segments.size());
+    }
+
+    /**
+     * 追加一批日志，调用方需预先设置logId和gmtCreate
+     */
+    public synchronized void append(List<OperationLog> logs) {
+        try {
+            for (OperationLog operationLog : logs) {
+                byte[] record = LogRecordCodec.encode(operationLog);
+                if (!active.append(operationLog, record)) {
+                    roll();
+                    if (!active.append(operationLog, record)) {
+                        throw new IllegalArgumentException("日志记录超过段大小: logId=" + operationLog.getLogId());
+                    }
+                }
+            }
+            active.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("段存储写入失败", e);
+        }
+    }
+
+    /**
+     * 按用户查询，只读取各段用户位置索引命中的记录
+     */
+    public List<OperationLog> findByUserId(Long userId) {
+        List<OperationLog> result = new ArrayList<>();
+        for (LogSegment segment : segments) {
+            LongList positions = segment.positionsOf(userId);
+            if (positions == null) {
+                continue;
+            }
+            int size = positions.size();
+            for (int i = 0; i < size; i++) {
+                result.add(segment.readAt(positions.get(i)));
+            }
+        }
+        result.sort(NEWEST_FIRST);
+        return result;
+    }
+
+    /**
+     * 按操作类型查询，跳过不含该类型的段
+     */
+    public List<OperationLog> findByAction(String action) {
+        List<OperationLog> result = new ArrayList<>();
+        for (LogSegment segment : segments) {
+            if (segment.containsAction(action)) {
+                segment.scan(segment.getDataStart(), operationLog -> {
+                    if (action.equals(operationLog.getAction())) {
+                        result.add(operationLog);
+                    }
+                });
+            }
+        }
+        result.sort(NEWEST_FIRST);
+        return result;
+    }
+
+    /**
+     * 按时间范围分页查询，只保留到当前页为止的最新记录
+     */
+    public Page<OperationLog> findByTimeRange(LocalDateTime startTime, LocalDateTime endTime, Pageable pageable) {
+        long from = LogRecordCodec.toEpochMilli(startTime);
+        long to = LogRecordCodec.toEpochMilli(endTime);
+        int keep = (int) Math.min(Integer.MAX_VALUE - 1, pageable.getOffset() + pageable.getPageSize());
+        // 小顶堆保留最新的keep条
+        PriorityQueue<OperationLog> newest = new PriorityQueue<>(NEWEST_FIRST.reversed());
+        long[] total = new long[1];
+        for (LogSegment segment : segments) {
+            if (!segment.overlaps(from, to)) {
+                continue;
+            }
+            segment.scan(segment.seekTime(from), operationLog -> {
+                long time = LogRecordCodec.toEpochMilli(operationLog.getGmtCreate());
+                if (time < from || time > to) {
+                    return;
+                }
+                total[0]++;
+                newest.offer(operationLog);
+                if (newest.size() > keep) {
+                    newest.poll();
+                }
+            });
+        }
+        List<OperationLog> sorted = new ArrayList<>(newest);
+        sorted.sort(NEWEST_FIRST);
+        int fromIndex = (int) Math.min(pageable.getOffset(), sorted.size());
+        return new PageImpl<>(new ArrayList<>(sorted.subList(fromIndex, sorted.size())), pageable, total[0]);
+    }
+
+    /**
+     * 组合条件查询游标之后的limit条日志，按(gmtCreate, logId)倒序，语义同operation_logs上的组合查询；
+     * 指定用户时只读取用户位置索引命中的记录，否则按时间范围裁剪段后顺序扫描
+     */
+    public List<OperationLogView> findPage(LogQuery query, LogCursor cursor, int limit) {
+        Predicate<OperationLog> matcher = matcherOf(query, cursor);
+        PriorityQueue<OperationLog> newest = new PriorityQueue<>(NEWEST_FIRST.reversed());
+        Consumer<OperationLog> collector = operationLog -> {
+            if (matcher.test(operationLog)) {
+                newest.offer(operationLog);
+                if (newest.size() > limit) {
+                    newest.poll();
+                }
+            }
+        };
+        long from = query.getStartTime() == null ? Long.MIN_VALUE : LogRecordCodec.toEpochMilli(query.getStartTime());
+        long to = query.getEndTime() == null ? Long.MAX_VALUE : LogRecordCodec.toEpochMilli(query.getEndTime());
+        if (cursor != null) {
+            to = Math.min(to, LogRecordCodec.toEpochMilli(cursor.getGmtCreate()));
+        }
+        for (LogSegment segment : segments) {
+            if (!segment.overlaps(from, to)) {
+                continue;
+            }
+            if (query.getUserId() != null) {
+                LongList positions = segment.positionsOf(query.getUserId());
+                int size = positions == null ? 0 : positions.size();
+                for (int i = 0; i < size; i++) {
+                    collector.accept(segment.readAt(positions.get(i)));
+                }
+            } else {
+                segment.scan(from == Long.MIN_VALUE ? segment.getDataStart() : segment.seekTime(from), collector);
+            }
+        }
+        List<OperationLog> sorted = new ArrayList<>(newest);
+        sorted.sort(NEWEST_FIRST);
+        List<OperationLogView> views = new ArrayList<>(sorted.size());
+        sorted.forEach(operationLog -> views.add(OperationLogView.of(operationLog)));
+        return views;
+    }
+
+    /**
+     * 按段的先后顺序输出时间范围内的日志，用于导出；段内为写入顺序
+     */
+    public void forEachInRange(LocalDateTime startTime, LocalDateTime endTime, Consumer<OperationLog> consumer) {
+        long from = LogRecordCodec.toEpochMilli(startTime);
+        long to = LogRecordCodec.toEpochMilli(endTime);
+        for (LogSegment segment : segments) {
+            if (!segment.overlaps(from, to)) {
+                continue;
+            }
+            segment.scan(segment.seekTime(from), operationLog -> {
+                long time = LogRecordCodec.toEpochMilli(operationLog.getGmtCreate());
+                if (time >= from && time <= to) {
+                    consumer.accept(operationLog);
+                }
+            });
+        }
+    }
+
+    /**
+     * 活跃段超过滚动间隔时滚动，便于按时间裁剪和过期删除
+     */
+    @Scheduled(fixedDelay = 60000)
+    public synchronized void rollIfNeeded() {
+        if (active.getRecordCount() > 0 && System.currentTimeMillis() - activeSince >= rollIntervalMs) {
+            try {
+                roll();
+            } catch (IOException e) {
+                log.error("段存储滚动失败: error={}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 后台整理：删除超出保留期的段，并把相邻的小段合并为一个
+     */
+    @Scheduled(fixedDelayString = "${operation-log.storage.segment.compact-interval-ms:600000}")
+    public void compact() {
+        synchronized (compactLock) {
+            long cutoff = LogRecordCodec.toEpochMilli(LocalDateTime.now().minusDays(retentionDays));
+            for (LogSegment segment : segments) {
+                if (segment != active && segment.getMaxTime() < cutoff) {
+                    removeSegments(Collections.singletonList(segment));
+                    log.info("过期段已删除: file={}", segment.getFile().getName());
+                }
+            }
+            try {
+                mergeSmallSegments();
+            } catch (IOException e) {
+                log.error("段合并失败: error={}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 段数量，用于监控
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        try {
+            active.seal();
+        } catch (IOException e) {
+            log.error("段存储关闭失败: error={}", e.getMessage(), e);
+        }
+    }
+
+    private void mergeSmallSegments() throws IOException {
+        List<LogSegment> run = new ArrayList<>();
+        long runSize = 0;
+        for (LogSegment segment : segments) {
+            boolean small = segment != active && segment.getSize() < segmentSize / 2;
+            if (small && runSize + segment.getSize() <= segmentSize) {
+                run.add(segment);
+                runSize += segment.getSize();
+                continue;
+            }
+            mergeRun(run);
+            run.clear();
+            runSize = 0;
+            if (small) {
+                run.add(segment);
+                runSize = segment.getSize();
+            }
+        }
+        mergeRun(run);
+    }
+
+    /**
+     * 把一组相邻小段合并为新段，新段头部逐个记录被替换的段代号，先落盘再删除旧段；
+     * 代号分配、插入新段和移除旧段都持有与滚动相同的锁，新段按首个来源代号插入到被合并段原来的位置
+     */
+    private void mergeRun(List<LogSegment> run) throws IOException {
+        if (run.size() < 2) {
+            return;
+        }
+        long[] replaced = new long[run.size()];
+        long firstGeneration = Long.MAX_VALUE;
+        for (int i = 0; i < run.size(); i++) {
+            replaced[i] = run.get(i).getGeneration();
+            firstGeneration = Math.min(firstGeneration, run.get(i).getFirstGeneration());
+        }
+        long next;
+        synchronized (this) {
+            next = generation.incrementAndGet();
+        }
+        File tmp = new File(dir, segmentName(next) + ".tmp");
+        LogSegment merged = LogSegment.create(tmp, next, firstGeneration, replaced, segmentSize);
+        for (LogSegment segment : run) {
+            segment.copyTo(merged);
+        }
+        merged.seal();
+        File target = new File(dir, segmentName(next));
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        LogSegment opened = LogSegment.open(target, next);
+        synchronized (this) {
+            int index = 0;
+            while (index < segments.size() && SEGMENT_ORDER.compare(segments.get(index), opened) < 0) {
+                index++;
+            }
+            segments.add(index, opened);
+            removeSegments(run);
+        }
+        log.info("段合并完成: merged={}, records={}, segments={}", run.size(), opened.getRecordCount(), segments.size());
+    }
+
+    /**
+     * 合并后崩溃可能残留被替换的旧段，启动时按各合并段记录的代号清理
+     */
+    private void removeReplacedSegments() {
+        List<LogSegment> replaced = new ArrayList<>();
+        for (LogSegment merged : segments) {
+            for (LogSegment segment : segments) {
+                if (merged.replaces(segment.getGeneration())) {
+                    replaced.add(segment);
+                }
+            }
+        }
+        removeSegments(replaced);
+    }
+
+    private void roll() throws IOException {
+        active.seal();
+        active = newSegment();
+        segments.add(active);
+    }
+
+    private LogSegment newSegment() throws IOException {
+        long next = generation.incrementAndGet();
+        activeSince = System.currentTimeMillis();
+        return LogSegment.create(new File(dir, segmentName(next)), next, next, new long[0], segmentSize);
+    }
+
+    private void removeSegments(List<LogSegment> removed) {
+        segments.removeAll(removed);
+        for (LogSegment segment : removed) {
+            if (!segment.getFile().delete()) {
+                log.warn("段文件删除失败: file={}", segment.getFile());
+            }
+        }
+    }
+
+    private static String segmentName(long generation) {
+        return String.format("%s%012d%s", SEGMENT_PREFIX, generation, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * 依赖operation_logs的功能与段存储同时启用时拒绝启动，避免静默返回空结果
+     */
+    private void checkCompatibleFeatures() {
+        List<String> conflicts = new ArrayList<>();
+        if (archiveEnabled) {
+            conflicts.add("operation-log.archive.enabled");
+        }
+        if (partitionEnabled) {
+            conflicts.add("operation-log.partition.enabled");
+        }
+        if (searchEnabled) {
+            conflicts.add("operation-log.sinks.search.enabled");
+        }
+        if (!conflicts.isEmpty()) {
+            throw new IllegalStateException("段存储引擎下operation_logs没有数据，以下功能需关闭: " + conflicts);
+        }
+    }
+
+    private static Predicate<OperationLog> matcherOf(LogQuery query, LogCursor cursor) {
+        Predicate<OperationLog> matcher = operationLog -> true;
+        if (query.getUserId() != null) {
+            matcher = matcher.and(operationLog -> query.getUserId().equals(operationLog.getUserId()));
+        }
+        if (query.getAction() != null) {
+            matcher = matcher.and(operationLog -> query.getAction().equals(operationLog.getAction()));
+        }
+        if (query.getIp() != null) {
+            byte[] ip = IpAddresses.toBytes(query.getIp());
+            if (ip == null) {
+                throw new IllegalArgumentException("IP地址格式不正确: " + query.getIp());
+            }
+            matcher = matcher.and(operationLog -> Arrays.equals(ip, IpAddresses.toBytes(operationLog.getIp())));
+        }
+        if (query.getCidr() != null) {
+            byte[][] range = IpAddresses.cidrRange(query.getCidr());
+            matcher = matcher.and(operationLog ->
+                    IpAddresses.inRange(IpAddresses.toBytes(operationLog.getIp()), range[0], range[1]));
+        }
+        if (query.getStartTime() != null) {
+            matcher = matcher.and(operationLog -> !operationLog.getGmtCreate().isBefore(query.getStartTime()));
+        }
+        if (query.getEndTime() != null) {
+            matcher = matcher.and(operationLog -> !operationLog.getGmtCreate().isAfter(query.getEndTime()));
+        }
+        if (cursor != null) {
+            matcher = matcher.and(operationLog -> operationLog.getGmtCreate().isBefore(cursor.getGmtCreate())
+                    || (operationLog.getGmtCreate().equals(cursor.getGmtCreate())
+                    && operationLog.getLogId() < cursor.getLogId()));
+        }
+        return matcher;
+    }
+
+    private static long generationOf(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
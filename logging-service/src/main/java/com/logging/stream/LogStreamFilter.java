@@ -0,0 +1,24 @@
+package com.logging.stream;
+
+import com.logging.entity.OperationLog;
+import lombok.Value;
+
+/**
+ * 实时日志订阅过滤条件
+ * 为空的条件不参与过滤
+ */
+@Value
+public class LogStreamFilter {
+
+    Long userId;
+
+    String action;
+
+    String ip;
+
+    public boolean matches(OperationLog log) {
+        return (userId == null || userId.equals(log.getUserId()))
+                && (action == null || action.equals(log.getAction()))
+                && (ip == null || ip.equals(log.getIp()));
+    }
+}
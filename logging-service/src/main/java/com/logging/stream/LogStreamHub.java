@@ -0,0 +1,214 @@
+package com.logging.stream;
+
+import com.logging.dto.OperationLogView;
+import com.logging.entity.OperationLog;
+import com.logging.ingest.LogIngestListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 实时日志分发中心
+ * 入库批次提交后直接从内存扇出给SSE订阅者，不产生数据库查询；
+ * 每个订阅者有独立的有界缓冲，缓冲满时丢弃新事件并记数，持续积压的慢订阅者会被断开；
+ * 只扇出本实例消费入库的日志，多实例部署时订阅者只能看到所连实例处理的那部分，需要全量时应逐个实例订阅
+ */
+@Component
+@Slf4j
+public class LogStreamHub implements LogIngestListener {
+
+    private final Map<Long, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    private final ExecutorService sendExecutor;
+
+    private final int bufferSize;
+
+    private final int maxSubscribers;
+
+    private final long emitterTimeoutMs;
+
+    public LogStreamHub(@Value("${operation-log.stream.buffer-size:1000}") int bufferSize,
+                        @Value("${operation-log.stream.max-subscribers:100}") int maxSubscribers,
+                        @Value("${operation-log.stream.timeout-ms:1800000}") long emitterTimeoutMs,
+                        @Value("${operation-log.stream.send-threads:4}") int sendThreads) {
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.sendExecutor = Executors.newFixedThreadPool(sendThreads, r -> {
+            Thread thread = new Thread(r, "log-stream-send-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 新增订阅，订阅数已满时返回null
+     */
+    public SseEmitter subscribe(LogStreamFilter filter) {
+        if (subscriptions.size() >= maxSubscribers) {
+            return null;
+        }
+        long id = idGenerator.incrementAndGet();
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscription subscription = new Subscription(id, filter, emitter, bufferSize);
+        subscriptions.put(id, subscription);
+        emitter.onCompletion(() -> subscriptions.remove(id));
+        emitter.onTimeout(() -> subscriptions.remove(id));
+        emitter.onError(e -> subscriptions.remove(id));
+        log.info("新增实时日志订阅: id={}, filter={}", id, filter);
+        return emitter;
+    }
+
+    @Override
+    public String getSinkName() {
+        return "stream";
+    }
+
+    @Override
+    public void onLogsPersisted(List<OperationLog> logs) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        for (Subscription subscription : subscriptions.values()) {
+            boolean offered = false;
+            for (OperationLog operationLog : logs) {
+                if (subscription.filter.matches(operationLog)) {
+                    subscription.offer(OperationLogView.of(operationLog));
+                    offered = true;
+                }
+            }
+            if (offered) {
+                scheduleSend(subscription);
+            }
+        }
+    }
+
+    /**
+     * 当前订阅数
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * 定时发送心跳注释，及时发现已断开的连接；
+     * 心跳与日志一样交给发送线程写出，慢连接不会占住共享的定时任务线程
+     */
+    @Scheduled(fixedDelayString = "${operation-log.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscription subscription : subscriptions.values()) {
+            subscription.heartbeatDue.set(true);
+            scheduleSend(subscription);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.values().forEach(subscription -> subscription.emitter.complete());
+        sendExecutor.shutdownNow();
+    }
+
+    private void scheduleSend(Subscription subscription) {
+        if (subscription.sending.compareAndSet(false, true)) {
+            sendExecutor.execute(() -> drain(subscription));
+        }
+    }
+
+    /**
+     * 在发送线程上清空订阅者缓冲，慢速网络只阻塞发送线程而不影响入库
+     */
+    private void drain(Subscription subscription) {
+        try {
+            if (subscription.heartbeatDue.getAndSet(false)) {
+                subscription.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+            List<OperationLogView> batch = new ArrayList<>();
+            while (subscription.queue.drainTo(batch) > 0) {
+                long dropped = subscription.dropped.getAndSet(0);
+                if (dropped > 0) {
+                    subscription.emitter.send(SseEmitter.event().name("dropped").data(dropped));
+                }
+                for (OperationLogView view : batch) {
+                    subscription.emitter.send(SseEmitter.event().name("log").id(String.valueOf(view.getLogId())).data(view));
+                }
+                batch.clear();
+            }
+        } catch (IOException | IllegalStateException e) {
+            close(subscription);
+            return;
+        } finally {
+            subscription.sending.set(false);
+        }
+        // 释放标记后可能有新事件或心跳到达
+        if (!subscription.queue.isEmpty() || subscription.heartbeatDue.get()) {
+            scheduleSend(subscription);
+        }
+    }
+
+    private void close(Subscription subscription) {
+        if (subscriptions.remove(subscription.id) != null) {
+            subscription.emitter.complete();
+            log.info("实时日志订阅已关闭: id={}", subscription.id);
+        }
+    }
+
+    private final class Subscription {
+
+        private final long id;
+
+        private final LogStreamFilter filter;
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<OperationLogView> queue;
+
+        private final AtomicLong dropped = new AtomicLong();
+
+        /**
+         * 连续丢弃的事件数，超过缓冲容量的10倍视为慢订阅者
+         */
+        private final AtomicLong consecutiveDropped = new AtomicLong();
+
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private final AtomicBoolean heartbeatDue = new AtomicBoolean();
+
+        private Subscription(long id, LogStreamFilter filter, SseEmitter emitter, int bufferSize) {
+            this.id = id;
+            this.filter = filter;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        private void offer(OperationLogView view) {
+            if (queue.offer(view)) {
+                consecutiveDropped.set(0);
+                return;
+            }
+            dropped.incrementAndGet();
+            if (consecutiveDropped.incrementAndGet() > 10L * bufferSize) {
+                log.warn("实时日志订阅者消费过慢，断开连接: id={}", id);
+                close(this);
+            }
+        }
+    }
+}
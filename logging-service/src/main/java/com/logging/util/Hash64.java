@@ -0,0 +1,36 @@
+package com.logging.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 64位哈希
+ * 整数经MurmurHash3的64位终结函数打散，字符串先取UTF-8字节的FNV-1a再打散
+ */
+public final class Hash64 {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hash64() {
+    }
+
+    public static long hash(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public static long hash(String value) {
+        long h = FNV_OFFSET;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= FNV_PRIME;
+        }
+        return hash(h);
+    }
+}
@@ -0,0 +1,131 @@
+package com.logging.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * IP地址二进制编码
+ * IPv4编码为4字节、IPv6编码为16字节的网络序字节串，与MySQL的INET6_ATON一致，存入VARBINARY(16)列；
+ * 同一地址族内按字节比较即按地址大小比较，CIDR可换算为[首地址, 末地址]走索引范围扫描
+ */
+public final class IpAddresses {
+
+    private static final Pattern IPV4 = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+
+    private IpAddresses() {
+    }
+
+    /**
+     * 文本地址转为字节串，为空或不是IP字面量时返回null；只解析字面量，不做域名解析
+     */
+    public static byte[] toBytes(String ip) {
+        if (ip == null) {
+            return null;
+        }
+        String text = ip.trim();
+        if (IPV4.matcher(text).matches()) {
+            String[] parts = text.split("\\.");
+            byte[] address = new byte[4];
+            for (int i = 0; i < 4; i++) {
+                int octet = Integer.parseInt(parts[i]);
+                if (octet > 255) {
+                    return null;
+                }
+                address[i] = (byte) octet;
+            }
+            return address;
+        }
+        if (text.indexOf(':') < 0) {
+            return null;
+        }
+        try {
+            // 含冒号时只按IPv6字面量解析，解析失败直接抛出而不会查询DNS；IPv4映射的IPv6地址解析为4字节
+            return InetAddress.getByName(text).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 字节串转为文本，IPv6按RFC 5952压缩最长的连续零段
+     */
+    public static String format(byte[] address) {
+        if (address == null) {
+            return null;
+        }
+        if (address.length == 4) {
+            return (address[0] & 0xFF) + "." + (address[1] & 0xFF) + "." + (address[2] & 0xFF) + "." + (address[3] & 0xFF);
+        }
+        if (address.length != 16) {
+            throw new IllegalArgumentException("IP地址长度应为4或16字节: " + address.length);
+        }
+        int[] groups = new int[8];
+        for (int i = 0; i < 8; i++) {
+            groups[i] = ((address[2 * i] & 0xFF) << 8) | (address[2 * i + 1] & 0xFF);
+        }
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int i = 0; i < 8; ) {
+            int j = i;
+            while (j < 8 && groups[j] == 0) {
+                j++;
+            }
+            if (j - i > bestLength) {
+                bestStart = i;
+                bestLength = j - i;
+            }
+            i = j == i ? i + 1 : j;
+        }
+        StringBuilder text = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                text.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (text.length() > 0 && text.charAt(text.length() - 1) != ':') {
+                text.append(':');
+            }
+            text.append(Integer.toHexString(groups[i]));
+        }
+        return text.toString();
+    }
+
+    /**
+     * CIDR(如10.0.0.0/8、2001:db8::/32)换算为[首地址, 末地址]，格式不正确时抛出IllegalArgumentException
+     */
+    public static byte[][] cidrRange(String cidr) {
+        int slash = cidr.indexOf('/');
+        byte[] base = toBytes(slash < 0 ? cidr : cidr.substring(0, slash));
+        if (base == null) {
+            throw new IllegalArgumentException("CIDR格式不正确: " + cidr);
+        }
+        int prefix;
+        try {
+            prefix = slash < 0 ? base.length * 8 : Integer.parseInt(cidr.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("CIDR前缀长度不正确: " + cidr);
+        }
+        if (prefix < 0 || prefix > base.length * 8) {
+            throw new IllegalArgumentException("CIDR前缀长度超出范围: " + cidr);
+        }
+        byte[] first = Arrays.copyOf(base, base.length);
+        byte[] last = Arrays.copyOf(base, base.length);
+        for (int bit = prefix; bit < base.length * 8; bit++) {
+            int mask = 0x80 >>> (bit % 8);
+            first[bit / 8] &= (byte) ~mask;
+            last[bit / 8] |= (byte) mask;
+        }
+        return new byte[][]{first, last};
+    }
+
+    /**
+     * 地址是否位于[first, last]内，地址族不同时不匹配
+     */
+    public static boolean inRange(byte[] address, byte[] first, byte[] last) {
+        return address != null && address.length == first.length
+                && Arrays.compareUnsigned(address, first) >= 0 && Arrays.compareUnsigned(address, last) <= 0;
+    }
+}
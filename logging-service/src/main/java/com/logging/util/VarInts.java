@@ -0,0 +1,63 @@
+package com.logging.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 变长整数编解码
+ * 每字节低7位存数据、最高位表示后续还有字节；有符号差值先做ZigZag变换
+ */
+public final class VarInts {
+
+    private VarInts() {
+    }
+
+    public static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    public static long readVarLong(ByteBuffer buffer) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    public static void writeVarInt(OutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    public static int readVarInt(ByteBuffer buffer) {
+        return (int) readVarLong(buffer);
+    }
+
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 计算变长编码后的字节数
+     */
+    public static int sizeOfVarLong(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+}
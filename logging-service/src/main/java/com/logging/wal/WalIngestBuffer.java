@@ -0,0 +1,162 @@
+package com.logging.wal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.logging.event.OperationLogEvent;
+import com.logging.repository.OperationLogQuarantineDao;
+import com.logging.service.OperationLogService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * WAL入库模式
+ * 消费到的事件追加到本地WAL并组提交刷盘后立即确认，MQ确认延迟与数据库延迟解耦；
+ * 后台刷写任务从检查点起按大批次写入数据库，成功后推进检查点，进程崩溃后从检查点重放，
+ * 重放依赖eventId唯一键保证幂等，因此追加前为缺少eventId/时间戳的事件补齐
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "operation-log.ingest.mode", havingValue = "WAL")
+public class WalIngestBuffer {
+
+    private final WriteAheadLog wal;
+
+    private final int batchSize;
+
+    private final long maxLagBytes;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OperationLogService operationLogService;
+
+    @Autowired
+    private OperationLogQuarantineDao quarantineDao;
+
+    public WalIngestBuffer(@Value("${operation-log.wal.dir:./data/wal}") String dir,
+                           @Value("${operation-log.wal.segment-size:67108864}") int segmentSize,
+                           @Value("${operation-log.wal.batch-size:2000}") int batchSize,
+                           @Value("${operation-log.wal.max-lag-bytes:1073741824}") long maxLagBytes) throws IOException {
+        this.wal = new WriteAheadLog(new File(dir), segmentSize);
+        this.batchSize = batchSize;
+        this.maxLagBytes = maxLagBytes;
+    }
+
+    /**
+     * 追加事件并等待刷盘，返回即可确认MQ消息；积压超过上限时拒绝，由MQ稍后重投
+     */
+    public void append(OperationLogEvent event) {
+        if (wal.getLagBytes() > maxLagBytes) {
+            throw new IllegalStateException("本地WAL积压超过上限: lagBytes=" + wal.getLagBytes());
+        }
+        if (event.getEventId() == null) {
+            event.setEventId(UUID.randomUUID().toString());
+        }
+        if (event.getTimestamp() == null) {
+            event.setTimestamp(LocalDateTime.now());
+        }
+        try {
+            long end = wal.append(objectMapper.writeValueAsBytes(event));
+            wal.sync(end);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入本地WAL失败", e);
+        }
+    }
+
+    /**
+     * 尚未写入数据库的字节数
+     */
+    public long getLagBytes() {
+        return wal.getLagBytes();
+    }
+
+    /**
+     * 从检查点起按批写入数据库，直到追平或遇到可重试错误
+     */
+    @Scheduled(fixedDelayString = "${operation-log.wal.flush-interval-ms:200}")
+    public synchronized void flush() {
+        try {
+            List<WalRecord> records;
+            while (!(records = wal.read(wal.getCheckpoint(), batchSize)).isEmpty()) {
+                if (!writeBatch(records)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            log.error("WAL检查点写入失败: error={}", e.getMessage(), e);
+        } catch (RuntimeException e) {
+            log.error("WAL刷写失败，稍后重试: lagBytes={}, error={}", wal.getLagBytes(), e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        wal.close();
+    }
+
+    /**
+     * 整批写入，失败时逐条写入以隔离被存储拒绝的记录；遇到可重试错误返回false，检查点停在该记录
+     */
+    private boolean writeBatch(List<WalRecord> records) throws IOException {
+        long batchEnd = records.get(records.size() - 1).getNextOffset();
+        List<WalRecord> decoded = new ArrayList<>(records.size());
+        List<OperationLogEvent> events = new ArrayList<>(records.size());
+        for (WalRecord record : records) {
+            try {
+                events.add(objectMapper.readValue(record.getPayload(), OperationLogEvent.class));
+                decoded.add(record);
+            } catch (IOException e) {
+                // 记录经过CRC校验，解析失败只可能是事件结构不兼容，隔离后跳过
+                quarantine(OperationLogQuarantineDao.REASON_INVALID, record, e);
+            }
+        }
+        if (events.isEmpty()) {
+            wal.checkpoint(batchEnd);
+            return true;
+        }
+        try {
+            operationLogService.handleLogEvents(events);
+            wal.checkpoint(batchEnd);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("WAL批量写入失败，改为逐条写入: size={}, error={}", events.size(), e.getMessage());
+        }
+        for (int i = 0; i < decoded.size(); i++) {
+            WalRecord record = decoded.get(i);
+            try {
+                operationLogService.handleLogEvents(Collections.singletonList(events.get(i)));
+            } catch (DataIntegrityViolationException e) {
+                quarantine(OperationLogQuarantineDao.REASON_REJECTED, record, e);
+            } catch (RuntimeException e) {
+                wal.checkpoint(record.getOffset());
+                log.error("WAL写入数据库失败，稍后重试: offset={}, lagBytes={}, error={}",
+                         record.getOffset(), wal.getLagBytes(), e.getMessage());
+                return false;
+            }
+        }
+        wal.checkpoint(batchEnd);
+        return true;
+    }
+
+    private void quarantine(String reason, WalRecord record, Exception cause) {
+        quarantineDao.save(reason, cause.getMessage(), new String(record.getPayload(), StandardCharsets.UTF_8));
+        log.warn("WAL记录已隔离: reason={}, offset={}, error={}", reason, record.getOffset(), cause.getMessage());
+    }
+}
@@ -0,0 +1,22 @@
+package com.logging.wal;
+
+import lombok.Value;
+
+/**
+ * WAL中的一条记录
+ */
+@Value
+public class WalRecord {
+
+    /**
+     * 记录起始的逻辑偏移量
+     */
+    long offset;
+
+    /**
+     * 下一条记录的逻辑偏移量，作为检查点写入
+     */
+    long nextOffset;
+
+    byte[] payload;
+}
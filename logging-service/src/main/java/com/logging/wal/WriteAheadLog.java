@@ -0,0 +1,326 @@
+package com.logging.wal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 本地预写日志
+ * 由固定大小的内存映射段文件组成，段文件名为段起始的逻辑偏移量；
+ * 记录格式：长度(int) + CRC32(int) + 内容，长度为0表示段尾空白；
+ * 追加在锁内完成，刷盘采用组提交：并发写入者只需等待一次force即可全部持久化；
+ * 检查点记录已写入数据库的位置，重启时从检查点扫描到第一条损坏记录为止，之后的残缺写入被截断
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final int HEADER_SIZE = 8;
+
+    private final File dir;
+
+    private final int segmentSize;
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final Object syncLock = new Object();
+
+    private final Object checkpointLock = new Object();
+
+    private final AtomicLong syncedOffset = new AtomicLong();
+
+    /**
+     * 当前写入段，受this锁保护
+     */
+    private Segment writeSegment;
+
+    private volatile long writeOffset;
+
+    private volatile long checkpoint;
+
+    public WriteAheadLog(File dir, int segmentSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建WAL目录: " + dir.getAbsolutePath());
+        }
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                Segment segment = Segment.map(file, baseOf(file), segmentSize);
+                segments.put(segment.base, segment);
+            }
+        }
+        long saved = readCheckpoint();
+        if (segments.isEmpty()) {
+            long base = Math.max(saved, 0L);
+            segments.put(base, Segment.create(segmentFile(base), base, segmentSize));
+        }
+        this.checkpoint = saved >= 0 ? saved : segments.firstKey();
+        recover();
+    }
+
+    /**
+     * 追加一条记录，返回记录结束位置，需调用sync(返回值)后才保证持久化
+     */
+    public synchronized long append(byte[] payload) throws IOException {
+        int size = HEADER_SIZE + payload.length;
+        if (size > segmentSize) {
+            throw new IllegalArgumentException("WAL记录超过段大小: size=" + size);
+        }
+        int pos = (int) (writeOffset - writeSegment.base);
+        if (pos + size > segmentSize) {
+            roll(pos);
+            pos = 0;
+        }
+        ByteBuffer out = writeSegment.buffer.duplicate();
+        out.position(pos + HEADER_SIZE);
+        out.put(payload);
+        writeSegment.buffer.putInt(pos + 4, crc(payload));
+        // 长度最后写入，读到非0长度即表示内容已完整写入内存
+        writeSegment.buffer.putInt(pos, payload.length);
+        writeOffset = writeSegment.base + pos + size;
+        return writeOffset;
+    }
+
+    /**
+     * 组提交刷盘：已被其他线程的force覆盖的位置直接返回
+     */
+    public void sync(long offset) {
+        if (syncedOffset.get() >= offset) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedOffset.get() >= offset) {
+                return;
+            }
+            Segment segment;
+            long target;
+            synchronized (this) {
+                segment = writeSegment;
+                target = writeOffset;
+            }
+            segment.buffer.force();
+            syncedOffset.accumulateAndGet(target, Math::max);
+        }
+    }
+
+    /**
+     * 从指定位置起读取至多max条已写入的记录
+     */
+    public List<WalRecord> read(long from, int max) {
+        List<WalRecord> records = new ArrayList<>();
+        long offset = from;
+        long end = writeOffset;
+        while (records.size() < max && offset < end) {
+            WalRecord record = readAt(offset);
+            if (record == null || record.getNextOffset() > end) {
+                break;
+            }
+            records.add(record);
+            offset = record.getNextOffset();
+        }
+        return records;
+    }
+
+    /**
+     * 持久化检查点，并删除已全部位于检查点之前的段
+     */
+    public void checkpoint(long offset) throws IOException {
+        synchronized (checkpointLock) {
+            File tmp = new File(dir, CHECKPOINT_FILE + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream(tmp)) {
+                fos.write(Long.toString(offset).getBytes(StandardCharsets.UTF_8));
+                fos.getFD().sync();
+            }
+            Files.move(tmp.toPath(), new File(dir, CHECKPOINT_FILE).toPath(), StandardCopyOption.ATOMIC_MOVE);
+            checkpoint = offset;
+
+            long writeBase;
+            synchronized (this) {
+                writeBase = writeSegment.base;
+            }
+            for (Segment segment : segments.headMap(writeBase).values()) {
+                if (segment.base + segmentSize <= offset) {
+                    segments.remove(segment.base);
+                    if (!segment.file.delete()) {
+                        log.warn("WAL段文件删除失败: file={}", segment.file);
+                    }
+                }
+            }
+        }
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public long getWriteOffset() {
+        return writeOffset;
+    }
+
+    /**
+     * 尚未写入数据库的字节数
+     */
+    public long getLagBytes() {
+        return writeOffset - checkpoint;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            writeSegment.buffer.force();
+        }
+    }
+
+    /**
+     * 从检查点扫描出最后一条完整记录，截断其后的残缺数据
+     */
+    private void recover() {
+        long offset = checkpoint;
+        int recovered = 0;
+        WalRecord record;
+        while ((record = readAt(offset)) != null) {
+            offset = record.getNextOffset();
+            recovered++;
+        }
+        Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+        writeSegment = entry != null ? entry.getValue() : segments.firstEntry().getValue();
+        if (offset < writeSegment.base) {
+            offset = writeSegment.base;
+        }
+        for (Segment stale : new ArrayList<>(segments.tailMap(writeSegment.base, false).values())) {
+            segments.remove(stale.base);
+            if (!stale.file.delete()) {
+                log.warn("WAL段文件删除失败: file={}", stale.file);
+            }
+        }
+        int pos = (int) (offset - writeSegment.base);
+        ByteBuffer tail = writeSegment.buffer.duplicate();
+        tail.position(pos);
+        while (tail.hasRemaining()) {
+            tail.put((byte) 0);
+        }
+        writeSegment.buffer.force();
+        writeOffset = offset;
+        syncedOffset.set(offset);
+        log.info("WAL恢复完成: dir={}, checkpoint={}, writeOffset={}, pending={}",
+                dir.getAbsolutePath(), checkpoint, offset, recovered);
+    }
+
+    private WalRecord readAt(long offset) {
+        Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+        if (entry == null) {
+            return null;
+        }
+        Segment segment = entry.getValue();
+        int pos = (int) (offset - segment.base);
+        if (pos + HEADER_SIZE <= segmentSize) {
+            int length = segment.buffer.getInt(pos);
+            if (length < 0 || pos + HEADER_SIZE + length > segmentSize) {
+                return null;
+            }
+            if (length > 0) {
+                byte[] payload = new byte[length];
+                ByteBuffer in = segment.buffer.duplicate();
+                in.position(pos + HEADER_SIZE);
+                in.get(payload);
+                if (crc(payload) != segment.buffer.getInt(pos + 4)) {
+                    return null;
+                }
+                return new WalRecord(offset, offset + HEADER_SIZE + length, payload);
+            }
+        }
+        // 段尾空白，继续读下一段
+        Long next = segments.higherKey(segment.base);
+        return next == null ? null : readAt(next);
+    }
+
+    private void roll(int pos) throws IOException {
+        if (pos + 4 <= segmentSize) {
+            writeSegment.buffer.putInt(pos, 0);
+        }
+        writeSegment.buffer.force();
+        long base = writeSegment.base + segmentSize;
+        Segment segment = Segment.create(segmentFile(base), base, segmentSize);
+        segments.put(base, segment);
+        writeSegment = segment;
+        writeOffset = base;
+        syncedOffset.accumulateAndGet(base, Math::max);
+    }
+
+    private long readCheckpoint() throws IOException {
+        File file = new File(dir, CHECKPOINT_FILE);
+        if (!file.exists()) {
+            return -1L;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim());
+    }
+
+    private File segmentFile(long base) {
+        return new File(dir, String.format("%s%020d%s", SEGMENT_PREFIX, base, SEGMENT_SUFFIX));
+    }
+
+    private static long baseOf(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload, 0, payload.length);
+        return (int) crc32.getValue();
+    }
+
+    private static class Segment {
+
+        private final File file;
+
+        private final long base;
+
+        private final MappedByteBuffer buffer;
+
+        private Segment(File file, long base, MappedByteBuffer buffer) {
+            this.file = file;
+            this.base = base;
+            this.buffer = buffer;
+        }
+
+        static Segment create(File file, long base, int size) throws IOException {
+            if (!file.createNewFile()) {
+                throw new IOException("WAL段文件已存在: " + file);
+            }
+            return map(file, base, size);
+        }
+
+        static Segment map(File file, long base, int size) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+                if (raf.length() < size) {
+                    raf.setLength(size);
+                }
+                return new Segment(file, base, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+    }
+}
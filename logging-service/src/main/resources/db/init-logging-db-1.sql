@@ -0,0 +1,83 @@
+-- 日志数据库1初始化脚本
+
+-- 创建数据库
+CREATE DATABASE IF NOT EXISTS logging_db_1 CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+
+USE logging_db_1;
+
+-- 操作日志表（按user_id分库）
+-- 按gmt_create做RANGE COLUMNS分区，分区由OperationLogPartitionJob按天/月预建和过期删除，
+-- 初始只保留兜底分区p_max；分区表要求主键和唯一键包含分区列，因此主键为(log_id, gmt_create)，
+-- 去重唯一键为(event_id, gmt_create)，同一事件的重复投递时间戳相同，必然冲突；
+-- action以字典编码存储、ip以二进制存储，缩小行和索引，IP网段查询在idx_ip_time上做范围扫描
+CREATE TABLE IF NOT EXISTS operation_logs (
+    log_id BIGINT NOT NULL COMMENT '日志ID，使用雪花算法生成',
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    action_code SMALLINT UNSIGNED NOT NULL COMMENT '操作类型编码，对应action_dictionary',
+    ip VARBINARY(16) COMMENT 'IP地址，IPv4为4字节、IPv6为16字节，与INET6_ATON一致',
+    detail TEXT COMMENT '操作详情',
+    gmt_create DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    event_id VARCHAR(36) COMMENT '事件ID，生产方生成，用于去重',
+    
+    PRIMARY KEY (log_id, gmt_create),
+    UNIQUE INDEX uk_event (event_id, gmt_create),
+    INDEX idx_user_time (user_id, gmt_create, log_id),
+    INDEX idx_action_time (action_code, gmt_create, log_id),
+    INDEX idx_ip_time (ip, gmt_create, log_id),
+    INDEX idx_time_log (gmt_create, log_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='操作日志表-分片1'
+PARTITION BY RANGE COLUMNS (gmt_create) (
+    PARTITION p_max VALUES LESS THAN (MAXVALUE)
+);
+
+-- 用户操作计数表（按user_id分库）
+-- action为'*'的行是用户总操作次数，由入库增量累加，并由重建任务定期校正
+CREATE TABLE IF NOT EXISTS user_operation_counters (
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    action VARCHAR(50) NOT NULL COMMENT '操作类型，*表示全部',
+    op_count BIGINT NOT NULL DEFAULT 0 COMMENT '操作次数',
+    max_log_id BIGINT COMMENT '已计入的最大日志ID，仅*行有值，计数重建以此为统计上界',
+    gmt_modified DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+    
+    PRIMARY KEY (user_id, action)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户操作计数表-分片1';
+
+-- 已归档日志计数表（按user_id分库）
+-- OperationLogArchiveJob删除分区前写入各用户各操作类型在该分区中的条数，计数重建时与operation_logs的统计相加
+CREATE TABLE IF NOT EXISTS archived_operation_counts (
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    action VARCHAR(50) NOT NULL COMMENT '操作类型',
+    partition_name VARCHAR(16) NOT NULL COMMENT '归档的分区名',
+    op_count BIGINT NOT NULL DEFAULT 0 COMMENT '操作次数',
+    
+    PRIMARY KEY (user_id, action, partition_name),
+    INDEX idx_partition (partition_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='已归档日志计数表-分片1';
+
+-- 已归档分区登记表（各分库各自登记本库的分区）
+-- 归档文件写完后登记，各实例据此核对本地归档目录是否完整，缺少文件说明归档目录不是共享存储；
+-- 全部分库写出后置served，各实例才改由归档层提供该分区的查询，并以已切换分区的最大上界作为在线表查询的下界
+CREATE TABLE IF NOT EXISTS archived_partitions (
+    partition_name VARCHAR(16) NOT NULL COMMENT '归档的分区名',
+    row_count BIGINT NOT NULL COMMENT '归档的行数',
+    generation INT NOT NULL DEFAULT 0 COMMENT '生效的归档文件代次，重新归档时递增',
+    served TINYINT NOT NULL DEFAULT 0 COMMENT '是否已切换为由归档层提供查询',
+    gmt_archived DATETIME NOT NULL COMMENT '归档时间',
+
+    PRIMARY KEY (partition_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='已归档分区登记表-分片1';
+
+-- 聚合日志表（按user_id分片）
+-- 入库策略为抽样或聚合的操作不写明细，按(用户, 操作类型, IP, 时间窗口)累计次数；ip为空串表示未携带IP
+CREATE TABLE IF NOT EXISTS operation_log_aggregates (
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    action VARCHAR(50) NOT NULL COMMENT '操作类型',
+    ip VARCHAR(45) NOT NULL DEFAULT '' COMMENT 'IP地址',
+    window_start DATETIME NOT NULL COMMENT '聚合窗口起点',
+    event_count BIGINT NOT NULL DEFAULT 0 COMMENT '窗口内次数',
+    first_time DATETIME NOT NULL COMMENT '窗口内首次时间',
+    last_time DATETIME NOT NULL COMMENT '窗口内末次时间',
+    
+    PRIMARY KEY (user_id, action, ip, window_start),
+    INDEX idx_user_window (user_id, window_start)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='聚合日志表-分片1';
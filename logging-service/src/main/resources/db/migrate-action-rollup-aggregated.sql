@@ -0,0 +1,9 @@
+-- 已有部署的操作汇总表迁移脚本：增加未写明细的次数，回填重算时保留这部分计数
+-- 新部署直接使用init-logging-db-0.sql，无需执行本脚本
+-- 已有行的aggregated_count为0，迁移前写入的时间桶若被回填重算，其中聚合入库的次数不会保留
+
+ALTER TABLE logging_db_0.action_rollup_minute
+    ADD COLUMN aggregated_count BIGINT NOT NULL DEFAULT 0 COMMENT '其中未写明细的次数' AFTER op_count;
+
+ALTER TABLE logging_db_0.action_rollup_hour
+    ADD COLUMN aggregated_count BIGINT NOT NULL DEFAULT 0 COMMENT '其中未写明细的次数' AFTER op_count;
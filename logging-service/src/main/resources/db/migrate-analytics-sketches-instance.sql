@@ -0,0 +1,9 @@
+-- 已有部署的analytics_sketches迁移脚本：实例号改为稳定的实例标识
+-- 新部署直接使用init-logging-db-*.sql，无需执行本脚本
+-- 原值为取自IP的雪花节点号，升级后实例以新标识写入，原行不再被读回，
+-- 为避免近几天的草图与新行重复合并，停止全部实例后执行，并删除operation-log.sketch.memory-days(默认2天)内的旧行
+
+ALTER TABLE logging_db_0.analytics_sketches
+    MODIFY COLUMN instance_id VARCHAR(64) NOT NULL COMMENT '实例标识';
+
+DELETE FROM logging_db_0.analytics_sketches WHERE sketch_day >= CURDATE() - INTERVAL 1 DAY;
@@ -0,0 +1,13 @@
+-- 已有部署的archived_partitions迁移脚本：增加归档文件代次与查询切换标记
+-- 新部署直接使用init-logging-db-*.sql，无需执行本脚本
+-- 已有行对应的分区都已从在线表删除、文件名不含代次，登记为第0代且已切换；之后新登记的分区默认未切换
+
+ALTER TABLE logging_db_0.archived_partitions
+    ADD COLUMN generation INT NOT NULL DEFAULT 0 COMMENT '生效的归档文件代次，重新归档时递增' AFTER row_count,
+    ADD COLUMN served TINYINT NOT NULL DEFAULT 1 COMMENT '是否已切换为由归档层提供查询' AFTER generation;
+ALTER TABLE logging_db_0.archived_partitions ALTER COLUMN served SET DEFAULT 0;
+
+ALTER TABLE logging_db_1.archived_partitions
+    ADD COLUMN generation INT NOT NULL DEFAULT 0 COMMENT '生效的归档文件代次，重新归档时递增' AFTER row_count,
+    ADD COLUMN served TINYINT NOT NULL DEFAULT 1 COMMENT '是否已切换为由归档层提供查询' AFTER generation;
+ALTER TABLE logging_db_1.archived_partitions ALTER COLUMN served SET DEFAULT 0;
@@ -0,0 +1,11 @@
+-- 已有部署的backfill_checkpoints迁移脚本：任务名加长以容纳实例标识后缀，增加范围认领字段
+-- 新部署直接使用init-logging-db-0.sql，无需执行本脚本
+-- 按实例区分的检索索引回填改用"search@实例标识"为任务名，旧任务无法判断属于哪个实例，直接删除，
+-- 各实例启动后按需重新回填自己的索引
+
+ALTER TABLE logging_db_0.backfill_checkpoints
+    MODIFY COLUMN job_name VARCHAR(128) NOT NULL COMMENT '回填任务名，即回填目标名；按实例区分的目标为"目标名@实例标识"',
+    ADD COLUMN owner VARCHAR(64) COMMENT '认领该范围的实例标识' AFTER done,
+    ADD COLUMN lease_until DATETIME COMMENT '认领租约到期时间，过期后其他实例可接手' AFTER owner;
+
+DELETE FROM logging_db_0.backfill_checkpoints WHERE job_name = 'search';
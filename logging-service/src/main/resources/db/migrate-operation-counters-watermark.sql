@@ -0,0 +1,9 @@
+-- 已有部署的user_operation_counters迁移脚本：增加计数重建使用的日志ID上界
+-- 新部署直接使用init-logging-db-*.sql，无需执行本脚本
+-- 已有行的max_log_id为NULL，重建时不加上界，下次刷盘后即按上界统计
+
+ALTER TABLE logging_db_0.user_operation_counters
+    ADD COLUMN max_log_id BIGINT COMMENT '已计入的最大日志ID，仅*行有值，计数重建以此为统计上界' AFTER op_count;
+
+ALTER TABLE logging_db_1.user_operation_counters
+    ADD COLUMN max_log_id BIGINT COMMENT '已计入的最大日志ID，仅*行有值，计数重建以此为统计上界' AFTER op_count;
@@ -0,0 +1,55 @@
+-- 已有部署的operation_logs迁移脚本：action改为字典编码，ip改为二进制
+-- 新部署直接使用init-logging-db-*.sql，无需执行本脚本；执行前需停止入库，大表建议用在线DDL工具分批执行
+-- 原ip列为VARCHAR(15)，被截断的IPv6地址无法还原，INET6_ATON解析失败的值迁移为NULL
+
+-- 1. 建字典表并登记两个分库中出现过的全部操作类型
+USE logging_db_0;
+
+CREATE TABLE IF NOT EXISTS action_dictionary (
+    action_code SMALLINT UNSIGNED NOT NULL AUTO_INCREMENT COMMENT '操作类型编码',
+    action VARCHAR(50) NOT NULL COMMENT '操作类型',
+
+    PRIMARY KEY (action_code),
+    UNIQUE INDEX uk_action (action)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='操作类型字典表';
+
+INSERT IGNORE INTO action_dictionary (action)
+SELECT DISTINCT action FROM logging_db_0.operation_logs;
+
+INSERT IGNORE INTO action_dictionary (action)
+SELECT DISTINCT action FROM logging_db_1.operation_logs;
+
+-- 2. 逐库转换列并重建相关索引
+ALTER TABLE logging_db_0.operation_logs
+    ADD COLUMN action_code SMALLINT UNSIGNED NOT NULL DEFAULT 0 COMMENT '操作类型编码，对应action_dictionary' AFTER user_id,
+    ADD COLUMN ip_bin VARBINARY(16) COMMENT 'IP地址，IPv4为4字节、IPv6为16字节，与INET6_ATON一致' AFTER action_code;
+
+UPDATE logging_db_0.operation_logs l JOIN logging_db_0.action_dictionary d ON d.action = l.action
+SET l.action_code = d.action_code, l.ip_bin = INET6_ATON(l.ip);
+
+ALTER TABLE logging_db_0.operation_logs
+    DROP INDEX idx_action_time,
+    DROP INDEX idx_ip_time,
+    DROP COLUMN action,
+    DROP COLUMN ip,
+    ALTER COLUMN action_code DROP DEFAULT,
+    RENAME COLUMN ip_bin TO ip,
+    ADD INDEX idx_action_time (action_code, gmt_create, log_id),
+    ADD INDEX idx_ip_time (ip, gmt_create, log_id);
+
+ALTER TABLE logging_db_1.operation_logs
+    ADD COLUMN action_code SMALLINT UNSIGNED NOT NULL DEFAULT 0 COMMENT '操作类型编码，对应action_dictionary' AFTER user_id,
+    ADD COLUMN ip_bin VARBINARY(16) COMMENT 'IP地址，IPv4为4字节、IPv6为16字节，与INET6_ATON一致' AFTER action_code;
+
+UPDATE logging_db_1.operation_logs l JOIN logging_db_0.action_dictionary d ON d.action = l.action
+SET l.action_code = d.action_code, l.ip_bin = INET6_ATON(l.ip);
+
+ALTER TABLE logging_db_1.operation_logs
+    DROP INDEX idx_action_time,
+    DROP INDEX idx_ip_time,
+    DROP COLUMN action,
+    DROP COLUMN ip,
+    ALTER COLUMN action_code DROP DEFAULT,
+    RENAME COLUMN ip_bin TO ip,
+    ADD INDEX idx_action_time (action_code, gmt_create, log_id),
+    ADD INDEX idx_ip_time (ip, gmt_create, log_id);
@@ -0,0 +1,211 @@
+package com.logging.archive;
+
+import com.logging.dto.LogCursor;
+import com.logging.dto.LogQuery;
+import com.logging.dto.OperationLogView;
+import com.logging.entity.OperationLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveStoreTest {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+
+    @TempDir
+    File dir;
+
+    @Test
+    void testRoundTripAndPruning() throws Exception {
+        ArchiveStore store = newStore();
+        List<OperationLog> logs = sampleLogs(0, 1000);
+        logs.get(7).setIp(null);
+        logs.get(8).setDetail(null);
+        store.write("p20240101-ds0-0000", logs.subList(0, 500));
+        store.write("p20240101-ds0-0001", logs.subList(500, 1000));
+
+        // 重新加载后只依赖文件内容
+        store = newStore();
+        assertEquals(2, store.getFileCount());
+        serve(store, "p20240101-ds0");
+
+        List<OperationLog> byUser = store.view().findByUserId(7L);
+        assertEquals(100, byUser.size());
+        OperationLog oldest = byUser.get(byUser.size() - 1);
+        assertEquals(7L, oldest.getLogId());
+        assertNull(oldest.getIp());
+        assertEquals(BASE_TIME.plusSeconds(7), oldest.getGmtCreate());
+        assertEquals("event-7", oldest.getEventId());
+        assertTrue(byUser.get(0).getGmtCreate().isAfter(byUser.get(1).getGmtCreate()));
+        assertTrue(store.view().findByUserId(12345L).isEmpty());
+
+        assertEquals(200, store.view().findByAction("USER_DELETE").size());
+        assertTrue(store.view().findByAction("USER_UNKNOWN").isEmpty());
+
+        assertEquals(100, store.view().countByTimeRange(BASE_TIME.plusSeconds(450), BASE_TIME.plusSeconds(549)));
+        List<OperationLog> page = store.view()
+                .findByTimeRange(BASE_TIME.plusSeconds(450), BASE_TIME.plusSeconds(549), 30, 30);
+        assertEquals(30, page.size());
+        assertEquals(BASE_TIME.plusSeconds(519), page.get(0).getGmtCreate());
+    }
+
+    @Test
+    void testCursorPaging() throws Exception {
+        ArchiveStore store = newStore();
+        store.write("p20240101-ds0-0000", sampleLogs(0, 300));
+        serve(store, "p20240101-ds0");
+
+        LogQuery query = new LogQuery();
+        query.setUserId(3L);
+        List<OperationLogView> first = store.view().findPage(query, null, 20);
+        assertEquals(20, first.size());
+        assertEquals(293L, first.get(0).getLogId());
+
+        OperationLogView last = first.get(first.size() - 1);
+        List<OperationLogView> second = store.view()
+                .findPage(query, new LogCursor(last.getGmtCreate(), last.getLogId()), 20);
+        assertEquals(10, second.size());
+        assertTrue(second.get(0).getLogId() < last.getLogId());
+    }
+
+    @Test
+    void testDeleteByPartition() throws Exception {
+        ArchiveStore store = newStore();
+        store.write("p20240101-ds0-0000", sampleLogs(0, 100));
+        store.write("p20240102-ds0-0000", sampleLogs(100, 200));
+        serve(store, "p20240101-ds0", "p20240102-ds0");
+
+        assertEquals(2, store.getPartitions().size());
+        assertEquals(1, store.delete("p20240101-"));
+        assertEquals(10, store.view().findByUserId(3L).size());
+    }
+
+    @Test
+    void testServesOnlySwitchedGeneration() throws Exception {
+        ArchiveStore store = newStore();
+        store.write(ArchiveStore.fileName("p20240101", "ds0", 1, 0), sampleLogs(0, 100));
+
+        // 写出但未切换的文件不提供查询，在线表也不设下界
+        assertTrue(store.view().findByUserId(3L).isEmpty());
+        assertNull(store.view().getHotFrom());
+
+        Map<String, Integer> generations = new HashMap<>();
+        generations.put("p20240101-ds0", 1);
+        store.setServing(generations, BASE_TIME.plusDays(1));
+        ArchiveStore.View first = store.view();
+        assertEquals(10, first.findByUserId(3L).size());
+        assertEquals(BASE_TIME.plusDays(1), first.getHotFrom());
+
+        // 重新归档写出第2代，切换前仍返回第1代，切换后只返回第2代
+        store.write(ArchiveStore.fileName("p20240101", "ds0", 2, 0), sampleLogs(0, 120));
+        assertEquals(10, store.view().findByUserId(3L).size());
+        generations.put("p20240101-ds0", 2);
+        store.setServing(generations, BASE_TIME.plusDays(1));
+        assertEquals(12, store.view().findByUserId(3L).size());
+        // 已取得的视图不受切换影响
+        assertEquals(10, first.findByUserId(3L).size());
+
+        Map<String, Integer> registered = new HashMap<>();
+        registered.put("p20240101", 2);
+        assertEquals(0, store.deleteUnregistered("ds1", registered));
+        assertEquals(1, store.deleteUnregistered("ds0", registered));
+        assertFalse(store.contains("p20240101-ds0", 1));
+        assertTrue(store.contains("p20240101-ds0", 2));
+        assertEquals(12, store.view().findByUserId(3L).size());
+    }
+
+    @Test
+    void testBloomFilterFalsePositiveRate() {
+        BloomFilter filter = BloomFilter.create(10000, 0.01);
+        for (long userId = 0; userId < 10000; userId++) {
+            filter.put(userId * 7);
+        }
+        int falsePositives = 0;
+        for (long userId = 0; userId < 10000; userId++) {
+            assertTrue(filter.mightContain(userId * 7));
+            if (filter.mightContain(userId * 7 + 1)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "误判率应接近1%: " + falsePositives);
+    }
+
+    @Test
+    void testFindByIds() throws Exception {
+        ArchiveStore store = newStore();
+        store.write("p20240101-ds0-0000", sampleLogs(0, 500));
+        store.write("p20240101-ds0-0001", sampleLogs(500, 1000));
+        serve(store, "p20240101-ds0");
+
+        Map<Long, LocalDateTime> times = new HashMap<>();
+        times.put(42L, BASE_TIME.plusSeconds(42));
+        times.put(777L, BASE_TIME.plusSeconds(777));
+        times.put(5000L, BASE_TIME.plusDays(1));
+        List<OperationLog> found = store.view().findByIds(times);
+        assertEquals(2, found.size());
+        assertTrue(found.stream().anyMatch(row -> row.getLogId() == 42L && "操作详情42".equals(row.getDetail())));
+        assertTrue(found.stream().anyMatch(row -> row.getLogId() == 777L));
+    }
+
+    @Test
+    void testRefreshLoadsFilesWrittenByOtherInstance() throws Exception {
+        ArchiveStore writer = newStore();
+        ArchiveStore reader = newStore();
+        writer.write("p20240101-ds0-0000", sampleLogs(0, 100));
+        assertEquals(0, reader.getFileCount());
+
+        reader.refresh();
+        assertTrue(reader.contains("p20240101-ds0", 0));
+        serve(reader, "p20240101-ds0");
+        assertEquals(10, reader.view().findByUserId(3L).size());
+
+        writer.delete("p20240101-");
+        reader.refresh();
+        assertFalse(reader.contains("p20240101-ds0", 0));
+
+        reader.setUnavailable("缺少归档文件");
+        assertThrows(IllegalStateException.class, () -> reader.view().findByUserId(3L));
+        reader.setUnavailable(null);
+        assertTrue(reader.view().findByUserId(3L).isEmpty());
+    }
+
+    private ArchiveStore newStore() throws Exception {
+        ArchiveStore archiveStore = new ArchiveStore();
+        ReflectionTestUtils.setField(archiveStore, "dir", dir.getAbsolutePath());
+        archiveStore.init();
+        return archiveStore;
+    }
+
+    private static void serve(ArchiveStore store, String... groups) {
+        Map<String, Integer> generations = new HashMap<>();
+        for (String group : groups) {
+            generations.put(group, 0);
+        }
+        store.setServing(generations, null);
+    }
+
+    private static List<OperationLog> sampleLogs(int from, int to) {
+        List<OperationLog> logs = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            OperationLog operationLog = new OperationLog();
+            operationLog.setLogId((long) i);
+            operationLog.setUserId((long) (i % 10));
+            operationLog.setAction(i % 5 == 0 ? "USER_DELETE" : "USER_LOGIN");
+            operationLog.setIp("192.168.1." + (i % 255));
+            operationLog.setDetail("操作详情" + i);
+            operationLog.setGmtCreate(BASE_TIME.plusSeconds(i));
+            operationLog.setEventId("event-" + i);
+            logs.add(operationLog);
+        }
+        return logs;
+    }
+}
@@ -0,0 +1,266 @@
+package com.logging.backfill;
+
+import com.logging.config.InstanceIdentity;
+import com.logging.config.LogShardDataSources;
+import com.logging.entity.OperationLog;
+import com.logging.ingest.AdaptiveConcurrencyLimiter;
+import com.logging.ingest.IngestLaneExecutor;
+import com.logging.repository.BackfillCheckpointDao;
+import com.logging.repository.OperationLogJdbcDao;
+import com.logging.store.SegmentLogStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BackfillEngineTest {
+
+    @Mock
+    private LogShardDataSources shardDataSources;
+
+    @Mock
+    private BackfillCheckpointDao checkpointDao;
+
+    @Mock
+    private InstanceIdentity instanceIdentity;
+
+    @Mock
+    private OperationLogJdbcDao operationLogJdbcDao;
+
+    @Mock
+    private IngestLaneExecutor ingestLaneExecutor;
+
+    @Mock
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Mock
+    private JdbcTemplate shard;
+
+    @Mock
+    private BackfillTarget searchTarget;
+
+    @Mock
+    private BackfillTarget counterTarget;
+
+    @InjectMocks
+    private BackfillEngine backfillEngine;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(searchTarget.getBackfillName()).thenReturn("search");
+        lenient().when(searchTarget.isPerInstance()).thenReturn(true);
+        lenient().when(counterTarget.getBackfillName()).thenReturn("counter");
+        lenient().when(instanceIdentity.getInstanceId()).thenReturn("inst-a");
+        lenient().when(concurrencyLimiter.getLimit()).thenReturn(8);
+        Map<String, JdbcTemplate> shards = new HashMap<>();
+        shards.put("ds0", shard);
+        lenient().when(shardDataSources.getShards()).thenReturn(shards);
+        Map<String, Object> bounds = new HashMap<>();
+        bounds.put("min_id", 1L);
+        bounds.put("max_id", 1000L);
+        lenient().when(shard.queryForMap(anyString())).thenReturn(bounds);
+        // 分库中每个logId都有一条日志
+        lenient().when(shard.query(anyString(), any(RowMapper.class), anyLong(), anyLong(), anyInt()))
+                .thenAnswer(invocation -> logsAfter(invocation.getArgument(2), invocation.getArgument(3),
+                        invocation.getArgument(4)));
+        lenient().when(checkpointDao.claim(anyString(), any(), eq("inst-a"), eq(300)))
+                .thenAnswer(invocation -> invocation.getArgument(1));
+        lenient().when(checkpointDao.advance(anyString(), any(), anyLong(), anyLong(), eq("inst-a"), eq(300)))
+                .thenReturn(true);
+        lenient().when(checkpointDao.markDone(anyString(), any(), eq("inst-a"))).thenReturn(true);
+
+        ReflectionTestUtils.setField(backfillEngine, "targets", Arrays.asList(searchTarget, counterTarget));
+        ReflectionTestUtils.setField(backfillEngine, "parallelism", 1);
+        ReflectionTestUtils.setField(backfillEngine, "rangesPerShard", 2);
+        ReflectionTestUtils.setField(backfillEngine, "batchSize", 10);
+        // 0表示不限速率
+        ReflectionTestUtils.setField(backfillEngine, "maxRowsPerSecond", 0);
+        ReflectionTestUtils.setField(backfillEngine, "leaseSeconds", 300);
+        backfillEngine.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        backfillEngine.shutdown();
+    }
+
+    @Test
+    void testSplitCoversRangeWithoutGaps() {
+        List<long[]> ranges = BackfillEngine.split(0, 10, 4);
+        assertEquals(4, ranges.size());
+        long previous = 0;
+        for (long[] range : ranges) {
+            assertEquals(previous, range[0]);
+            assertTrue(range[1] > range[0]);
+            previous = range[1];
+        }
+        assertEquals(10, previous);
+
+        assertEquals(4, BackfillEngine.split(-1, 99, 4).size());
+        assertEquals(2, BackfillEngine.split(0, 2, 16).size());
+        assertTrue(BackfillEngine.split(5, 5, 4).isEmpty());
+    }
+
+    @Test
+    void testPerInstanceTargetUsesInstanceJob() {
+        // When
+        backfillEngine.startLogIdRange("search", 100L, 200L);
+
+        // Then 检查点任务名带本实例标识，共享目标不带
+        verify(checkpointDao).createRanges(eq("search@inst-a"), argThat(ranges -> ranges.size() == 2
+                && ranges.get(0).getRangeStart() == 100L && ranges.get(1).getRangeEnd() == 200L));
+        backfillEngine.startLogIdRange("counter", 100L, 200L);
+        verify(checkpointDao).createRanges(eq("counter"), anyList());
+    }
+
+    @Test
+    void testRangeRequestedWhilePendingIsMergedIntoJob() {
+        // Given 上一次回填还有未完成的范围
+        when(checkpointDao.findPending("search@inst-a"))
+                .thenReturn(Collections.singletonList(new BackfillRange("ds0", 0L, 50L, 20L)));
+
+        // When
+        backfillEngine.startLogIdRange("search", 100L, 200L);
+
+        // Then 新区间并入任务，不删除也不忽略
+        verify(checkpointDao, never()).deleteJob(anyString());
+        verify(checkpointDao).mergeRanges(eq("search@inst-a"), argThat(ranges -> ranges.size() == 2));
+    }
+
+    @Test
+    void testResumeSkipsJobsOfOtherInstances() {
+        // Given
+        when(checkpointDao.findPendingJobs()).thenReturn(Arrays.asList("search@inst-b", "search@inst-a", "counter"));
+
+        // When
+        backfillEngine.resumePending();
+
+        // Then
+        verify(checkpointDao, atLeastOnce()).findPending("search@inst-a");
+        verify(checkpointDao, atLeastOnce()).findPending("counter");
+        verify(checkpointDao, never()).findPending("search@inst-b");
+    }
+
+    @Test
+    void testProcessAdvancesCheckpointPerBatch() {
+        // Given
+        BackfillRange range = new BackfillRange("ds0", 0L, 25L, 0L);
+        when(checkpointDao.findPendingJobs()).thenReturn(Collections.singletonList("counter"));
+        when(checkpointDao.findPending("counter")).thenReturn(Collections.singletonList(range));
+
+        // When
+        backfillEngine.resumePending();
+        awaitIdle();
+
+        // Then 每批处理完推进一次检查点，最后一批不满时标记完成
+        InOrder inOrder = inOrder(checkpointDao);
+        inOrder.verify(checkpointDao).claim("counter", range, "inst-a", 300);
+        inOrder.verify(checkpointDao).advance("counter", range, 10L, 10L, "inst-a", 300);
+        inOrder.verify(checkpointDao).advance("counter", range, 20L, 10L, "inst-a", 300);
+        inOrder.verify(checkpointDao).advance("counter", range, 25L, 5L, "inst-a", 300);
+        inOrder.verify(checkpointDao).markDone("counter", range, "inst-a");
+        verify(counterTarget, times(3)).backfill(anyList());
+    }
+
+    @Test
+    void testResumeAfterFailureContinuesFromCheckpoint() {
+        // Given 检查点停在logId 10，第一次处理时回填目标失败
+        BackfillRange range = new BackfillRange("ds0", 0L, 25L, 10L);
+        when(checkpointDao.findPendingJobs()).thenReturn(Collections.singletonList("counter"));
+        when(checkpointDao.findPending("counter")).thenReturn(Collections.singletonList(range));
+        doThrow(new RuntimeException("写库失败")).doNothing().when(counterTarget).backfill(anyList());
+
+        // When
+        backfillEngine.resumePending();
+        awaitIdle();
+
+        // Then 失败时不推进检查点并释放认领
+        verify(checkpointDao, never()).advance(anyString(), any(), anyLong(), anyLong(), anyString(), anyInt());
+        verify(checkpointDao).release("counter", range, "inst-a");
+        verify(checkpointDao, never()).markDone(anyString(), any(), anyString());
+
+        // When 再次续跑
+        backfillEngine.resumePending();
+        awaitIdle();
+
+        // Then 从同一检查点重新读取
+        verify(shard, times(2)).query(anyString(), any(RowMapper.class), eq(10L), eq(25L), eq(10));
+        verify(checkpointDao).advance("counter", range, 20L, 10L, "inst-a", 300);
+        verify(checkpointDao).markDone("counter", range, "inst-a");
+    }
+
+    @Test
+    void testRangeClaimedByAnotherInstanceIsSkipped() {
+        // Given
+        BackfillRange range = new BackfillRange("ds0", 0L, 25L, 0L);
+        when(checkpointDao.findPendingJobs()).thenReturn(Collections.singletonList("counter"));
+        when(checkpointDao.findPending("counter")).thenReturn(Collections.singletonList(range));
+        when(checkpointDao.claim("counter", range, "inst-a", 300)).thenReturn(null);
+
+        // When
+        backfillEngine.resumePending();
+        awaitIdle();
+
+        // Then
+        verify(shard, never()).query(anyString(), any(RowMapper.class), anyLong(), anyLong(), anyInt());
+        verify(checkpointDao, never()).markDone(anyString(), any(), anyString());
+        verify(counterTarget, never()).onBackfillCompleted();
+    }
+
+    @Test
+    void testBackfillUnavailableWithSegmentStore() {
+        // Given
+        ReflectionTestUtils.setField(backfillEngine, "segmentLogStore", mock(SegmentLogStore.class));
+
+        // When & Then 段存储引擎下operation_logs没有数据
+        assertFalse(backfillEngine.isAvailable());
+        assertThrows(IllegalStateException.class, () -> backfillEngine.startLogIdRange("search", 100L, 200L));
+        assertThrows(IllegalStateException.class, () -> backfillEngine.start("counter", null, null));
+        backfillEngine.resumePending();
+        verify(checkpointDao, never()).findPendingJobs();
+        verify(checkpointDao, never()).createRanges(anyString(), anyList());
+    }
+
+    private void awaitIdle() {
+        Map<?, ?> running = (Map<?, ?>) ReflectionTestUtils.getField(backfillEngine, "running");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!running.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertTrue(running.isEmpty(), "回填任务未在时限内结束");
+    }
+
+    private static List<OperationLog> logsAfter(long afterLogId, long toLogId, int limit) {
+        List<OperationLog> logs = new ArrayList<>();
+        for (long logId = afterLogId + 1; logId <= toLogId && logs.size() < limit; logId++) {
+            logs.add(new OperationLog(logId, 1L, "USER_LOGIN", "10.0.0.1", null, LocalDateTime.now(), null));
+        }
+        return logs;
+    }
+}
@@ -0,0 +1,133 @@
+package com.logging.cache;
+
+import com.logging.entity.OperationLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogResultCacheTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    private final MutableClock clock = new MutableClock(NOW.toInstant(ZoneOffset.UTC));
+
+    private final Pageable pageable = PageRequest.of(0, 20);
+
+    @Test
+    void testClosedWindowCachedLongerThanOpenWindow() {
+        LogResultCache cache = new LogResultCache(new SimpleMeterRegistry(), clock, 300, 5, 3600, 1000);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(NOW.minusMinutes(5), cache.getWatermark());
+        LocalDateTime closedEnd = NOW.minusHours(1);
+        LocalDateTime openEnd = NOW.plusHours(1);
+        for (int i = 0; i < 3; i++) {
+            cache.getByTimeRange(NOW.minusDays(1), closedEnd, pageable, () -> page(loads, NOW.minusHours(2)));
+            cache.getByTimeRange(NOW.minusDays(1), openEnd, pageable, () -> page(loads, NOW.minusHours(2)));
+        }
+        assertEquals(2, loads.get());
+
+        // 未封闭窗口的结果过期重查，已封闭窗口仍命中
+        clock.advanceSeconds(10);
+        cache.getByTimeRange(NOW.minusDays(1), closedEnd, pageable, () -> page(loads, NOW.minusHours(2)));
+        cache.getByTimeRange(NOW.minusDays(1), openEnd, pageable, () -> page(loads, NOW.minusHours(2)));
+        assertEquals(3, loads.get());
+
+        clock.advanceSeconds(3600);
+        cache.getByTimeRange(NOW.minusDays(1), closedEnd, pageable, () -> page(loads, NOW.minusHours(2)));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void testLateLogInvalidatesCoveringResults() {
+        LogResultCache cache = new LogResultCache(new SimpleMeterRegistry(), clock, 300, 5, 3600, 1000);
+        AtomicInteger loads = new AtomicInteger();
+        LocalDateTime dayStart = NOW.minusDays(2);
+        LocalDateTime otherStart = NOW.minusDays(4);
+
+        cache.getByTimeRange(dayStart, dayStart.plusDays(1), pageable, () -> page(loads, dayStart));
+        cache.getByTimeRange(otherStart, otherStart.plusDays(1), pageable, () -> page(loads, otherStart));
+        assertEquals(2, cache.size());
+
+        // 水位线之后的日志不影响已封闭窗口
+        cache.onLogsPersisted(Collections.singletonList(log("USER_LOGIN", NOW.minusMinutes(1))));
+        assertEquals(2, cache.size());
+
+        cache.onLogsPersisted(Collections.singletonList(log("USER_LOGIN", dayStart.plusHours(3))));
+        assertEquals(1, cache.size());
+        cache.getByTimeRange(dayStart, dayStart.plusDays(1), pageable, () -> page(loads, dayStart));
+        cache.getByTimeRange(otherStart, otherStart.plusDays(1), pageable, () -> page(loads, otherStart));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedByRows() {
+        LogResultCache cache = new LogResultCache(new SimpleMeterRegistry(), clock, 300, 5, 3600, 3);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getByAction("USER_LOGIN", () -> logs(loads, "USER_LOGIN"));
+        cache.getByAction("USER_UPDATE", () -> logs(loads, "USER_UPDATE"));
+
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getCachedRows());
+        cache.getByAction("USER_UPDATE", () -> logs(loads, "USER_UPDATE"));
+        assertEquals(2, loads.get());
+    }
+
+    private static Page<OperationLog> page(AtomicInteger loads, LocalDateTime time) {
+        loads.incrementAndGet();
+        return new PageImpl<>(Collections.singletonList(log("USER_LOGIN", time)));
+    }
+
+    private static List<OperationLog> logs(AtomicInteger loads, String action) {
+        loads.incrementAndGet();
+        return Arrays.asList(log(action, NOW.minusMinutes(1)), log(action, NOW.minusMinutes(2)));
+    }
+
+    private static OperationLog log(String action, LocalDateTime time) {
+        return new OperationLog(1L, 1001L, action, "10.0.0.1", null, time, null);
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advanceSeconds(long seconds) {
+            instant = instant.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
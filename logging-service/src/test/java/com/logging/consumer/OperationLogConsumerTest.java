@@ -2,33 +2,53 @@ package com.logging.consumer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.logging.event.OperationLogEvent;
-import com.logging.service.OperationLogService;
+import com.logging.ingest.IngestLaneExecutor;
+import com.logging.ingest.IngestMetrics;
+import com.logging.repository.OperationLogQuarantineDao;
+import com.logging.wal.WalIngestBuffer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class OperationLogConsumerTest {
 
     @Mock
-    private OperationLogService operationLogService;
+    private IngestLaneExecutor ingestLaneExecutor;
 
     @Mock
     private ObjectMapper objectMapper;
 
+    @Mock
+    private OperationLogQuarantineDao quarantineDao;
+
+    @Mock
+    private IngestMetrics ingestMetrics;
+
     @InjectMocks
     private OperationLogConsumer operationLogConsumer;
 
     private OperationLogEvent sampleEvent;    @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(operationLogConsumer, "retryMaxAttempts", 3);
+        ReflectionTestUtils.setField(operationLogConsumer, "retryInitialBackoffMs", 1L);
+        ReflectionTestUtils.setField(operationLogConsumer, "retryMaxBackoffMs", 2L);
+
         sampleEvent = new OperationLogEvent();
         sampleEvent.setUserId(1L);
         sampleEvent.setAction("创建用户");
@@ -41,12 +61,14 @@ class OperationLogConsumerTest {
         // Given
         String message = "{\"userId\":1,\"action\":\"创建用户\"}";
         when(objectMapper.readValue(message, OperationLogEvent.class)).thenReturn(sampleEvent);
+        when(ingestLaneExecutor.submit(sampleEvent)).thenReturn(CompletableFuture.completedFuture(null));
 
         // When
         operationLogConsumer.onMessage(message);
 
         // Then
-        verify(operationLogService, times(1)).handleLogEvent(any(OperationLogEvent.class));
+        verify(ingestLaneExecutor, times(1)).submit(any(OperationLogEvent.class));
+        verify(ingestMetrics).recordSuccess();
     }
 
     @Test
@@ -56,14 +78,120 @@ class OperationLogConsumerTest {
         when(objectMapper.readValue(invalidMessage, OperationLogEvent.class))
             .thenThrow(new RuntimeException("JSON解析失败"));
 
-        // When & Then
-        try {
-            operationLogConsumer.onMessage(invalidMessage);
-        } catch (RuntimeException e) {
-            // 预期会抛出异常
-        }
+        // When
+        operationLogConsumer.onMessage(invalidMessage);
         
-        // 验证service没有被调用
-        verify(operationLogService, never()).handleLogEvent(any(OperationLogEvent.class));
+        // Then 直接隔离，不重投，service没有被调用
+        verify(ingestLaneExecutor, never()).submit(any(OperationLogEvent.class));
+        verify(quarantineDao).save(eq(OperationLogQuarantineDao.REASON_INVALID), anyString(), eq(invalidMessage));
+        verify(ingestMetrics).recordQuarantined(OperationLogQuarantineDao.REASON_INVALID);
+    }
+
+    @Test
+    void testOnMessage_MissingUserId() throws Exception {
+        // Given
+        String message = "{\"action\":\"创建用户\"}";
+        sampleEvent.setUserId(null);
+        when(objectMapper.readValue(message, OperationLogEvent.class)).thenReturn(sampleEvent);
+
+        // When
+        operationLogConsumer.onMessage(message);
+
+        // Then
+        verify(ingestLaneExecutor, never()).submit(any(OperationLogEvent.class));
+        verify(quarantineDao).save(eq(OperationLogQuarantineDao.REASON_INVALID), anyString(), eq(message));
+    }
+
+    @Test
+    void testOnMessage_RejectedByStorage() throws Exception {
+        // Given
+        String message = "{\"userId\":1,\"action\":\"创建用户\"}";
+        when(objectMapper.readValue(message, OperationLogEvent.class)).thenReturn(sampleEvent);
+        when(ingestLaneExecutor.submit(sampleEvent))
+            .thenReturn(failedFuture(new DataIntegrityViolationException("Data too long for column 'ip'")));
+
+        // When
+        operationLogConsumer.onMessage(message);
+
+        // Then 不可重试错误只处理一次
+        verify(ingestLaneExecutor, times(1)).submit(sampleEvent);
+        verify(quarantineDao).save(eq(OperationLogQuarantineDao.REASON_REJECTED), anyString(), eq(message));
+    }
+
+    @Test
+    void testOnMessage_RetryThenSuccess() throws Exception {
+        // Given
+        String message = "{\"userId\":1,\"action\":\"创建用户\"}";
+        when(objectMapper.readValue(message, OperationLogEvent.class)).thenReturn(sampleEvent);
+        when(ingestLaneExecutor.submit(sampleEvent))
+            .thenReturn(failedFuture(new QueryTimeoutException("timeout")))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        operationLogConsumer.onMessage(message);
+
+        // Then
+        verify(ingestLaneExecutor, times(2)).submit(sampleEvent);
+        verify(ingestMetrics).recordRetry();
+        verify(ingestMetrics).recordSuccess();
+        verify(quarantineDao, never()).save(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testOnMessage_RetryExhausted() throws Exception {
+        // Given
+        String message = "{\"userId\":1,\"action\":\"创建用户\"}";
+        when(objectMapper.readValue(message, OperationLogEvent.class)).thenReturn(sampleEvent);
+        when(ingestLaneExecutor.submit(sampleEvent))
+            .thenAnswer(invocation -> failedFuture(new QueryTimeoutException("timeout")));
+
+        // When & Then 重试用尽后抛出异常交由MQ重投
+        assertThrows(RuntimeException.class, () -> operationLogConsumer.onMessage(message));
+        verify(ingestLaneExecutor, times(3)).submit(sampleEvent);
+        verify(ingestMetrics).recordRetryExhausted();
+    }
+
+    @Test
+    void testOnMessage_WalMode() throws Exception {
+        // Given
+        String message = "{\"userId\":1,\"action\":\"创建用户\"}";
+        WalIngestBuffer walIngestBuffer = mock(WalIngestBuffer.class);
+        ReflectionTestUtils.setField(operationLogConsumer, "walIngestBuffer", walIngestBuffer);
+        when(objectMapper.readValue(message, OperationLogEvent.class)).thenReturn(sampleEvent);
+
+        // When
+        operationLogConsumer.onMessage(message);
+
+        // Then 追加到本地WAL即确认，不等待入库
+        verify(walIngestBuffer).append(sampleEvent);
+        verify(ingestLaneExecutor, never()).submit(any(OperationLogEvent.class));
+    }
+
+    @Test
+    void testSecurityEventBypassesWalInWalMode() throws Exception {
+        // Given
+        String message = "{\"userId\":1,\"action\":\"PASSWORD_RESET\"}";
+        SecurityLogConsumer securityLogConsumer = new SecurityLogConsumer();
+        WalIngestBuffer walIngestBuffer = mock(WalIngestBuffer.class);
+        ReflectionTestUtils.setField(securityLogConsumer, "walIngestBuffer", walIngestBuffer);
+        ReflectionTestUtils.setField(securityLogConsumer, "ingestLaneExecutor", ingestLaneExecutor);
+        ReflectionTestUtils.setField(securityLogConsumer, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(securityLogConsumer, "ingestMetrics", ingestMetrics);
+        ReflectionTestUtils.setField(securityLogConsumer, "retryMaxAttempts", 3);
+        when(objectMapper.readValue(message, OperationLogEvent.class)).thenReturn(sampleEvent);
+        when(ingestLaneExecutor.submitPriority(sampleEvent)).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        securityLogConsumer.onMessage(message);
+
+        // Then 安全事件不经WAL，直接进入优先队列并等待写库完成
+        verify(ingestLaneExecutor).submitPriority(sampleEvent);
+        verify(walIngestBuffer, never()).append(any(OperationLogEvent.class));
+    }
+
+    private static CompletableFuture<Void> failedFuture(Throwable cause) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
     }
 }
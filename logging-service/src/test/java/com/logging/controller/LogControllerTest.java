@@ -1,7 +1,23 @@
 package com.logging.controller;
 
+import com.logging.backfill.BackfillEngine;
+import com.logging.dto.BackfillProgress;
+import com.logging.dto.CursorPage;
+import com.logging.dto.HeavyHitter;
+import com.logging.dto.LogAggregateView;
+import com.logging.dto.OperationLogView;
+import com.logging.dto.RollupPoint;
 import com.logging.entity.OperationLog;
+import com.logging.export.ExportFormat;
+import com.logging.service.ActionRollupService;
+import com.logging.service.LogAggregateService;
+import com.logging.service.LogExportService;
+import com.logging.service.LogSearchService;
 import com.logging.service.OperationLogService;
+import com.logging.service.RecentActivityService;
+import com.logging.service.SketchAnalyticsService;
+import com.logging.stats.RollupGranularity;
+import com.logging.stream.LogStreamHub;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,15 +30,24 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(LogController.class)
@@ -34,6 +59,30 @@ class LogControllerTest {
     @MockBean
     private OperationLogService operationLogService;
 
+    @MockBean
+    private ActionRollupService actionRollupService;
+
+    @MockBean
+    private LogStreamHub logStreamHub;
+
+    @MockBean
+    private LogSearchService logSearchService;
+
+    @MockBean
+    private LogExportService logExportService;
+
+    @MockBean
+    private RecentActivityService recentActivityService;
+
+    @MockBean
+    private LogAggregateService logAggregateService;
+
+    @MockBean
+    private SketchAnalyticsService sketchAnalyticsService;
+
+    @MockBean
+    private BackfillEngine backfillEngine;
+
     private OperationLog sampleLog;
 
     @BeforeEach
@@ -63,6 +112,64 @@ class LogControllerTest {
                 .andExpect(jsonPath("$.total").value(1));
     }
 
+    @Test
+    void testGetRecentActivity() throws Exception {
+        when(recentActivityService.getRecentActivity(1001L, 5))
+                .thenReturn(Collections.singletonList(OperationLogView.of(sampleLog)));
+
+        mockMvc.perform(get("/logs/user/1001/recent").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].logId").value(1))
+                .andExpect(jsonPath("$[0].action").value("CREATE_USER"));
+    }
+
+    @Test
+    void testGetUserAggregates() throws Exception {
+        LocalDateTime window = LocalDateTime.of(2025, 6, 21, 10, 0);
+        when(logAggregateService.getAggregates(eq(1001L), eq("USER_LOGIN"), any(), any()))
+                .thenReturn(Collections.singletonList(new LogAggregateView(1001L, "USER_LOGIN", "192.168.1.100",
+                        window, 42L, window.plusMinutes(1), window.plusMinutes(58))));
+
+        mockMvc.perform(get("/logs/user/1001/aggregates")
+                        .param("action", "USER_LOGIN")
+                        .param("startTime", "2025-06-21T00:00:00")
+                        .param("endTime", "2025-06-21T23:59:59"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].count").value(42))
+                .andExpect(jsonPath("$[0].ip").value("192.168.1.100"));
+    }
+
+    @Test
+    void testGetActiveUsersAndTopIps() throws Exception {
+        LocalDate day = LocalDate.of(2025, 6, 21);
+        when(sketchAnalyticsService.countActiveUsers(day, "USER_LOGIN")).thenReturn(12345L);
+        when(sketchAnalyticsService.getTopIps(day, null, 5))
+                .thenReturn(Collections.singletonList(new HeavyHitter("192.168.1.100", 800L)));
+
+        mockMvc.perform(get("/logs/stats/active-users").param("date", "2025-06-21").param("action", "USER_LOGIN"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.activeUsers").value(12345));
+
+        mockMvc.perform(get("/logs/stats/top-ips").param("date", "2025-06-21").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].key").value("192.168.1.100"))
+                .andExpect(jsonPath("$[0].count").value(800));
+    }
+
+    @Test
+    void testStartBackfill() throws Exception {
+        when(backfillEngine.start("search", null, null)).thenReturn(new BackfillProgress("search", true, 32, 0, 0L));
+        when(backfillEngine.start(eq("unknown"), any(), any())).thenThrow(new IllegalArgumentException("回填目标不存在"));
+
+        mockMvc.perform(post("/logs/backfill/search"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.running").value(true))
+                .andExpect(jsonPath("$.totalRanges").value(32));
+
+        mockMvc.perform(post("/logs/backfill/unknown"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testGetLogsByAction() throws Exception {
         // Given
@@ -94,6 +201,108 @@ class LogControllerTest {
                 .andExpect(jsonPath("$.content[0].action").value("CREATE_USER"));
     }
 
+    @Test
+    void testQueryLogs() throws Exception {
+        // Given
+        OperationLogView view = new OperationLogView(1L, 1001L, "CREATE_USER", "192.168.1.100",
+                "创建用户操作", LocalDateTime.now());
+        CursorPage<OperationLogView> page = new CursorPage<>(Collections.singletonList(view), "next", true);
+        when(operationLogService.queryLogs(any())).thenReturn(page);
+
+        // When & Then
+        mockMvc.perform(get("/logs/query")
+                .param("userId", "1001")
+                .param("action", "CREATE_USER")
+                .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].logId").value(1))
+                .andExpect(jsonPath("$.nextCursor").value("next"))
+                .andExpect(jsonPath("$.hasMore").value(true));
+    }
+
+    @Test
+    void testQueryLogs_InvalidCursor() throws Exception {
+        when(operationLogService.queryLogs(any())).thenThrow(new IllegalArgumentException("非法的分页游标"));
+
+        mockMvc.perform(get("/logs/query").param("cursor", "bad"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetActionSeries() throws Exception {
+        // Given
+        List<RollupPoint> points = Arrays.asList(
+                new RollupPoint(LocalDateTime.of(2025, 6, 21, 10, 0), 12L),
+                new RollupPoint(LocalDateTime.of(2025, 6, 21, 10, 1), 0L));
+        when(actionRollupService.getSeries(eq("USER_LOGIN"), eq(RollupGranularity.MINUTE), any(), any(), any()))
+                .thenReturn(points);
+
+        // When & Then
+        mockMvc.perform(get("/logs/stats/actions/USER_LOGIN")
+                .param("granularity", "MINUTE")
+                .param("startTime", "2025-06-21T10:00:00")
+                .param("endTime", "2025-06-21T10:01:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].count").value(12))
+                .andExpect(jsonPath("$[1].count").value(0));
+    }
+
+    @Test
+    void testSearchLogs() throws Exception {
+        // Given
+        OperationLogView view = new OperationLogView(1L, 1001L, "USER_UPDATE", "192.168.1.100",
+                "用户信息更新: email=alice@example.com", LocalDateTime.now());
+        when(logSearchService.search(eq("alice@example.com"), any(), any(), eq(50)))
+                .thenReturn(Collections.singletonList(view));
+
+        // When & Then
+        mockMvc.perform(get("/logs/search").param("keyword", "alice@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].logId").value(1))
+                .andExpect(jsonPath("$[0].action").value("USER_UPDATE"));
+    }
+
+    @Test
+    void testStreamLogs_TooManySubscribers() throws Exception {
+        when(logStreamHub.subscribe(any())).thenReturn(null);
+
+        mockMvc.perform(get("/logs/stream").param("action", "USER_LOGIN"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void testExportLogs() throws Exception {
+        when(logExportService.tryAcquire()).thenReturn(true);
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(4);
+            out.write("{\"logId\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }).when(logExportService).export(any(), any(), eq(ExportFormat.NDJSON), anyBoolean(), any());
+
+        MvcResult result = mockMvc.perform(get("/logs/export")
+                        .param("startTime", "2024-01-01T00:00:00")
+                        .param("endTime", "2024-01-31T23:59:59"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition",
+                        "attachment; filename=\"operation-logs-20240101000000-20240131235959.ndjson\""))
+                .andExpect(content().string("{\"logId\":1}\n"));
+    }
+
+    @Test
+    void testExportLogs_TooManyExports() throws Exception {
+        when(logExportService.tryAcquire()).thenReturn(false);
+
+        mockMvc.perform(get("/logs/export")
+                        .param("startTime", "2024-01-01T00:00:00")
+                        .param("endTime", "2024-01-31T23:59:59")
+                        .param("format", "CSV"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
     @Test
     void testHealth() throws Exception {
         mockMvc.perform(get("/logs/health"))
@@ -0,0 +1,93 @@
+package com.logging.detect;
+
+import com.logging.entity.OperationLog;
+import com.logging.event.AbuseAlertEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LoginAbuseDetectorTest {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2025, 6, 21, 10, 0, 0);
+
+    private AbuseAlertPublisher publisher;
+
+    private LoginAbuseDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        publisher = mock(AbuseAlertPublisher.class);
+        detector = new LoginAbuseDetector("USER_LOGIN", 60, 600, 5, 0, 0, 0, 1000);
+        ReflectionTestUtils.setField(detector, "alertPublisher", publisher);
+    }
+
+    @Test
+    void testSlidingWindowExpiresOldBuckets() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60000L, 12);
+        long start = 1_750_000_000_000L;
+        for (int i = 0; i < 10; i++) {
+            counter.incrementAndSum(start + i * 1000L);
+        }
+        assertEquals(10L, counter.sum(start + 10000L));
+        assertEquals(11L, counter.incrementAndSum(start + 30000L));
+        // 一分钟后前10次滑出窗口
+        assertEquals(1L, counter.sum(start + 75000L));
+        assertEquals(0L, counter.sum(start + 120000L));
+    }
+
+    @Test
+    void testAlertOncePerWindowWhenThresholdTrips() {
+        List<OperationLog> logs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            logs.add(login(1000L + i, "203.0.113.7", BASE_TIME.plusSeconds(i)));
+        }
+        detector.onLogsAggregated(logs);
+
+        ArgumentCaptor<AbuseAlertEvent> alert = ArgumentCaptor.forClass(AbuseAlertEvent.class);
+        verify(publisher, times(1)).publish(alert.capture());
+        assertEquals(LoginAbuseDetector.DIMENSION_IP, alert.getValue().getDimension());
+        assertEquals("203.0.113.7", alert.getValue().getKey());
+        assertEquals(5L, alert.getValue().getCount());
+        assertEquals(60L, alert.getValue().getWindowSeconds());
+
+        // 窗口过去后再次超限会重新告警
+        logs.clear();
+        for (int i = 0; i < 5; i++) {
+            logs.add(login(2000L + i, "203.0.113.7", BASE_TIME.plusMinutes(3).plusSeconds(i)));
+        }
+        detector.onLogsPersisted(logs);
+        verify(publisher, times(2)).publish(any());
+    }
+
+    @Test
+    void testIgnoresOtherActionsAndSpreadOutTraffic() {
+        List<OperationLog> logs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            logs.add(login(1001L, "198.51.100.1", BASE_TIME.plusSeconds(i * 20L)));
+            OperationLog update = login(1001L, "198.51.100.2", BASE_TIME.plusSeconds(i));
+            update.setAction("USER_UPDATE");
+            logs.add(update);
+        }
+        detector.onLogsPersisted(logs);
+
+        verify(publisher, never()).publish(any());
+        assertEquals(2, detector.getTrackedKeys());
+    }
+
+    private static OperationLog login(Long userId, String ip, LocalDateTime time) {
+        OperationLog operationLog = new OperationLog();
+        operationLog.setUserId(userId);
+        operationLog.setAction("USER_LOGIN");
+        operationLog.setIp(ip);
+        operationLog.setGmtCreate(time);
+        return operationLog;
+    }
+}
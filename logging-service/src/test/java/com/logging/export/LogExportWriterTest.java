@@ -0,0 +1,41 @@
+package com.logging.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogExportWriterTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 1, 8, 0, 0);
+
+    @Test
+    void testNdjsonOneObjectPerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (LogExportWriter writer = ExportFormat.NDJSON.open(out)) {
+            writer.write(1L, 1001L, "USER_LOGIN", "10.0.0.1", "登录\n\"成功\"", TIME);
+            writer.write(2L, 1002L, "USER_LOGOUT", null, null, TIME);
+        }
+
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"logId\":1,\"userId\":1001,\"action\":\"USER_LOGIN\",\"ip\":\"10.0.0.1\","
+                + "\"detail\":\"登录\\n\\\"成功\\\"\",\"gmtCreate\":\"2024-01-01T08:00:00\"}", lines[0]);
+        assertTrue(lines[1].contains("\"ip\":null"));
+    }
+
+    @Test
+    void testCsvQuotesSpecialCharacters() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (LogExportWriter writer = ExportFormat.CSV.open(out)) {
+            writer.write(1L, 1001L, "USER_LOGIN", null, "a,\"b\"", TIME);
+        }
+
+        assertEquals("log_id,user_id,action,ip,detail,gmt_create\r\n"
+                + "1,1001,USER_LOGIN,,\"a,\"\"b\"\"\",2024-01-01T08:00:00\r\n",
+                out.toString(StandardCharsets.UTF_8.name()));
+    }
+}
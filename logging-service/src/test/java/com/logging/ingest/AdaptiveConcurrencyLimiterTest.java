@@ -0,0 +1,73 @@
+package com.logging.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void testLimitGrowsWhileFastAndBacksOffOnOverload() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(2, 8, 10_000);
+
+        // 用满并发且耗时低于目标时逐步加大上限，不超过max
+        for (int round = 0; round < 50; round++) {
+            int permits = limiter.getLimit();
+            long[] starts = new long[permits];
+            for (int i = 0; i < permits; i++) {
+                starts[i] = limiter.acquire();
+            }
+            for (long start : starts) {
+                limiter.onSuccess(start);
+            }
+        }
+        assertEquals(8, limiter.getLimit());
+
+        // 锁等待按过载处理，唯一键冲突不调整上限
+        limiter.acquire();
+        limiter.onError(new CannotAcquireLockException("锁等待超时"));
+        assertEquals(7, limiter.getLimit());
+        limiter.acquire();
+        limiter.onError(new DataIntegrityViolationException("重复事件"));
+        assertEquals(7, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testSlowWritesShrinkLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(4, 8, 1);
+        for (int i = 0; i < 50; i++) {
+            long start = limiter.acquire();
+            Thread.sleep(2);
+            limiter.onSuccess(start);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    void testAcquireBlocksAtLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 1, 10_000);
+        long start = limiter.acquire();
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            limiter.acquire();
+            acquired.countDown();
+        });
+        waiter.start();
+
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        limiter.onSuccess(start);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+    }
+
+    private static AdaptiveConcurrencyLimiter newLimiter(int initial, int max, long targetLatencyMs) {
+        return new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry(), initial, 1, max, targetLatencyMs, 0.9);
+    }
+}
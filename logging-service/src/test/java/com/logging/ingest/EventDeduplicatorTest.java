@@ -0,0 +1,41 @@
+package com.logging.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventDeduplicatorTest {
+
+    @Test
+    void testMarkIfAbsent() {
+        EventDeduplicator deduplicator = new EventDeduplicator(60000, 100);
+
+        assertTrue(deduplicator.markIfAbsent("evt-1"));
+        assertFalse(deduplicator.markIfAbsent("evt-1"));
+        assertTrue(deduplicator.markIfAbsent("evt-2"));
+    }
+
+    @Test
+    void testForget() {
+        EventDeduplicator deduplicator = new EventDeduplicator(60000, 100);
+
+        assertTrue(deduplicator.markIfAbsent("evt-1"));
+        deduplicator.forget("evt-1");
+        assertTrue(deduplicator.markIfAbsent("evt-1"));
+    }
+
+    @Test
+    void testPreviousGenerationRetainedAfterRotation() {
+        EventDeduplicator deduplicator = new EventDeduplicator(60000, 2);
+
+        assertTrue(deduplicator.markIfAbsent("evt-1"));
+        assertTrue(deduplicator.markIfAbsent("evt-2"));
+        // 当前代写满后轮换，上一代仍参与去重
+        assertTrue(deduplicator.markIfAbsent("evt-3"));
+        assertFalse(deduplicator.markIfAbsent("evt-1"));
+        assertTrue(deduplicator.markIfAbsent("evt-4"));
+        // 再次轮换后最早的一代被淘汰
+        assertTrue(deduplicator.markIfAbsent("evt-5"));
+        assertTrue(deduplicator.markIfAbsent("evt-1"));
+    }
+}
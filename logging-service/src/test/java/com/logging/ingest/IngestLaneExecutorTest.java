@@ -0,0 +1,118 @@
+package com.logging.ingest;
+
+import com.logging.event.OperationLogEvent;
+import com.logging.service.OperationLogService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class IngestLaneExecutorTest {
+
+    private final OperationLogService operationLogService = mock(OperationLogService.class);
+
+    private IngestLaneExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testPerUserOrderPreserved() throws Exception {
+        List<OperationLogEvent> persisted = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            List<OperationLogEvent> batch = invocation.getArgument(0);
+            persisted.addAll(batch);
+            return null;
+        }).when(operationLogService).handleLogEvents(anyList());
+        executor = new IngestLaneExecutor(operationLogService, 4, 100, 16, 100, 4);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(executor.submit(OperationLogEvent.of((long) (i % 8), "USER_LOGIN", null, String.valueOf(i))));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(200, persisted.size());
+        for (long userId = 0; userId < 8; userId++) {
+            int last = -1;
+            for (OperationLogEvent event : new ArrayList<>(persisted)) {
+                if (event.getUserId() == userId) {
+                    int seq = Integer.parseInt(event.getDetail());
+                    assertTrue(seq > last, "同一用户的事件应按提交顺序入库");
+                    last = seq;
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFailedBatchIsolatesBadEvent() throws Exception {
+        OperationLogEvent bad = OperationLogEvent.of(1L, "USER_LOGIN", null, "bad");
+        doAnswer(invocation -> {
+            List<OperationLogEvent> batch = invocation.getArgument(0);
+            if (batch.contains(bad)) {
+                throw new IllegalStateException("写入失败");
+            }
+            return null;
+        }).when(operationLogService).handleLogEvents(anyList());
+        executor = new IngestLaneExecutor(operationLogService, 1, 100, 16, 100, 4);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(executor.submit(i == 2 ? bad : OperationLogEvent.of(1L, "USER_LOGIN", null, String.valueOf(i))));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            CompletableFuture<Void> future = futures.get(i);
+            if (i == 2) {
+                CompletionException e = assertThrows(CompletionException.class, future::join);
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            } else {
+                assertNull(future.get(10, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    void testPriorityEventsOvertakeBacklog() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> persisted = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            List<OperationLogEvent> batch = invocation.getArgument(0);
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            batch.forEach(event -> persisted.add(event.getDetail()));
+            return null;
+        }).when(operationLogService).handleLogEvents(anyList());
+        executor = new IngestLaneExecutor(operationLogService, 1, 100, 4, 100, 4);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        futures.add(executor.submit(OperationLogEvent.of(1L, "USER_LOGIN", null, "bulk-0")));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= 40; i++) {
+            futures.add(executor.submit(OperationLogEvent.of(1L, "USER_LOGIN", null, "bulk-" + i)));
+        }
+        futures.add(executor.submitPriority(OperationLogEvent.of(1L, "PASSWORD_RESET", null, "security")));
+        release.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        // 正在写入的批次之后立即处理优先事件，不排在普通队列积压之后
+        assertEquals(42, persisted.size());
+        assertEquals("security", persisted.get(1));
+    }
+}
@@ -0,0 +1,63 @@
+package com.logging.ingest;
+
+import com.logging.entity.OperationLog;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestPolicyResolverTest {
+
+    @Test
+    void testPolicyByAction() {
+        IngestPolicyResolver resolver = new IngestPolicyResolver("FULL",
+                "USER_LOGIN=AGGREGATE, USER_VIEW=SAMPLE:0.1", "PASSWORD_RESET");
+
+        assertEquals(IngestPolicy.AGGREGATE, resolver.policyOf("USER_LOGIN"));
+        assertEquals(IngestPolicy.SAMPLE, resolver.policyOf("USER_VIEW"));
+        assertEquals(IngestPolicy.FULL, resolver.policyOf("USER_UPDATE"));
+        assertFalse(resolver.shouldStore(logOf("USER_LOGIN", "evt-1")));
+        assertTrue(resolver.shouldStore(logOf("USER_UPDATE", "evt-1")));
+    }
+
+    @Test
+    void testSecurityActionsAlwaysStored() {
+        IngestPolicyResolver resolver = new IngestPolicyResolver("AGGREGATE",
+                "PASSWORD_RESET=AGGREGATE", "PASSWORD_RESET,USER_DELETE");
+
+        assertEquals(IngestPolicy.FULL, resolver.policyOf("PASSWORD_RESET"));
+        assertEquals(IngestPolicy.FULL, resolver.policyOf("USER_DELETE"));
+        assertEquals(IngestPolicy.AGGREGATE, resolver.policyOf("USER_LOGIN"));
+    }
+
+    @Test
+    void testSamplingIsDeterministicAndProportional() {
+        IngestPolicyResolver resolver = new IngestPolicyResolver("FULL", "USER_VIEW=SAMPLE:0.1", "");
+
+        int stored = 0;
+        for (int i = 0; i < 10000; i++) {
+            OperationLog operationLog = logOf("USER_VIEW", "evt-" + i);
+            boolean first = resolver.shouldStore(operationLog);
+            assertEquals(first, resolver.shouldStore(operationLog));
+            if (first) {
+                stored++;
+            }
+        }
+        assertTrue(stored > 800 && stored < 1200, "抽样比例应接近10%: " + stored);
+    }
+
+    @Test
+    void testInvalidSampleRate() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new IngestPolicyResolver("FULL", "USER_VIEW=SAMPLE:1.5", ""));
+        assertThrows(IllegalArgumentException.class,
+                () -> new IngestPolicyResolver("FULL", "USER_VIEW", ""));
+    }
+
+    private static OperationLog logOf(String action, String eventId) {
+        OperationLog operationLog = new OperationLog();
+        operationLog.setUserId(1001L);
+        operationLog.setAction(action);
+        operationLog.setEventId(eventId);
+        return operationLog;
+    }
+}
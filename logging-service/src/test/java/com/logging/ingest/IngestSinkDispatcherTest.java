@@ -0,0 +1,221 @@
+package com.logging.ingest;
+
+import com.logging.backfill.BackfillEngine;
+import com.logging.backfill.BackfillTarget;
+import com.logging.dto.BackfillProgress;
+import com.logging.entity.OperationLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class IngestSinkDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private IngestSinkDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void testSlowSinkDoesNotStallOthers() throws Exception {
+        RecordingSink slow = new RecordingSink("slow", release);
+        RecordingSink fast = new RecordingSink("fast", null);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("operation-log.sinks.slow.capacity", "2")
+                .withProperty("operation-log.sinks.slow.overflow", "DROP");
+        dispatcher = newDispatcher(environment, slow, fast);
+
+        for (long i = 0; i < 20; i++) {
+            dispatcher.dispatchPersisted(Collections.singletonList(newLog(i)));
+        }
+
+        // 慢输出端阻塞在第一批上，队列满后丢弃，快输出端照常收到全部日志
+        fast.awaitRows(20);
+        assertEquals(20, fast.rows.size());
+        assertTrue(meterRegistry.counter("operation_log.sink.dropped", "sink", "slow").count() > 0);
+        release.countDown();
+        dispatcher.shutdown();
+        assertTrue(slow.rows.size() < 20);
+    }
+
+    @Test
+    void testRebuildsDroppedRangeThroughBackfill() throws Exception {
+        RebuildableSink slow = new RebuildableSink("slow", release);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("operation-log.sinks.slow.capacity", "1")
+                .withProperty("operation-log.sinks.slow.overflow", "REBUILD");
+        BackfillEngine backfillEngine = mock(BackfillEngine.class);
+        dispatcher = newDispatcher(environment, slow);
+        ReflectionTestUtils.setField(dispatcher, "backfillEngine", backfillEngine);
+        ReflectionTestUtils.setField(dispatcher, "rebuildDelayMs", 0L);
+
+        dispatcher.dispatchPersisted(Collections.singletonList(newLog(1)));
+        awaitQueued("slow", 0);
+        for (long i = 2; i <= 10; i++) {
+            dispatcher.dispatchPersisted(Collections.singletonList(newLog(i)));
+        }
+
+        // 第2批排队，3-10被丢弃并标记过期；等排队的批次回调完才提交回填
+        assertEquals(Collections.singletonList("slow"), dispatcher.getStaleSinks());
+        dispatcher.rebuildStale();
+        verify(backfillEngine, never()).startLogIdRange(anyString(), anyLong(), anyLong());
+
+        release.countDown();
+        slow.awaitRows(2);
+        Thread.sleep(50);
+        dispatcher.rebuildStale();
+        verify(backfillEngine).startLogIdRange("slow", 2L, 10L);
+        assertEquals(Collections.singletonList("slow"), dispatcher.getStaleSinks());
+
+        // 回填完成后清除过期标记
+        when(backfillEngine.getProgress("slow")).thenReturn(new BackfillProgress("slow", false, 2, 2, 8));
+        dispatcher.rebuildStale();
+        assertTrue(dispatcher.getStaleSinks().isEmpty());
+        verify(backfillEngine).startLogIdRange(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    void testRequestedRangeIsRebuiltEvenWhenOverflowIsDrop() {
+        RebuildableSink index = new RebuildableSink("index", null);
+        BackfillEngine backfillEngine = mock(BackfillEngine.class);
+        dispatcher = newDispatcher(new MockEnvironment(), index, new RecordingSink("plain", null));
+        ReflectionTestUtils.setField(dispatcher, "backfillEngine", backfillEngine);
+        ReflectionTestUtils.setField(dispatcher, "rebuildDelayMs", 0L);
+
+        // 输出端自身丢失的区间与丢弃的区间一样标记过期并提交回填，不支持回填的输出端忽略
+        dispatcher.requestRebuild("index", 100L, 200L);
+        dispatcher.requestRebuild("plain", 100L, 200L);
+        dispatcher.requestRebuild("missing", 100L, 200L);
+        assertEquals(Collections.singletonList("index"), dispatcher.getStaleSinks());
+
+        dispatcher.rebuildStale();
+        verify(backfillEngine).startLogIdRange("index", 99L, 200L);
+    }
+
+    @Test
+    void testMergesBatchesAndKeepsOrder() throws Exception {
+        RecordingSink sink = new RecordingSink("sink", null);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("operation-log.sinks.disabled.enabled", "false");
+        dispatcher = newDispatcher(environment, sink, new RecordingSink("disabled", null));
+
+        dispatcher.dispatchPersisted(Arrays.asList(newLog(1), newLog(2)));
+        dispatcher.dispatchAggregated(Collections.singletonList(newLog(3)));
+        dispatcher.dispatchPersisted(Collections.singletonList(newLog(4)));
+        sink.awaitRows(4);
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), new ArrayList<>(sink.rows));
+        assertEquals(Collections.singleton("sink"), dispatcher.getQueuedBatches().keySet());
+    }
+
+    private IngestSinkDispatcher newDispatcher(MockEnvironment environment, LogIngestListener... listeners) {
+        IngestSinkDispatcher sinkDispatcher = new IngestSinkDispatcher();
+        ReflectionTestUtils.setField(sinkDispatcher, "listeners", Arrays.asList(listeners));
+        ReflectionTestUtils.setField(sinkDispatcher, "environment", environment);
+        ReflectionTestUtils.setField(sinkDispatcher, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(sinkDispatcher, "defaultCapacity", 100);
+        ReflectionTestUtils.setField(sinkDispatcher, "defaultOverflow", IngestSinkDispatcher.Overflow.DROP);
+        ReflectionTestUtils.setField(sinkDispatcher, "batchRows", 100);
+        sinkDispatcher.init();
+        return sinkDispatcher;
+    }
+
+    private void awaitQueued(String sink, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (dispatcher.getQueuedBatches().get(sink) != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static OperationLog newLog(long logId) {
+        OperationLog operationLog = new OperationLog();
+        operationLog.setLogId(logId);
+        operationLog.setUserId(1L);
+        operationLog.setAction("USER_LOGIN");
+        return operationLog;
+    }
+
+    private static class RebuildableSink extends RecordingSink implements BackfillTarget {
+
+        RebuildableSink(String name, CountDownLatch gate) {
+            super(name, gate);
+        }
+
+        @Override
+        public String getBackfillName() {
+            return getSinkName();
+        }
+
+        @Override
+        public void backfill(List<OperationLog> logs) {
+        }
+    }
+
+    private static class RecordingSink implements LogIngestListener {
+
+        private final String name;
+
+        private final CountDownLatch gate;
+
+        private final List<Long> rows = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingSink(String name, CountDownLatch gate) {
+            this.name = name;
+            this.gate = gate;
+        }
+
+        @Override
+        public String getSinkName() {
+            return name;
+        }
+
+        @Override
+        public void onLogsPersisted(List<OperationLog> logs) {
+            await();
+            logs.forEach(log -> rows.add(log.getLogId()));
+        }
+
+        @Override
+        public void onLogsAggregated(List<OperationLog> logs) {
+            onLogsPersisted(logs);
+        }
+
+        void awaitRows(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (rows.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+
+        private void await() {
+            if (gate == null) {
+                return;
+            }
+            try {
+                gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
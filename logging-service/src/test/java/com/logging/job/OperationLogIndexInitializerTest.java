@@ -0,0 +1,104 @@
+package com.logging.job;
+
+import com.logging.config.LogShardDataSources;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OperationLogIndexInitializerTest {
+
+    @Mock
+    private LogShardDataSources shardDataSources;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private OperationLogIndexInitializer indexInitializer;
+
+    private final List<Map<String, Object>> statistics = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(shardDataSources.getShards()).thenReturn(Collections.singletonMap("ds0", jdbcTemplate));
+        lenient().when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("operation_logs")))
+                .thenReturn(Arrays.asList("log_id", "user_id", "action_code", "ip", "gmt_create", "event_id"));
+        lenient().when(jdbcTemplate.queryForList(anyString(), eq("operation_logs"))).thenReturn(statistics);
+    }
+
+    @Test
+    void testSkipsWhenIndexesMatch() {
+        givenIndex("PRIMARY", true, "log_id", "gmt_create");
+        givenIndex("idx_user_time", false, "user_id", "gmt_create", "log_id");
+        givenIndex("idx_action_time", false, "action_code", "gmt_create", "log_id");
+        givenIndex("idx_ip_time", false, "ip", "gmt_create", "log_id");
+        givenIndex("idx_time_log", false, "gmt_create", "log_id");
+        givenIndex("uk_event", true, "event_id", "gmt_create");
+
+        indexInitializer.ensureIndexes();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void testUpgradesLegacyIndexes() {
+        givenIndex("PRIMARY", true, "log_id", "gmt_create");
+        givenIndex("idx_user_id", false, "user_id");
+        givenIndex("idx_action", false, "action");
+        givenIndex("idx_create_time", false, "gmt_create");
+        givenIndex("idx_action_time", false, "action", "gmt_create");
+        givenIndex("idx_ip_time", false, "ip", "gmt_create", "log_id");
+        givenIndex("uk_event", false, "event_id", "gmt_create");
+
+        indexInitializer.ensureIndexes();
+
+        // 缺失的补齐，列或唯一性不同的删除重建，被取代的单列索引最后删除
+        assertEquals(Arrays.asList(
+                "ALTER TABLE operation_logs ADD INDEX idx_user_time (user_id, gmt_create, log_id), "
+                        + "ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE operation_logs DROP INDEX idx_action_time, "
+                        + "ADD INDEX idx_action_time (action_code, gmt_create, log_id), ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE operation_logs ADD INDEX idx_time_log (gmt_create, log_id), "
+                        + "ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE operation_logs DROP INDEX uk_event, "
+                        + "ADD UNIQUE INDEX uk_event (event_id, gmt_create), ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE operation_logs DROP INDEX idx_create_time, ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE operation_logs DROP INDEX idx_user_id, ALGORITHM=INPLACE, LOCK=NONE",
+                "ALTER TABLE operation_logs DROP INDEX idx_action, ALGORITHM=INPLACE, LOCK=NONE"),
+                executedStatements());
+    }
+
+    private void givenIndex(String name, boolean unique, String... columns) {
+        for (String column : columns) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("INDEX_NAME", name);
+            row.put("NON_UNIQUE", unique ? 0L : 1L);
+            row.put("COLUMN_NAME", column);
+            statistics.add(row);
+        }
+    }
+
+    private List<String> executedStatements() {
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, atLeastOnce()).execute(sql.capture());
+        return sql.getAllValues();
+    }
+}
@@ -0,0 +1,153 @@
+package com.logging.job;
+
+import com.logging.config.LogShardDataSources;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OperationLogPartitionJobTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 10);
+
+    @Mock
+    private LogShardDataSources shardDataSources;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private OperationLogPartitionJob partitionJob;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(shardDataSources.getShards()).thenReturn(Collections.singletonMap("ds0", jdbcTemplate));
+        lenient().when(shardDataSources.runExclusively(anyString(), any())).thenAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(1)).run();
+            return true;
+        });
+        ReflectionTestUtils.setField(partitionJob, "granularity", OperationLogPartitionJob.Granularity.DAY);
+        ReflectionTestUtils.setField(partitionJob, "preCreate", 2);
+        ReflectionTestUtils.setField(partitionJob, "retentionDays", 180);
+    }
+
+    @Test
+    void testReorganizesMaxPartitionFromToday() {
+        givenPartitions("p20240308", "p20240309", "p_max");
+
+        partitionJob.maintainPartitions(TODAY);
+
+        // 当天及之后preCreate天从兜底分区拆出，上界为次日，p_max仍在最后
+        assertEquals(Collections.singletonList("ALTER TABLE operation_logs REORGANIZE PARTITION p_max INTO ("
+                        + "PARTITION p20240310 VALUES LESS THAN ('2024-03-11'), "
+                        + "PARTITION p20240311 VALUES LESS THAN ('2024-03-12'), "
+                        + "PARTITION p20240312 VALUES LESS THAN ('2024-03-13'), "
+                        + "PARTITION p_max VALUES LESS THAN (MAXVALUE))"),
+                executedStatements());
+    }
+
+    @Test
+    void testContinuesAfterExistingPartitions() {
+        givenPartitions("p20240310", "p20240311", "p_max");
+
+        partitionJob.maintainPartitions(TODAY);
+
+        assertEquals(Collections.singletonList("ALTER TABLE operation_logs REORGANIZE PARTITION p_max INTO ("
+                        + "PARTITION p20240312 VALUES LESS THAN ('2024-03-13'), "
+                        + "PARTITION p_max VALUES LESS THAN (MAXVALUE))"),
+                executedStatements());
+    }
+
+    @Test
+    void testSkipsWhenPartitionsAlreadyCovered() {
+        givenPartitions("p20240310", "p20240311", "p20240312", "p_max");
+
+        partitionJob.maintainPartitions(TODAY);
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void testMonthGranularity() {
+        ReflectionTestUtils.setField(partitionJob, "granularity", OperationLogPartitionJob.Granularity.MONTH);
+        ReflectionTestUtils.setField(partitionJob, "preCreate", 1);
+        givenPartitions("p_max");
+
+        partitionJob.maintainPartitions(LocalDate.of(2024, 1, 31));
+
+        assertEquals(Collections.singletonList("ALTER TABLE operation_logs REORGANIZE PARTITION p_max INTO ("
+                        + "PARTITION p20240101 VALUES LESS THAN ('2024-02-01'), "
+                        + "PARTITION p20240201 VALUES LESS THAN ('2024-03-01'), "
+                        + "PARTITION p_max VALUES LESS THAN (MAXVALUE))"),
+                executedStatements());
+    }
+
+    @Test
+    void testGranularityNext() {
+        assertEquals(LocalDate.of(2024, 3, 1), OperationLogPartitionJob.Granularity.DAY.next(LocalDate.of(2024, 2, 29)));
+        assertEquals(LocalDate.of(2025, 1, 1), OperationLogPartitionJob.Granularity.DAY.next(LocalDate.of(2024, 12, 31)));
+        assertEquals(LocalDate.of(2024, 2, 1), OperationLogPartitionJob.Granularity.MONTH.floor(LocalDate.of(2024, 2, 29)));
+        assertEquals(LocalDate.of(2025, 1, 1), OperationLogPartitionJob.Granularity.MONTH.next(LocalDate.of(2024, 12, 1)));
+        assertEquals("p20240229", LocalDate.of(2024, 2, 29).format(OperationLogPartitionJob.NAME_FORMAT));
+    }
+
+    @Test
+    void testDropsPartitionsWhoseUpperBoundIsNotAfterCutoff() {
+        ReflectionTestUtils.setField(partitionJob, "preCreate", 0);
+        ReflectionTestUtils.setField(partitionJob, "retentionDays", 10);
+        givenPartitions("p20240227", "p20240228", "p20240229", "p20240310", "p_max");
+
+        partitionJob.maintainPartitions(TODAY);
+
+        // 截止日为2024-02-29：上界不晚于截止日的分区整体删除，上界为03-01的p20240229保留
+        assertEquals(Collections.singletonList("ALTER TABLE operation_logs DROP PARTITION p20240227, p20240228"),
+                executedStatements());
+    }
+
+    @Test
+    void testSkipsUnpartitionedTable() {
+        givenPartitions();
+
+        partitionJob.maintainPartitions(TODAY);
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void testSkipsWhenAnotherInstanceHoldsLock() {
+        when(shardDataSources.runExclusively(eq("operation_log_partition"), any())).thenReturn(false);
+
+        partitionJob.maintainPartitions(TODAY);
+
+        verify(shardDataSources, never()).getShards();
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    private void givenPartitions(String... names) {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(OperationLogPartitionJob.TABLE_NAME)))
+                .thenReturn(Arrays.asList(names));
+    }
+
+    private List<String> executedStatements() {
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, atLeastOnce()).execute(sql.capture());
+        return sql.getAllValues();
+    }
+}
@@ -0,0 +1,99 @@
+package com.logging.query;
+
+import com.logging.exception.QueryRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogQueryExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    private LogQueryExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testRejectsWhenQueueFull() throws Exception {
+        executor = new LogQueryExecutor(meterRegistry, 1, 1, 10_000);
+        CountDownLatch started = new CountDownLatch(1);
+        Future<String> running = callers.submit(() -> executor.execute("range", () -> {
+            started.countDown();
+            awaitRelease();
+            return "first";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> queued = callers.submit(() -> executor.execute("range", () -> "second"));
+        waitForQueued(1);
+
+        // 线程和队列都已占满，第三个查询立即被拒绝
+        assertThrows(QueryRejectedException.class, () -> executor.execute("range", () -> "third"));
+        assertEquals(1.0, meterRegistry.counter("operation_log.query.rejected", "query", "range", "reason", "rejected")
+                .count());
+
+        release.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testTimesOutSlowQueryAndKeepsServing() {
+        executor = new LogQueryExecutor(meterRegistry, 1, 10, 100);
+
+        assertThrows(QueryRejectedException.class, () -> executor.execute("search", () -> {
+            awaitRelease();
+            return "slow";
+        }));
+        assertEquals(1.0, meterRegistry.counter("operation_log.query.rejected", "query", "search", "reason", "timeout")
+                .count());
+
+        // 超时的查询被中断，线程归还后后续查询正常执行
+        assertEquals("fast", executor.execute("search", () -> "fast"));
+    }
+
+    @Test
+    void testPropagatesQueryFailure() {
+        executor = new LogQueryExecutor(meterRegistry, 2, 10, 1000);
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> executor.execute("query", () -> {
+                    throw new IllegalArgumentException("bad cidr");
+                }));
+        assertEquals("bad cidr", error.getMessage());
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void waitForQueued(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("operation_log.query.queued").gauge().value() < expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.logging.recent;
+
+import com.logging.dto.OperationLogView;
+import com.logging.entity.OperationLog;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentActivityCacheTest {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+
+    @Test
+    void testRingKeepsNewestEntries() {
+        RecentActivityCache cache = new RecentActivityCache(10, 4, 128, 60000);
+        cache.fill(1001L, Collections.emptyList());
+        List<OperationLog> logs = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            logs.add(newLog(i, 1001L, "详情" + i));
+        }
+        cache.onLogsPersisted(logs);
+
+        List<OperationLogView> recent = cache.get(1001L, 10);
+        assertNotNull(recent, "回填后有效期内应直接返回");
+        assertEquals(4, recent.size());
+        assertEquals(5L, recent.get(0).getLogId());
+        assertEquals(2L, recent.get(3).getLogId());
+        assertEquals("详情5", recent.get(0).getDetail());
+        assertEquals(BASE_TIME.plusSeconds(5), recent.get(0).getGmtCreate());
+        assertEquals(1001L, recent.get(0).getUserId());
+    }
+
+    @Test
+    void testRingWithoutFillNeedsDatabase() {
+        RecentActivityCache cache = new RecentActivityCache(10, 4, 128, 60000);
+        List<OperationLog> logs = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            logs.add(newLog(i, 1001L, null));
+        }
+        cache.onLogsPersisted(logs);
+
+        // 其他实例消费的日志不会写入本地环，环写满也不代表完整
+        assertNull(cache.get(1001L, 1), "未经数据库回填时应回查数据库");
+    }
+
+    @Test
+    void testFillIsTrustedOnlyWithinTtl() throws InterruptedException {
+        RecentActivityCache cache = new RecentActivityCache(10, 4, 128, 20);
+        cache.fill(1001L, Collections.singletonList(OperationLogView.of(newLog(1, 1001L, null))));
+        assertEquals(1, cache.get(1001L, 1).size());
+
+        Thread.sleep(30);
+        assertNull(cache.get(1001L, 1), "超过有效期后应回查数据库");
+    }
+
+    @Test
+    void testPartialRingNeedsFill() {
+        RecentActivityCache cache = new RecentActivityCache(10, 4, 128, 60000);
+        cache.onLogsPersisted(Collections.singletonList(newLog(9, 1001L, "最新")));
+
+        assertNull(cache.get(1001L, 3), "只有部分记录时应回查数据库");
+
+        cache.fill(1001L, Arrays.asList(OperationLogView.of(newLog(9, 1001L, "最新")),
+                OperationLogView.of(newLog(3, 1001L, "较早"))));
+        List<OperationLogView> recent = cache.get(1001L, 3);
+        assertEquals(2, recent.size(), "回填后即使不足3条也视为完整");
+        assertEquals(9L, recent.get(0).getLogId());
+        assertEquals(3L, recent.get(1).getLogId());
+    }
+
+    @Test
+    void testLeastRecentlyUsedUserEvicted() {
+        RecentActivityCache cache = new RecentActivityCache(2, 4, 128, 60000);
+        cache.fill(1L, Collections.singletonList(OperationLogView.of(newLog(1, 1L, null))));
+        cache.fill(2L, Collections.singletonList(OperationLogView.of(newLog(2, 2L, null))));
+        cache.get(1L, 1);
+        cache.onLogsPersisted(Collections.singletonList(newLog(3, 3L, null)));
+
+        assertEquals(2, cache.getUserCount());
+        assertNotNull(cache.get(1L, 1));
+        assertNull(cache.get(2L, 1));
+        cache.fill(3L, Collections.emptyList());
+        assertEquals(3L, cache.get(3L, 1).get(0).getLogId());
+    }
+
+    @Test
+    void testLongDetailTruncatedToEntrySize() {
+        RecentActivityCache cache = new RecentActivityCache(2, 4, 128, 60000);
+        StringBuilder detail = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            detail.append("长");
+        }
+        cache.onLogsPersisted(Collections.singletonList(newLog(1, 1L, detail.toString())));
+        cache.fill(1L, Collections.emptyList());
+
+        String cached = cache.get(1L, 1).get(0).getDetail();
+        assertTrue(cached.length() > 0 && cached.length() < 200);
+        assertTrue(detail.toString().startsWith(cached));
+        assertTrue(cached.getBytes(StandardCharsets.UTF_8).length < 128);
+    }
+
+    private static OperationLog newLog(long logId, Long userId, String detail) {
+        OperationLog operationLog = new OperationLog();
+        operationLog.setLogId(logId);
+        operationLog.setUserId(userId);
+        operationLog.setAction("USER_LOGIN");
+        operationLog.setIp("10.0.0.1");
+        operationLog.setDetail(detail);
+        operationLog.setGmtCreate(BASE_TIME.plusSeconds(logId));
+        return operationLog;
+    }
+}
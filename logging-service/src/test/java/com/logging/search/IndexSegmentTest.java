@@ -0,0 +1,67 @@
+package com.logging.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexSegmentTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testTokenizeForIndex() {
+        Set<String> terms = LogTokenizer.tokenizeForIndex("用户信息更新: email=Alice@Example.com;phone=13800000000");
+
+        assertTrue(terms.contains("alice@example.com"));
+        assertTrue(terms.contains("alice"));
+        assertTrue(terms.contains("example"));
+        assertTrue(terms.contains("13800000000"));
+        assertTrue(terms.contains("用户"));
+        assertTrue(terms.contains("更新"));
+        assertFalse(terms.contains("email=alice@example.com"));
+    }
+
+    @Test
+    void testWriteAndSearchSegment() throws Exception {
+        MemorySegment memory = new MemorySegment();
+        memory.add(300L, 3000L, LogTokenizer.tokenizeForIndex("用户注册: username=bob"));
+        memory.add(100L, 1000L, LogTokenizer.tokenizeForIndex("用户注册: username=alice"));
+        memory.add(200L, 2000L, LogTokenizer.tokenizeForIndex("用户登录: username=alice"));
+
+        IndexSegment segment = IndexSegment.write(new File(tempDir.toFile(), "seg-1.idx"), memory.toSegmentData());
+
+        assertEquals(3, segment.getDocCount());
+        assertEquals(1000L, segment.getMinTime());
+        assertEquals(3000L, segment.getMaxTime());
+        assertArrayEquals(new long[]{100L, 200L}, segment.postings("alice"));
+        assertArrayEquals(new long[]{100L, 300L}, segment.postings("注册"));
+        assertNull(segment.postings("carol"));
+        assertEquals(2000L, segment.timeOf(200L));
+        assertEquals(-1L, segment.timeOf(999L));
+
+        // 重新打开后内容一致
+        IndexSegment reopened = IndexSegment.open(segment.getFile());
+        assertArrayEquals(segment.postings("username"), reopened.postings("username"));
+    }
+
+    @Test
+    void testFrozenSegmentRejectsWrites() {
+        MemorySegment memory = new MemorySegment();
+        memory.freeze();
+
+        assertFalse(memory.add(1L, 1000L, LogTokenizer.tokenizeForIndex("username=alice")));
+    }
+
+    @Test
+    void testIntersect() {
+        long[] result = LogSearchIndex.intersect(new long[]{1, 3, 5, 7}, new long[]{2, 3, 4, 7, 9});
+
+        assertArrayEquals(new long[]{3, 7}, result);
+    }
+}
@@ -0,0 +1,197 @@
+package com.logging.service.impl;
+
+import com.logging.dto.RollupPoint;
+import com.logging.entity.OperationLog;
+import com.logging.repository.ActionRollupDao;
+import com.logging.stats.RollupGranularity;
+import com.logging.stats.RollupKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActionRollupServiceImplTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2024, 3, 1, 10, 0);
+
+    @Mock
+    private ActionRollupDao actionRollupDao;
+
+    @InjectMocks
+    private ActionRollupServiceImpl rollupService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(rollupService, "ipPrefixEnabled", true);
+        ReflectionTestUtils.setField(rollupService, "settleMs", 60000L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBucketsByGranularityAndIpPrefix() {
+        // Given
+        rollupService.onLogsPersisted(Arrays.asList(
+                log("USER_LOGIN", "10.0.0.1", HOUR.plusMinutes(1).plusSeconds(5)),
+                log("USER_LOGIN", "10.0.0.2", HOUR.plusMinutes(1).plusSeconds(50)),
+                log("USER_LOGIN", "2001:db8::1", HOUR.plusMinutes(2))));
+
+        // When
+        rollupService.flush();
+
+        // Then 分钟与小时分别写入，IPv6不参与按IP前缀汇总
+        ArgumentCaptor<Map<RollupKey, Long>> minutes = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Map<RollupKey, Long>> hours = ArgumentCaptor.forClass(Map.class);
+        verify(actionRollupDao).addAll(eq(RollupGranularity.MINUTE), minutes.capture(), eq(Collections.emptyMap()));
+        verify(actionRollupDao).addAll(eq(RollupGranularity.HOUR), hours.capture(), eq(Collections.emptyMap()));
+        assertEquals(2L, minutes.getValue().get(minute(HOUR.plusMinutes(1), RollupKey.ALL_IPS)));
+        assertEquals(2L, minutes.getValue().get(minute(HOUR.plusMinutes(1), "10.0.0")));
+        assertEquals(1L, minutes.getValue().get(minute(HOUR.plusMinutes(2), RollupKey.ALL_IPS)));
+        assertEquals(3, minutes.getValue().size());
+        assertEquals(3L, hours.getValue().get(hour(RollupKey.ALL_IPS)));
+        assertEquals(2L, hours.getValue().get(hour("10.0.0")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAggregatedCountsAreFlushedSeparately() {
+        // Given
+        rollupService.onLogsPersisted(Collections.singletonList(log("USER_LOGIN", "10.0.0.1", HOUR)));
+        rollupService.onLogsAggregated(Collections.singletonList(log("USER_LOGIN", "10.0.0.1", HOUR)));
+
+        // When
+        rollupService.flush();
+
+        // Then 未写明细的次数单独传入，重算时保留
+        ArgumentCaptor<Map<RollupKey, Long>> deltas = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Map<RollupKey, Long>> aggregated = ArgumentCaptor.forClass(Map.class);
+        verify(actionRollupDao).addAll(eq(RollupGranularity.HOUR), deltas.capture(), aggregated.capture());
+        assertEquals(1L, deltas.getValue().get(hour(RollupKey.ALL_IPS)));
+        assertEquals(1L, aggregated.getValue().get(hour(RollupKey.ALL_IPS)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlushFailureRestoresBothCounts() {
+        // Given
+        rollupService.onLogsPersisted(Collections.singletonList(log("USER_LOGIN", "10.0.0.1", HOUR)));
+        rollupService.onLogsAggregated(Collections.singletonList(log("USER_LOGIN", "10.0.0.1", HOUR)));
+        lenient().doThrow(new RuntimeException("数据库不可用")).doNothing()
+                .when(actionRollupDao).addAll(eq(RollupGranularity.HOUR), any(), any());
+
+        // When
+        rollupService.flush();
+        rollupService.flush();
+
+        // Then 下次刷盘原样重试
+        ArgumentCaptor<Map<RollupKey, Long>> deltas = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Map<RollupKey, Long>> aggregated = ArgumentCaptor.forClass(Map.class);
+        verify(actionRollupDao, times(2)).addAll(eq(RollupGranularity.HOUR), deltas.capture(), aggregated.capture());
+        assertEquals(1L, deltas.getValue().get(hour(RollupKey.ALL_IPS)));
+        assertEquals(1L, aggregated.getValue().get(hour(RollupKey.ALL_IPS)));
+    }
+
+    @Test
+    void testBackfillRebuildsSettledBucketsFromDetails() {
+        // Given 同一批被重复投递
+        List<OperationLog> logs = Collections.singletonList(log("USER_LOGIN", "10.0.0.1", HOUR));
+        rollupService.backfill(logs);
+        rollupService.backfill(logs);
+        when(actionRollupDao.countDetails(any(), any())).thenReturn(4L);
+
+        // When
+        rollupService.onBackfillCompleted();
+
+        // Then 每个时间桶按明细重算一次，不累加
+        verify(actionRollupDao, never()).addAll(any(), any(), any());
+        verify(actionRollupDao).replaceDetails(RollupGranularity.HOUR, hour(RollupKey.ALL_IPS), 4L);
+        verify(actionRollupDao).replaceDetails(RollupGranularity.HOUR, hour("10.0.0"), 4L);
+        verify(actionRollupDao).replaceDetails(RollupGranularity.MINUTE, minute(HOUR, RollupKey.ALL_IPS), 4L);
+        verify(actionRollupDao).replaceDetails(RollupGranularity.MINUTE, minute(HOUR, "10.0.0"), 4L);
+        rollupService.flush();
+        verify(actionRollupDao, times(4)).replaceDetails(any(), any(), anyLong());
+    }
+
+    @Test
+    void testOpenBucketIsRebuiltAfterPendingCountsAreFlushed() {
+        // Given 当前小时尚未结束
+        LocalDateTime now = LocalDateTime.now();
+        rollupService.onLogsPersisted(Collections.singletonList(log("USER_LOGIN", "10.0.0.1", now)));
+        rollupService.backfill(Collections.singletonList(log("USER_LOGIN", "10.0.0.1", now)));
+
+        // When
+        rollupService.flush();
+
+        // Then 未结束的时间桶暂不重算
+        verify(actionRollupDao, never()).replaceDetails(eq(RollupGranularity.HOUR), any(), anyLong());
+        verify(actionRollupDao).addAll(eq(RollupGranularity.HOUR), any(), any());
+
+        // When 时间桶结束后
+        ReflectionTestUtils.setField(rollupService, "settleMs", -7_200_000L);
+        rollupService.flush();
+
+        // Then 先刷增量再重算
+        InOrder inOrder = inOrder(actionRollupDao);
+        inOrder.verify(actionRollupDao, times(2)).addAll(any(), any(), any());
+        inOrder.verify(actionRollupDao, atLeastOnce()).replaceDetails(eq(RollupGranularity.HOUR), any(), anyLong());
+    }
+
+    @Test
+    void testSeriesFillsEmptyBuckets() {
+        // Given
+        Map<LocalDateTime, Long> stored = new HashMap<>();
+        stored.put(HOUR.plusMinutes(1), 3L);
+        when(actionRollupDao.findSeries(RollupGranularity.MINUTE, "USER_LOGIN", RollupKey.ALL_IPS,
+                HOUR, HOUR.plusMinutes(3))).thenReturn(stored);
+
+        // When
+        List<RollupPoint> points = rollupService.getSeries("USER_LOGIN", RollupGranularity.MINUTE, null,
+                HOUR.plusSeconds(30), HOUR.plusMinutes(3).plusSeconds(10));
+
+        // Then
+        assertEquals(4, points.size());
+        assertEquals(HOUR, points.get(0).getBucketStart());
+        assertEquals(0L, points.get(0).getCount());
+        assertEquals(3L, points.get(1).getCount());
+        assertEquals(0L, points.get(3).getCount());
+    }
+
+    @Test
+    void testSeriesRejectsInvalidRange() {
+        assertThrows(IllegalArgumentException.class, () -> rollupService.getSeries("USER_LOGIN",
+                RollupGranularity.MINUTE, null, HOUR.plusMinutes(1), HOUR));
+        assertThrows(IllegalArgumentException.class, () -> rollupService.getSeries("USER_LOGIN",
+                RollupGranularity.MINUTE, null, HOUR, HOUR.plusDays(8)));
+        verify(actionRollupDao, never()).findSeries(any(), anyString(), anyString(), any(), any());
+    }
+
+    private static RollupKey minute(LocalDateTime bucket, String ipPrefix) {
+        return new RollupKey(RollupGranularity.MINUTE, "USER_LOGIN", ipPrefix, bucket);
+    }
+
+    private static RollupKey hour(String ipPrefix) {
+        return new RollupKey(RollupGranularity.HOUR, "USER_LOGIN", ipPrefix, HOUR);
+    }
+
+    private static OperationLog log(String action, String ip, LocalDateTime time) {
+        return new OperationLog(1L, 1L, action, ip, null, time, null);
+    }
+}
@@ -0,0 +1,190 @@
+package com.logging.service.impl;
+
+import com.logging.config.LogShardDataSources;
+import com.logging.entity.OperationLog;
+import com.logging.repository.OperationCounterDao;
+import com.logging.stats.UserActionKey;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OperationCounterServiceImplTest {
+
+    @Mock
+    private OperationCounterDao operationCounterDao;
+
+    @Mock
+    private LogShardDataSources shardDataSources;
+
+    @InjectMocks
+    private OperationCounterServiceImpl counterService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlushWritesCountsAndWatermarksTogether() {
+        // Given
+        counterService.onLogsPersisted(Arrays.asList(
+                log(10L, 1L, "USER_LOGIN"), log(11L, 2L, "USER_LOGIN"), log(12L, 1L, "UPDATE_USER")));
+
+        // When
+        counterService.flush();
+
+        // Then 计数与每个用户已计入的最大logId一次写入
+        ArgumentCaptor<Map<UserActionKey, Long>> deltas = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Map<Long, Long>> watermarks = ArgumentCaptor.forClass(Map.class);
+        verify(operationCounterDao).addAll(deltas.capture(), watermarks.capture());
+        assertEquals(2L, deltas.getValue().get(UserActionKey.total(1L)));
+        assertEquals(1L, deltas.getValue().get(new UserActionKey(1L, "UPDATE_USER")));
+        assertEquals(1L, deltas.getValue().get(UserActionKey.total(2L)));
+        assertEquals(12L, watermarks.getValue().get(1L));
+        assertEquals(11L, watermarks.getValue().get(2L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlushFailureKeepsCountsAndWatermarks() {
+        // Given
+        counterService.onLogsPersisted(Collections.singletonList(log(10L, 1L, "USER_LOGIN")));
+        doThrow(new RuntimeException("数据库不可用")).doNothing()
+                .when(operationCounterDao).addAll(any(), any());
+
+        // When
+        counterService.flush();
+
+        // Then 失败后增量仍计入查询结果，下次刷盘原样重试
+        assertEquals(1L, counterService.countUserOperations(1L));
+        counterService.flush();
+        ArgumentCaptor<Map<UserActionKey, Long>> deltas = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Map<Long, Long>> watermarks = ArgumentCaptor.forClass(Map.class);
+        verify(operationCounterDao, times(2)).addAll(deltas.capture(), watermarks.capture());
+        assertEquals(1L, deltas.getValue().get(UserActionKey.total(1L)));
+        assertEquals(10L, watermarks.getValue().get(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAggregatedLogsDoNotAdvanceWatermark() {
+        // Given
+        counterService.onLogsAggregated(Collections.singletonList(log(null, 1L, "HEARTBEAT")));
+
+        // When
+        counterService.flush();
+
+        // Then
+        ArgumentCaptor<Map<Long, Long>> watermarks = ArgumentCaptor.forClass(Map.class);
+        verify(operationCounterDao).addAll(any(), watermarks.capture());
+        assertTrue(watermarks.getValue().isEmpty());
+    }
+
+    @Test
+    void testRebuildUserFlushesThenCountsUpToLockedWatermark() {
+        // Given 明细只统计上界之内的，归档与聚合的计数全部计入
+        counterService.onLogsPersisted(Collections.singletonList(log(12L, 1L, "USER_LOGIN")));
+        when(operationCounterDao.countLogsByAction(1L, 12L)).thenReturn(Arrays.asList(
+                row("USER_LOGIN", 3L), row("UPDATE_USER", 1L)));
+        when(operationCounterDao.countArchivedByAction(1L)).thenReturn(Collections.singletonList(
+                row("USER_LOGIN", 5L)));
+        when(operationCounterDao.countAggregatedByAction(1L)).thenReturn(Collections.singletonList(
+                row("HEARTBEAT", 7L)));
+        Map<String, Long> rebuilt = new HashMap<>();
+        doAnswer(invocation -> {
+            Function<Long, Map<String, Long>> counter = invocation.getArgument(1);
+            rebuilt.putAll(counter.apply(12L));
+            return null;
+        }).when(operationCounterDao).rebuildUser(eq(1L), any());
+
+        // When
+        counterService.rebuildUser(1L);
+
+        // Then 先刷盘再重建，重建结果覆盖全部操作类型
+        InOrder inOrder = inOrder(operationCounterDao);
+        inOrder.verify(operationCounterDao).addAll(any(), any());
+        inOrder.verify(operationCounterDao).rebuildUser(eq(1L), any());
+        assertEquals(8L, rebuilt.get("USER_LOGIN"));
+        assertEquals(1L, rebuilt.get("UPDATE_USER"));
+        assertEquals(7L, rebuilt.get("HEARTBEAT"));
+        assertEquals(16L, rebuilt.get(UserActionKey.ALL_ACTIONS));
+    }
+
+    @Test
+    void testRebuildWithoutWatermarkCountsAllDetails() {
+        // Given 上界为null的旧计数不加上界统计
+        when(operationCounterDao.countLogsByAction(1L, null)).thenReturn(
+                Collections.singletonList(row("USER_LOGIN", 2L)));
+        Map<String, Long> rebuilt = new HashMap<>();
+        doAnswer(invocation -> {
+            Function<Long, Map<String, Long>> counter = invocation.getArgument(1);
+            rebuilt.putAll(counter.apply(null));
+            return null;
+        }).when(operationCounterDao).rebuildUser(eq(1L), any());
+
+        // When
+        counterService.rebuildUser(1L);
+
+        // Then
+        verify(operationCounterDao).countLogsByAction(1L, null);
+        assertEquals(2L, rebuilt.get(UserActionKey.ALL_ACTIONS));
+    }
+
+    @Test
+    void testRebuildAllSkipsWhenAnotherInstanceHoldsLock() {
+        // Given
+        when(shardDataSources.runExclusively(anyString(), any())).thenReturn(false);
+
+        // When
+        counterService.rebuildAll();
+
+        // Then
+        verify(operationCounterDao, never()).findUserIdsAfter(anyLong(), anyInt());
+        verify(operationCounterDao, never()).rebuildUser(any(), any());
+    }
+
+    @Test
+    void testRebuildAllRebuildsEveryUserUnderLock() {
+        // Given
+        when(shardDataSources.runExclusively(anyString(), any())).thenAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(1)).run();
+            return true;
+        });
+        when(operationCounterDao.findUserIdsAfter(Long.MIN_VALUE, 500)).thenReturn(Arrays.asList(1L, 2L));
+        doThrow(new RuntimeException("锁等待超时")).when(operationCounterDao).rebuildUser(eq(1L), any());
+
+        // When
+        counterService.rebuildAll();
+
+        // Then 单个用户失败不影响后续用户
+        verify(operationCounterDao).rebuildUser(eq(1L), any());
+        verify(operationCounterDao).rebuildUser(eq(2L), any());
+    }
+
+    private static OperationLog log(Long logId, Long userId, String action) {
+        return new OperationLog(logId, userId, action, "10.0.0.1", null, LocalDateTime.now(), null);
+    }
+
+    private static Map<String, Object> row(String action, long count) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("action", action);
+        row.put("op_count", count);
+        return row;
+    }
+}
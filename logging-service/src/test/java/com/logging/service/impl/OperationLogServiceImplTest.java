@@ -1,14 +1,30 @@
 package com.logging.service.impl;
 
+import com.logging.dto.CursorPage;
+import com.logging.dto.LogCursor;
+import com.logging.dto.LogQuery;
+import com.logging.dto.OperationLogView;
 import com.logging.entity.OperationLog;
 import com.logging.event.OperationLogEvent;
+import com.logging.ingest.AdaptiveConcurrencyLimiter;
+import com.logging.ingest.EventDeduplicator;
+import com.logging.ingest.IngestPolicyResolver;
+import com.logging.ingest.IngestSinkDispatcher;
+import com.logging.ingest.LogIdGenerator;
+import com.logging.query.LogQueryExecutor;
+import com.logging.repository.ActionDictionary;
+import com.logging.repository.OperationLogJdbcDao;
+import com.logging.repository.OperationLogQueryDao;
 import com.logging.repository.OperationLogRepository;
+import com.logging.service.LogAggregateService;
+import com.logging.service.OperationCounterService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -17,9 +33,17 @@ import org.springframework.data.domain.Pageable;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +52,39 @@ class OperationLogServiceImplTest {
     @Mock
     private OperationLogRepository operationLogRepository;
 
+    @Mock
+    private OperationLogQueryDao operationLogQueryDao;
+
+    @Mock
+    private OperationCounterService operationCounterService;
+
+    @Mock
+    private EventDeduplicator eventDeduplicator;
+
+    @Mock
+    private OperationLogJdbcDao operationLogJdbcDao;
+
+    @Mock
+    private LogIdGenerator logIdGenerator;
+
+    @Mock
+    private IngestPolicyResolver ingestPolicyResolver;
+
+    @Mock
+    private LogAggregateService logAggregateService;
+
+    @Mock
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Mock
+    private IngestSinkDispatcher sinkDispatcher;
+
+    @Mock
+    private ActionDictionary actionDictionary;
+
+    @Mock
+    private LogQueryExecutor queryExecutor;
+
     @InjectMocks
     private OperationLogServiceImpl operationLogService;
 
@@ -49,6 +106,10 @@ class OperationLogServiceImplTest {
         sampleEvent.setAction("CREATE_USER");
         sampleEvent.setIp("192.168.1.100");
         sampleEvent.setDetail("创建用户操作");
+
+        lenient().when(ingestPolicyResolver.shouldStore(any(OperationLog.class))).thenReturn(true);
+        lenient().when(queryExecutor.execute(anyString(), any()))
+                .thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(1)).get());
     }
 
     @Test
@@ -60,9 +121,154 @@ class OperationLogServiceImplTest {
         operationLogService.handleLogEvent(sampleEvent);
 
         // Then
+        verify(actionDictionary).codeOf("CREATE_USER");
         verify(operationLogRepository, times(1)).save(any(OperationLog.class));
     }
 
+    @Test
+    void testHandleLogEventSkipsDuplicateInWindow() {
+        // Given
+        sampleEvent.setEventId("evt-1");
+        when(eventDeduplicator.markIfAbsent("evt-1")).thenReturn(false);
+
+        // When
+        operationLogService.handleLogEvent(sampleEvent);
+
+        // Then
+        verify(operationLogRepository, never()).save(any(OperationLog.class));
+    }
+
+    @Test
+    void testHandleLogEventUsesEventIdAndTimestamp() {
+        // Given
+        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 1, 10, 0, 0);
+        sampleEvent.setEventId("evt-1");
+        sampleEvent.setTimestamp(timestamp);
+        when(eventDeduplicator.markIfAbsent("evt-1")).thenReturn(true);
+        when(operationLogRepository.save(any(OperationLog.class))).thenReturn(sampleLog);
+
+        // When
+        operationLogService.handleLogEvent(sampleEvent);
+
+        // Then
+        verify(operationLogRepository).save(argThat(saved ->
+                "evt-1".equals(saved.getEventId()) && timestamp.equals(saved.getGmtCreate())));
+    }
+
+    @Test
+    void testHandleLogEventIgnoresUniqueKeyConflict() {
+        // Given
+        sampleEvent.setEventId("evt-1");
+        when(eventDeduplicator.markIfAbsent("evt-1")).thenReturn(true);
+        when(operationLogRepository.save(any(OperationLog.class))).thenThrow(
+                new DataIntegrityViolationException("Duplicate entry 'evt-1' for key 'operation_logs.uk_event'"));
+
+        // When
+        assertDoesNotThrow(() -> operationLogService.handleLogEvent(sampleEvent));
+
+        // Then
+        verify(eventDeduplicator, never()).forget(anyString());
+    }
+
+    @Test
+    void testHandleLogEventForgetsEventOnFailure() {
+        // Given
+        sampleEvent.setEventId("evt-1");
+        when(eventDeduplicator.markIfAbsent("evt-1")).thenReturn(true);
+        when(operationLogRepository.save(any(OperationLog.class))).thenThrow(new RuntimeException("数据库不可用"));
+
+        // When & Then
+        assertThrows(RuntimeException.class, () -> operationLogService.handleLogEvent(sampleEvent));
+        verify(eventDeduplicator).forget("evt-1");
+    }
+
+    @Test
+    void testHandleLogEventsBatchInsertsWithGeneratedIds() {
+        // Given
+        OperationLogEvent duplicate = OperationLogEvent.of(1002L, "USER_LOGIN", "192.168.1.101");
+        OperationLogEvent fresh = OperationLogEvent.of(1003L, "USER_LOGIN", "192.168.1.102");
+        when(eventDeduplicator.markIfAbsent(duplicate.getEventId())).thenReturn(false);
+        when(eventDeduplicator.markIfAbsent(fresh.getEventId())).thenReturn(true);
+        when(logIdGenerator.nextId()).thenReturn(100L, 101L);
+
+        // When
+        operationLogService.handleLogEvents(Arrays.asList(sampleEvent, duplicate, fresh));
+
+        // Then 重复事件被过滤，其余整批写入
+        verify(operationLogJdbcDao).batchInsert(argThat(logs -> logs.size() == 2
+                && logs.get(0).getLogId() == 100L && logs.get(0).getGmtCreate() != null
+                && fresh.getEventId().equals(logs.get(1).getEventId())));
+    }
+
+    @Test
+    void testHandleLogEventsForgetsEventsOnFailure() {
+        // Given
+        OperationLogEvent event = OperationLogEvent.of(1002L, "USER_LOGIN", "192.168.1.101");
+        when(eventDeduplicator.markIfAbsent(event.getEventId())).thenReturn(true);
+        doThrow(new RuntimeException("数据库不可用")).when(operationLogJdbcDao).batchInsert(anyList());
+
+        // When & Then
+        assertThrows(RuntimeException.class,
+                () -> operationLogService.handleLogEvents(Arrays.asList(sampleEvent, event)));
+        verify(eventDeduplicator).forget(event.getEventId());
+        verify(concurrencyLimiter).onError(any(RuntimeException.class));
+        verify(concurrencyLimiter, never()).onSuccess(anyLong());
+    }
+
+    @Test
+    void testHandleLogEventsAggregatesAfterInsert() {
+        // Given
+        OperationLogEvent login = OperationLogEvent.of(1002L, "USER_LOGIN", "192.168.1.101");
+        when(eventDeduplicator.markIfAbsent(login.getEventId())).thenReturn(true);
+        when(ingestPolicyResolver.shouldStore(argThat(log -> "USER_LOGIN".equals(log.getAction())))).thenReturn(false);
+        when(logIdGenerator.nextId()).thenReturn(100L);
+
+        // When
+        operationLogService.handleLogEvents(Arrays.asList(sampleEvent, login));
+
+        // Then 聚合的日志不写明细，也不分配logId
+        verify(operationLogJdbcDao).batchInsert(argThat(logs -> logs.size() == 1
+                && "CREATE_USER".equals(logs.get(0).getAction())));
+        verify(logAggregateService).add(argThat(logs -> logs.size() == 1
+                && logs.get(0).getLogId() == null && logs.get(0).getGmtCreate() != null));
+        verify(sinkDispatcher).dispatchPersisted(argThat(logs -> logs.size() == 1 && logs.get(0).getLogId() == 100L));
+        verify(sinkDispatcher).dispatchAggregated(argThat(logs -> logs.size() == 1));
+    }
+
+    @Test
+    void testHandleLogEventsDoesNotAggregateOnFailure() {
+        // Given
+        OperationLogEvent login = OperationLogEvent.of(1002L, "USER_LOGIN", "192.168.1.101");
+        when(eventDeduplicator.markIfAbsent(login.getEventId())).thenReturn(true);
+        when(ingestPolicyResolver.shouldStore(argThat(log -> "USER_LOGIN".equals(log.getAction())))).thenReturn(false);
+        doThrow(new RuntimeException("数据库不可用")).when(operationLogJdbcDao).batchInsert(anyList());
+
+        // When & Then 整批重试时聚合的日志不会被重复累计
+        assertThrows(RuntimeException.class,
+                () -> operationLogService.handleLogEvents(Arrays.asList(sampleEvent, login)));
+        verify(logAggregateService, never()).add(anyList());
+        verify(sinkDispatcher, never()).dispatchAggregated(anyList());
+        verify(eventDeduplicator).forget(login.getEventId());
+    }
+
+    @Test
+    void testHandleLogEventsRethrowsWhenAggregateWriteFails() {
+        // Given
+        OperationLogEvent stored = OperationLogEvent.of(1001L, "CREATE_USER", "192.168.1.100");
+        OperationLogEvent login = OperationLogEvent.of(1002L, "USER_LOGIN", "192.168.1.101");
+        when(eventDeduplicator.markIfAbsent(anyString())).thenReturn(true);
+        when(ingestPolicyResolver.shouldStore(argThat(log -> "USER_LOGIN".equals(log.getAction())))).thenReturn(false);
+        when(logIdGenerator.nextId()).thenReturn(100L);
+        doThrow(new RuntimeException("数据库不可用")).when(logAggregateService).add(anyList());
+
+        // When & Then 聚合未写入时不确认消息，重试时只重新累计聚合的事件
+        assertThrows(RuntimeException.class,
+                () -> operationLogService.handleLogEvents(Arrays.asList(stored, login)));
+        verify(eventDeduplicator).forget(login.getEventId());
+        verify(eventDeduplicator, never()).forget(stored.getEventId());
+        verify(sinkDispatcher, never()).dispatchAggregated(anyList());
+    }
+
     @Test
     void testSaveLog() {
         // Given
@@ -82,7 +288,7 @@ class OperationLogServiceImplTest {
     void testGetLogsByUserId() {
         // Given
         List<OperationLog> logs = Arrays.asList(sampleLog);
-        when(operationLogRepository.findByUserIdOrderByGmtCreateDesc(1001L)).thenReturn(logs);
+        when(operationLogQueryDao.findByUserId(1001L)).thenReturn(logs);
 
         // When
         List<OperationLog> result = operationLogService.getLogsByUserId(1001L);
@@ -91,14 +297,14 @@ class OperationLogServiceImplTest {
         assertNotNull(result);
         assertEquals(1, result.size());
         assertEquals(sampleLog.getUserId(), result.get(0).getUserId());
-        verify(operationLogRepository, times(1)).findByUserIdOrderByGmtCreateDesc(1001L);
+        verify(operationLogQueryDao, times(1)).findByUserId(1001L);
     }
 
     @Test
     void testGetLogsByAction() {
         // Given
         List<OperationLog> logs = Arrays.asList(sampleLog);
-        when(operationLogRepository.findByActionOrderByGmtCreateDesc("CREATE_USER")).thenReturn(logs);
+        when(operationLogQueryDao.findByAction("CREATE_USER")).thenReturn(logs);
 
         // When
         List<OperationLog> result = operationLogService.getLogsByAction("CREATE_USER");
@@ -107,7 +313,7 @@ class OperationLogServiceImplTest {
         assertNotNull(result);
         assertEquals(1, result.size());
         assertEquals(sampleLog.getAction(), result.get(0).getAction());
-        verify(operationLogRepository, times(1)).findByActionOrderByGmtCreateDesc("CREATE_USER");
+        verify(operationLogQueryDao, times(1)).findByAction("CREATE_USER");
     }
 
     @Test
@@ -118,7 +324,7 @@ class OperationLogServiceImplTest {
         Pageable pageable = PageRequest.of(0, 20);
         List<OperationLog> logs = Arrays.asList(sampleLog);
         Page<OperationLog> page = new PageImpl<>(logs, pageable, 1);
-        when(operationLogRepository.findByTimeRange(start, end, pageable)).thenReturn(page);
+        when(operationLogQueryDao.findByTimeRange(start, end, pageable)).thenReturn(page);
 
         // When
         Page<OperationLog> result = operationLogService.getLogsByTimeRange(start, end, pageable);
@@ -126,13 +332,13 @@ class OperationLogServiceImplTest {
         // Then
         assertNotNull(result);
         assertEquals(1, result.getTotalElements());
-        verify(operationLogRepository, times(1)).findByTimeRange(start, end, pageable);
+        verify(operationLogQueryDao, times(1)).findByTimeRange(start, end, pageable);
     }
 
     @Test
     void testCountUserOperations() {
         // Given
-        when(operationLogRepository.countByUserId(1001L)).thenReturn(5L);
+        when(operationCounterService.countUserOperations(1001L)).thenReturn(5L);
 
         // When
         Long result = operationLogService.countUserOperations(1001L);
@@ -140,6 +346,40 @@ class OperationLogServiceImplTest {
         // Then
         assertNotNull(result);
         assertEquals(5L, result);
-        verify(operationLogRepository, times(1)).countByUserId(1001L);
+        verify(operationCounterService, times(1)).countUserOperations(1001L);
+        verify(operationLogRepository, never()).countByUserId(any());
+    }
+
+    @Test
+    void testQueryLogs_HasMore() {
+        // Given
+        LocalDateTime time = LocalDateTime.of(2025, 6, 21, 10, 0);
+        List<OperationLogView> rows = Arrays.asList(
+                new OperationLogView(3L, 1001L, "USER_LOGIN", "192.168.1.100", null, time),
+                new OperationLogView(2L, 1001L, "USER_LOGIN", "192.168.1.100", null, time),
+                new OperationLogView(1L, 1001L, "USER_LOGIN", "192.168.1.100", null, time));
+        LogQuery query = new LogQuery();
+        query.setUserId(1001L);
+        query.setSize(2);
+        when(operationLogQueryDao.findPage(eq(query), isNull(), eq(3))).thenReturn(rows);
+
+        // When
+        CursorPage<OperationLogView> result = operationLogService.queryLogs(query);
+
+        // Then
+        assertTrue(result.isHasMore());
+        assertEquals(2, result.getItems().size());
+        LogCursor next = LogCursor.decode(result.getNextCursor());
+        assertEquals(time, next.getGmtCreate());
+        assertEquals(2L, next.getLogId());
+    }
+
+    @Test
+    void testQueryLogs_InvalidCursor() {
+        LogQuery query = new LogQuery();
+        query.setCursor("not-a-cursor");
+
+        assertThrows(IllegalArgumentException.class, () -> operationLogService.queryLogs(query));
+        verify(operationLogQueryDao, never()).findPage(any(), any(), anyInt());
     }
 }
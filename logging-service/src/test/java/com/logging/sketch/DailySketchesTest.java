@@ -0,0 +1,72 @@
+package com.logging.sketch;
+
+import com.logging.dto.HeavyHitter;
+import com.logging.util.Hash64;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DailySketchesTest {
+
+    @Test
+    void testHyperLogLogAccuracyAndMerge() {
+        HyperLogLog first = new HyperLogLog(14);
+        HyperLogLog second = new HyperLogLog(14);
+        for (long userId = 0; userId < 100000; userId++) {
+            first.add(Hash64.hash(userId));
+            // 两个实例各见到一半用户，中间一段重叠
+            second.add(Hash64.hash(userId + 50000));
+        }
+        assertEquals(100000, first.estimate(), 100000 * 0.03);
+
+        first.merge(second);
+        assertEquals(150000, first.estimate(), 150000 * 0.03);
+    }
+
+    @Test
+    void testHyperLogLogSmallCardinality() {
+        HyperLogLog hll = new HyperLogLog(14);
+        for (int i = 0; i < 3; i++) {
+            hll.add(Hash64.hash(42L));
+            hll.add(Hash64.hash(43L));
+        }
+        assertEquals(2, hll.estimate());
+    }
+
+    @Test
+    void testHeavyHittersFoundAmongNoise() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(100);
+        for (int i = 0; i < 20000; i++) {
+            sketch.offer("10.0.0." + (i % 3));
+            sketch.offer("noise-" + i);
+        }
+        List<HeavyHitter> top = sketch.top(3);
+        assertEquals(3, top.size());
+        for (HeavyHitter hitter : top) {
+            assertTrue(hitter.getKey().startsWith("10.0.0."), hitter.getKey());
+            assertTrue(hitter.getCount() >= 6666 && hitter.getCount() < 6666 + 400, "估计次数: " + hitter.getCount());
+        }
+    }
+
+    @Test
+    void testMergeAcrossInstancesAfterRoundTrip() {
+        DailySketches first = new DailySketches(12, 50);
+        DailySketches second = new DailySketches(12, 50);
+        for (long i = 0; i < 1000; i++) {
+            first.add(i, "192.168.1.1");
+            second.add(i + 1000, i % 2 == 0 ? "192.168.1.1" : "192.168.1.2");
+        }
+        assertTrue(first.isDirty());
+
+        DailySketches merged = DailySketches.fromBytes(first.toBytes());
+        merged.merge(DailySketches.fromBytes(second.toBytes()));
+
+        assertEquals(2000, merged.getUsers().estimate(), 2000 * 0.05);
+        HeavyHitter topIp = merged.getIps().top(1).get(0);
+        assertEquals("192.168.1.1", topIp.getKey());
+        assertEquals(1500L, topIp.getCount());
+        assertEquals(50, merged.getTopUsers().top(100).size());
+    }
+}
@@ -0,0 +1,69 @@
+package com.logging.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedCounterMapTest {
+
+    @Test
+    void testAddAndDrain() {
+        StripedCounterMap<String> counters = new StripedCounterMap<>(4);
+        counters.add("USER_LOGIN", 2);
+        counters.add("USER_LOGIN", 3);
+        counters.add("USER_UPDATE", 1);
+
+        assertEquals(5L, counters.pending("USER_LOGIN"));
+
+        Map<String, Long> drained = counters.drain();
+        assertEquals(5L, drained.get("USER_LOGIN"));
+        assertEquals(1L, drained.get("USER_UPDATE"));
+        assertEquals(0L, counters.pending("USER_LOGIN"));
+        assertTrue(counters.drain().isEmpty());
+    }
+
+    @Test
+    void testRestore() {
+        StripedCounterMap<String> counters = new StripedCounterMap<>(4);
+        counters.add("USER_LOGIN", 1);
+        counters.restore(Collections.singletonMap("USER_LOGIN", 4L));
+
+        assertEquals(5L, counters.pending("USER_LOGIN"));
+    }
+
+    @Test
+    void testConcurrentAddWhileDraining() throws Exception {
+        StripedCounterMap<Integer> counters = new StripedCounterMap<>(8);
+        int threads = 4;
+        int perThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    counters.add(i % 16, 1);
+                }
+                done.countDown();
+            });
+        }
+
+        AtomicLong total = new AtomicLong();
+        while (done.getCount() > 0) {
+            counters.drain().values().forEach(total::addAndGet);
+        }
+        counters.drain().values().forEach(total::addAndGet);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // 并发刷盘不能丢失任何增量
+        assertEquals((long) threads * perThread, total.get());
+    }
+}
@@ -0,0 +1,110 @@
+package com.logging.store;
+
+import com.logging.entity.OperationLog;
+import com.logging.repository.OperationLogRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 段存储与JPA路径的写入/查询耗时对比
+ * 运行方式：mvn test -Dtest=SegmentLogStoreBenchmarkTest -Dbenchmark=true
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SegmentLogStoreBenchmarkTest {
+
+    private static final int LOG_COUNT = 100_000;
+
+    private static final int USER_COUNT = 1_000;
+
+    private static final int BATCH_SIZE = 1_000;
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+
+    @Autowired
+    private OperationLogRepository operationLogRepository;
+
+    @TempDir
+    File dir;
+
+    @Test
+    void compareWithJpa() throws Exception {
+        SegmentLogStore store = new SegmentLogStore();
+        ReflectionTestUtils.setField(store, "dir", dir.getAbsolutePath());
+        ReflectionTestUtils.setField(store, "segmentSize", 64 * 1024 * 1024);
+        ReflectionTestUtils.setField(store, "rollIntervalMs", 3600000L);
+        ReflectionTestUtils.setField(store, "retentionDays", 36500);
+        store.init();
+
+        long start = System.nanoTime();
+        for (int from = 0; from < LOG_COUNT; from += BATCH_SIZE) {
+            operationLogRepository.saveAll(sampleLogs(from, from + BATCH_SIZE, false));
+            operationLogRepository.flush();
+        }
+        long jpaWriteMs = elapsedMs(start);
+
+        start = System.nanoTime();
+        for (int from = 0; from < LOG_COUNT; from += BATCH_SIZE) {
+            store.append(sampleLogs(from, from + BATCH_SIZE, true));
+        }
+        long segmentWriteMs = elapsedMs(start);
+
+        start = System.nanoTime();
+        int jpaRows = 0;
+        for (long userId = 0; userId < 100; userId++) {
+            jpaRows += operationLogRepository.findByUserIdOrderByGmtCreateDesc(userId).size();
+        }
+        jpaRows += operationLogRepository.findByTimeRange(BASE_TIME, BASE_TIME.plusHours(1), PageRequest.of(0, 100))
+                .getContent().size();
+        long jpaQueryMs = elapsedMs(start);
+
+        start = System.nanoTime();
+        int segmentRows = 0;
+        for (long userId = 0; userId < 100; userId++) {
+            segmentRows += store.findByUserId(userId).size();
+        }
+        segmentRows += store.findByTimeRange(BASE_TIME, BASE_TIME.plusHours(1), PageRequest.of(0, 100))
+                .getContent().size();
+        long segmentQueryMs = elapsedMs(start);
+        store.shutdown();
+
+        System.out.printf("写入%d条: JPA=%dms, 段存储=%dms%n", LOG_COUNT, jpaWriteMs, segmentWriteMs);
+        System.out.printf("查询100个用户及1小时时间范围: JPA=%dms, 段存储=%dms%n", jpaQueryMs, segmentQueryMs);
+        assertEquals(jpaRows, segmentRows);
+    }
+
+    private static List<OperationLog> sampleLogs(int from, int to, boolean withId) {
+        List<OperationLog> logs = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            OperationLog operationLog = new OperationLog();
+            if (withId) {
+                operationLog.setLogId((long) i + 1);
+            }
+            operationLog.setUserId((long) (i % USER_COUNT));
+            operationLog.setAction(i % 10 == 0 ? "USER_DELETE" : "USER_LOGIN");
+            operationLog.setIp("192.168.1." + (i % 255));
+            operationLog.setDetail("操作详情" + i);
+            operationLog.setGmtCreate(BASE_TIME.plusSeconds(i));
+            logs.add(operationLog);
+        }
+        return logs;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,179 @@
+package com.logging.store;
+
+import com.logging.dto.LogCursor;
+import com.logging.dto.LogQuery;
+import com.logging.dto.OperationLogView;
+import com.logging.entity.OperationLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentLogStoreTest {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+
+    @TempDir
+    File dir;
+
+    private SegmentLogStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    void testQueriesAcrossRolledSegments() throws Exception {
+        store = newStore(4096);
+        store.append(sampleLogs(0, 500));
+
+        assertTrue(store.getSegmentCount() > 1, "写满后应滚动出多个段");
+
+        List<OperationLog> byUser = store.findByUserId(3L);
+        assertEquals(50, byUser.size());
+        assertTrue(byUser.stream().allMatch(log -> log.getUserId() == 3L));
+        assertTrue(byUser.get(0).getGmtCreate().isAfter(byUser.get(1).getGmtCreate()));
+
+        List<OperationLog> byAction = store.findByAction("USER_DELETE");
+        assertEquals(100, byAction.size());
+
+        Page<OperationLog> page = store.findByTimeRange(BASE_TIME.plusSeconds(100), BASE_TIME.plusSeconds(199),
+                PageRequest.of(1, 30));
+        assertEquals(100, page.getTotalElements());
+        assertEquals(30, page.getContent().size());
+        assertEquals(BASE_TIME.plusSeconds(169), page.getContent().get(0).getGmtCreate());
+    }
+
+    @Test
+    void testReopenAndCompact() throws Exception {
+        store = newStore(4096);
+        store.append(sampleLogs(0, 300));
+        store.shutdown();
+
+        store = newStore(1 << 20);
+        assertEquals(30, store.findByUserId(3L).size());
+
+        int before = store.getSegmentCount();
+        store.compact();
+        assertTrue(store.getSegmentCount() < before, "相邻小段应被合并");
+        assertEquals(30, store.findByUserId(3L).size());
+
+        store.shutdown();
+        store = newStore(1 << 20);
+        assertEquals(30, store.findByUserId(3L).size());
+    }
+
+    @Test
+    void testRestartAfterMergeCrashKeepsNewerSegments() throws Exception {
+        store = newStore(4096);
+        store.append(sampleLogs(0, 300));
+        store.shutdown();
+
+        store = newStore(1 << 20);
+        File backup = new File(dir, "backup");
+        assertTrue(backup.mkdir());
+        File[] before = dir.listFiles((d, name) -> name.endsWith(".dat"));
+        for (File file : before) {
+            Files.copy(file.toPath(), new File(backup, file.getName()).toPath());
+        }
+        store.compact();
+        store.append(sampleLogs(300, 310));
+        store.shutdown();
+
+        // 模拟合并后删除旧段前崩溃：被替换的旧段仍在目录中
+        for (File file : backup.listFiles()) {
+            File target = new File(dir, file.getName());
+            if (!target.exists()) {
+                Files.copy(file.toPath(), target.toPath());
+            }
+        }
+        store = newStore(1 << 20);
+        assertEquals(31, store.findByUserId(3L).size());
+
+        // 合并段排在被合并段原来的位置，导出仍按写入顺序
+        List<Long> exported = new ArrayList<>();
+        store.forEachInRange(BASE_TIME, BASE_TIME.plusSeconds(400), log -> exported.add(log.getLogId()));
+        assertEquals(310, exported.size());
+        for (int i = 0; i < exported.size(); i++) {
+            assertEquals(i, exported.get(i).intValue());
+        }
+    }
+
+    @Test
+    void testFindPageFiltersAndPagesWithCursor() throws Exception {
+        store = newStore(4096);
+        store.append(sampleLogs(0, 500));
+
+        LogQuery query = new LogQuery();
+        query.setAction("USER_DELETE");
+        query.setStartTime(BASE_TIME.plusSeconds(100));
+        List<OperationLogView> first = store.findPage(query, null, 30);
+        assertEquals(30, first.size());
+        assertEquals(495L, first.get(0).getLogId());
+        assertTrue(first.stream().allMatch(view -> "USER_DELETE".equals(view.getAction())));
+
+        // 游标之后继续翻页，不重复也不遗漏
+        OperationLogView last = first.get(first.size() - 1);
+        List<OperationLogView> second = store.findPage(query,
+                new LogCursor(last.getGmtCreate(), last.getLogId()), 100);
+        assertEquals(50, second.size());
+        assertEquals(last.getLogId() - 5, second.get(0).getLogId());
+        assertEquals(100L, second.get(second.size() - 1).getLogId());
+
+        LogQuery byUser = new LogQuery();
+        byUser.setUserId(3L);
+        byUser.setCidr("192.168.1.0/28");
+        List<OperationLogView> views = store.findPage(byUser, null, 100);
+        assertFalse(views.isEmpty());
+        assertTrue(views.stream().allMatch(view -> view.getUserId() == 3L
+                && Integer.parseInt(view.getIp().substring("192.168.1.".length())) < 16));
+    }
+
+    @Test
+    void testRefusesToStartWithFeaturesReadingOperationLogs() {
+        SegmentLogStore segmentLogStore = new SegmentLogStore();
+        ReflectionTestUtils.setField(segmentLogStore, "dir", dir.getAbsolutePath());
+        ReflectionTestUtils.setField(segmentLogStore, "searchEnabled", true);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, segmentLogStore::init);
+        assertTrue(e.getMessage().contains("operation-log.sinks.search.enabled"));
+    }
+
+    private SegmentLogStore newStore(int segmentSize) throws Exception {
+        SegmentLogStore segmentLogStore = new SegmentLogStore();
+        ReflectionTestUtils.setField(segmentLogStore, "dir", dir.getAbsolutePath());
+        ReflectionTestUtils.setField(segmentLogStore, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(segmentLogStore, "rollIntervalMs", 3600000L);
+        ReflectionTestUtils.setField(segmentLogStore, "retentionDays", 36500);
+        segmentLogStore.init();
+        return segmentLogStore;
+    }
+
+    private static List<OperationLog> sampleLogs(int from, int to) {
+        List<OperationLog> logs = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            OperationLog operationLog = new OperationLog();
+            operationLog.setLogId((long) i);
+            operationLog.setUserId((long) (i % 10));
+            operationLog.setAction(i % 5 == 0 ? "USER_DELETE" : "USER_LOGIN");
+            operationLog.setIp("192.168.1." + (i % 255));
+            operationLog.setDetail("操作详情" + i);
+            operationLog.setGmtCreate(BASE_TIME.plusSeconds(i));
+            logs.add(operationLog);
+        }
+        return logs;
+    }
+}
@@ -0,0 +1,67 @@
+package com.logging.stream;
+
+import com.logging.entity.OperationLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStreamHubTest {
+
+    private LogStreamHub logStreamHub;
+
+    @BeforeEach
+    void setUp() {
+        logStreamHub = new LogStreamHub(10, 2, 60000, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logStreamHub.shutdown();
+    }
+
+    @Test
+    void testFilterMatches() {
+        OperationLog log = new OperationLog(1L, 1001L, "USER_LOGIN", "192.168.1.100", null, LocalDateTime.now(), null);
+
+        assertTrue(new LogStreamFilter(null, null, null).matches(log));
+        assertTrue(new LogStreamFilter(1001L, "USER_LOGIN", null).matches(log));
+        assertFalse(new LogStreamFilter(1002L, null, null).matches(log));
+        assertFalse(new LogStreamFilter(null, null, "10.0.0.1").matches(log));
+    }
+
+    @Test
+    void testSubscriberLimit() {
+        assertNotNull(logStreamHub.subscribe(new LogStreamFilter(null, null, null)));
+        assertNotNull(logStreamHub.subscribe(new LogStreamFilter(1001L, null, null)));
+        assertNull(logStreamHub.subscribe(new LogStreamFilter(null, "USER_LOGIN", null)));
+        assertEquals(2, logStreamHub.getSubscriberCount());
+    }
+
+    @Test
+    void testHeartbeatIsSentOnSendThread() throws InterruptedException {
+        SseEmitter emitter = logStreamHub.subscribe(new LogStreamFilter(null, null, null));
+        emitter.complete();
+        assertEquals(1, logStreamHub.getSubscriberCount());
+
+        // 心跳由发送线程写出，写入已关闭的连接失败后移除订阅
+        logStreamHub.heartbeat();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (logStreamHub.getSubscriberCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, logStreamHub.getSubscriberCount());
+    }
+
+    @Test
+    void testPublishWithoutSubscribers() {
+        OperationLog log = new OperationLog(1L, 1001L, "USER_LOGIN", "192.168.1.100", null, LocalDateTime.now(), null);
+
+        assertDoesNotThrow(() -> logStreamHub.onLogsPersisted(Collections.singletonList(log)));
+    }
+}
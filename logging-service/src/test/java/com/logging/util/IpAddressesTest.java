@@ -0,0 +1,50 @@
+package com.logging.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpAddressesTest {
+
+    @Test
+    void testIpv4RoundTrip() {
+        byte[] address = IpAddresses.toBytes("192.168.1.20");
+
+        assertArrayEquals(new byte[]{(byte) 192, (byte) 168, 1, 20}, address);
+        assertEquals("192.168.1.20", IpAddresses.format(address));
+        assertNull(IpAddresses.toBytes("256.1.1.1"));
+        assertNull(IpAddresses.toBytes("localhost"));
+        assertNull(IpAddresses.toBytes(null));
+    }
+
+    @Test
+    void testIpv6Compression() {
+        byte[] address = IpAddresses.toBytes("2001:0db8:0000:0000:0000:ff00:0042:8329");
+
+        assertEquals(16, address.length);
+        assertEquals("2001:db8::ff00:42:8329", IpAddresses.format(address));
+        assertEquals("::1", IpAddresses.format(IpAddresses.toBytes("::1")));
+        assertEquals("::", IpAddresses.format(IpAddresses.toBytes("::")));
+        assertEquals("2001:db8:0:1:1:1:1:1", IpAddresses.format(IpAddresses.toBytes("2001:db8:0:1:1:1:1:1")));
+        assertEquals("2001:0:0:1::1", IpAddresses.format(IpAddresses.toBytes("2001:0:0:1:0:0:0:1")));
+        assertNull(IpAddresses.toBytes("2001:db8::g"));
+    }
+
+    @Test
+    void testCidrRange() {
+        byte[][] v4 = IpAddresses.cidrRange("10.1.0.0/16");
+        assertEquals("10.1.0.0", IpAddresses.format(v4[0]));
+        assertEquals("10.1.255.255", IpAddresses.format(v4[1]));
+        assertTrue(IpAddresses.inRange(IpAddresses.toBytes("10.1.200.3"), v4[0], v4[1]));
+        assertFalse(IpAddresses.inRange(IpAddresses.toBytes("10.2.0.1"), v4[0], v4[1]));
+
+        byte[][] v6 = IpAddresses.cidrRange("2001:db8::/32");
+        assertEquals("2001:db8::", IpAddresses.format(v6[0]));
+        assertEquals("2001:db8:ffff:ffff:ffff:ffff:ffff:ffff", IpAddresses.format(v6[1]));
+        assertTrue(IpAddresses.inRange(IpAddresses.toBytes("2001:db8:1::5"), v6[0], v6[1]));
+        assertFalse(IpAddresses.inRange(IpAddresses.toBytes("10.1.200.3"), v6[0], v6[1]));
+
+        assertThrows(IllegalArgumentException.class, () -> IpAddresses.cidrRange("10.0.0.0/33"));
+        assertThrows(IllegalArgumentException.class, () -> IpAddresses.cidrRange("not-an-ip/8"));
+    }
+}
@@ -7,8 +7,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * 消息发送工具类
@@ -28,8 +32,20 @@ public class MessageUtil {
     // 日志主题
     private static final String LOG_TOPIC = "operation-log-topic";
 
+    // 安全相关操作的消息标签，日志服务以独立消费组优先入库
+    private static final String TAG_SECURITY = "SECURITY";
+
+    // 其余高频操作的消息标签
+    private static final String TAG_BULK = "BULK";
+
+    private static final Set<String> SECURITY_ACTIONS = new HashSet<>(Arrays.asList(
+            "PASSWORD_RESET", "USER_REGISTER", "USER_UPDATE", "USER_DELETE"));
+
     /**
      * 发送用户操作日志消息
+     * 每条消息携带唯一的eventId，日志服务据此对MQ重复投递去重；
+     * 按操作类型打上SECURITY或BULK标签，安全相关事件不会排在高频事件的积压之后；
+     * 以userId为hashKey发送到固定队列，同一用户的事件由同一个日志服务实例按发送顺序消费
      * 
      * @param userId 用户ID
      * @param action 操作类型
@@ -39,14 +55,16 @@ public class MessageUtil {
     public void sendOperationLog(Long userId, String action, String ip, String detail) {
         try {
             Map<String, Object> logMessage = new HashMap<>();
+            logMessage.put("eventId", UUID.randomUUID().toString());
             logMessage.put("userId", userId);
             logMessage.put("action", action);
             logMessage.put("ip", ip);
             logMessage.put("detail", detail);
             logMessage.put("timestamp", LocalDateTime.now().toString());
 
-            // 异步发送消息到RocketMQ
-            rocketMQTemplate.asyncSend(LOG_TOPIC, logMessage, new MessageSendCallback(action, userId));
+            // 异步发送消息到RocketMQ，同一用户的消息进入同一队列
+            rocketMQTemplate.asyncSendOrderly(LOG_TOPIC + ":" + tagOf(action), logMessage, String.valueOf(userId),
+                    new MessageSendCallback(action, userId));
             
             logger.info("操作日志消息发送成功: userId={}, action={}", userId, action);
         } catch (Exception e) {
@@ -54,6 +72,16 @@ public class MessageUtil {
         }
     }
 
+    /**
+     * 操作类型对应的消息标签
+     *
+     * @param action 操作类型
+     * @return 消息标签
+     */
+    private static String tagOf(String action) {
+        return SECURITY_ACTIONS.contains(action) ? TAG_SECURITY : TAG_BULK;
+    }
+
     /**
      * 发送用户注册日志
      * 